@@ -0,0 +1,69 @@
+package com.aliyun.rag.benchmark;
+
+import com.aliyun.rag.service.IntelligentChunkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 智能分块开销
+ * <p>
+ * 通过入库流程使用的intelligentChunkText入口，对各文档类型、中英文、不同长度的文本分块，
+ * 分块参数与application配置的默认值一致
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class ChunkingBenchmark {
+
+    @Param({"pdf", "md", "docx", "txt", "epub"})
+    private String type;
+
+    @Param({"zh", "en"})
+    private String language;
+
+    @Param({"100000", "1000000", "10000000"})
+    private int textChars;
+
+    private IntelligentChunkingService chunkingService;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        chunkingService = new IntelligentChunkingService();
+        ReflectionTestUtils.setField(chunkingService, "pdfChunkSize", 800);
+        ReflectionTestUtils.setField(chunkingService, "pdfOverlap", 150);
+        ReflectionTestUtils.setField(chunkingService, "markdownChunkSize", 1200);
+        ReflectionTestUtils.setField(chunkingService, "markdownOverlap", 200);
+        ReflectionTestUtils.setField(chunkingService, "docxChunkSize", 1000);
+        ReflectionTestUtils.setField(chunkingService, "docxOverlap", 200);
+        ReflectionTestUtils.setField(chunkingService, "defaultChunkSize", 1000);
+        ReflectionTestUtils.setField(chunkingService, "defaultOverlap", 200);
+        ReflectionTestUtils.setField(chunkingService, "intelligentChunkingEnabled", true);
+
+        text = BenchmarkFixtures.document(type, language, textChars);
+    }
+
+    @Benchmark
+    public String[] intelligentChunkText() {
+        return chunkingService.intelligentChunkText(text, type);
+    }
+}
@@ -0,0 +1,105 @@
+package com.aliyun.rag.benchmark;
+
+import com.aliyun.rag.config.JwtConfig;
+import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.VerifiedToken;
+import com.aliyun.rag.service.JwtTokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个请求的JWT认证CPU开销
+ * <p>
+ * legacyPreHandle复现改造前认证拦截器的调用序列：validateToken、AuthService.validateToken（再次验证并取用户ID）、
+ * isTokenExpiringSoon，每次都新建解析器并验证签名；verifiedColdCache为解析一次但缓存未命中的开销；
+ * verifiedPreHandle为当前实现在令牌已验证过时的开销
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private JwtTokenService cachedService;
+    private JwtTokenService uncachedService;
+    private SecretKey secretKey;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtConfig config = new JwtConfig();
+        cachedService = new JwtTokenService(config);
+
+        JwtConfig uncachedConfig = new JwtConfig();
+        // 容量为0时每次写入后立即清空，每次验证都会重新解析
+        uncachedConfig.setVerifiedCacheSize(0);
+        uncachedService = new JwtTokenService(uncachedConfig);
+
+        secretKey = Keys.hmacShaKeyFor(config.getSecret().getBytes(StandardCharsets.UTF_8));
+
+        User user = new User();
+        user.setId(10001L);
+        user.setUsername("benchmark_user");
+        user.setEmail("benchmark@example.com");
+        user.setLevel(0);
+        token = cachedService.generateAccessToken(user);
+        cachedService.verify(token);
+    }
+
+    @Benchmark
+    public void legacyPreHandle(Blackhole blackhole) {
+        // AuthInterceptor: validateToken
+        blackhole.consume(legacyParse(token));
+        // AuthService.validateToken: validateToken + getUserIdFromToken
+        blackhole.consume(legacyParse(token));
+        blackhole.consume(legacyParse(token).get("userId", Long.class));
+        // AuthInterceptor: isTokenExpiringSoon
+        Date expiration = legacyParse(token).getExpiration();
+        blackhole.consume(expiration.getTime() - System.currentTimeMillis() < 3600000);
+    }
+
+    @Benchmark
+    public void verifiedColdCache(Blackhole blackhole) {
+        VerifiedToken verified = uncachedService.verify(token);
+        blackhole.consume(verified.getUserId());
+        blackhole.consume(uncachedService.isExpiringSoon(verified));
+    }
+
+    @Benchmark
+    public void verifiedPreHandle(Blackhole blackhole) {
+        VerifiedToken verified = cachedService.verify(token);
+        blackhole.consume(verified.getUserId());
+        blackhole.consume(cachedService.isExpiringSoon(verified));
+    }
+
+    private Claims legacyParse(String value) {
+        return Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build()
+                .parseClaimsJws(value)
+                .getBody();
+    }
+}
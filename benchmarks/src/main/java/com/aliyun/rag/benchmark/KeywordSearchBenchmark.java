@@ -0,0 +1,132 @@
+package com.aliyun.rag.benchmark;
+
+import com.aliyun.rag.config.AnswerCacheProperties;
+import com.aliyun.rag.config.KeywordIndexProperties;
+import com.aliyun.rag.model.SearchResult;
+import com.aliyun.rag.service.KeywordIndexService;
+import com.aliyun.rag.service.SemanticAnswerCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关键词检索打分开销
+ * <p>
+ * legacyKeywordScore复现VectorStoreService.calculateKeywordScore的逐条打分方式：对每个分块做小写转换和contains匹配后整体排序
+ * （不含从Milvus拉取分块的网络开销）；bm25Search为当前基于倒排索引段的BM25检索
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class KeywordSearchBenchmark {
+
+    private static final long USER_ID = 10001L;
+    private static final String USERNAME = "benchmark_user";
+    private static final int CHUNKS_PER_DOCUMENT = 100;
+    private static final int MAX_RESULTS = 10;
+
+    @Param({"1000", "10000", "100000"})
+    private int chunkCount;
+
+    @Param({"混合检索 BM25", "embedding throughput batch"})
+    private String query;
+
+    private Path indexDir;
+    private KeywordIndexService keywordIndexService;
+    private String[] chunks;
+
+    @Setup
+    public void setUp() throws IOException {
+        chunks = BenchmarkFixtures.chunks(chunkCount);
+
+        indexDir = Files.createTempDirectory("keyword-index-benchmark");
+        KeywordIndexProperties properties = new KeywordIndexProperties();
+        properties.setDir(indexDir.toString());
+        properties.setRebuildOnMissing(false);
+        // 知识库版本不可用时跳过与数据库的核对，只检索本地写入的索引段
+        SemanticAnswerCache versions = new SemanticAnswerCache(new AnswerCacheProperties(), null, null) {
+            @Override
+            public Long knowledgeBaseVersion(Long userId) {
+                return null;
+            }
+        };
+        keywordIndexService = new KeywordIndexService(properties, null, null, null, versions);
+
+        for (int start = 0, doc = 1; start < chunks.length; start += CHUNKS_PER_DOCUMENT, doc++) {
+            String[] documentChunks = Arrays.copyOfRange(chunks, start, Math.min(chunks.length, start + CHUNKS_PER_DOCUMENT));
+            keywordIndexService.indexDocument(USER_ID, USERNAME, (long) doc, "doc-" + doc, "pdf", documentChunks);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(indexDir);
+    }
+
+    @Benchmark
+    public List<SearchResult> legacyKeywordScore() {
+        List<SearchResult> matches = new ArrayList<>(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            SearchResult result = new SearchResult();
+            result.setContent(chunks[i]);
+            result.setPosition(i % CHUNKS_PER_DOCUMENT);
+            result.setScore(calculateKeywordScore(chunks[i], query));
+            matches.add(result);
+        }
+        matches.sort((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()));
+        return matches.subList(0, Math.min(MAX_RESULTS, matches.size()));
+    }
+
+    @Benchmark
+    public List<SearchResult> bm25Search() {
+        return keywordIndexService.search(query, MAX_RESULTS, USER_ID, USERNAME);
+    }
+
+    /**
+     * 改造前VectorStoreService的关键词匹配度计算
+     */
+    private static double calculateKeywordScore(String content, String query) {
+        double score = 0.5;
+        String contentLower = content.toLowerCase();
+        String queryLower = query.toLowerCase();
+        if (contentLower.contains(queryLower)) {
+            score += 0.3;
+        }
+        String[] queryWords = queryLower.split("\\s+");
+        int matchCount = 0;
+        for (String word : queryWords) {
+            if (contentLower.contains(word)) {
+                matchCount++;
+            }
+        }
+        if (queryWords.length > 0) {
+            score += (double) matchCount / queryWords.length * 0.2;
+        }
+        return Math.min(score, 1.0);
+    }
+}
@@ -0,0 +1,74 @@
+package com.aliyun.rag.benchmark;
+
+import com.aliyun.rag.model.SearchResult;
+import com.aliyun.rag.service.OptimizedVectorStoreService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高级重排序开销
+ * <p>
+ * 通过方法句柄调用OptimizedVectorStoreService.advancedRerankResults（私有方法）。
+ * 重排序会改写结果分数，每次调用前先恢复初始分数，恢复开销相对排序可以忽略。
+ * 当前实现的来源多样性分数对每条结果遍历全部结果，结果数为100000时单次调用耗时在数十秒量级
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class RerankBenchmark {
+
+    private static final String QUERY = "hybrid search 混合检索 BM25";
+
+    @Param({"1000", "10000", "100000"})
+    private int resultCount;
+
+    private OptimizedVectorStoreService service;
+    private MethodHandle advancedRerankResults;
+    private List<SearchResult> results;
+    private double[] initialScores;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        service = new OptimizedVectorStoreService(null, null, null, null, null);
+        advancedRerankResults = MethodHandles.privateLookupIn(OptimizedVectorStoreService.class, MethodHandles.lookup())
+                .findVirtual(OptimizedVectorStoreService.class, "advancedRerankResults",
+                        MethodType.methodType(List.class, List.class, String.class));
+
+        results = BenchmarkFixtures.searchResults(resultCount);
+        initialScores = new double[resultCount];
+        for (int i = 0; i < resultCount; i++) {
+            initialScores[i] = results.get(i).getScore();
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<SearchResult> advancedRerankResults() throws Throwable {
+        for (int i = 0; i < initialScores.length; i++) {
+            results.get(i).setScore(initialScores[i]);
+        }
+        return (List<SearchResult>) advancedRerankResults.invoke(service, results, QUERY);
+    }
+}
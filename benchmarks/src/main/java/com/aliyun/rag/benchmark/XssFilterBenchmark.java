@@ -0,0 +1,134 @@
+package com.aliyun.rag.benchmark;
+
+import com.aliyun.rag.config.MetricsConfig;
+import com.aliyun.rag.config.XssProperties;
+import com.aliyun.rag.filter.XSSFilter;
+import com.aliyun.rag.service.MetricsService;
+import com.aliyun.rag.util.XssDetector;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * XSS检查开销
+ * <p>
+ * legacyDetect复现改造前的检测方式：URL解码、6次replaceAll实体解码后逐个执行12个正则；
+ * detect为当前单次扫描实现；filter为完整的过滤器调用（参数来自请求查询参数，含耗时指标记录）。
+ * 参数值类型：query为普通检索词，longText为2000字左右的中英文长文本，attack为URL编码的脚本注入
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XssFilterBenchmark {
+
+    private static final Pattern[] LEGACY_PATTERNS = {
+            Pattern.compile("<script[^>]*>.*?</script>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
+            Pattern.compile("<script[^>]*>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
+            Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("on\\w+\\s*=", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("expression\\s*\\(", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<style[^>]*>.*?</style>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
+            Pattern.compile("<(iframe|object|embed|applet|meta|link)[^>]*>", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("data:text/html", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("data:application/", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("eval\\s*\\(", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("livescript:", Pattern.CASE_INSENSITIVE)
+    };
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {
+    };
+
+    @Param({"query", "longText", "attack"})
+    private String payload;
+
+    private String value;
+    private AnnotationConfigApplicationContext metricsContext;
+    private XSSFilter filter;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        value = switch (payload) {
+            case "query" -> "向量数据库 hybrid search";
+            case "longText" -> String.join("\n", BenchmarkFixtures.chunks(4));
+            default -> "%3Cimg%20src%3Dx%20onerror%3Dalert(1)%3E";
+        };
+
+        metricsContext = new AnnotationConfigApplicationContext();
+        metricsContext.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        metricsContext.register(MetricsConfig.class, MetricsService.class);
+        metricsContext.refresh();
+        filter = new XSSFilter(new XssProperties(), metricsContext.getBean(MetricsService.class));
+
+        request = new MockHttpServletRequest("GET", "/api/search/simple");
+        request.addParameter("query", value);
+        request.addParameter("type", "SEMANTIC");
+        request.addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 Chrome/126.0 Safari/537.36");
+        request.addHeader("Referer", "http://localhost:5175/search");
+    }
+
+    @TearDown
+    public void tearDown() {
+        metricsContext.close();
+    }
+
+    @Benchmark
+    public boolean legacyDetect() {
+        String decoded = value;
+        try {
+            decoded = java.net.URLDecoder.decode(decoded, "UTF-8");
+        } catch (Exception e) {
+            // 解码失败，使用原值
+        }
+        decoded = decoded.replaceAll("&lt;", "<")
+                .replaceAll("&gt;", ">")
+                .replaceAll("&quot;", "\"")
+                .replaceAll("&#x27;", "'")
+                .replaceAll("&#x2F;", "/")
+                .replaceAll("&amp;", "&");
+        for (Pattern pattern : LEGACY_PATTERNS) {
+            if (pattern.matcher(decoded).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean detect() {
+        return XssDetector.containsAttack(value);
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, NOOP_CHAIN);
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,72 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 访问日志配置类
+ * <p>
+ * 请求线程只把访问事件写入有界环形缓冲区，由后台线程序列化并输出；缓冲区满时丢弃事件并计数
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "access-log")
+public class AccessLogProperties {
+
+    /**
+     * 是否输出访问日志
+     */
+    private boolean enabled = true;
+
+    /**
+     * 环形缓冲区容量，向上取整为2的幂
+     */
+    private int bufferSize = 8192;
+
+    /**
+     * 是否记录请求头（敏感请求头脱敏）
+     */
+    private boolean includeHeaders = true;
+
+    /**
+     * 缓冲区为空时后台线程的等待时间（毫秒）
+     */
+    private long idleWaitMs = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isIncludeHeaders() {
+        return includeHeaders;
+    }
+
+    public void setIncludeHeaders(boolean includeHeaders) {
+        this.includeHeaders = includeHeaders;
+    }
+
+    public long getIdleWaitMs() {
+        return idleWaitMs;
+    }
+
+    public void setIdleWaitMs(long idleWaitMs) {
+        this.idleWaitMs = idleWaitMs;
+    }
+}
@@ -0,0 +1,113 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 语义问答缓存配置类
+ * <p>
+ * 同一用户在知识库未变化时提出语义相近的问题，直接返回缓存的回答，不再检索和调用大模型
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "search.answer-cache")
+public class AnswerCacheProperties {
+
+    /**
+     * 是否启用问答缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 命中所需的最小余弦相似度
+     */
+    private double similarityThreshold = 0.95;
+
+    /**
+     * 每个用户最多缓存的回答数，超出时淘汰最久未命中的条目
+     */
+    private int maxEntriesPerUser = 200;
+
+    /**
+     * 最多缓存的用户数，超出时淘汰最久未访问的用户
+     */
+    private int maxUsers = 1000;
+
+    /**
+     * 缓存条目存活时间
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * 流式命中时每次推送的字符数
+     */
+    private int replayChunkChars = 16;
+
+    /**
+     * Redis中知识库版本号的键前缀，版本号在上传、删除文档后递增
+     */
+    private String versionKeyPrefix = "kb:version:";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public void setSimilarityThreshold(double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    public int getMaxEntriesPerUser() {
+        return maxEntriesPerUser;
+    }
+
+    public void setMaxEntriesPerUser(int maxEntriesPerUser) {
+        this.maxEntriesPerUser = maxEntriesPerUser;
+    }
+
+    public int getMaxUsers() {
+        return maxUsers;
+    }
+
+    public void setMaxUsers(int maxUsers) {
+        this.maxUsers = maxUsers;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getReplayChunkChars() {
+        return replayChunkChars;
+    }
+
+    public void setReplayChunkChars(int replayChunkChars) {
+        this.replayChunkChars = replayChunkChars;
+    }
+
+    public String getVersionKeyPrefix() {
+        return versionKeyPrefix;
+    }
+
+    public void setVersionKeyPrefix(String versionKeyPrefix) {
+        this.versionKeyPrefix = versionKeyPrefix;
+    }
+}
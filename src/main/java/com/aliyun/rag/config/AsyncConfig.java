@@ -231,4 +231,66 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 混合检索专用线程池
+     * <p>
+     * 语义检索和关键词检索两路并发执行，独立线程池避免被文件处理等长任务占满，
+     * 同时传递MDC上下文以便日志串联到同一个traceId
+     * </p>
+     *
+     * @return 混合检索线程池执行器
+     */
+    @Bean(name = "hybridSearchExecutor")
+    public ThreadPoolTaskExecutor hybridSearchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(threadPoolProperties.getHybridSearch().getCorePoolSize());
+        executor.setMaxPoolSize(threadPoolProperties.getHybridSearch().getMaxPoolSize());
+        executor.setQueueCapacity(threadPoolProperties.getHybridSearch().getQueueCapacity());
+        executor.setThreadNamePrefix(threadPoolProperties.getHybridSearch().getThreadNamePrefix());
+        executor.setKeepAliveSeconds(threadPoolProperties.getHybridSearch().getKeepAliveSeconds());
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.setTaskDecorator(new TracingTaskDecoratorConfig.TracingTaskDecorator());
+        executor.initialize();
+
+        log.info("混合检索线程池初始化完成: corePoolSize={}, maxPoolSize={}, queueCapacity={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+
+    /**
+     * 流式入库线程池
+     * <p>
+     * 负责调度每个分块批次的嵌入和写入阶段；实际的模型调用和Milvus写入再分发到向量处理线程池，
+     * 两者分开避免批次任务阻塞等待自己提交到同一线程池的子任务
+     * </p>
+     *
+     * @return 流式入库线程池执行器
+     */
+    @Bean(name = "ingestionExecutor")
+    public ThreadPoolTaskExecutor ingestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(threadPoolProperties.getIngestion().getCorePoolSize());
+        executor.setMaxPoolSize(threadPoolProperties.getIngestion().getMaxPoolSize());
+        executor.setQueueCapacity(threadPoolProperties.getIngestion().getQueueCapacity());
+        executor.setThreadNamePrefix(threadPoolProperties.getIngestion().getThreadNamePrefix());
+        executor.setKeepAliveSeconds(threadPoolProperties.getIngestion().getKeepAliveSeconds());
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.setTaskDecorator(new TracingTaskDecoratorConfig.TracingTaskDecorator());
+        executor.initialize();
+
+        log.info("流式入库线程池初始化完成: corePoolSize={}, maxPoolSize={}, queueCapacity={}",
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+
+        return executor;
+    }
+}
@@ -0,0 +1,86 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 重复分块消除配置类
+ * <p>
+ * 入库时为每个分块计算精确指纹（SHA-256）和近似指纹（SimHash），与同一文档已产生的分块、
+ * 以及同一用户知识库中已有的分块比对；重复分块不再嵌入和写入向量库，只记录对已有向量的引用。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "document.dedup")
+public class DedupProperties {
+
+    /**
+     * 是否启用重复分块消除
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否与用户知识库中的其他文档比对，关闭时只消除同一文档内的重复
+     */
+    private boolean crossDocument = true;
+
+    /**
+     * 判定为近似重复的最大SimHash汉明距离，0表示只消除完全相同的分块；最大为3
+     */
+    private int maxDistance = 3;
+
+    /**
+     * 参与近似比对的最少字符数（只计字母和数字），更短的分块只做精确比对
+     */
+    private int minChars = 64;
+
+    /**
+     * 每批分块近似比对时最多从数据库取回的候选数
+     */
+    private int maxCandidates = 2000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isCrossDocument() {
+        return crossDocument;
+    }
+
+    public void setCrossDocument(boolean crossDocument) {
+        this.crossDocument = crossDocument;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public void setMaxDistance(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    public int getMinChars() {
+        return minChars;
+    }
+
+    public void setMinChars(int minChars) {
+        this.minChars = minChars;
+    }
+
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+}
@@ -0,0 +1,87 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 向量嵌入缓存配置类
+ * <p>
+ * 管理进程内缓存和Redis缓存两级嵌入向量缓存的容量与过期时间
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "embedding.cache")
+public class EmbeddingCacheProperties {
+
+    /**
+     * 是否启用嵌入缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 进程内缓存最大占用（字节），默认64MB，约1.6万条1024维向量
+     */
+    private long localMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 是否启用Redis二级缓存
+     */
+    private boolean redisEnabled = true;
+
+    /**
+     * Redis缓存过期时间
+     */
+    private Duration redisTtl = Duration.ofDays(7);
+
+    /**
+     * Redis键前缀
+     */
+    private String redisKeyPrefix = "emb:";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getLocalMaxBytes() {
+        return localMaxBytes;
+    }
+
+    public void setLocalMaxBytes(long localMaxBytes) {
+        this.localMaxBytes = localMaxBytes;
+    }
+
+    public boolean isRedisEnabled() {
+        return redisEnabled;
+    }
+
+    public void setRedisEnabled(boolean redisEnabled) {
+        this.redisEnabled = redisEnabled;
+    }
+
+    public Duration getRedisTtl() {
+        return redisTtl;
+    }
+
+    public void setRedisTtl(Duration redisTtl) {
+        this.redisTtl = redisTtl;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+}
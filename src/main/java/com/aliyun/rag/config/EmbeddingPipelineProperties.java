@@ -0,0 +1,124 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量嵌入流水线配置类
+ * <p>
+ * 管理调用嵌入模型时的批次大小、并发度、限流（每秒请求数/每分钟token数）和重试策略
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "embedding.pipeline")
+public class EmbeddingPipelineProperties {
+
+    /**
+     * 单次请求的文本条数上限（DashScope text-embedding-v4为10）
+     */
+    private int batchSize = 10;
+
+    /**
+     * 同时在途的批次数
+     */
+    private int maxConcurrency = 4;
+
+    /**
+     * 每秒请求数上限
+     */
+    private double requestsPerSecond = 20;
+
+    /**
+     * 每分钟token数上限
+     */
+    private long tokensPerMinute = 1_000_000;
+
+    /**
+     * 每个token平均对应的字符数，用于估算token数（中文约1，英文约4）
+     */
+    private double charsPerToken = 1.0;
+
+    /**
+     * 单批最大重试次数
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 首次重试等待时间（毫秒），之后按指数退避
+     */
+    private long initialBackoffMs = 500;
+
+    /**
+     * 最大重试等待时间（毫秒）
+     */
+    private long maxBackoffMs = 8000;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(long tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    public void setCharsPerToken(double charsPerToken) {
+        this.charsPerToken = charsPerToken;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getInitialBackoffMs() {
+        return initialBackoffMs;
+    }
+
+    public void setInitialBackoffMs(long initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    public long getMaxBackoffMs() {
+        return maxBackoffMs;
+    }
+
+    public void setMaxBackoffMs(long maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+    }
+}
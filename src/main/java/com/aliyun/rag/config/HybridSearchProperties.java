@@ -0,0 +1,119 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 混合检索配置类
+ * <p>
+ * 管理语义/关键词两路检索的融合策略、权重和单路截止时间
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "search.hybrid")
+public class HybridSearchProperties {
+
+    /**
+     * 融合策略
+     */
+    public enum FusionStrategy {
+        RRF,       // 倒数排名融合
+        WEIGHTED   // 归一化分数加权融合
+    }
+
+    /**
+     * 融合策略，默认RRF
+     */
+    private FusionStrategy fusion = FusionStrategy.RRF;
+
+    /**
+     * RRF平滑常数k
+     */
+    private int rrfK = 60;
+
+    /**
+     * 语义检索权重
+     */
+    private double semanticWeight = 0.6;
+
+    /**
+     * 关键词检索权重
+     */
+    private double keywordWeight = 0.4;
+
+    /**
+     * 语义检索截止时间（毫秒）
+     */
+    private long semanticTimeoutMs = 3000;
+
+    /**
+     * 关键词检索截止时间（毫秒）
+     */
+    private long keywordTimeoutMs = 1500;
+
+    /**
+     * 每路召回数量相对最终结果数的倍数
+     */
+    private int candidateMultiplier = 2;
+
+    public FusionStrategy getFusion() {
+        return fusion;
+    }
+
+    public void setFusion(FusionStrategy fusion) {
+        this.fusion = fusion;
+    }
+
+    public int getRrfK() {
+        return rrfK;
+    }
+
+    public void setRrfK(int rrfK) {
+        this.rrfK = rrfK;
+    }
+
+    public double getSemanticWeight() {
+        return semanticWeight;
+    }
+
+    public void setSemanticWeight(double semanticWeight) {
+        this.semanticWeight = semanticWeight;
+    }
+
+    public double getKeywordWeight() {
+        return keywordWeight;
+    }
+
+    public void setKeywordWeight(double keywordWeight) {
+        this.keywordWeight = keywordWeight;
+    }
+
+    public long getSemanticTimeoutMs() {
+        return semanticTimeoutMs;
+    }
+
+    public void setSemanticTimeoutMs(long semanticTimeoutMs) {
+        this.semanticTimeoutMs = semanticTimeoutMs;
+    }
+
+    public long getKeywordTimeoutMs() {
+        return keywordTimeoutMs;
+    }
+
+    public void setKeywordTimeoutMs(long keywordTimeoutMs) {
+        this.keywordTimeoutMs = keywordTimeoutMs;
+    }
+
+    public int getCandidateMultiplier() {
+        return candidateMultiplier;
+    }
+
+    public void setCandidateMultiplier(int candidateMultiplier) {
+        this.candidateMultiplier = candidateMultiplier;
+    }
+}
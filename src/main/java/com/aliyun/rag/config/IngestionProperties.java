@@ -0,0 +1,183 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流式入库配置类
+ * <p>
+ * 控制解析→分块→嵌入→写入流水线的窗口大小。入库过程中驻留内存的数据量约为
+ * windowChars个字符的待分块文本加上 maxInFlightBatches × batchChunks 个分块及其向量，与文档大小无关。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "document.ingestion")
+public class IngestionProperties {
+
+    /**
+     * 分块窗口（字符数），累积到该长度后在段落边界处切出一段交给分块器
+     */
+    private int windowChars = 32 * 1024;
+
+    /**
+     * 每个嵌入/写入批次的分块数
+     */
+    private int batchChunks = 64;
+
+    /**
+     * 同时在途（嵌入中或写入中）的批次数，达到上限时解析线程阻塞等待
+     */
+    private int maxInFlightBatches = 4;
+
+    /**
+     * 异步入库任务配置
+     */
+    private Job job = new Job();
+
+    public int getWindowChars() {
+        return windowChars;
+    }
+
+    public void setWindowChars(int windowChars) {
+        this.windowChars = windowChars;
+    }
+
+    public int getBatchChunks() {
+        return batchChunks;
+    }
+
+    public void setBatchChunks(int batchChunks) {
+        this.batchChunks = batchChunks;
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public void setJob(Job job) {
+        this.job = job;
+    }
+
+    /**
+     * 异步入库任务配置
+     */
+    public static class Job {
+
+        /**
+         * 上传文件的本地暂存目录
+         */
+        private String stagingDir = "./data/ingestion-staging";
+
+        /**
+         * 每个节点同时执行的任务数
+         */
+        private int workers = 2;
+
+        /**
+         * 轮询待执行任务的间隔（毫秒）
+         */
+        private long pollIntervalMs = 2000;
+
+        /**
+         * 租约时长（秒），执行中每隔三分之一租约续租一次；节点宕机后租约过期的任务由其他节点接管
+         */
+        private int leaseSeconds = 300;
+
+        /**
+         * 最大执行次数，超过后任务标记为失败
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * 失败后重新排队的等待时间（秒）
+         */
+        private int retryDelaySeconds = 30;
+
+        /**
+         * SSE进度推送连接的超时时间（毫秒）
+         */
+        private long sseTimeoutMs = 30 * 60 * 1000L;
+
+        /**
+         * SSE进度推送的轮询间隔（毫秒）
+         */
+        private long ssePollIntervalMs = 1000;
+
+        public String getStagingDir() {
+            return stagingDir;
+        }
+
+        public void setStagingDir(String stagingDir) {
+            this.stagingDir = stagingDir;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public long getPollIntervalMs() {
+            return pollIntervalMs;
+        }
+
+        public void setPollIntervalMs(long pollIntervalMs) {
+            this.pollIntervalMs = pollIntervalMs;
+        }
+
+        public int getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        public void setLeaseSeconds(int leaseSeconds) {
+            this.leaseSeconds = leaseSeconds;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getRetryDelaySeconds() {
+            return retryDelaySeconds;
+        }
+
+        public void setRetryDelaySeconds(int retryDelaySeconds) {
+            this.retryDelaySeconds = retryDelaySeconds;
+        }
+
+        public long getSseTimeoutMs() {
+            return sseTimeoutMs;
+        }
+
+        public void setSseTimeoutMs(long sseTimeoutMs) {
+            this.sseTimeoutMs = sseTimeoutMs;
+        }
+
+        public long getSsePollIntervalMs() {
+            return ssePollIntervalMs;
+        }
+
+        public void setSsePollIntervalMs(long ssePollIntervalMs) {
+            this.ssePollIntervalMs = ssePollIntervalMs;
+        }
+    }
+}
@@ -54,6 +54,11 @@ public class JwtConfig {
      */
     private String issuer = "RAG-Knowledge-Base";
 
+    /**
+     * 已验证令牌缓存的最大条目数，超出时淘汰最久未使用的条目，令牌过期后条目自动失效；为0时不缓存
+     */
+    private int verifiedCacheSize = 10000;
+
     // Getters and Setters
     public String getSecret() {
         return secret;
@@ -102,4 +107,12 @@ public class JwtConfig {
     public void setIssuer(String issuer) {
         this.issuer = issuer;
     }
-}
\ No newline at end of file
+
+    public int getVerifiedCacheSize() {
+        return verifiedCacheSize;
+    }
+
+    public void setVerifiedCacheSize(int verifiedCacheSize) {
+        this.verifiedCacheSize = verifiedCacheSize;
+    }
+}
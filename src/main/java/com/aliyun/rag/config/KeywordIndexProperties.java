@@ -0,0 +1,85 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 关键词倒排索引配置类
+ * <p>
+ * 管理本地倒排索引的存储目录、BM25打分参数以及多节点间的索引核对
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "search.keyword-index")
+public class KeywordIndexProperties {
+
+    /**
+     * 索引段文件存储目录，每个用户一个子目录
+     */
+    private String dir = "./data/keyword-index";
+
+    /**
+     * BM25词频饱和参数
+     */
+    private double k1 = 1.2;
+
+    /**
+     * BM25文档长度归一化参数
+     */
+    private double b = 0.75;
+
+    /**
+     * 本地缺少文档的索引段（首次访问或其他节点写入）时，是否从向量存储重建
+     */
+    private boolean rebuildOnMissing = true;
+
+    /**
+     * 检查知识库版本号的最小间隔（秒），版本变化后与数据库核对本地索引
+     */
+    private int syncIntervalSeconds = 5;
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public double getK1() {
+        return k1;
+    }
+
+    public void setK1(double k1) {
+        this.k1 = k1;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    public void setB(double b) {
+        this.b = b;
+    }
+
+    public boolean isRebuildOnMissing() {
+        return rebuildOnMissing;
+    }
+
+    public void setRebuildOnMissing(boolean rebuildOnMissing) {
+        this.rebuildOnMissing = rebuildOnMissing;
+    }
+
+    public int getSyncIntervalSeconds() {
+        return syncIntervalSeconds;
+    }
+
+    public void setSyncIntervalSeconds(int syncIntervalSeconds) {
+        this.syncIntervalSeconds = syncIntervalSeconds;
+    }
+}
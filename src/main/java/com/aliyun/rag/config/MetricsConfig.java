@@ -206,6 +206,51 @@ public class MetricsConfig {
                 .register(meterRegistry);
     }
 
+    /**
+     * 限流放行计数器
+     */
+    @Bean
+    public Counter rateLimitAllowCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("rate.limit.allow.count")
+                .description("Total number of requests allowed by the rate limiter")
+                .tag("type", "rate_limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 限流令牌预取计数器（访问Redis的次数）
+     */
+    @Bean
+    public Counter rateLimitLeaseRefillCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("rate.limit.lease.refill.count")
+                .description("Number of token lease refills fetched from Redis")
+                .tag("type", "rate_limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 访问日志丢弃计数器
+     */
+    @Bean
+    public Counter accessLogDroppedCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("access.log.dropped.count")
+                .description("Number of access log events dropped because the buffer was full")
+                .tag("type", "access_log")
+                .register(meterRegistry);
+    }
+
+    /**
+     * XSS过滤器检查耗时计时器
+     */
+    @Bean
+    public Timer xssFilterTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("xss.filter.time")
+                .description("Time spent checking request parameters in the XSS filter")
+                .tag("type", "security")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
     /**
      * 错误计数器
      */
@@ -251,4 +296,170 @@ public class MetricsConfig {
                 .register(meterRegistry);
         return cacheHitRate;
     }
-}
\ No newline at end of file
+
+    /**
+     * Milvus批量写入单批耗时计时器
+     */
+    @Bean
+    public Timer milvusInsertBatchTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("milvus.insert.batch.time")
+                .description("Time taken to insert one batch of vectors into Milvus")
+                .tag("operation", "insert")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Milvus写入向量数计数器
+     */
+    @Bean
+    public Counter milvusInsertVectorCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("milvus.insert.vector.count")
+                .description("Total number of vectors inserted into Milvus")
+                .tag("type", "insert")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Milvus写入吞吐量gauge（最近一次文档写入，向量数/秒）
+     */
+    @Bean
+    public AtomicLong milvusInsertThroughputGauge(MeterRegistry meterRegistry) {
+        AtomicLong throughput = new AtomicLong(0);
+        Gauge.builder("milvus.insert.throughput", throughput, AtomicLong::doubleValue)
+                .description("Vectors per second of the most recent document insert")
+                .tag("type", "insert")
+                .register(meterRegistry);
+        return throughput;
+    }
+
+    /**
+     * 混合检索语义路耗时计时器
+     */
+    @Bean
+    public Timer hybridSemanticLegTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("search.hybrid.leg.time")
+                .description("Time taken by the semantic leg of hybrid search")
+                .tag("leg", "semantic")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 混合检索关键词路耗时计时器
+     */
+    @Bean
+    public Timer hybridKeywordLegTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("search.hybrid.leg.time")
+                .description("Time taken by the keyword leg of hybrid search")
+                .tag("leg", "keyword")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 混合检索单路超时/失败计数器
+     */
+    @Bean
+    public Counter hybridLegFailureCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("search.hybrid.leg.failure.count")
+                .description("Number of hybrid search legs that timed out or failed")
+                .tag("type", "partial")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 嵌入模型单批调用耗时计时器
+     */
+    @Bean
+    public Timer embeddingBatchTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("embedding.batch.time")
+                .description("Time taken by one embedding model request")
+                .tag("type", "batch")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 嵌入批次重试计数器
+     */
+    @Bean
+    public Counter embeddingRetryCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("embedding.batch.retry.count")
+                .description("Number of embedding batch retries")
+                .tag("type", "retry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 嵌入吞吐量gauge（最近一次批量嵌入，文本块数/秒）
+     */
+    @Bean
+    public AtomicLong embeddingThroughputGauge(MeterRegistry meterRegistry) {
+        AtomicLong throughput = new AtomicLong(0);
+        Gauge.builder("embedding.throughput", throughput, AtomicLong::doubleValue)
+                .description("Chunks per second of the most recent batch embedding")
+                .tag("type", "embedding")
+                .register(meterRegistry);
+        return throughput;
+    }
+
+    /**
+     * 嵌入队列深度gauge（等待或正在调用模型的批次数）
+     */
+    @Bean
+    public AtomicLong embeddingQueueDepthGauge(MeterRegistry meterRegistry) {
+        AtomicLong depth = new AtomicLong(0);
+        Gauge.builder("embedding.queue.depth", depth, AtomicLong::doubleValue)
+                .description("Number of embedding batches queued or in flight")
+                .tag("type", "embedding")
+                .register(meterRegistry);
+        return depth;
+    }
+
+    /**
+     * 问答缓存命中计数器
+     */
+    @Bean
+    public Counter answerCacheHitCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("answer.cache.hit.count")
+                .description("Number of answers served from the semantic answer cache")
+                .tag("type", "answer_cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 问答缓存未命中计数器
+     */
+    @Bean
+    public Counter answerCacheMissCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("answer.cache.miss.count")
+                .description("Number of semantic answer cache misses")
+                .tag("type", "answer_cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 问答缓存淘汰计数器（容量、过期或知识库版本变化）
+     */
+    @Bean
+    public Counter answerCacheEvictionCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("answer.cache.eviction.count")
+                .description("Number of semantic answer cache entries evicted")
+                .tag("type", "answer_cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 问答缓存条目数gauge
+     */
+    @Bean
+    public AtomicLong answerCacheSizeGauge(MeterRegistry meterRegistry) {
+        AtomicLong size = new AtomicLong(0);
+        Gauge.builder("answer.cache.size", size, AtomicLong::doubleValue)
+                .description("Number of entries in the semantic answer cache")
+                .tag("type", "answer_cache")
+                .register(meterRegistry);
+        return size;
+    }
+}
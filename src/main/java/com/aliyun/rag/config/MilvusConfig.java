@@ -1,9 +1,16 @@
 package com.aliyun.rag.config;
 
+import com.aliyun.rag.constants.VectorStoreConstants;
 import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.param.ConnectParam;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Milvus向量数据库配置
  * 
@@ -22,6 +29,121 @@ public class MilvusConfig {
     @Value("${milvus.collection.dimension}")
     private Integer dimension;
 
+    /**
+     * 注册表中最多缓存的collection数量
+     */
+    @Value("${milvus.pool.max-stores:256}")
+    private Integer maxStores;
+
+    /**
+     * collection空闲多久后从注册表中淘汰（秒）
+     */
+    @Value("${milvus.pool.idle-timeout-seconds:600}")
+    private Long idleTimeoutSeconds;
+
+    /**
+     * 健康检查及空闲淘汰的执行间隔（秒）
+     */
+    @Value("${milvus.pool.health-check-interval-seconds:30}")
+    private Long healthCheckIntervalSeconds;
+
+    /**
+     * gRPC连接保活间隔（秒）
+     */
+    @Value("${milvus.pool.keep-alive-seconds:55}")
+    private Long keepAliveSeconds;
+
+    /**
+     * 批量写入时单批最多包含的向量数
+     */
+    @Value("${milvus.insert.batch-size:" + VectorStoreConstants.BATCH_INSERT_SIZE + "}")
+    private Integer insertBatchSize;
+
+    /**
+     * 批量写入时单批的最大估算字节数，避免超出gRPC消息大小限制
+     */
+    @Value("${milvus.insert.max-batch-bytes:4194304}")
+    private Long insertMaxBatchBytes;
+
+    /**
+     * 同时在途的写入批次数
+     */
+    @Value("${milvus.insert.max-in-flight:4}")
+    private Integer insertMaxInFlight;
+
+    /**
+     * collection布局：per-user 每个用户一个collection；shared 所有用户按哈希分布到少量共享collection，
+     * 以用户ID作为分区键（partition key），检索时按用户ID过滤
+     */
+    @Value("${milvus.layout.mode:per-user}")
+    private String layoutMode;
+
+    /**
+     * 共享collection数量，有数据后不能修改（用户按 userId 取模路由）
+     */
+    @Value("${milvus.layout.shared-collections:4}")
+    private Integer sharedCollections;
+
+    /**
+     * 共享collection名称前缀，实际名称为 前缀_序号
+     */
+    @Value("${milvus.layout.shared-collection-prefix:rag_shared}")
+    private String sharedCollectionPrefix;
+
+    /**
+     * 每个共享collection的分区数，分区键取值按哈希落入其中
+     */
+    @Value("${milvus.layout.partition-num:64}")
+    private Integer partitionNum;
+
+    /**
+     * 用户迁移和重建索引状态的本地缓存时间（秒），切换状态后等待该时间，保证所有节点看到新状态
+     */
+    @Value("${milvus.layout.state-cache-seconds:5}")
+    private Long layoutStateCacheSeconds;
+
+    /**
+     * 迁移和重建索引时单批复制的向量数
+     */
+    @Value("${milvus.layout.migration-batch-size:500}")
+    private Integer migrationBatchSize;
+
+    /**
+     * 启动后是否在后台自动迁移所有仍使用独立collection的用户
+     */
+    @Value("${milvus.layout.auto-migrate:false}")
+    private Boolean autoMigrate;
+
+    /**
+     * 迁移完成后是否删除用户原有的独立collection
+     */
+    @Value("${milvus.layout.drop-legacy-after-migration:false}")
+    private Boolean dropLegacyAfterMigration;
+
+    /**
+     * 全局共享的Milvus客户端
+     * <p>
+     * 底层为单个长连接的gRPC通道，所有用户collection共用，避免每次请求重复建连；
+     * 使用进程内HNSW后端时不创建
+     * </p>
+     *
+     * @return Milvus客户端
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+    public MilvusServiceClient milvusServiceClient() {
+        ConnectParam connectParam = ConnectParam.newBuilder()
+                .withHost(host)
+                .withPort(port)
+                .withConnectTimeout(10, TimeUnit.SECONDS)
+                .withKeepAliveTime(keepAliveSeconds, TimeUnit.SECONDS)
+                .withKeepAliveTimeout(20, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .withIdleTimeout(24, TimeUnit.HOURS)
+                .build();
+        return new MilvusServiceClient(connectParam);
+    }
+
     /**
      * 为指定用户创建MilvusEmbeddingStore实例
      * 每个用户使用独立的collection实现数据隔离
@@ -71,4 +193,73 @@ public class MilvusConfig {
     public Integer getDimension() {
         return dimension;
     }
+
+    public Integer getMaxStores() {
+        return maxStores;
+    }
+
+    public Long getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public Long getHealthCheckIntervalSeconds() {
+        return healthCheckIntervalSeconds;
+    }
+
+    public Long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public Integer getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    public Long getInsertMaxBatchBytes() {
+        return insertMaxBatchBytes;
+    }
+
+    public Integer getInsertMaxInFlight() {
+        return insertMaxInFlight;
+    }
+
+    /**
+     * 是否使用共享collection布局
+     *
+     * @return 是否共享布局
+     */
+    public boolean isSharedLayout() {
+        return "shared".equalsIgnoreCase(layoutMode);
+    }
+
+    public String getLayoutMode() {
+        return layoutMode;
+    }
+
+    public Integer getSharedCollections() {
+        return sharedCollections;
+    }
+
+    public String getSharedCollectionPrefix() {
+        return sharedCollectionPrefix;
+    }
+
+    public Integer getPartitionNum() {
+        return partitionNum;
+    }
+
+    public Long getLayoutStateCacheSeconds() {
+        return layoutStateCacheSeconds;
+    }
+
+    public Integer getMigrationBatchSize() {
+        return migrationBatchSize;
+    }
+
+    public Boolean getAutoMigrate() {
+        return autoMigrate;
+    }
+
+    public Boolean getDropLegacyAfterMigration() {
+        return dropLegacyAfterMigration;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Milvus向量索引配置类
+ * <p>
+ * profiles 定义可选的索引方案（索引类型 + 建索引参数），新建的collection使用 default-profile，
+ * 已有collection可以通过管理接口按方案重建索引。检索时按collection实际的索引类型选择检索参数，
+ * 各检索档位的参数见 vector-store.search-profiles。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "milvus.index")
+public class MilvusIndexProperties {
+
+    /**
+     * 支持的索引类型
+     */
+    public enum Algorithm {
+        HNSW,       // 内存图索引，召回率和延迟都较好，内存占用最高
+        IVF_FLAT,   // 倒排聚类 + 原始向量
+        IVF_SQ8,    // 倒排聚类 + 8位标量量化，内存约为IVF_FLAT的1/4
+        DISKANN     // 磁盘图索引，需要Milvus节点配置本地磁盘
+    }
+
+    /**
+     * 新建collection使用的索引方案
+     */
+    private String defaultProfile = "hnsw";
+
+    /**
+     * 索引方案，键为方案名称
+     */
+    private Map<String, Profile> profiles = defaultProfiles();
+
+    public String getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public void setDefaultProfile(String defaultProfile) {
+        this.defaultProfile = defaultProfile;
+    }
+
+    public Map<String, Profile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(Map<String, Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    private static Map<String, Profile> defaultProfiles() {
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        profiles.put("hnsw", new Profile(Algorithm.HNSW, Map.of("M", "16", "efConstruction", "200")));
+        profiles.put("ivf-flat", new Profile(Algorithm.IVF_FLAT, Map.of("nlist", "1024")));
+        profiles.put("ivf-sq8", new Profile(Algorithm.IVF_SQ8, Map.of("nlist", "1024")));
+        profiles.put("diskann", new Profile(Algorithm.DISKANN, Map.of()));
+        return profiles;
+    }
+
+    /**
+     * 索引方案
+     */
+    public static class Profile {
+
+        /**
+         * 索引类型
+         */
+        private Algorithm type = Algorithm.HNSW;
+
+        /**
+         * 建索引参数，原样传给Milvus（如HNSW的M、efConstruction，IVF的nlist）
+         */
+        private Map<String, String> params = new LinkedHashMap<>();
+
+        public Profile() {
+        }
+
+        public Profile(Algorithm type, Map<String, String> params) {
+            this.type = type;
+            this.params = new LinkedHashMap<>(params);
+        }
+
+        public Algorithm getType() {
+            return type;
+        }
+
+        public void setType(Algorithm type) {
+            this.type = type;
+        }
+
+        public Map<String, String> getParams() {
+            return params;
+        }
+
+        public void setParams(Map<String, String> params) {
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * PDF并行解析配置类
+ * <p>
+ * 页数较多的PDF按页区间切分，由调用线程和文档解析线程池并行提取文本，再按页序输出。
+ * 驻留内存的文本最多为 parallelism × 2 个页区间。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "document.pdf-parse")
+public class PdfParseProperties {
+
+    /**
+     * 单个文档的解析并行度（含调用线程），小于等于1时逐页顺序解析
+     */
+    private int parallelism = 4;
+
+    /**
+     * 每个页区间的页数
+     */
+    private int pagesPerRange = 16;
+
+    /**
+     * 达到该页数才并行解析，页数较少时加载多份文档结构的开销大于收益
+     */
+    private int minPages = 64;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getPagesPerRange() {
+        return pagesPerRange;
+    }
+
+    public void setPagesPerRange(int pagesPerRange) {
+        this.pagesPerRange = pagesPerRange;
+    }
+
+    public int getMinPages() {
+        return minPages;
+    }
+
+    public void setMinPages(int minPages) {
+        this.minPages = minPages;
+    }
+}
@@ -0,0 +1,74 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 认证用户缓存配置类
+ * <p>
+ * 认证拦截器按用户ID缓存用户信息快照，避免每个请求都查询数据库
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "auth.principal-cache")
+public class PrincipalCacheProperties {
+
+    /**
+     * 是否启用用户缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存有效期，主动失效消息丢失时最多在该时间内读到旧数据
+     */
+    private Duration ttl = Duration.ofSeconds(60);
+
+    /**
+     * 最多缓存的用户数
+     */
+    private int maxSize = 10000;
+
+    /**
+     * 集群内广播用户缓存失效的Redis频道
+     */
+    private String invalidationChannel = "auth:principal:invalidate";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    public void setInvalidationChannel(String invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+    }
+}
@@ -0,0 +1,134 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 量化候选索引配置类
+ * <p>
+ * 语义检索的第一阶段在进程内扫描量化后的向量副本召回候选，再从Milvus取回候选的全精度向量重新打分。
+ * 量化副本存放在堆外内存中，总量受 maxMemoryMb 限制，超出时淘汰最久未检索的用户；
+ * 向量数超过 maxVectorsPerUser 的用户不建索引，仍由Milvus检索。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "search.quantized-index")
+public class QuantizedIndexProperties {
+
+    /**
+     * 量化方式
+     */
+    public enum Quantization {
+        INT8,    // 每维1字节，召回接近全精度
+        BINARY   // 每维1位，内存为INT8的1/8，需要更大的重打分倍数
+    }
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 量化方式，默认INT8
+     */
+    private Quantization quantization = Quantization.INT8;
+
+    /**
+     * 重打分候选数相对最终结果数的倍数
+     */
+    private int rescoreMultiplier = 4;
+
+    /**
+     * 单个用户可建索引的最大向量数
+     */
+    private int maxVectorsPerUser = 200000;
+
+    /**
+     * 所有用户量化副本占用的堆外内存上限（MB）
+     */
+    private long maxMemoryMb = 1024;
+
+    /**
+     * 索引多久未被检索后释放（秒）
+     */
+    private long idleTimeoutSeconds = 1800;
+
+    /**
+     * 与数据库中的向量数核对的间隔（秒），不一致时丢弃索引，下次检索时重新加载
+     */
+    private long verifyIntervalSeconds = 300;
+
+    /**
+     * 同时从Milvus加载索引的用户数
+     */
+    private int loadConcurrency = 2;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Quantization getQuantization() {
+        return quantization;
+    }
+
+    public void setQuantization(Quantization quantization) {
+        this.quantization = quantization;
+    }
+
+    public int getRescoreMultiplier() {
+        return rescoreMultiplier;
+    }
+
+    public void setRescoreMultiplier(int rescoreMultiplier) {
+        this.rescoreMultiplier = rescoreMultiplier;
+    }
+
+    public int getMaxVectorsPerUser() {
+        return maxVectorsPerUser;
+    }
+
+    public void setMaxVectorsPerUser(int maxVectorsPerUser) {
+        this.maxVectorsPerUser = maxVectorsPerUser;
+    }
+
+    public long getMaxMemoryMb() {
+        return maxMemoryMb;
+    }
+
+    public void setMaxMemoryMb(long maxMemoryMb) {
+        this.maxMemoryMb = maxMemoryMb;
+    }
+
+    public long getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public long getVerifyIntervalSeconds() {
+        return verifyIntervalSeconds;
+    }
+
+    public void setVerifyIntervalSeconds(long verifyIntervalSeconds) {
+        this.verifyIntervalSeconds = verifyIntervalSeconds;
+    }
+
+    public int getLoadConcurrency() {
+        return loadConcurrency;
+    }
+
+    public void setLoadConcurrency(int loadConcurrency) {
+        this.loadConcurrency = loadConcurrency;
+    }
+}
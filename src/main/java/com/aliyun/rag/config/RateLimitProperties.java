@@ -0,0 +1,147 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * API限流配置类
+ * <p>
+ * 令牌桶容量即每个窗口内允许的请求数，按接口类别配置默认值，
+ * 用户等级可在{@link UserLevelProperties.UserLevelConfig#getRateLimits()}中覆盖
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否启用限流，默认关闭；开启后登录注册等未认证接口也会按IP限流
+     */
+    private boolean enabled = false;
+
+    /**
+     * 限流窗口（秒），令牌在一个窗口内匀速补满
+     */
+    private int windowSeconds = 60;
+
+    /**
+     * 单次从Redis预取的最大令牌数，实际预取数不超过限额的1/10，限额很小的接口每次请求都访问Redis
+     */
+    private int leaseSize = 5;
+
+    /**
+     * 本地预取令牌的有效期（毫秒），过期未用完的令牌作废，避免单节点长期占用配额
+     */
+    private long leaseTtlMs = 1000;
+
+    /**
+     * 本地最多保留的令牌租约数，超出时清理已过期的租约
+     */
+    private int maxLocalLeases = 10000;
+
+    /**
+     * Redis键前缀
+     */
+    private String keyPrefix = "rate_limit:";
+
+    /**
+     * 各接口类别的默认限额（次/窗口），键为{@link EndpointClass}的小写名称
+     */
+    private Map<String, Integer> limits = new HashMap<>(Map.of(
+            "auth", 5,
+            "upload", 10,
+            "search", 60,
+            "chat", 20,
+            "monitor", 100,
+            "default", 30));
+
+    /**
+     * 接口类别
+     */
+    public enum EndpointClass {
+        AUTH, UPLOAD, SEARCH, CHAT, MONITOR, DEFAULT;
+
+        /**
+         * 配置中使用的键
+         */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * 获取接口类别的默认限额
+     */
+    public int getDefaultLimit(EndpointClass endpointClass) {
+        Integer limit = limits.get(endpointClass.key());
+        if (limit == null) {
+            limit = limits.getOrDefault(EndpointClass.DEFAULT.key(), 30);
+        }
+        return limit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public void setWindowSeconds(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public void setLeaseSize(int leaseSize) {
+        this.leaseSize = leaseSize;
+    }
+
+    public long getLeaseTtlMs() {
+        return leaseTtlMs;
+    }
+
+    public void setLeaseTtlMs(long leaseTtlMs) {
+        this.leaseTtlMs = leaseTtlMs;
+    }
+
+    public int getMaxLocalLeases() {
+        return maxLocalLeases;
+    }
+
+    public void setMaxLocalLeases(int maxLocalLeases) {
+        this.maxLocalLeases = maxLocalLeases;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public Map<String, Integer> getLimits() {
+        return limits;
+    }
+
+    public void setLimits(Map<String, Integer> limits) {
+        this.limits = limits;
+    }
+}
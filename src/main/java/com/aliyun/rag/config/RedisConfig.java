@@ -4,6 +4,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -38,4 +40,38 @@ public class RedisConfig {
         
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * 配置二进制值的RedisTemplate
+     * <p>
+     * 用于存储向量等紧凑的二进制数据，避免JSON序列化带来的体积膨胀
+     * </p>
+     *
+     * @param connectionFactory Redis连接工厂
+     * @return RedisTemplate实例
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> binaryRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * 配置Redis消息监听容器
+     * <p>
+     * 用于接收集群内广播的缓存失效等消息
+     * </p>
+     *
+     * @param connectionFactory Redis连接工厂
+     * @return 消息监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
@@ -1,6 +1,7 @@
 package com.aliyun.rag.config;
 
 import com.aliyun.rag.filter.XSSFilter;
+import com.aliyun.rag.service.MetricsService;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,9 +23,10 @@ public class SecurityFilterConfig {
      * 注册XSS防护过滤器
      */
     @Bean
-    public FilterRegistrationBean<XSSFilter> xssFilterRegistration() {
+    public FilterRegistrationBean<XSSFilter> xssFilterRegistration(XssProperties xssProperties,
+                                                                   MetricsService metricsService) {
         FilterRegistrationBean<XSSFilter> registration = new FilterRegistrationBean<>();
-        registration.setFilter(new XSSFilter());
+        registration.setFilter(new XSSFilter(xssProperties, metricsService));
         
         // 设置过滤器的URL模式
         registration.addUrlPatterns("/*");
@@ -42,6 +42,16 @@ public class ThreadPoolProperties {
      */
     private PoolConfig traceProcess = new PoolConfig();
 
+    /**
+     * 混合检索线程池配置（语义/关键词两路并发检索）
+     */
+    private PoolConfig hybridSearch = new PoolConfig(8, 32, 200, 60, "HybridSearch-");
+
+    /**
+     * 流式入库线程池配置（嵌入、写入各阶段的批次调度）
+     */
+    private PoolConfig ingestion = new PoolConfig(4, 16, 64, 60, "Ingestion-");
+
     // Getters and Setters
     public PoolConfig getFileProcess() {
         return fileProcess;
@@ -83,6 +93,22 @@ public class ThreadPoolProperties {
         this.traceProcess = traceProcess;
     }
 
+    public PoolConfig getHybridSearch() {
+        return hybridSearch;
+    }
+
+    public void setHybridSearch(PoolConfig hybridSearch) {
+        this.hybridSearch = hybridSearch;
+    }
+
+    public PoolConfig getIngestion() {
+        return ingestion;
+    }
+
+    public void setIngestion(PoolConfig ingestion) {
+        this.ingestion = ingestion;
+    }
+
     /**
      * 线程池配置内部类
      */
@@ -112,6 +138,18 @@ public class ThreadPoolProperties {
          */
         private String threadNamePrefix = "task-";
 
+        public PoolConfig() {
+        }
+
+        public PoolConfig(int corePoolSize, int maxPoolSize, int queueCapacity,
+                          int keepAliveSeconds, String threadNamePrefix) {
+            this.corePoolSize = corePoolSize;
+            this.maxPoolSize = maxPoolSize;
+            this.queueCapacity = queueCapacity;
+            this.keepAliveSeconds = keepAliveSeconds;
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
         // Getters and Setters
         public int getCorePoolSize() {
             return corePoolSize;
@@ -32,7 +32,8 @@ public class UserLevelProperties {
     /**
      * 进阶用户配置
      */
-    private UserLevelConfig advanced = new UserLevelConfig(1, 100L * 1024 * 1024 * 1024); // 100GB
+    private UserLevelConfig advanced = new UserLevelConfig(1, 100L * 1024 * 1024 * 1024, Map.of(
+            "upload", 30, "search", 180, "chat", 60, "default", 90)); // 100GB
 
     public UserLevelConfig getBasic() {
         return basic;
@@ -87,6 +88,11 @@ public class UserLevelProperties {
         @Min(value = 1024, message = "存储配额不能小于1KB")
         private Long quota;
 
+        /**
+         * 各接口类别的限额（次/窗口），未配置的类别使用rate-limit.limits中的默认值
+         */
+        private Map<String, Integer> rateLimits = new HashMap<>();
+
         public UserLevelConfig() {
         }
 
@@ -95,6 +101,12 @@ public class UserLevelProperties {
             this.quota = quota;
         }
 
+        public UserLevelConfig(int code, Long quota, Map<String, Integer> rateLimits) {
+            this.code = code;
+            this.quota = quota;
+            this.rateLimits = new HashMap<>(rateLimits);
+        }
+
         public int getCode() {
             return code;
         }
@@ -111,6 +123,14 @@ public class UserLevelProperties {
             this.quota = quota;
         }
 
+        public Map<String, Integer> getRateLimits() {
+            return rateLimits;
+        }
+
+        public void setRateLimits(Map<String, Integer> rateLimits) {
+            this.rateLimits = rateLimits;
+        }
+
         /**
          * 格式化存储配额显示
          */
@@ -0,0 +1,370 @@
+package com.aliyun.rag.config;
+
+import com.aliyun.rag.model.SearchRequest;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 向量存储后端配置类
+ * <p>
+ * type 选择部署使用的向量存储后端：MILVUS 连接外部Milvus服务；HNSW 使用进程内的HNSW引擎，
+ * 数据以内存映射的段文件保存在本地目录，适合单机部署和不依赖Milvus的集成测试。
+ * 切换后端不会迁移已有向量。
+ * search-profiles 定义各检索档位的索引检索参数，两种后端共用：HNSW索引取 ef，IVF索引取 nprobe，DiskANN索引取 search-list，
+ * 量化候选索引取 rescore-multiplier。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "vector-store")
+public class VectorStoreProperties {
+
+    /**
+     * 向量存储后端类型
+     */
+    public enum Type {
+        MILVUS,  // 外部Milvus服务
+        HNSW     // 进程内HNSW引擎
+    }
+
+    /**
+     * 向量存储后端，默认MILVUS
+     */
+    private Type type = Type.MILVUS;
+
+    /**
+     * 进程内HNSW引擎配置
+     */
+    private Hnsw hnsw = new Hnsw();
+
+    /**
+     * 检索请求未指定档位时使用的档位
+     */
+    private SearchRequest.SearchProfile defaultSearchProfile = SearchRequest.SearchProfile.BALANCED;
+
+    /**
+     * 各检索档位的参数
+     */
+    private Map<SearchRequest.SearchProfile, SearchParams> searchProfiles = defaultSearchProfiles();
+
+    /**
+     * 召回率/延迟评估配置
+     */
+    private Benchmark benchmark = new Benchmark();
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Hnsw getHnsw() {
+        return hnsw;
+    }
+
+    public void setHnsw(Hnsw hnsw) {
+        this.hnsw = hnsw;
+    }
+
+    public SearchRequest.SearchProfile getDefaultSearchProfile() {
+        return defaultSearchProfile;
+    }
+
+    public void setDefaultSearchProfile(SearchRequest.SearchProfile defaultSearchProfile) {
+        this.defaultSearchProfile = defaultSearchProfile;
+    }
+
+    public Map<SearchRequest.SearchProfile, SearchParams> getSearchProfiles() {
+        return searchProfiles;
+    }
+
+    public void setSearchProfiles(Map<SearchRequest.SearchProfile, SearchParams> searchProfiles) {
+        this.searchProfiles = searchProfiles;
+    }
+
+    public Benchmark getBenchmark() {
+        return benchmark;
+    }
+
+    public void setBenchmark(Benchmark benchmark) {
+        this.benchmark = benchmark;
+    }
+
+    /**
+     * 获取检索档位的参数，档位为空时使用默认档位，未配置的档位使用内置默认值
+     *
+     * @param profile 检索档位
+     * @return 检索参数
+     */
+    public SearchParams searchParams(SearchRequest.SearchProfile profile) {
+        SearchRequest.SearchProfile resolved = profile != null ? profile : defaultSearchProfile;
+        SearchParams params = searchProfiles.get(resolved);
+        return params != null ? params : defaultSearchProfiles().get(resolved);
+    }
+
+    private static Map<SearchRequest.SearchProfile, SearchParams> defaultSearchProfiles() {
+        Map<SearchRequest.SearchProfile, SearchParams> profiles = new EnumMap<>(SearchRequest.SearchProfile.class);
+        profiles.put(SearchRequest.SearchProfile.FAST, new SearchParams(32, 8, 32, 2));
+        profiles.put(SearchRequest.SearchProfile.BALANCED, new SearchParams(64, 16, 64, 0));
+        profiles.put(SearchRequest.SearchProfile.ACCURATE, new SearchParams(256, 64, 200, 10));
+        return profiles;
+    }
+
+    /**
+     * 召回率/延迟评估配置
+     */
+    public static class Benchmark {
+
+        /**
+         * 未提供查询语句时，从用户已有向量中抽取的查询数
+         */
+        private int sampleQueries = 50;
+
+        /**
+         * 计算recall@k的k
+         */
+        private int topK = 10;
+
+        /**
+         * 参与精确检索（基准结果）的最大向量数，超过时拒绝评估
+         */
+        private int maxVectors = 100000;
+
+        public int getSampleQueries() {
+            return sampleQueries;
+        }
+
+        public void setSampleQueries(int sampleQueries) {
+            this.sampleQueries = sampleQueries;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public int getMaxVectors() {
+            return maxVectors;
+        }
+
+        public void setMaxVectors(int maxVectors) {
+            this.maxVectors = maxVectors;
+        }
+    }
+
+    /**
+     * 检索档位参数
+     */
+    public static class SearchParams {
+
+        /**
+         * HNSW检索候选队列长度，小于结果数时按结果数
+         */
+        private int ef;
+
+        /**
+         * IVF索引检索的聚类桶数
+         */
+        private int nprobe;
+
+        /**
+         * DiskANN检索候选列表长度，小于结果数时按结果数
+         */
+        private int searchList;
+
+        /**
+         * 量化候选索引的重打分候选倍数，0表示使用 search.quantized-index.rescore-multiplier
+         */
+        private int rescoreMultiplier;
+
+        public SearchParams() {
+        }
+
+        public SearchParams(int ef, int nprobe, int searchList, int rescoreMultiplier) {
+            this.ef = ef;
+            this.nprobe = nprobe;
+            this.searchList = searchList;
+            this.rescoreMultiplier = rescoreMultiplier;
+        }
+
+        public int getEf() {
+            return ef;
+        }
+
+        public void setEf(int ef) {
+            this.ef = ef;
+        }
+
+        public int getNprobe() {
+            return nprobe;
+        }
+
+        public void setNprobe(int nprobe) {
+            this.nprobe = nprobe;
+        }
+
+        public int getSearchList() {
+            return searchList;
+        }
+
+        public void setSearchList(int searchList) {
+            this.searchList = searchList;
+        }
+
+        public int getRescoreMultiplier() {
+            return rescoreMultiplier;
+        }
+
+        public void setRescoreMultiplier(int rescoreMultiplier) {
+            this.rescoreMultiplier = rescoreMultiplier;
+        }
+    }
+
+    /**
+     * 进程内HNSW引擎配置
+     */
+    public static class Hnsw {
+
+        /**
+         * 数据目录，每个collection一个子目录
+         */
+        private String dir = "./data/vector-store";
+
+        /**
+         * 上层图每个节点的最大邻居数，第0层为其2倍
+         */
+        private int m = 16;
+
+        /**
+         * 建图时的候选队列长度
+         */
+        private int efConstruction = 200;
+
+        /**
+         * 不经检索档位直接检索时的候选队列长度，小于结果数时按结果数
+         */
+        private int efSearch = 64;
+
+        /**
+         * 可写段达到该向量数后封存为只读段文件
+         */
+        private int sealThreshold = 8192;
+
+        /**
+         * 段中已删除向量占比达到该值时合并重建
+         */
+        private double compactionDeletedRatio = 0.2;
+
+        /**
+         * 单个collection的只读段数超过该值时合并最小的段
+         */
+        private int maxSegments = 8;
+
+        /**
+         * 合并检查的执行间隔（秒）
+         */
+        private long compactionIntervalSeconds = 60;
+
+        /**
+         * collection空闲多久后关闭（秒），关闭后再次访问时重新打开
+         */
+        private long idleTimeoutSeconds = 1800;
+
+        /**
+         * 每批写入后是否把预写日志刷到磁盘
+         */
+        private boolean syncWrites = true;
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        public int getSealThreshold() {
+            return sealThreshold;
+        }
+
+        public void setSealThreshold(int sealThreshold) {
+            this.sealThreshold = sealThreshold;
+        }
+
+        public double getCompactionDeletedRatio() {
+            return compactionDeletedRatio;
+        }
+
+        public void setCompactionDeletedRatio(double compactionDeletedRatio) {
+            this.compactionDeletedRatio = compactionDeletedRatio;
+        }
+
+        public int getMaxSegments() {
+            return maxSegments;
+        }
+
+        public void setMaxSegments(int maxSegments) {
+            this.maxSegments = maxSegments;
+        }
+
+        public long getCompactionIntervalSeconds() {
+            return compactionIntervalSeconds;
+        }
+
+        public void setCompactionIntervalSeconds(long compactionIntervalSeconds) {
+            this.compactionIntervalSeconds = compactionIntervalSeconds;
+        }
+
+        public long getIdleTimeoutSeconds() {
+            return idleTimeoutSeconds;
+        }
+
+        public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+            this.idleTimeoutSeconds = idleTimeoutSeconds;
+        }
+
+        public boolean isSyncWrites() {
+            return syncWrites;
+        }
+
+        public void setSyncWrites(boolean syncWrites) {
+            this.syncWrites = syncWrites;
+        }
+    }
+}
@@ -27,25 +27,22 @@ public class WebConfig implements WebMvcConfigurer {
     private final AccessLogInterceptor accessLogInterceptor;
     private final RateLimitInterceptor rateLimitInterceptor;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RateLimitProperties rateLimitProperties;
     
     public WebConfig(AuthInterceptor authInterceptor, 
                     AccessLogInterceptor accessLogInterceptor,
                     RateLimitInterceptor rateLimitInterceptor,
-                    RedisTemplate<String, Object> redisTemplate) {
+                    RedisTemplate<String, Object> redisTemplate,
+                    RateLimitProperties rateLimitProperties) {
         this.authInterceptor = authInterceptor;
         this.accessLogInterceptor = accessLogInterceptor;
         this.rateLimitInterceptor = rateLimitInterceptor;
         this.redisTemplate = redisTemplate;
+        this.rateLimitProperties = rateLimitProperties;
     }
     
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        // 限流拦截器已关闭
-        // registry.addInterceptor(rateLimitInterceptor)
-        //         .addPathPatterns("/**")
-        //         .excludePathPatterns("/", "/index.html", "/static/**", "/assets/**", "/favicon.ico")
-        //         .excludePathPatterns("/actuator/health"); // 排除健康检查
-        
         // 注册访问日志拦截器，记录所有请求的访问日志
         registry.addInterceptor(accessLogInterceptor)
                 .addPathPatterns("/**")
@@ -59,6 +56,14 @@ public class WebConfig implements WebMvcConfigurer {
                 .excludePathPatterns("/api/auth/register", "/api/auth/login")  // 也排除带api前缀的
                 .excludePathPatterns("/", "/index.html", "/static/**", "/assets/**", "/favicon.ico")
                 .excludePathPatterns("/actuator/**"); // 排除监控端点
+
+        // 注册限流拦截器，放在认证之后以便按用户和用户等级限流；未认证的登录注册接口按IP限流
+        if (rateLimitProperties.isEnabled()) {
+            registry.addInterceptor(rateLimitInterceptor)
+                    .addPathPatterns("/**")
+                    .excludePathPatterns("/", "/index.html", "/static/**", "/assets/**", "/favicon.ico")
+                    .excludePathPatterns("/actuator/health"); // 排除健康检查
+        }
     }
 
     @Override
@@ -0,0 +1,63 @@
+package com.aliyun.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XSS防护配置类
+ * <p>
+ * 控制XSS过滤器检查哪些请求：multipart请求检查查询参数和非文件表单字段，超过大小限制的表单请求直接拒绝；
+ * 命中跳过路径的请求不做检查
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@Configuration
+@ConfigurationProperties(prefix = "xss")
+public class XssProperties {
+
+    /**
+     * 是否启用XSS检查
+     */
+    private boolean enabled = true;
+
+    /**
+     * 不做XSS检查的路径（Ant风格）
+     */
+    private List<String> bypassPaths = new ArrayList<>(List.of("/actuator/**"));
+
+    /**
+     * 表单请求体超过该字节数时直接拒绝（413）
+     */
+    private long maxFormBodyBytes = 64 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getBypassPaths() {
+        return bypassPaths;
+    }
+
+    public void setBypassPaths(List<String> bypassPaths) {
+        this.bypassPaths = bypassPaths;
+    }
+
+    public long getMaxFormBodyBytes() {
+        return maxFormBodyBytes;
+    }
+
+    public void setMaxFormBodyBytes(long maxFormBodyBytes) {
+        this.maxFormBodyBytes = maxFormBodyBytes;
+    }
+}
@@ -118,6 +118,11 @@ public class VectorStoreConstants {
      */
     public static final int BATCH_DELETE_SIZE = 50;
 
+    /**
+     * 向量映射记录JDBC批量插入的批次大小
+     */
+    public static final int MAPPING_INSERT_BATCH_SIZE = 500;
+
     // ========== 度量类型 ==========
 
     /**
@@ -11,6 +11,7 @@ import com.aliyun.rag.repository.ConversationRepository;
 import com.aliyun.rag.repository.ConversationMessageRepository;
 import com.aliyun.rag.service.ConversationService;
 import com.aliyun.rag.service.RAGService;
+import com.aliyun.rag.service.SemanticAnswerCache;
 import com.aliyun.rag.util.UserContextHelper;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.model.output.Response;
@@ -230,16 +231,19 @@ public class ConversationController {
             searchRequest.setMaxResults(askRequest.getMaxResults());
             searchRequest.setMinScore(askRequest.getMinScore());
 
-            // 4. 搜索知识库
-            List<SearchResult> searchResults = ragService.searchKnowledgeBase(searchRequest, user);
-
-            // 5. 构建上下文
+            // 4. 构建上下文
             List<ChatMessage> contextMessages = new ArrayList<>();
             if (Boolean.TRUE.equals(askRequest.getEnableContext())) {
                 contextMessages = conversationService.buildContextMessages(conversation.getId(),
                         askRequest.getContextMessageCount());
             }
 
+            // 5. 查询问答缓存，未命中时搜索知识库
+            SemanticAnswerCache.Lookup lookup = ragService.lookupAnswer(searchRequest, contextMessages, user);
+            List<SearchResult> searchResults = lookup.isHit()
+                    ? lookup.getSources()
+                    : ragService.searchKnowledgeBase(searchRequest, user, lookup.getQueryEmbedding());
+
             // 6. 使用CompletableFuture处理流式响应，然后在HTTP请求线程中保存
             processStreamingResponseWithSave(
                     conversation,
@@ -247,6 +251,7 @@ public class ConversationController {
                     askRequest,
                     searchResults,
                     contextMessages,
+                    lookup,
                     emitter);
 
         } catch (Exception e) {
@@ -291,6 +296,7 @@ public class ConversationController {
             ConversationAskRequest askRequest,
             List<SearchResult> searchResults,
             List<ChatMessage> contextMessages,
+            SemanticAnswerCache.Lookup lookup,
             SseEmitter emitter) {
         
         // 使用CountDownLatch来同步流式响应和保存操作
@@ -298,50 +304,55 @@ public class ConversationController {
         StringBuilder fullAnswer = new StringBuilder();
         Exception[] errorHolder = new Exception[1];
         
-        // 启动流式响应处理
-        ragService.askQuestionStreamingWithContext(
-                askRequest.getQuestion(),
-                searchResults,
-                contextMessages,
-                user,
-                new StreamingResponseHandler<AiMessage>() {
-
-                    @Override
-                    public void onNext(String token) {
-                        try {
-                            fullAnswer.append(token);
-                            emitter.send(SseEmitter.event().name("message").data(token));
-                        } catch (IOException e) {
-                            log.error("发送流式响应失败: {}", e.getMessage(), e);
-                            errorHolder[0] = e;
-                            emitter.completeWithError(e);
-                            completionLatch.countDown();
-                        }
-                    }
-
-                    @Override
-                    public void onComplete(Response<AiMessage> response) {
-                        try {
-                            log.info("流式响应完成，准备在HTTP请求线程中保存AI回答: conversationId={}, answerLength={}", 
-                                conversation.getId(), fullAnswer.length());
-                            
-                            // 流式响应完成，释放锁，让HTTP请求线程继续处理保存
-                            completionLatch.countDown();
-                            
-                        } catch (Exception e) {
-                            log.error("处理流式响应完成事件失败: {}", e.getMessage(), e);
-                            errorHolder[0] = e;
-                            completionLatch.countDown();
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable error) {
-                        log.error("流式问答出错: {}", error.getMessage(), error);
-                        errorHolder[0] = new RuntimeException("流式问答出错: " + error.getMessage(), error);
-                        completionLatch.countDown();
-                    }
-                });
+        // 启动流式响应处理，命中缓存时直接回放缓存的回答
+        StreamingResponseHandler<AiMessage> handler = new StreamingResponseHandler<AiMessage>() {
+
+            @Override
+            public void onNext(String token) {
+                try {
+                    fullAnswer.append(token);
+                    emitter.send(SseEmitter.event().name("message").data(token));
+                } catch (IOException e) {
+                    log.error("发送流式响应失败: {}", e.getMessage(), e);
+                    errorHolder[0] = e;
+                    emitter.completeWithError(e);
+                    completionLatch.countDown();
+                }
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                try {
+                    log.info("流式响应完成，准备在HTTP请求线程中保存AI回答: conversationId={}, answerLength={}", 
+                        conversation.getId(), fullAnswer.length());
+                    
+                    // 流式响应完成，释放锁，让HTTP请求线程继续处理保存
+                    completionLatch.countDown();
+                    
+                } catch (Exception e) {
+                    log.error("处理流式响应完成事件失败: {}", e.getMessage(), e);
+                    errorHolder[0] = e;
+                    completionLatch.countDown();
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                log.error("流式问答出错: {}", error.getMessage(), error);
+                errorHolder[0] = new RuntimeException("流式问答出错: " + error.getMessage(), error);
+                completionLatch.countDown();
+            }
+        };
+        if (lookup.isHit()) {
+            ragService.replayAnswer(lookup.getAnswer(), handler);
+        } else {
+            ragService.askQuestionStreamingWithContext(
+                    askRequest.getQuestion(),
+                    searchResults,
+                    contextMessages,
+                    user,
+                    handler);
+        }
         
         // 直接在HTTP请求线程中等待流式响应完成，然后处理保存
         try {
@@ -358,6 +369,7 @@ public class ConversationController {
             
             // 在HTTP请求线程的上下文中保存AI回答
             String answer = fullAnswer.toString();
+            lookup.store(answer, searchResults);
             log.info("开始在HTTP请求线程中保存AI回答: conversationId={}, answerLength={}", 
                 conversation.getId(), answer.length());
             
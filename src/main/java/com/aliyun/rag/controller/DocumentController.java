@@ -4,29 +4,30 @@ import com.aliyun.rag.exception.BusinessException;
 import com.aliyun.rag.model.DocumentInfo;
 import com.aliyun.rag.model.DocumentRequest;
 import com.aliyun.rag.model.ErrorCode;
-import com.aliyun.rag.model.FileInfo;
 import com.aliyun.rag.model.PageResult;
 import com.aliyun.rag.model.User;
 import com.aliyun.rag.model.R;
+import com.aliyun.rag.model.dto.DocumentUpdateResult;
+import com.aliyun.rag.model.dto.IngestionJobDTO;
 import com.aliyun.rag.model.dto.UserDTO;
 import com.aliyun.rag.service.RAGService;
 import com.aliyun.rag.service.QiniuUploadService;
 import com.aliyun.rag.service.AuthService;
-import com.aliyun.rag.util.InMemoryMultipartFile;
+import com.aliyun.rag.service.IngestionJobService;
 import com.aliyun.rag.util.StreamFileProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * 文档管理控制器
@@ -54,20 +55,20 @@ public class DocumentController {
     private final QiniuUploadService qiniuUploadService;
     private final AuthService authService;
     private final StreamFileProcessor streamFileProcessor;
-    private final ThreadPoolTaskExecutor fileProcessExecutor;
+    private final IngestionJobService ingestionJobService;
     private final ThreadPoolTaskExecutor documentParseExecutor;
 
     public DocumentController(RAGService ragService, 
                              QiniuUploadService qiniuUploadService, 
                              AuthService authService,
                              StreamFileProcessor streamFileProcessor,
-                             @Qualifier("fileProcessExecutor") ThreadPoolTaskExecutor fileProcessExecutor,
+                             IngestionJobService ingestionJobService,
                              @Qualifier("documentParseExecutor") ThreadPoolTaskExecutor documentParseExecutor) {
         this.ragService = ragService;
         this.qiniuUploadService = qiniuUploadService;
         this.authService = authService;
         this.streamFileProcessor = streamFileProcessor;
-        this.fileProcessExecutor = fileProcessExecutor;
+        this.ingestionJobService = ingestionJobService;
         this.documentParseExecutor = documentParseExecutor;
     }
 
@@ -131,12 +132,12 @@ public class DocumentController {
     /**
      * 上传文档（异步）
      * <p>
-     * 使用专用线程池进行异步文档处理，提升用户体验
-     * 支持大文件处理，避免内存溢出
+     * 文件暂存后作为持久化任务排队，立即返回任务ID；任务在进程重启后从已完成的批次继续
+     * 通过 /jobs/{jobId} 查询状态，或通过 /jobs/{jobId}/events 订阅进度
      * </p>
      */
     @PostMapping("/upload/async")
-    public ResponseEntity<R<Map<String, Object>>> uploadDocumentAsync(@Valid @ModelAttribute DocumentRequest request, HttpServletRequest httpRequest) throws IOException {
+    public ResponseEntity<R<Map<String, Object>>> uploadDocumentAsync(@Valid @ModelAttribute DocumentRequest request, HttpServletRequest httpRequest) {
         // 获取当前用户
         User currentUser = (User)httpRequest.getAttribute("currentUser");
         
@@ -162,56 +163,42 @@ public class DocumentController {
         String[] allowedTypes = {"pdf", "docx", "txt", "md", "epub"};
         streamFileProcessor.validateFileType(file, allowedTypes);
         
-        // 使用流式处理读取文件内容，优化内存使用
-        byte[] fileBytes;
-        try {
-            fileBytes = streamFileProcessor.processFileStream(file);
-        } catch (IOException e) {
-            throw new BusinessException(ErrorCode.FILE_PROCESSING_FAILED, "文件读取失败: " + e.getMessage());
+        // 提前检查存储容量，任务执行时会再次检查
+        if (!ragService.checkStorageQuota(user, file.getSize())) {
+            throw new BusinessException(ErrorCode.STORAGE_QUOTA_EXCEEDED, "存储空间不足，请联系管理员");
         }
-        String originalFilename = file.getOriginalFilename();
-        String contentType = file.getContentType();
-        
-        // 创建一个包装类来保存文件信息
-        FileInfo fileInfo = new FileInfo(fileBytes, originalFilename, contentType);
         
-        // 使用专用文件处理线程池执行异步处理
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 创建一个临时的MultipartFile对象
-                MultipartFile tempFile = new InMemoryMultipartFile(
-                    fileInfo.getBytes(), fileInfo.getOriginalFilename(), fileInfo.getContentType());
-                
-                // 更新request中的文件对象
-                request.setFile(tempFile);
-                
-                // 先上传文件到七牛云
-                String fileUrl = qiniuUploadService.uploadFile(tempFile, user);
-
-                try {
-                    // 然后并行处理文档内容用于知识库，并保存数据库记录
-                    DocumentInfo documentInfo = ragService.processFileInParallel(request, user, fileUrl);
-                    log.info("用户 {} 异步文档上传成功: {} -> {}", user.getUsername(), 
-                            originalFilename, documentInfo.getTitle());
-                    // 这里可以添加通知逻辑，比如通过WebSocket通知前端
-                } catch (Exception e) {
-                    log.error("用户 {} 异步文档处理失败: {}", user.getUsername(), originalFilename, e);
-                    // 可以考虑添加重试机制或通知用户
-                }
-            } catch (Exception e) {
-                log.error("用户 {} 异步文档上传到七牛云失败: {}", user.getUsername(), originalFilename, e);
-            }
-        }, fileProcessExecutor);
+        // 文件转存到本地暂存目录并落库为任务，由后台任务执行器领取处理
+        IngestionJobDTO job = ingestionJobService.submit(request, user);
         
-        // 立即返回响应，表示已接收上传请求
+        // 立即返回任务ID，客户端可据此查询状态或订阅进度
         Map<String, Object> response = Map.of(
             "message", "文件上传请求已接收，正在后台处理中...",
-            "filename", originalFilename,
-            "status", "processing"
+            "filename", file.getOriginalFilename(),
+            "jobId", job.getId(),
+            "status", job.getStatus()
         );
         return ResponseEntity.ok(R.success(response));
     }
 
+    /**
+     * 查询异步入库任务状态
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<R<IngestionJobDTO>> getIngestionJob(@PathVariable Long jobId, HttpServletRequest httpRequest) {
+        User currentUser = (User) httpRequest.getAttribute("currentUser");
+        return ResponseEntity.ok(R.success(ingestionJobService.getJob(jobId, currentUser.getId())));
+    }
+
+    /**
+     * 订阅异步入库任务进度（SSE）
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeIngestionJob(@PathVariable Long jobId, HttpServletRequest httpRequest) {
+        User currentUser = (User) httpRequest.getAttribute("currentUser");
+        return ingestionJobService.subscribe(jobId, currentUser.getId());
+    }
+
     /**
      * 分页获取文档列表
      */
@@ -263,6 +250,56 @@ public class DocumentController {
         return ResponseEntity.ok(R.success("文档删除成功"));
     }
     
+    /**
+     * 更新文档
+     * <p>
+     * 以新文件替换文档内容，文档ID不变、版本加1；按分块内容比对，只有变化的分块重新嵌入
+     * </p>
+     */
+    @PutMapping("/{documentId}")
+    public ResponseEntity<R<DocumentUpdateResult>> updateDocument(@PathVariable String documentId,
+                                                                  @Valid @ModelAttribute DocumentRequest request,
+                                                                  HttpServletRequest httpRequest) {
+        // 获取当前用户
+        User currentUser = (User) httpRequest.getAttribute("currentUser");
+        
+        // 转换为UserDTO以避免敏感信息泄露
+        UserDTO currentUserDTO = UserDTO.fromUser(currentUser);
+        
+        // 创建一个User实体用于兼容现有服务方法（仅包含必要信息）
+        User user = new User();
+        user.setId(currentUserDTO.getId());
+        user.setUsername(currentUserDTO.getUsername());
+        user.setLevel(currentUserDTO.getLevel());
+        user.setStorageQuota(currentUserDTO.getStorageQuota());
+        user.setUsedStorage(currentUserDTO.getUsedStorage());
+        
+        MultipartFile file = request.getFile();
+        
+        log.info("用户 {} 开始更新文档 {}: {}", user.getUsername(), documentId, file.getOriginalFilename());
+        
+        streamFileProcessor.validateFileSize(file, MAX_FILE_SIZE);
+        String[] allowedTypes = {"pdf", "docx", "txt", "md", "epub"};
+        streamFileProcessor.validateFileType(file, allowedTypes);
+        
+        // 新文件先上传到七牛云，更新成功后由服务删除旧文件
+        String fileUrl = qiniuUploadService.uploadFile(file, user);
+
+        try {
+            DocumentUpdateResult result = ragService.updateDocument(documentId, request, user, fileUrl);
+            return ResponseEntity.ok(R.success(result));
+        } catch (Exception e) {
+            try {
+                qiniuUploadService.deleteFile(fileUrl);
+                log.info("已回滚七牛云文件上传: {}", fileUrl);
+            } catch (Exception deleteException) {
+                log.warn("回滚七牛云文件上传失败: {}", deleteException.getMessage());
+            }
+            
+            throw e;
+        }
+    }
+    
     /**
      * 下载文档
      */
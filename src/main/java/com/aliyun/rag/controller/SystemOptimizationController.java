@@ -4,7 +4,11 @@ import com.aliyun.rag.interceptor.RateLimitInterceptor;
 import com.aliyun.rag.model.R;
 import com.aliyun.rag.model.User;
 import com.aliyun.rag.service.MetricsService;
+import com.aliyun.rag.service.MilvusIndexService;
+import com.aliyun.rag.service.MilvusLayoutMigrationService;
 import com.aliyun.rag.service.OptimizedVectorStoreService;
+import com.aliyun.rag.service.QuantizedVectorIndex;
+import com.aliyun.rag.service.SearchProfileBenchmarkService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +16,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,6 +44,24 @@ public class SystemOptimizationController {
     @Autowired
     private RateLimitInterceptor rateLimitInterceptor;
 
+    @Autowired
+    private QuantizedVectorIndex quantizedVectorIndex;
+
+    /**
+     * 仅Milvus后端存在
+     */
+    @Autowired(required = false)
+    private MilvusLayoutMigrationService milvusLayoutMigrationService;
+
+    /**
+     * 仅Milvus后端存在
+     */
+    @Autowired(required = false)
+    private MilvusIndexService milvusIndexService;
+
+    @Autowired
+    private SearchProfileBenchmarkService searchProfileBenchmarkService;
+
     @Value("${document.intelligent-chunking:true}")
     private boolean intelligentChunkingEnabled;
 
@@ -84,10 +107,9 @@ public class SystemOptimizationController {
         try {
             log.info("获取限流状态: 用户={}", user.getUsername());
             
-            String clientId = "user:" + user.getId();
             String endpoint = "/search"; // 示例端点
             
-            RateLimitInterceptor.RateLimitStatus status = rateLimitInterceptor.getRateLimitStatus(clientId, endpoint);
+            RateLimitInterceptor.RateLimitStatus status = rateLimitInterceptor.getRateLimitStatus(user, endpoint);
             
             Map<String, Object> result = new HashMap<>();
             result.put("currentCount", status.getCurrentCount());
@@ -188,6 +210,136 @@ public class SystemOptimizationController {
         }
     }
 
+    /**
+     * 获取量化候选索引状态（含每百万向量内存占用）
+     */
+    @GetMapping("/quantized-index-stats")
+    public R<Map<String, Object>> getQuantizedIndexStats(@RequestAttribute("currentUser") User user) {
+        try {
+            log.info("获取量化索引状态: 用户={}", user.getUsername());
+
+            Map<String, Object> stats = quantizedVectorIndex.getStats(user.getId());
+
+            return R.success(stats);
+
+        } catch (Exception e) {
+            log.error("获取量化索引状态失败: {}", e.getMessage(), e);
+            return R.error(500, "获取量化索引状态失败");
+        }
+    }
+
+    /**
+     * 获取向量collection布局及迁移状态
+     */
+    @GetMapping("/vector-layout")
+    public R<Map<String, Object>> getVectorLayout(@RequestAttribute("currentUser") User user) {
+        if (milvusLayoutMigrationService == null) {
+            return R.error(400, "当前向量存储后端不支持collection布局迁移");
+        }
+        try {
+            return R.success(milvusLayoutMigrationService.getStatus(user.getId(), user.getUsername()));
+        } catch (Exception e) {
+            log.error("获取向量布局状态失败: {}", e.getMessage(), e);
+            return R.error(500, "获取向量布局状态失败");
+        }
+    }
+
+    /**
+     * 把当前用户的向量从独立collection在线迁移到共享collection
+     */
+    @PostMapping("/vector-layout/migrate")
+    public R<Map<String, Object>> migrateVectorLayout(@RequestAttribute("currentUser") User user) {
+        if (milvusLayoutMigrationService == null) {
+            return R.error(400, "当前向量存储后端不支持collection布局迁移");
+        }
+        try {
+            log.info("提交向量布局迁移: 用户={}", user.getUsername());
+
+            return R.success(milvusLayoutMigrationService.migrate(user.getId(), user.getUsername()));
+
+        } catch (IllegalStateException e) {
+            return R.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("提交向量布局迁移失败: {}", e.getMessage(), e);
+            return R.error(500, "提交向量布局迁移失败");
+        }
+    }
+
+    /**
+     * 获取当前用户所在collection的向量索引状态
+     */
+    @GetMapping("/vector-index")
+    public R<Map<String, Object>> getVectorIndex(@RequestAttribute("currentUser") User user) {
+        if (milvusIndexService == null) {
+            return R.error(400, "当前向量存储后端不支持索引方案管理");
+        }
+        try {
+            return R.success(milvusIndexService.getStatus(user.getId(), user.getUsername()));
+        } catch (Exception e) {
+            log.error("获取向量索引状态失败: {}", e.getMessage(), e);
+            return R.error(500, "获取向量索引状态失败");
+        }
+    }
+
+    /**
+     * 按索引方案重建当前用户独立collection的向量索引，新索引在影子collection上建好后再切换，重建期间检索不受影响；
+     * 共享collection承载多个用户的数据，不支持按用户重建
+     */
+    @PostMapping("/vector-index/rebuild")
+    public R<Map<String, Object>> rebuildVectorIndex(@RequestParam(required = false) String profile,
+                                                     @RequestAttribute("currentUser") User user) {
+        if (milvusIndexService == null) {
+            return R.error(400, "当前向量存储后端不支持索引方案管理");
+        }
+        try {
+            log.info("提交向量索引重建: 用户={}, 方案={}", user.getUsername(), profile);
+
+            return R.success(milvusIndexService.rebuild(user.getId(), user.getUsername(), profile));
+
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return R.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("提交向量索引重建失败: {}", e.getMessage(), e);
+            return R.error(500, "提交向量索引重建失败");
+        }
+    }
+
+    /**
+     * 在当前用户的向量上评测各检索档位的召回率和延迟
+     * <p>
+     * 请求体可选：queries 为查询文本列表（为空时从已有向量中抽样），topK 为结果数
+     * </p>
+     */
+    @PostMapping("/vector-index/benchmark")
+    public R<Map<String, Object>> benchmarkSearchProfiles(@RequestBody(required = false) Map<String, Object> body,
+                                                          @RequestAttribute("currentUser") User user) {
+        try {
+            List<String> queries = null;
+            Integer topK = null;
+            if (body != null) {
+                if (body.get("queries") instanceof List<?> list) {
+                    queries = list.stream().map(String::valueOf).toList();
+                }
+                if (body.get("topK") instanceof Number number) {
+                    topK = number.intValue();
+                }
+            }
+            log.info("评测检索档位: 用户={}", user.getUsername());
+
+            Map<String, Object> result = searchProfileBenchmarkService.benchmark(user.getId(), user.getUsername(), queries, topK);
+            if (milvusIndexService != null) {
+                result.put("indexType", milvusIndexService.getStatus(user.getId(), user.getUsername()).get("indexType"));
+            }
+            return R.success(result);
+
+        } catch (IllegalStateException e) {
+            return R.error(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("评测检索档位失败: {}", e.getMessage(), e);
+            return R.error(500, "评测检索档位失败");
+        }
+    }
+
     /**
      * 清除搜索缓存
      */
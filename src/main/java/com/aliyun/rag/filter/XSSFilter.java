@@ -1,5 +1,8 @@
 package com.aliyun.rag.filter;
 
+import com.aliyun.rag.config.XssProperties;
+import com.aliyun.rag.service.MetricsService;
+import com.aliyun.rag.util.XssDetector;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterConfig;
@@ -10,16 +13,18 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.Map;
 
 /**
  * XSS防护过滤器
  * <p>
  * 对HTTP请求参数进行XSS检测和过滤，防止恶意脚本注入
- * 支持检测和清理常见的XSS攻击向量
+ * 检测规则见{@link XssDetector}，multipart请求检查查询参数和非文件表单字段，超过大小限制的表单直接拒绝
  * </p>
  *
  * @author Jason Ma
@@ -30,34 +35,14 @@ public class XSSFilter implements Filter {
 
     private static final Logger log = LoggerFactory.getLogger(XSSFilter.class);
 
-    /**
-     * XSS攻击模式检测正则表达式
-     */
-    private static final Pattern[] XSS_PATTERNS = {
-        // Script标签
-        Pattern.compile("<script[^>]*>.*?</script>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
-        Pattern.compile("<script[^>]*>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
-        
-        // JavaScript事件处理器
-        Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("on\\w+\\s*=", Pattern.CASE_INSENSITIVE),
-        
-        // Style表达式
-        Pattern.compile("expression\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("<style[^>]*>.*?</style>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL),
-        
-        // 危险标签
-        Pattern.compile("<(iframe|object|embed|applet|meta|link)[^>]*>", Pattern.CASE_INSENSITIVE),
-        
-        // 数据URI协议
-        Pattern.compile("data:text/html", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("data:application/", Pattern.CASE_INSENSITIVE),
-        
-        // 其他潜在危险内容
-        Pattern.compile("eval\\s*\\(", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE),
-        Pattern.compile("livescript:", Pattern.CASE_INSENSITIVE)
-    };
+    private final XssProperties properties;
+    private final MetricsService metricsService;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public XSSFilter(XssProperties properties, MetricsService metricsService) {
+        this.properties = properties;
+        this.metricsService = metricsService;
+    }
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
@@ -72,15 +57,31 @@ public class XSSFilter implements Filter {
         HttpServletResponse httpResponse = (HttpServletResponse) response;
         
         // 检查请求参数是否包含XSS攻击向量
-        if (containsXSS(httpRequest)) {
-            log.warn("检测到XSS攻击尝试，来源IP: {}, URI: {}", 
-                getClientIP(httpRequest), httpRequest.getRequestURI());
-            
-            // 返回400错误
-            httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            httpResponse.setContentType("application/json;charset=UTF-8");
-            httpResponse.getWriter().write("{\"success\":false,\"message\":\"请求包含非法字符\"}");
-            return;
+        if (properties.isEnabled() && !isBypassed(httpRequest)) {
+            if (isOversizedForm(httpRequest)) {
+                log.warn("表单请求体超过大小限制，来源IP: {}, URI: {}, 大小: {}",
+                    getClientIP(httpRequest), httpRequest.getRequestURI(), httpRequest.getContentLengthLong());
+
+                httpResponse.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                httpResponse.setContentType("application/json;charset=UTF-8");
+                httpResponse.getWriter().write("{\"success\":false,\"message\":\"表单请求体过大\"}");
+                return;
+            }
+
+            long startNanos = System.nanoTime();
+            boolean attack = containsXSS(httpRequest);
+            metricsService.recordXssFilterTime(System.nanoTime() - startNanos);
+
+            if (attack) {
+                log.warn("检测到XSS攻击尝试，来源IP: {}, URI: {}", 
+                    getClientIP(httpRequest), httpRequest.getRequestURI());
+                
+                // 返回400错误
+                httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                httpResponse.setContentType("application/json;charset=UTF-8");
+                httpResponse.getWriter().write("{\"success\":false,\"message\":\"请求包含非法字符\"}");
+                return;
+            }
         }
         
         // 继续处理请求
@@ -92,15 +93,37 @@ public class XSSFilter implements Filter {
         log.info("XSS防护过滤器销毁");
     }
 
+    /**
+     * 是否命中跳过路径
+     */
+    private boolean isBypassed(HttpServletRequest request) {
+        List<String> bypassPaths = properties.getBypassPaths();
+        if (bypassPaths == null || bypassPaths.isEmpty()) {
+            return false;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : bypassPaths) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 检查请求是否包含XSS攻击向量
+     * <p>
+     * 参数表包含查询参数和表单参数；multipart请求中只有非文件字段会出现在参数表里，
+     * 容器解析后会缓存解析结果，后续MultipartResolver直接复用，不会重复读取请求体。
+     * JSON等其他请求体不会被解析为参数。
+     * </p>
      */
     private boolean containsXSS(HttpServletRequest request) {
-        // 检查所有参数
-        if (request.getParameterMap() != null) {
-            for (String[] values : request.getParameterMap().values()) {
+        Map<String, String[]> parameterMap = request.getParameterMap();
+        if (parameterMap != null) {
+            for (String[] values : parameterMap.values()) {
                 for (String value : values) {
-                    if (isXSSAttack(value)) {
+                    if (XssDetector.containsAttack(value)) {
                         return true;
                     }
                 }
@@ -109,61 +132,22 @@ public class XSSFilter implements Filter {
         
         // 检查请求头
         String userAgent = request.getHeader("User-Agent");
-        if (StringUtils.hasText(userAgent) && isXSSAttack(userAgent)) {
+        if (XssDetector.containsAttack(userAgent)) {
             return true;
         }
         
         String referer = request.getHeader("Referer");
-        if (StringUtils.hasText(referer) && isXSSAttack(referer)) {
-            return true;
-        }
-        
-        return false;
+        return XssDetector.containsAttack(referer);
     }
 
     /**
-     * 检查字符串是否包含XSS攻击模式
+     * 表单请求体是否超过大小限制，超过时拒绝请求而不是跳过检查
      */
-    private boolean isXSSAttack(String value) {
-        if (!StringUtils.hasText(value)) {
-            return false;
-        }
-        
-        String decodedValue = decodeValue(value);
-        
-        for (Pattern pattern : XSS_PATTERNS) {
-            if (pattern.matcher(decodedValue).find()) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
-
-    /**
-     * 解码字符串（处理URL编码和HTML编码）
-     */
-    private String decodeValue(String value) {
-        if (value == null) {
-            return null;
-        }
-        
-        // URL解码
-        try {
-            value = java.net.URLDecoder.decode(value, "UTF-8");
-        } catch (Exception e) {
-            // 解码失败，使用原值
-        }
-        
-        // HTML实体解码
-        value = value.replaceAll("&lt;", "<")
-                    .replaceAll("&gt;", ">")
-                    .replaceAll("&quot;", "\"")
-                    .replaceAll("&#x27;", "'")
-                    .replaceAll("&#x2F;", "/")
-                    .replaceAll("&amp;", "&");
-        
-        return value;
+    private boolean isOversizedForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null
+                && contentType.regionMatches(true, 0, "application/x-www-form-urlencoded", 0, 33)
+                && request.getContentLengthLong() > properties.getMaxFormBodyBytes();
     }
 
     /**
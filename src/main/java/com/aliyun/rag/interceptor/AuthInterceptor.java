@@ -1,6 +1,7 @@
 package com.aliyun.rag.interceptor;
 
 import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.VerifiedToken;
 import com.aliyun.rag.service.AuthService;
 import com.aliyun.rag.service.JwtTokenService;
 import org.slf4j.Logger;
@@ -60,36 +61,35 @@ public class AuthInterceptor implements HandlerInterceptor {
             return false;
         }
         
-        // 验证JWT令牌
-        if (!jwtTokenService.validateToken(token)) {
+        // 验证JWT令牌，每个请求只验证一次，结果存入请求属性
+        VerifiedToken verifiedToken = jwtTokenService.verify(token);
+        if (verifiedToken == null) {
             // 如果Access Token无效，尝试使用Refresh Token刷新
             String refreshToken = request.getHeader("X-Refresh-Token");
             if (refreshToken != null && !refreshToken.isEmpty()) {
                 try {
                     // 验证刷新令牌有效性
-                    if (jwtTokenService.validateToken(refreshToken)) {
-                        // 检查Token类型是否为REFRESH
-                        String tokenType = jwtTokenService.getTokenType(refreshToken);
-                        if ("REFRESH".equals(tokenType)) {
-                            // 从令牌中获取用户ID
-                            Long userId = jwtTokenService.getUserIdFromToken(refreshToken);
-                            if (userId != null) {
-                                // 从Redis中获取存储的刷新令牌进行比对
-                                String refreshTokenKey = "refresh_token:" + userId;
-                                String storedRefreshToken = (String) redisTemplate.opsForValue().get(refreshTokenKey);
-                                if (storedRefreshToken != null && storedRefreshToken.equals(refreshToken)) {
-                                    // 获取用户信息
-                                    User user = authService.getUserById(userId);
-                                    if (user != null) {
-                                        // 生成新的Access Token
-                                        String newAccessToken = jwtTokenService.refreshAccessToken(refreshToken, user);
-                                        
-                                        // 将新的Access Token添加到响应头中
-                                        response.setHeader("X-New-Access-Token", newAccessToken);
-                                        
-                                        // 使用新的Access Token继续验证
-                                        token = newAccessToken;
-                                    }
+                    VerifiedToken verifiedRefreshToken = jwtTokenService.verify(refreshToken);
+                    // 检查Token类型是否为REFRESH
+                    if (verifiedRefreshToken != null && verifiedRefreshToken.isRefreshToken()) {
+                        // 从令牌中获取用户ID
+                        Long userId = verifiedRefreshToken.getUserId();
+                        if (userId != null) {
+                            // 从Redis中获取存储的刷新令牌进行比对
+                            String refreshTokenKey = "refresh_token:" + userId;
+                            String storedRefreshToken = (String) redisTemplate.opsForValue().get(refreshTokenKey);
+                            if (storedRefreshToken != null && storedRefreshToken.equals(refreshToken)) {
+                                // 获取用户信息
+                                User user = authService.getUserById(userId);
+                                if (user != null) {
+                                    // 生成新的Access Token
+                                    String newAccessToken = jwtTokenService.refreshAccessToken(refreshToken, user);
+                                    
+                                    // 将新的Access Token添加到响应头中
+                                    response.setHeader("X-New-Access-Token", newAccessToken);
+                                    
+                                    // 使用新的Access Token继续验证
+                                    verifiedToken = jwtTokenService.verify(newAccessToken);
                                 }
                             }
                         }
@@ -100,16 +100,18 @@ public class AuthInterceptor implements HandlerInterceptor {
             }
             
             // 如果仍然无效，则返回错误
-            if (!jwtTokenService.validateToken(token)) {
+            if (verifiedToken == null) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.setContentType("application/json;charset=UTF-8");
                 response.getWriter().write("{\"success\":false,\"message\":\"无效的访问令牌\"}");
                 return false;
             }
         }
+        request.setAttribute(VerifiedToken.REQUEST_ATTRIBUTE, verifiedToken);
         
-        // 获取用户信息
-        User user = authService.validateToken(token);
+        // 获取用户信息（读取认证用户缓存）
+        Long userId = verifiedToken.getUserId();
+        User user = userId != null ? authService.getAuthenticatedUser(userId) : null;
         if (user == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json;charset=UTF-8");
@@ -118,7 +120,7 @@ public class AuthInterceptor implements HandlerInterceptor {
         }
         
         // 检查Token是否即将过期，如果是则在响应头中添加提示
-        if (jwtTokenService.isTokenExpiringSoon(token)) {
+        if (jwtTokenService.isExpiringSoon(verifiedToken)) {
             log.info("用户 {} 的Token即将过期，建议刷新", user.getUsername());
             // 添加响应头提示前端刷新Token
             response.setHeader("X-Token-Refresh-Needed", "true");
@@ -1,22 +1,21 @@
 package com.aliyun.rag.interceptor;
 
+import com.aliyun.rag.config.RateLimitProperties;
+import com.aliyun.rag.model.User;
+import com.aliyun.rag.service.RateLimiterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
 
 /**
  * API限流拦截器
  * <p>
- * 实现基于Redis的滑动窗口限流机制
- * 支持不同接口类型的差异化限流策略
+ * 基于Redis令牌桶的分布式限流，每次检查最多一次Redis往返，热点客户端使用本地预取的令牌
+ * 支持按接口类别和用户等级差异化限流
  * </p>
  *
  * @author Jason Ma
@@ -28,38 +27,34 @@ public class RateLimitInterceptor implements HandlerInterceptor {
 
     private static final Logger log = LoggerFactory.getLogger(RateLimitInterceptor.class);
 
-    @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private final RateLimiterService rateLimiterService;
 
-    // 限流配置
-    private static final int AUTH_LIMIT = 5; // 认证接口：5次/分钟
-    private static final int DOCUMENT_UPLOAD_LIMIT = 10; // 文档上传：10次/分钟
-    private static final int SEARCH_LIMIT = 60; // 搜索接口：60次/分钟
-    private static final int AI_CHAT_LIMIT = 20; // AI问答：20次/分钟
-    private static final int MONITOR_LIMIT = 100; // 监控端点：100次/分钟
-    private static final int DEFAULT_LIMIT = 30; // 默认：30次/分钟
+    public RateLimitInterceptor(RateLimiterService rateLimiterService) {
+        this.rateLimiterService = rateLimiterService;
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        String clientId = getClientId(request);
-        String endpoint = request.getRequestURI();
-        String method = request.getMethod();
-
         // 跳过OPTIONS请求
-        if ("OPTIONS".equals(method)) {
+        if ("OPTIONS".equals(request.getMethod())) {
             return true;
         }
 
-        // 获取限流配置
-        int limit = getLimitForEndpoint(endpoint);
-        
-        // 检查是否允许访问
-        if (!isAllowed(clientId, endpoint, limit)) {
-            log.warn("API限流触发，客户端: {}, 端点: {}, 限制: {}/分钟", clientId, endpoint, limit);
-            
+        User user = (User) request.getAttribute("currentUser");
+        String clientId = getClientId(request, user);
+        RateLimitProperties.EndpointClass endpointClass = getEndpointClass(request.getRequestURI());
+
+        RateLimiterService.Decision decision = rateLimiterService.tryAcquire(clientId, endpointClass, user);
+        response.setHeader("X-RateLimit-Limit", String.valueOf(decision.getLimit()));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(Math.max(0, decision.getRemaining())));
+
+        if (!decision.isAllowed()) {
+            log.warn("API限流触发，客户端: {}, 端点: {}, 类别: {}, 限制: {}/窗口",
+                    clientId, request.getRequestURI(), endpointClass.key(), decision.getLimit());
+
             response.setStatus(429); // Too Many Requests
             response.setContentType("application/json;charset=UTF-8");
-            response.setHeader("Retry-After", "60");
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, (decision.getRetryAfterMs() + 999) / 1000)));
             response.getWriter().write("{\"success\":false,\"code\":429,\"message\":\"请求过于频繁，请稍后再试\"}");
             return false;
         }
@@ -67,53 +62,13 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         return true;
     }
 
-    /**
-     * 检查是否允许访问
-     */
-    private boolean isAllowed(String clientId, String endpoint, int limit) {
-        String key = "rate_limit:" + clientId + ":" + endpoint;
-        
-        try {
-            // 使用Redis的INCR和EXPIRE实现滑动窗口
-            String count = redisTemplate.opsForValue().get(key);
-            
-            if (count == null) {
-                // 第一次访问
-                redisTemplate.opsForValue().set(key, "1", Duration.ofMinutes(1));
-                return true;
-            }
-            
-            int currentCount = Integer.parseInt(count);
-            
-            if (currentCount >= limit) {
-                return false;
-            }
-            
-            // 增加计数
-            redisTemplate.opsForValue().increment(key);
-            
-            // 如果是第一次增加，设置过期时间
-            if (currentCount == 0) {
-                redisTemplate.expire(key, Duration.ofMinutes(1));
-            }
-            
-            return true;
-            
-        } catch (Exception e) {
-            log.error("限流检查失败: {}", e.getMessage(), e);
-            // 限流失败时允许访问，避免影响正常业务
-            return true;
-        }
-    }
-
     /**
      * 获取客户端标识
      */
-    private String getClientId(HttpServletRequest request) {
+    private String getClientId(HttpServletRequest request, User user) {
         // 优先使用用户ID（如果已认证）
-        String userId = (String) request.getAttribute("userId");
-        if (userId != null) {
-            return "user:" + userId;
+        if (user != null && user.getId() != null) {
+            return "user:" + user.getId();
         }
         
         // 使用IP地址
@@ -139,53 +94,46 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     }
 
     /**
-     * 根据端点获取限流配置
+     * 根据端点获取接口类别
      */
-    private int getLimitForEndpoint(String endpoint) {
+    public RateLimitProperties.EndpointClass getEndpointClass(String endpoint) {
         // 认证相关接口
         if (endpoint.contains("/auth/login") || endpoint.contains("/auth/register")) {
-            return AUTH_LIMIT;
+            return RateLimitProperties.EndpointClass.AUTH;
         }
         
         // 文档上传接口
-        if (endpoint.contains("/document/upload") || endpoint.contains("/document/process")) {
-            return DOCUMENT_UPLOAD_LIMIT;
+        if (endpoint.contains("/documents/upload") || endpoint.contains("/document/upload")
+                || endpoint.contains("/document/process")) {
+            return RateLimitProperties.EndpointClass.UPLOAD;
         }
         
-        // 搜索接口
-        if (endpoint.contains("/search") || endpoint.contains("/vector")) {
-            return SEARCH_LIMIT;
+        // AI问答接口（/api/search/ask也归为问答）
+        if (endpoint.contains("/chat") || endpoint.contains("/ask")) {
+            return RateLimitProperties.EndpointClass.CHAT;
         }
         
-        // AI问答接口
-        if (endpoint.contains("/chat") || endpoint.contains("/ask")) {
-            return AI_CHAT_LIMIT;
+        // 搜索接口
+        if (endpoint.contains("/search") || endpoint.contains("/vector")) {
+            return RateLimitProperties.EndpointClass.SEARCH;
         }
         
         // 监控端点
         if (endpoint.contains("/actuator")) {
-            return MONITOR_LIMIT;
+            return RateLimitProperties.EndpointClass.MONITOR;
         }
         
-        return DEFAULT_LIMIT;
+        return RateLimitProperties.EndpointClass.DEFAULT;
     }
 
     /**
      * 获取当前限流状态
      */
-    public RateLimitStatus getRateLimitStatus(String clientId, String endpoint) {
-        String key = "rate_limit:" + clientId + ":" + endpoint;
-        int limit = getLimitForEndpoint(endpoint);
-        
-        try {
-            String count = redisTemplate.opsForValue().get(key);
-            int currentCount = count != null ? Integer.parseInt(count) : 0;
-            
-            return new RateLimitStatus(currentCount, limit, limit - currentCount);
-        } catch (Exception e) {
-            log.error("获取限流状态失败: {}", e.getMessage(), e);
-            return new RateLimitStatus(0, limit, limit);
-        }
+    public RateLimitStatus getRateLimitStatus(User user, String endpoint) {
+        String clientId = "user:" + user.getId();
+        RateLimiterService.Decision status = rateLimiterService.getStatus(clientId, getEndpointClass(endpoint), user);
+        int remaining = Math.max(0, status.getRemaining());
+        return new RateLimitStatus(status.getLimit() - remaining, status.getLimit(), remaining);
     }
 
     /**
@@ -48,6 +48,24 @@ public class DocumentMilvusMapping {
     @Column(name = "vector_index", nullable = false)
     private Integer vectorIndex;
 
+    /**
+     * 分块内容的SHA-256摘要（十六进制），用于更新文档时比对分块是否变化
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * 分块内容的SimHash指纹，分块过短时为空
+     */
+    @Column(name = "simhash")
+    private Long simhash;
+
+    /**
+     * 重复分块引用的向量ID；为空表示分块有自己的向量（milvusId），否则milvusId未写入向量库
+     */
+    @Column(name = "ref_milvus_id", length = 100)
+    private String refMilvusId;
+
     /**
      * 创建时间
      */
@@ -107,6 +125,37 @@ public class DocumentMilvusMapping {
         this.vectorIndex = vectorIndex;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getSimhash() {
+        return simhash;
+    }
+
+    public void setSimhash(Long simhash) {
+        this.simhash = simhash;
+    }
+
+    public String getRefMilvusId() {
+        return refMilvusId;
+    }
+
+    public void setRefMilvusId(String refMilvusId) {
+        this.refMilvusId = refMilvusId;
+    }
+
+    /**
+     * 分块在向量库中实际对应的向量ID
+     */
+    public String getVectorId() {
+        return refMilvusId != null ? refMilvusId : milvusId;
+    }
+
     public LocalDateTime getGmtCreate() {
         return gmtCreate;
     }
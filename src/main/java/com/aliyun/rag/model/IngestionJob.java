@@ -0,0 +1,381 @@
+package com.aliyun.rag.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文档入库任务模型
+ * <p>
+ * 异步上传的文档先暂存到本地并落库为任务，由工作节点通过租约领取执行，
+ * 进程重启后未完成的任务在租约过期后被重新领取并从已完成的批次之后继续
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Entity
+@Table(name = "ingestion_job")
+public class IngestionJob {
+
+    /**
+     * 任务ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 用户ID
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * 用户名
+     */
+    @Column(name = "username", nullable = false, length = 50)
+    private String username;
+
+    /**
+     * 原始文件名
+     */
+    @Column(name = "file_name", nullable = false, length = 255)
+    private String fileName;
+
+    /**
+     * 文件MIME类型
+     */
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    /**
+     * 文件大小（字节）
+     */
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    /**
+     * 文档标题
+     */
+    @Column(name = "title", length = 255)
+    private String title;
+
+    /**
+     * 文档描述
+     */
+    @Column(name = "description", length = 1000)
+    private String description;
+
+    /**
+     * 文档标签
+     */
+    @Column(name = "tags", length = 500)
+    private String tags;
+
+    /**
+     * 本地暂存文件路径
+     */
+    @Column(name = "staged_path", nullable = false, length = 500)
+    private String stagedPath;
+
+    /**
+     * 七牛云文件URL（上传后回填）
+     */
+    @Column(name = "file_url", length = 500)
+    private String fileUrl;
+
+    /**
+     * 文件记录ID（创建后回填）
+     */
+    @Column(name = "file_record_id")
+    private Long fileRecordId;
+
+    /**
+     * 任务状态
+     */
+    @Column(name = "status", nullable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    /**
+     * 每批分块数，断点续传时保持批次划分一致
+     */
+    @Column(name = "batch_chunks", nullable = false)
+    private Integer batchChunks;
+
+    /**
+     * 已写入的分块数
+     */
+    @Column(name = "chunks_processed", nullable = false)
+    private Integer chunksProcessed;
+
+    /**
+     * 已完成的批次数
+     */
+    @Column(name = "batches_completed", nullable = false)
+    private Integer batchesCompleted;
+
+    /**
+     * 已执行次数
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    /**
+     * 租约持有者（工作节点标识）
+     */
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+
+    /**
+     * 租约到期时间，为空或已过期时可被领取
+     */
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * 失败原因
+     */
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "gmt_create", nullable = false, updatable = false)
+    private LocalDateTime gmtCreate;
+
+    /**
+     * 修改时间
+     */
+    @Column(name = "gmt_modified", nullable = false)
+    private LocalDateTime gmtModified;
+
+    /**
+     * 是否删除（0:未删除 1:已删除）
+     */
+    @Column(name = "is_deleted", nullable = false)
+    private Integer isDeleted;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getTags() {
+        return tags;
+    }
+
+    public void setTags(String tags) {
+        this.tags = tags;
+    }
+
+    public String getStagedPath() {
+        return stagedPath;
+    }
+
+    public void setStagedPath(String stagedPath) {
+        this.stagedPath = stagedPath;
+    }
+
+    public String getFileUrl() {
+        return fileUrl;
+    }
+
+    public void setFileUrl(String fileUrl) {
+        this.fileUrl = fileUrl;
+    }
+
+    public Long getFileRecordId() {
+        return fileRecordId;
+    }
+
+    public void setFileRecordId(Long fileRecordId) {
+        this.fileRecordId = fileRecordId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Integer getBatchChunks() {
+        return batchChunks;
+    }
+
+    public void setBatchChunks(Integer batchChunks) {
+        this.batchChunks = batchChunks;
+    }
+
+    public Integer getChunksProcessed() {
+        return chunksProcessed;
+    }
+
+    public void setChunksProcessed(Integer chunksProcessed) {
+        this.chunksProcessed = chunksProcessed;
+    }
+
+    public Integer getBatchesCompleted() {
+        return batchesCompleted;
+    }
+
+    public void setBatchesCompleted(Integer batchesCompleted) {
+        this.batchesCompleted = batchesCompleted;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getGmtCreate() {
+        return gmtCreate;
+    }
+
+    public void setGmtCreate(LocalDateTime gmtCreate) {
+        this.gmtCreate = gmtCreate;
+    }
+
+    public LocalDateTime getGmtModified() {
+        return gmtModified;
+    }
+
+    public void setGmtModified(LocalDateTime gmtModified) {
+        this.gmtModified = gmtModified;
+    }
+
+    public Integer getIsDeleted() {
+        return isDeleted;
+    }
+
+    public void setIsDeleted(Integer isDeleted) {
+        this.isDeleted = isDeleted;
+    }
+
+    /**
+     * 是否已结束（完成或失败）
+     */
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    /**
+     * 任务状态枚举
+     */
+    public enum Status {
+        /**
+         * 排队中
+         */
+        QUEUED,
+        /**
+         * 解析中
+         */
+        PARSING,
+        /**
+         * 嵌入中（解析与嵌入、写入重叠进行）
+         */
+        EMBEDDING,
+        /**
+         * 建立索引与映射中
+         */
+        INDEXING,
+        /**
+         * 已完成
+         */
+        DONE,
+        /**
+         * 已失败
+         */
+        FAILED
+    }
+}
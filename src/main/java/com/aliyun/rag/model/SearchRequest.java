@@ -24,12 +24,26 @@ public class SearchRequest {
 
     private Double minScore = 0.7;
 
+    /**
+     * 向量检索档位，为空时使用 vector-store.default-search-profile
+     */
+    private SearchProfile searchProfile;
+
     public enum SearchType {
         SEMANTIC,    // 语义搜索
         KEYWORD,     // 关键词搜索
         HYBRID       // 混合搜索
     }
 
+    /**
+     * 向量检索档位：在召回率和延迟之间取舍，对应的索引检索参数见 vector-store.search-profiles
+     */
+    public enum SearchProfile {
+        FAST,        // 低延迟
+        BALANCED,    // 均衡
+        ACCURATE     // 高召回
+    }
+
     // Getters and Setters
     public String getQuery() {
         return query;
@@ -62,4 +76,12 @@ public class SearchRequest {
     public void setMinScore(Double minScore) {
         this.minScore = minScore;
     }
+
+    public SearchProfile getSearchProfile() {
+        return searchProfile;
+    }
+
+    public void setSearchProfile(SearchProfile searchProfile) {
+        this.searchProfile = searchProfile;
+    }
 }
\ No newline at end of file
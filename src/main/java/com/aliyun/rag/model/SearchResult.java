@@ -25,6 +25,8 @@ public class SearchResult {
 
     private Integer position;
 
+    private String page;
+
     // Getters and Setters
     public String getFileRecordId() {
         return fileRecordId;
@@ -73,4 +75,12 @@ public class SearchResult {
     public void setPosition(Integer position) {
         this.position = position;
     }
-}
\ No newline at end of file
+
+    public String getPage() {
+        return page;
+    }
+
+    public void setPage(String page) {
+        this.page = page;
+    }
+}
@@ -54,6 +54,12 @@ public class UserFileRecord {
     @Column(name = "file_type", length = 50)
     private String fileType;
 
+    /**
+     * 文档版本，首次上传为1，每次更新内容加1
+     */
+    @Column(name = "version")
+    private Integer version;
+
     /**
      * 上传时间
      */
@@ -127,6 +133,14 @@ public class UserFileRecord {
         this.fileType = fileType;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public LocalDateTime getUploadTime() {
         return uploadTime;
     }
@@ -0,0 +1,81 @@
+package com.aliyun.rag.model;
+
+/**
+ * 已验证的JWT令牌
+ * <p>
+ * 签名和有效期校验通过后提取的声明，不可变。认证拦截器每个请求只生成一次，
+ * 存放在请求属性{@link #REQUEST_ATTRIBUTE}中供后续使用
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class VerifiedToken {
+
+    /**
+     * 请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = "verifiedToken";
+
+    private final Long userId;
+    private final String username;
+    private final Integer level;
+    private final String tokenType;
+    private final long issuedAtMillis;
+    private final long expiresAtMillis;
+
+    public VerifiedToken(Long userId, String username, Integer level, String tokenType,
+                         long issuedAtMillis, long expiresAtMillis) {
+        this.userId = userId;
+        this.username = username;
+        this.level = level;
+        this.tokenType = tokenType;
+        this.issuedAtMillis = issuedAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public long getIssuedAtMillis() {
+        return issuedAtMillis;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * 是否已过期
+     */
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    /**
+     * 剩余有效时间是否少于指定毫秒数
+     */
+    public boolean isExpiringWithin(long nowMillis, long windowMillis) {
+        return expiresAtMillis - nowMillis < windowMillis;
+    }
+
+    /**
+     * 是否为刷新令牌
+     */
+    public boolean isRefreshToken() {
+        return "REFRESH".equals(tokenType);
+    }
+}
@@ -0,0 +1,117 @@
+package com.aliyun.rag.model.dto;
+
+/**
+ * 文档更新结果
+ * <p>
+ * 沿用的分块不重新嵌入，新增分块数即本次调用嵌入模型的分块数
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class DocumentUpdateResult {
+
+    /**
+     * 文档ID
+     */
+    private String documentId;
+
+    /**
+     * 更新后的文档版本
+     */
+    private Integer version;
+
+    /**
+     * 新内容的分块总数
+     */
+    private Integer totalChunks;
+
+    /**
+     * 内容未变、沿用原向量的分块数
+     */
+    private Integer reusedChunks;
+
+    /**
+     * 新嵌入的分块数
+     */
+    private Integer addedChunks;
+
+    /**
+     * 新出现但与已有分块重复、只记录引用未嵌入的分块数
+     */
+    private Integer duplicateChunks;
+
+    /**
+     * 已删除的原有分块数
+     */
+    private Integer removedChunks;
+
+    /**
+     * 处理耗时（毫秒）
+     */
+    private Long elapsedMs;
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Integer getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(Integer totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public Integer getReusedChunks() {
+        return reusedChunks;
+    }
+
+    public void setReusedChunks(Integer reusedChunks) {
+        this.reusedChunks = reusedChunks;
+    }
+
+    public Integer getAddedChunks() {
+        return addedChunks;
+    }
+
+    public void setAddedChunks(Integer addedChunks) {
+        this.addedChunks = addedChunks;
+    }
+
+    public Integer getDuplicateChunks() {
+        return duplicateChunks;
+    }
+
+    public void setDuplicateChunks(Integer duplicateChunks) {
+        this.duplicateChunks = duplicateChunks;
+    }
+
+    public Integer getRemovedChunks() {
+        return removedChunks;
+    }
+
+    public void setRemovedChunks(Integer removedChunks) {
+        this.removedChunks = removedChunks;
+    }
+
+    public Long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(Long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+}
@@ -0,0 +1,218 @@
+package com.aliyun.rag.model.dto;
+
+import com.aliyun.rag.model.IngestionJob;
+import java.time.LocalDateTime;
+
+/**
+ * 文档入库任务数据传输对象
+ * <p>
+ * 用于任务状态查询和SSE进度推送，不包含暂存路径、租约等内部字段
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class IngestionJobDTO {
+
+    /**
+     * 任务ID
+     */
+    private Long id;
+
+    /**
+     * 文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 文档标题
+     */
+    private String title;
+
+    /**
+     * 任务状态（QUEUED/PARSING/EMBEDDING/INDEXING/DONE/FAILED）
+     */
+    private String status;
+
+    /**
+     * 已写入的分块数
+     */
+    private Integer chunksProcessed;
+
+    /**
+     * 已完成的批次数
+     */
+    private Integer batchesCompleted;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 文件记录ID（完成后可用于下载、删除）
+     */
+    private Long fileRecordId;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 是否已结束
+     */
+    private Boolean finished;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime gmtCreate;
+
+    /**
+     * 最近更新时间
+     */
+    private LocalDateTime gmtModified;
+
+    // Constructor
+    public IngestionJobDTO() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getChunksProcessed() {
+        return chunksProcessed;
+    }
+
+    public void setChunksProcessed(Integer chunksProcessed) {
+        this.chunksProcessed = chunksProcessed;
+    }
+
+    public Integer getBatchesCompleted() {
+        return batchesCompleted;
+    }
+
+    public void setBatchesCompleted(Integer batchesCompleted) {
+        this.batchesCompleted = batchesCompleted;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Long getFileRecordId() {
+        return fileRecordId;
+    }
+
+    public void setFileRecordId(Long fileRecordId) {
+        this.fileRecordId = fileRecordId;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Boolean getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Boolean finished) {
+        this.finished = finished;
+    }
+
+    public LocalDateTime getGmtCreate() {
+        return gmtCreate;
+    }
+
+    public void setGmtCreate(LocalDateTime gmtCreate) {
+        this.gmtCreate = gmtCreate;
+    }
+
+    public LocalDateTime getGmtModified() {
+        return gmtModified;
+    }
+
+    public void setGmtModified(LocalDateTime gmtModified) {
+        this.gmtModified = gmtModified;
+    }
+
+    /**
+     * 从任务实体创建DTO
+     *
+     * @param job 任务实体
+     * @return 任务DTO
+     */
+    public static IngestionJobDTO fromJob(IngestionJob job) {
+        if (job == null) {
+            return null;
+        }
+
+        IngestionJobDTO dto = new IngestionJobDTO();
+        dto.setId(job.getId());
+        dto.setFileName(job.getFileName());
+        dto.setFileSize(job.getFileSize());
+        dto.setTitle(job.getTitle());
+        dto.setStatus(job.getStatus() != null ? job.getStatus().name() : null);
+        dto.setChunksProcessed(job.getChunksProcessed());
+        dto.setBatchesCompleted(job.getBatchesCompleted());
+        dto.setAttempts(job.getAttempts());
+        dto.setFileRecordId(job.getFileRecordId());
+        dto.setErrorMessage(job.getErrorMessage());
+        dto.setFinished(job.isFinished());
+        dto.setGmtCreate(job.getGmtCreate());
+        dto.setGmtModified(job.getGmtModified());
+        return dto;
+    }
+}
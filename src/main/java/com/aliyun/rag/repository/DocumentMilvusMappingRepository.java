@@ -18,7 +18,8 @@ import java.util.Optional;
  * @since 2025-09-11
  */
 @Repository
-public interface DocumentMilvusMappingRepository extends JpaRepository<DocumentMilvusMapping, Long> {
+public interface DocumentMilvusMappingRepository extends JpaRepository<DocumentMilvusMapping, Long>,
+        DocumentMilvusMappingRepositoryCustom {
 
     /**
      * 根据文件记录ID查找未删除的映射记录
@@ -64,4 +65,13 @@ public interface DocumentMilvusMappingRepository extends JpaRepository<DocumentM
      * @return 向量总数
      */
     long countByUserIdAndIsDeleted(Long userId, Integer isDeleted);
-}
\ No newline at end of file
+
+    /**
+     * 统计用户实际持有向量的映射数（不含引用其他向量的重复分块）
+     *
+     * @param userId 用户ID
+     * @param isDeleted 是否删除
+     * @return 向量总数
+     */
+    long countByUserIdAndIsDeletedAndRefMilvusIdIsNull(Long userId, Integer isDeleted);
+}
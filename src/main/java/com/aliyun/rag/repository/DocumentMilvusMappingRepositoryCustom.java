@@ -0,0 +1,87 @@
+package com.aliyun.rag.repository;
+
+import com.aliyun.rag.model.DocumentMilvusMapping;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 文档与Milvus向量ID映射的自定义Repository
+ * <p>
+ * 提供JPA派生查询无法高效完成的批量操作
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public interface DocumentMilvusMappingRepositoryCustom {
+
+    /**
+     * 使用JDBC批处理插入映射记录
+     * <p>
+     * 主键为自增ID，Hibernate在IDENTITY策略下无法批量插入，故直接走JDBC批处理
+     * </p>
+     *
+     * @param mappings 映射记录
+     * @param batchSize 每批提交的记录数
+     * @return 插入的记录数
+     */
+    int insertBatch(List<DocumentMilvusMapping> mappings, int batchSize);
+
+    /**
+     * 物理删除文件的全部映射记录
+     * <p>
+     * 用于中断的入库任务恢复时清理上次可能已写入的映射，避免重复
+     * </p>
+     *
+     * @param fileRecordId 文件记录ID
+     * @return 删除的记录数
+     */
+    int purgeByFileRecordId(Long fileRecordId);
+
+    /**
+     * 使用JDBC批处理按主键更新映射记录的向量ID、向量索引、指纹、引用和删除标记
+     * <p>
+     * 用于更新文档时调整保留分块的位置并标记已消失的分块，以及删除被引用的向量时把引用方提升为持有方
+     * </p>
+     *
+     * @param mappings 映射记录，必须已有主键
+     * @param batchSize 每批提交的记录数
+     * @return 更新的记录数
+     */
+    int updateBatch(List<DocumentMilvusMapping> mappings, int batchSize);
+
+    /**
+     * 按内容摘要查找用户其他文档中持有向量的映射（精确重复比对）
+     *
+     * @param userId 用户ID
+     * @param excludeFileRecordId 排除的文件记录ID（当前文档）
+     * @param contentHashes 内容摘要
+     * @return 映射记录
+     */
+    List<DocumentMilvusMapping> findCanonicalByContentHashes(Long userId, Long excludeFileRecordId,
+                                                             Collection<String> contentHashes);
+
+    /**
+     * 按SimHash分段查找用户其他文档中持有向量的映射（近似重复候选，调用方需再按汉明距离过滤）
+     * <p>
+     * 依赖表上的simhash_b0..b3生成列及其索引
+     * </p>
+     *
+     * @param userId 用户ID
+     * @param excludeFileRecordId 排除的文件记录ID（当前文档）
+     * @param simhashes SimHash指纹
+     * @param limit 最多返回的候选数
+     * @return 映射记录
+     */
+    List<DocumentMilvusMapping> findCanonicalBySimhashBands(Long userId, Long excludeFileRecordId,
+                                                            Collection<Long> simhashes, int limit);
+
+    /**
+     * 查找引用指定向量的未删除映射
+     *
+     * @param milvusIds 被引用的向量ID
+     * @return 按文件记录ID、向量索引排序的映射记录
+     */
+    List<DocumentMilvusMapping> findReferences(Collection<String> milvusIds);
+}
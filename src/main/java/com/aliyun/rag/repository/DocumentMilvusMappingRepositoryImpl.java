@@ -0,0 +1,170 @@
+package com.aliyun.rag.repository;
+
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.util.ChunkFingerprint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文档与Milvus向量ID映射自定义Repository实现
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class DocumentMilvusMappingRepositoryImpl implements DocumentMilvusMappingRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO document_milvus_mapping "
+            + "(file_record_id, user_id, milvus_id, vector_index, content_hash, simhash, ref_milvus_id, "
+            + "gmt_create, gmt_modified, is_deleted) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL = "UPDATE document_milvus_mapping "
+            + "SET milvus_id = ?, vector_index = ?, content_hash = ?, simhash = ?, ref_milvus_id = ?, "
+            + "gmt_modified = ?, is_deleted = ? WHERE id = ?";
+
+    private static final String SELECT_COLUMNS = "SELECT id, file_record_id, user_id, milvus_id, vector_index, "
+            + "content_hash, simhash, ref_milvus_id, gmt_create, gmt_modified, is_deleted FROM document_milvus_mapping ";
+
+    // 只有自己持有向量的映射才能被引用
+    private static final String CANONICAL_CONDITION = "WHERE user_id = ? AND file_record_id <> ? "
+            + "AND is_deleted = 0 AND ref_milvus_id IS NULL ";
+
+    private static final RowMapper<DocumentMilvusMapping> ROW_MAPPER = (rs, rowNum) -> {
+        DocumentMilvusMapping mapping = new DocumentMilvusMapping();
+        mapping.setId(rs.getLong("id"));
+        mapping.setFileRecordId(rs.getLong("file_record_id"));
+        mapping.setUserId(rs.getLong("user_id"));
+        mapping.setMilvusId(rs.getString("milvus_id"));
+        mapping.setVectorIndex(rs.getInt("vector_index"));
+        mapping.setContentHash(rs.getString("content_hash"));
+        mapping.setSimhash(rs.getObject("simhash", Long.class));
+        mapping.setRefMilvusId(rs.getString("ref_milvus_id"));
+        mapping.setGmtCreate(rs.getTimestamp("gmt_create").toLocalDateTime());
+        mapping.setGmtModified(rs.getTimestamp("gmt_modified").toLocalDateTime());
+        mapping.setIsDeleted(rs.getInt("is_deleted"));
+        return mapping;
+    };
+
+    private static final String PURGE_SQL = "DELETE FROM document_milvus_mapping WHERE file_record_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentMilvusMappingRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int insertBatch(List<DocumentMilvusMapping> mappings, int batchSize) {
+        if (mappings == null || mappings.isEmpty()) {
+            return 0;
+        }
+        int[][] results = jdbcTemplate.batchUpdate(INSERT_SQL, mappings, Math.max(1, batchSize), (ps, mapping) -> {
+            ps.setLong(1, mapping.getFileRecordId());
+            ps.setLong(2, mapping.getUserId());
+            ps.setString(3, mapping.getMilvusId());
+            ps.setInt(4, mapping.getVectorIndex());
+            ps.setString(5, mapping.getContentHash());
+            ps.setObject(6, mapping.getSimhash(), Types.BIGINT);
+            ps.setString(7, mapping.getRefMilvusId());
+            ps.setTimestamp(8, Timestamp.valueOf(mapping.getGmtCreate()));
+            ps.setTimestamp(9, Timestamp.valueOf(mapping.getGmtModified()));
+            ps.setInt(10, mapping.getIsDeleted());
+        });
+        return countRows(results);
+    }
+
+    @Override
+    public int updateBatch(List<DocumentMilvusMapping> mappings, int batchSize) {
+        if (mappings == null || mappings.isEmpty()) {
+            return 0;
+        }
+        int[][] results = jdbcTemplate.batchUpdate(UPDATE_SQL, mappings, Math.max(1, batchSize), (ps, mapping) -> {
+            ps.setString(1, mapping.getMilvusId());
+            ps.setInt(2, mapping.getVectorIndex());
+            ps.setString(3, mapping.getContentHash());
+            ps.setObject(4, mapping.getSimhash(), Types.BIGINT);
+            ps.setString(5, mapping.getRefMilvusId());
+            ps.setTimestamp(6, Timestamp.valueOf(mapping.getGmtModified()));
+            ps.setInt(7, mapping.getIsDeleted());
+            ps.setLong(8, mapping.getId());
+        });
+        return countRows(results);
+    }
+
+    @Override
+    public List<DocumentMilvusMapping> findCanonicalByContentHashes(Long userId, Long excludeFileRecordId,
+                                                                    Collection<String> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>(contentHashes.size() + 2);
+        args.add(userId);
+        args.add(excludeFileRecordId);
+        args.addAll(contentHashes);
+        return jdbcTemplate.query(SELECT_COLUMNS + CANONICAL_CONDITION + "AND content_hash IN ("
+                + placeholders(contentHashes.size()) + ")", ROW_MAPPER, args.toArray());
+    }
+
+    @Override
+    public List<DocumentMilvusMapping> findCanonicalBySimhashBands(Long userId, Long excludeFileRecordId,
+                                                                   Collection<Long> simhashes, int limit) {
+        if (simhashes.isEmpty()) {
+            return List.of();
+        }
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append(CANONICAL_CONDITION).append("AND simhash IS NOT NULL AND (");
+        List<Object> args = new ArrayList<>(simhashes.size() * ChunkFingerprint.BANDS + 3);
+        args.add(userId);
+        args.add(excludeFileRecordId);
+        for (int band = 0; band < ChunkFingerprint.BANDS; band++) {
+            Set<Integer> values = new LinkedHashSet<>();
+            for (Long simhash : simhashes) {
+                values.add(ChunkFingerprint.band(simhash, band));
+            }
+            if (band > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("simhash_b").append(band).append(" IN (").append(placeholders(values.size())).append(')');
+            args.addAll(values);
+        }
+        sql.append(") LIMIT ?");
+        args.add(Math.max(1, limit));
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+
+    @Override
+    public List<DocumentMilvusMapping> findReferences(Collection<String> milvusIds) {
+        if (milvusIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE is_deleted = 0 AND ref_milvus_id IN ("
+                + placeholders(milvusIds.size()) + ") ORDER BY file_record_id, vector_index", ROW_MAPPER, milvusIds.toArray());
+    }
+
+    @Override
+    public int purgeByFileRecordId(Long fileRecordId) {
+        return jdbcTemplate.update(PURGE_SQL, fileRecordId);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private int countRows(int[][] results) {
+        int rows = 0;
+        for (int[] batch : results) {
+            for (int count : batch) {
+                // MySQL开启rewriteBatchedStatements后返回SUCCESS_NO_INFO(-2)
+                rows += count >= 0 ? count : 1;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,27 @@
+package com.aliyun.rag.repository;
+
+import com.aliyun.rag.model.IngestionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 文档入库任务Repository
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long>, IngestionJobRepositoryCustom {
+
+    /**
+     * 查找用户的入库任务
+     *
+     * @param id 任务ID
+     * @param userId 用户ID
+     * @param isDeleted 是否删除
+     * @return 入库任务
+     */
+    Optional<IngestionJob> findByIdAndUserIdAndIsDeleted(Long id, Long userId, Integer isDeleted);
+}
@@ -0,0 +1,125 @@
+package com.aliyun.rag.repository;
+
+import com.aliyun.rag.model.IngestionJob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文档入库任务的自定义Repository
+ * <p>
+ * 任务领取和执行中的状态更新都是带租约条件的单条UPDATE，
+ * 只有当前持有租约的工作节点能写入，多节点部署时同一任务不会被重复执行
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public interface IngestionJobRepositoryCustom {
+
+    /**
+     * 领取待执行的任务：排队中或租约已过期的未完成任务
+     *
+     * @param owner 工作节点标识
+     * @param leaseUntil 租约到期时间
+     * @param limit 最多领取数量
+     * @return 成功领取的任务ID
+     */
+    List<Long> claimJobs(String owner, LocalDateTime leaseUntil, int limit);
+
+    /**
+     * 从主库读取当前节点持有的任务
+     * <p>
+     * 方法名不走读库路由，避免刚提交或刚更新的任务因主从延迟读到旧状态
+     * </p>
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @return 任务，租约已不属于该节点时为null
+     */
+    IngestionJob loadClaimedJob(Long jobId, String owner);
+
+    /**
+     * 续租
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @param leaseUntil 新的租约到期时间
+     * @return 更新行数，0表示租约已丢失
+     */
+    int renewLease(Long jobId, String owner, LocalDateTime leaseUntil);
+
+    /**
+     * 更新任务阶段和进度
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @param status 阶段
+     * @param chunksProcessed 已写入分块数
+     * @param batchesCompleted 已完成批次数
+     * @return 更新行数
+     */
+    int updateJobProgress(Long jobId, String owner, IngestionJob.Status status, int chunksProcessed, int batchesCompleted);
+
+    /**
+     * 记录任务已上传的文件地址和文件记录ID
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @param fileUrl 文件地址
+     * @param fileRecordId 文件记录ID
+     * @return 更新行数
+     */
+    int updateJobFile(Long jobId, String owner, String fileUrl, Long fileRecordId);
+
+    /**
+     * 结束任务并释放租约
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @param status 终态（DONE或FAILED）
+     * @param chunksProcessed 已写入分块数
+     * @param errorMessage 失败原因
+     * @return 更新行数
+     */
+    int completeJob(Long jobId, String owner, IngestionJob.Status status, int chunksProcessed, String errorMessage);
+
+    /**
+     * 任务失败后重新排队，到retryAt之后才能再次被领取
+     *
+     * @param jobId 任务ID
+     * @param owner 工作节点标识
+     * @param retryAt 最早重试时间
+     * @param errorMessage 本次失败原因
+     * @return 更新行数
+     */
+    int requeueJob(Long jobId, String owner, LocalDateTime retryAt, String errorMessage);
+
+    /**
+     * 记录批次检查点
+     *
+     * @param jobId 任务ID
+     * @param batchIndex 批次序号
+     * @param firstChunkIndex 批次第一个分块的序号
+     * @param chunkCount 批次分块数
+     * @return 插入行数（检查点已存在时为0）
+     */
+    int insertBatchCheckpoint(Long jobId, int batchIndex, int firstChunkIndex, int chunkCount);
+
+    /**
+     * 查询已完成的批次
+     *
+     * @param jobId 任务ID
+     * @return 已完成的批次序号
+     */
+    Set<Integer> listCompletedBatches(Long jobId);
+
+    /**
+     * 删除任务的全部批次检查点
+     *
+     * @param jobId 任务ID
+     * @return 删除行数
+     */
+    int deleteBatchCheckpoints(Long jobId);
+}
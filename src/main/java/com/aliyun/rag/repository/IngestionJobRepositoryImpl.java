@@ -0,0 +1,176 @@
+package com.aliyun.rag.repository;
+
+import com.aliyun.rag.model.IngestionJob;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文档入库任务自定义Repository实现
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class IngestionJobRepositoryImpl implements IngestionJobRepositoryCustom {
+
+    /**
+     * 未结束的任务状态
+     */
+    private static final String ACTIVE_STATUSES = "('QUEUED', 'PARSING', 'EMBEDDING', 'INDEXING')";
+
+    private static final String SELECT_CLAIMABLE_SQL = "SELECT id FROM ingestion_job "
+            + "WHERE is_deleted = 0 AND status IN " + ACTIVE_STATUSES
+            + " AND (lease_expires_at IS NULL OR lease_expires_at < ?) ORDER BY id LIMIT ?";
+
+    private static final String CLAIM_SQL = "UPDATE ingestion_job "
+            + "SET lease_owner = ?, lease_expires_at = ?, attempts = attempts + 1, gmt_modified = ? "
+            + "WHERE id = ? AND is_deleted = 0 AND status IN " + ACTIVE_STATUSES
+            + " AND (lease_expires_at IS NULL OR lease_expires_at < ?)";
+
+    private static final String LOAD_CLAIMED_SQL = "SELECT * FROM ingestion_job "
+            + "WHERE id = ? AND lease_owner = ? AND is_deleted = 0";
+
+    private static final String RENEW_SQL = "UPDATE ingestion_job SET lease_expires_at = ? "
+            + "WHERE id = ? AND lease_owner = ?";
+
+    private static final String PROGRESS_SQL = "UPDATE ingestion_job "
+            + "SET status = ?, chunks_processed = ?, batches_completed = ?, gmt_modified = ? "
+            + "WHERE id = ? AND lease_owner = ?";
+
+    private static final String FILE_SQL = "UPDATE ingestion_job SET file_url = ?, file_record_id = ?, gmt_modified = ? "
+            + "WHERE id = ? AND lease_owner = ?";
+
+    private static final String COMPLETE_SQL = "UPDATE ingestion_job "
+            + "SET status = ?, chunks_processed = ?, error_message = ?, lease_owner = NULL, lease_expires_at = NULL, "
+            + "gmt_modified = ? WHERE id = ? AND lease_owner = ?";
+
+    private static final String REQUEUE_SQL = "UPDATE ingestion_job "
+            + "SET status = 'QUEUED', chunks_processed = 0, batches_completed = 0, error_message = ?, "
+            + "lease_owner = NULL, lease_expires_at = ?, gmt_modified = ? WHERE id = ? AND lease_owner = ?";
+
+    private static final String INSERT_BATCH_SQL = "INSERT IGNORE INTO ingestion_job_batch "
+            + "(job_id, batch_index, first_chunk_index, chunk_count, gmt_create) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String LIST_BATCHES_SQL = "SELECT batch_index FROM ingestion_job_batch WHERE job_id = ?";
+
+    private static final String DELETE_BATCHES_SQL = "DELETE FROM ingestion_job_batch WHERE job_id = ?";
+
+    private static final RowMapper<IngestionJob> JOB_ROW_MAPPER = (rs, rowNum) -> {
+        IngestionJob job = new IngestionJob();
+        job.setId(rs.getLong("id"));
+        job.setUserId(rs.getLong("user_id"));
+        job.setUsername(rs.getString("username"));
+        job.setFileName(rs.getString("file_name"));
+        job.setContentType(rs.getString("content_type"));
+        job.setFileSize(rs.getLong("file_size"));
+        job.setTitle(rs.getString("title"));
+        job.setDescription(rs.getString("description"));
+        job.setTags(rs.getString("tags"));
+        job.setStagedPath(rs.getString("staged_path"));
+        job.setFileUrl(rs.getString("file_url"));
+        long fileRecordId = rs.getLong("file_record_id");
+        job.setFileRecordId(rs.wasNull() ? null : fileRecordId);
+        job.setStatus(IngestionJob.Status.valueOf(rs.getString("status")));
+        job.setBatchChunks(rs.getInt("batch_chunks"));
+        job.setChunksProcessed(rs.getInt("chunks_processed"));
+        job.setBatchesCompleted(rs.getInt("batches_completed"));
+        job.setAttempts(rs.getInt("attempts"));
+        job.setLeaseOwner(rs.getString("lease_owner"));
+        job.setLeaseExpiresAt(toLocalDateTime(rs.getTimestamp("lease_expires_at")));
+        job.setErrorMessage(rs.getString("error_message"));
+        job.setGmtCreate(toLocalDateTime(rs.getTimestamp("gmt_create")));
+        job.setGmtModified(toLocalDateTime(rs.getTimestamp("gmt_modified")));
+        job.setIsDeleted(rs.getInt("is_deleted"));
+        return job;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IngestionJobRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Long> claimJobs(String owner, LocalDateTime leaseUntil, int limit) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> candidates = jdbcTemplate.queryForList(SELECT_CLAIMABLE_SQL, Long.class, now, limit);
+        List<Long> claimed = new ArrayList<>(candidates.size());
+        for (Long jobId : candidates) {
+            // 条件更新保证只有一个节点能抢到同一任务
+            if (jdbcTemplate.update(CLAIM_SQL, owner, Timestamp.valueOf(leaseUntil), now, jobId, now) == 1) {
+                claimed.add(jobId);
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public IngestionJob loadClaimedJob(Long jobId, String owner) {
+        List<IngestionJob> jobs = jdbcTemplate.query(LOAD_CLAIMED_SQL, JOB_ROW_MAPPER, jobId, owner);
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    @Override
+    public int renewLease(Long jobId, String owner, LocalDateTime leaseUntil) {
+        return jdbcTemplate.update(RENEW_SQL, Timestamp.valueOf(leaseUntil), jobId, owner);
+    }
+
+    @Override
+    public int updateJobProgress(Long jobId, String owner, IngestionJob.Status status, int chunksProcessed, int batchesCompleted) {
+        return jdbcTemplate.update(PROGRESS_SQL, status.name(), chunksProcessed, batchesCompleted,
+                Timestamp.valueOf(LocalDateTime.now()), jobId, owner);
+    }
+
+    @Override
+    public int updateJobFile(Long jobId, String owner, String fileUrl, Long fileRecordId) {
+        return jdbcTemplate.update(FILE_SQL, fileUrl, fileRecordId, Timestamp.valueOf(LocalDateTime.now()), jobId, owner);
+    }
+
+    @Override
+    public int completeJob(Long jobId, String owner, IngestionJob.Status status, int chunksProcessed, String errorMessage) {
+        return jdbcTemplate.update(COMPLETE_SQL, status.name(), chunksProcessed, truncate(errorMessage),
+                Timestamp.valueOf(LocalDateTime.now()), jobId, owner);
+    }
+
+    @Override
+    public int requeueJob(Long jobId, String owner, LocalDateTime retryAt, String errorMessage) {
+        return jdbcTemplate.update(REQUEUE_SQL, truncate(errorMessage), Timestamp.valueOf(retryAt),
+                Timestamp.valueOf(LocalDateTime.now()), jobId, owner);
+    }
+
+    @Override
+    public int insertBatchCheckpoint(Long jobId, int batchIndex, int firstChunkIndex, int chunkCount) {
+        return jdbcTemplate.update(INSERT_BATCH_SQL, jobId, batchIndex, firstChunkIndex, chunkCount,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    @Override
+    public Set<Integer> listCompletedBatches(Long jobId) {
+        return new HashSet<>(jdbcTemplate.queryForList(LIST_BATCHES_SQL, Integer.class, jobId));
+    }
+
+    @Override
+    public int deleteBatchCheckpoints(Long jobId) {
+        return jdbcTemplate.update(DELETE_BATCHES_SQL, jobId);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * 失败原因截断到error_message列宽
+     */
+    private static String truncate(String message) {
+        if (message == null || message.length() <= 1000) {
+            return message;
+        }
+        return message.substring(0, 1000);
+    }
+}
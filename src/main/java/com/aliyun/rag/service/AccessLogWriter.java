@@ -0,0 +1,402 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.AccessLogProperties;
+import com.aliyun.rag.config.TracingConfig;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志输出
+ * <p>
+ * 请求线程通过CAS在预分配的环形缓冲区中领取一个槽位，只复制请求中的原始字段后发布，不加锁、不序列化、不分配日志对象；
+ * 单个后台线程按顺序取出事件，在复用的缓冲区中拼装JSON后写入ACCESS_LOG。
+ * 缓冲区满时直接丢弃事件并计数，请求线程永不阻塞。客户端IP解析、请求头脱敏等计算都在后台线程完成。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+public class AccessLogWriter {
+
+    private static final Logger accessLog = LoggerFactory.getLogger("ACCESS_LOG");
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 复用缓冲区超过该容量时重新分配，避免偶发超长请求长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final AccessLogProperties properties;
+    private final MetricsService metricsService;
+
+    private final Event[] slots;
+    /**
+     * 槽位序号：等于领取位置时可写入，等于领取位置+1时已发布可读取
+     */
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    /**
+     * 以下字段只由后台线程访问
+     */
+    private long head;
+    private StringBuilder buffer = new StringBuilder(1024);
+
+    public AccessLogWriter(AccessLogProperties properties, MetricsService metricsService) {
+        this.properties = properties;
+        this.metricsService = metricsService;
+
+        int capacity = Integer.highestOneBit(Math.max(2, properties.getBufferSize()) - 1) << 1;
+        this.slots = new Event[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Event();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+
+        this.writerThread = new Thread(this::runLoop, "access-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 发布一条访问事件，缓冲区满时丢弃
+     *
+     * @param request 请求
+     * @param response 响应
+     * @param executionTimeMs 执行时间（毫秒）
+     * @param ex 处理过程中的异常，可为null
+     * @return 是否已写入缓冲区
+     */
+    public boolean publish(HttpServletRequest request, HttpServletResponse response, long executionTimeMs, Exception ex) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        long sequence = claim();
+        if (sequence < 0) {
+            metricsService.recordAccessLogDropped();
+            return false;
+        }
+        Event event = slots[(int) (sequence & mask)];
+        try {
+            event.capture(request, response, executionTimeMs, ex, properties.isIncludeHeaders());
+        } finally {
+            // 领取的槽位必须发布，否则后台线程会停在这个位置
+            sequences.lazySet((int) (sequence & mask), sequence + 1);
+        }
+        return true;
+    }
+
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            long available = sequences.get((int) (position & mask));
+            if (available == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (available < position) {
+                // 槽位仍未被后台线程取走，缓冲区已满
+                return -1;
+            }
+            position = tail.get();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getIdleWaitMs()));
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, idleNanos);
+            }
+        }
+        drain();
+    }
+
+    private int drain() {
+        int written = 0;
+        while (true) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Event event = slots[index];
+            try {
+                write(event);
+            } catch (Exception e) {
+                log.warn("输出访问日志失败: {}", e.getMessage());
+            }
+            event.clear();
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            written++;
+        }
+        if (written > 0) {
+            TracingConfig.clearTraceId();
+        }
+        return written;
+    }
+
+    private void write(Event event) {
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffer = new StringBuilder(1024);
+        }
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+
+        sb.append("{\"timestamp\":\"");
+        FORMATTER.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestampMillis), ZONE), sb);
+        sb.append('"');
+        appendField(sb, "traceId", event.traceId);
+        appendField(sb, "method", event.method);
+        sb.append(",\"url\":\"");
+        appendUrl(sb, event);
+        sb.append('"');
+        appendField(sb, "uri", event.uri);
+        appendField(sb, "queryString", event.queryString);
+        appendField(sb, "protocol", event.protocol);
+        appendField(sb, "remoteAddr", resolveClientIp(event));
+        appendField(sb, "userAgent", event.userAgent);
+        appendField(sb, "referer", event.referer);
+        sb.append(",\"status\":").append(event.status);
+        sb.append(",\"executionTimeMs\":").append(event.executionTimeMs);
+        appendField(sb, "exception", event.exceptionType != null ? event.exceptionType.getSimpleName() : null);
+        appendField(sb, "exceptionMessage", event.exceptionMessage);
+        if (event.headerCount >= 0) {
+            sb.append(",\"headers\":{");
+            for (int i = 0; i < event.headerCount; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                String name = event.headerNames[i];
+                appendString(sb, name);
+                sb.append(':');
+                appendString(sb, isSensitiveHeader(name) ? "***" : event.headerValues[i]);
+            }
+            sb.append('}');
+        } else {
+            sb.append(",\"headers\":null");
+        }
+        sb.append('}');
+
+        // ACCESS输出格式中的traceId取自MDC
+        if (event.traceId != null) {
+            TracingConfig.setTraceId(event.traceId);
+        } else {
+            TracingConfig.clearTraceId();
+        }
+        accessLog.info(sb.toString());
+    }
+
+    private void appendUrl(StringBuilder sb, Event event) {
+        appendEscaped(sb, event.scheme);
+        sb.append("://");
+        appendEscaped(sb, event.serverName);
+        int port = event.serverPort;
+        if (port > 0 && !(("http".equals(event.scheme) && port == 80) || ("https".equals(event.scheme) && port == 443))) {
+            sb.append(':').append(port);
+        }
+        appendEscaped(sb, event.uri);
+    }
+
+    /**
+     * 获取客户端真实IP地址
+     */
+    private String resolveClientIp(Event event) {
+        String forwardedFor = event.forwardedFor;
+        if (forwardedFor != null && !forwardedFor.isEmpty() && !"unknown".equalsIgnoreCase(forwardedFor)) {
+            int comma = forwardedFor.indexOf(',');
+            return (comma >= 0 ? forwardedFor.substring(0, comma) : forwardedFor).trim();
+        }
+        String realIp = event.realIp;
+        if (realIp != null && !realIp.isEmpty() && !"unknown".equalsIgnoreCase(realIp)) {
+            return realIp;
+        }
+        return event.remoteAddr;
+    }
+
+    /**
+     * 判断是否为敏感请求头
+     */
+    private boolean isSensitiveHeader(String headerName) {
+        String lowerCase = headerName.toLowerCase(Locale.ROOT);
+        return lowerCase.contains("authorization") ||
+               lowerCase.contains("cookie") ||
+               lowerCase.contains("token") ||
+               lowerCase.contains("password") ||
+               lowerCase.contains("secret");
+    }
+
+    private static void appendField(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":");
+        appendString(sb, value);
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        appendEscaped(sb, value);
+        sb.append('"');
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 预分配的访问事件槽位，领取后由请求线程写入、发布后由后台线程读取
+     */
+    private static final class Event {
+        private long timestampMillis;
+        private String traceId;
+        private String method;
+        private String scheme;
+        private String serverName;
+        private int serverPort;
+        private String uri;
+        private String queryString;
+        private String protocol;
+        private String remoteAddr;
+        private String forwardedFor;
+        private String realIp;
+        private String userAgent;
+        private String referer;
+        private int status;
+        private long executionTimeMs;
+        private Class<?> exceptionType;
+        private String exceptionMessage;
+        private String[] headerNames = new String[16];
+        private String[] headerValues = new String[16];
+        /**
+         * 请求头数量，-1表示未记录请求头
+         */
+        private int headerCount = -1;
+
+        void capture(HttpServletRequest request, HttpServletResponse response, long executionTimeMs,
+                     Exception ex, boolean includeHeaders) {
+            this.timestampMillis = System.currentTimeMillis();
+            this.traceId = TracingConfig.getCurrentTraceId();
+            this.method = request.getMethod();
+            this.scheme = request.getScheme();
+            this.serverName = request.getServerName();
+            this.serverPort = request.getServerPort();
+            this.uri = request.getRequestURI();
+            this.queryString = request.getQueryString();
+            this.protocol = request.getProtocol();
+            this.remoteAddr = request.getRemoteAddr();
+            this.forwardedFor = request.getHeader("X-Forwarded-For");
+            this.realIp = request.getHeader("X-Real-IP");
+            this.userAgent = request.getHeader("User-Agent");
+            this.referer = request.getHeader("Referer");
+            this.status = response.getStatus();
+            this.executionTimeMs = executionTimeMs;
+            if (ex != null) {
+                this.exceptionType = ex.getClass();
+                this.exceptionMessage = ex.getMessage();
+            }
+            if (includeHeaders) {
+                captureHeaders(request);
+            }
+        }
+
+        private void captureHeaders(HttpServletRequest request) {
+            int count = 0;
+            Enumeration<String> names = request.getHeaderNames();
+            while (names != null && names.hasMoreElements()) {
+                String name = names.nextElement();
+                if (count == headerNames.length) {
+                    headerNames = Arrays.copyOf(headerNames, count * 2);
+                    headerValues = Arrays.copyOf(headerValues, count * 2);
+                }
+                headerNames[count] = name;
+                headerValues[count] = request.getHeader(name);
+                count++;
+            }
+            headerCount = count;
+        }
+
+        /**
+         * 释放对请求数据的引用
+         */
+        void clear() {
+            traceId = null;
+            method = null;
+            scheme = null;
+            serverName = null;
+            uri = null;
+            queryString = null;
+            protocol = null;
+            remoteAddr = null;
+            forwardedFor = null;
+            realIp = null;
+            userAgent = null;
+            referer = null;
+            exceptionType = null;
+            exceptionMessage = null;
+            if (headerCount > 0) {
+                Arrays.fill(headerNames, 0, headerCount, null);
+                Arrays.fill(headerValues, 0, headerCount, null);
+            }
+            headerCount = -1;
+        }
+    }
+}
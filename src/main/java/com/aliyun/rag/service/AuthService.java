@@ -2,6 +2,7 @@ package com.aliyun.rag.service;
 
 import com.aliyun.rag.exception.BusinessException;
 import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.VerifiedToken;
 import com.aliyun.rag.model.LoginRequest;
 import com.aliyun.rag.model.RegisterRequest;
 import com.aliyun.rag.model.AuthResponse;
@@ -39,14 +40,17 @@ public class AuthService {
     private final BCryptPasswordEncoder passwordEncoder;
     private final RedisTemplate<String, Object> redisTemplate;
     private final JwtTokenService jwtTokenService;
+    private final PrincipalCache principalCache;
 
     public AuthService(UserRepository userRepository, 
                       RedisTemplate<String, Object> redisTemplate,
-                      JwtTokenService jwtTokenService) {
+                      JwtTokenService jwtTokenService,
+                      PrincipalCache principalCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = new BCryptPasswordEncoder();
         this.redisTemplate = redisTemplate;
         this.jwtTokenService = jwtTokenService;
+        this.principalCache = principalCache;
     }
 
     /**
@@ -137,18 +141,13 @@ public class AuthService {
     public User validateToken(String token) {
         try {
             // 验证JWT Token有效性
-            if (!jwtTokenService.validateToken(token)) {
-                return null;
-            }
-
-            // 从令牌中获取用户ID
-            Long userId = jwtTokenService.getUserIdFromToken(token);
-            if (userId == null) {
+            VerifiedToken verifiedToken = jwtTokenService.verify(token);
+            if (verifiedToken == null || verifiedToken.getUserId() == null) {
                 return null;
             }
 
             // 根据用户ID查找用户
-            return getUserById(userId);
+            return getAuthenticatedUser(verifiedToken.getUserId());
         } catch (Exception e) {
             log.error("验证Token失败: {}", e.getMessage());
             return null;
@@ -163,6 +162,16 @@ public class AuthService {
         return optionalUser.orElse(null);
     }
 
+    /**
+     * 获取已认证用户信息，优先读取认证用户缓存
+     *
+     * @param userId 用户ID
+     * @return 用户信息，不存在时返回null
+     */
+    public User getAuthenticatedUser(Long userId) {
+        return principalCache.get(userId, this::getUserById);
+    }
+
     /**
      * 用户登出
      */
@@ -262,6 +271,7 @@ public class AuthService {
             user.setPassword(passwordEncoder.encode(newPassword));
             user.setGmtModified(LocalDateTime.now());
             userRepository.save(user);
+            principalCache.invalidate(user.getId());
             
             return AuthResponse.success(null, null, "密码修改成功");
             
@@ -280,18 +290,18 @@ public class AuthService {
     public AuthResponse refreshToken(String refreshToken) {
         try {
             // 验证刷新令牌有效性
-            if (!jwtTokenService.validateToken(refreshToken)) {
+            VerifiedToken verifiedToken = jwtTokenService.verify(refreshToken);
+            if (verifiedToken == null) {
                 return AuthResponse.failure(ErrorCode.TOKEN_INVALID, "无效的刷新令牌");
             }
             
             // 检查Token类型是否为REFRESH
-            String tokenType = jwtTokenService.getTokenType(refreshToken);
-            if (!"REFRESH".equals(tokenType)) {
+            if (!verifiedToken.isRefreshToken()) {
                 return AuthResponse.failure(ErrorCode.TOKEN_INVALID, "令牌类型不正确");
             }
             
             // 从令牌中获取用户ID
-            Long userId = jwtTokenService.getUserIdFromToken(refreshToken);
+            Long userId = verifiedToken.getUserId();
             if (userId == null) {
                 return AuthResponse.failure(ErrorCode.TOKEN_INVALID, "无法获取用户信息");
             }
@@ -0,0 +1,246 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.DedupProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.util.ChunkFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 重复分块检测服务
+ * <p>
+ * 入库时在分块和嵌入之间比对分块指纹：先与同一文档已产生的分块比对（内存），
+ * 再按批次查询用户知识库中其他文档持有向量的分块（数据库）。精确重复按SHA-256判定，
+ * 近似重复按SimHash汉明距离判定。重复分块不再嵌入，映射记录引用已有向量的ID。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class ChunkDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkDeduplicator.class);
+
+    private final DedupProperties properties;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+
+    public ChunkDeduplicator(DedupProperties properties, DocumentMilvusMappingRepository documentMilvusMappingRepository) {
+        this.properties = properties;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+    }
+
+    /**
+     * 为一个文档的入库打开比对会话
+     *
+     * @param userId 用户ID
+     * @param fileRecordId 文件记录ID
+     * @return 会话，只在解析线程上使用
+     */
+    public Session open(Long userId, Long fileRecordId) {
+        return new Session(userId, fileRecordId);
+    }
+
+    /**
+     * 计算分块的SimHash，过短时为null
+     */
+    public Long simHash(String chunk) {
+        return ChunkFingerprint.simHash(chunk, properties.getMinChars());
+    }
+
+    private int maxDistance() {
+        return Math.max(0, Math.min(properties.getMaxDistance(), ChunkFingerprint.BANDS - 1));
+    }
+
+    /**
+     * 单个文档的比对会话
+     */
+    public final class Session {
+
+        private final Long userId;
+        private final Long fileRecordId;
+
+        // 本文档已持有或已引用向量的分块：摘要 → 向量ID
+        private final Map<String, String> exact = new HashMap<>();
+        // 本文档分块的SimHash分段索引：段序号和段值 → 指纹及向量ID
+        private final Map<Integer, List<Candidate>> bands = new HashMap<>();
+
+        private int withinDocument = 0;
+        private int crossDocument = 0;
+        private int nearDuplicates = 0;
+
+        Session(Long userId, Long fileRecordId) {
+            this.userId = userId;
+            this.fileRecordId = fileRecordId;
+        }
+
+        /**
+         * 登记一个持有向量的分块，供后续分块引用
+         */
+        public void register(String contentHash, Long simhash, String vectorId) {
+            exact.putIfAbsent(contentHash, vectorId);
+            if (simhash != null && maxDistance() > 0) {
+                Candidate candidate = new Candidate(simhash, vectorId);
+                for (int band = 0; band < ChunkFingerprint.BANDS; band++) {
+                    bands.computeIfAbsent(bandKey(simhash, band), k -> new ArrayList<>(1)).add(candidate);
+                }
+            }
+        }
+
+        /**
+         * 比对一批连续的分块
+         * <p>
+         * 不重复的分块以自己的向量ID登记到会话，同一批中后面的分块也可以引用它
+         * </p>
+         *
+         * @param contentHashes 分块内容摘要
+         * @param simhashes 分块SimHash，元素可为null
+         * @param vectorIds 分块自己的向量ID
+         * @param written 已写入向量库的向量ID（恢复中断的入库时），这些分块保持不重复
+         * @return 每个分块引用的向量ID，null表示需要嵌入
+         */
+        public String[] resolve(List<String> contentHashes, List<Long> simhashes, String[] vectorIds,
+                                Set<String> written) {
+            String[] refs = new String[vectorIds.length];
+            if (!properties.isEnabled()) {
+                return refs;
+            }
+            CrossCandidates cross = properties.isCrossDocument()
+                    ? findCrossCandidates(contentHashes, simhashes, written, vectorIds)
+                    : new CrossCandidates(Map.of(), List.of());
+
+            for (int i = 0; i < vectorIds.length; i++) {
+                String hash = contentHashes.get(i);
+                Long simhash = simhashes.get(i);
+                String ref = null;
+                if (!written.contains(vectorIds[i])) {
+                    ref = exact.get(hash);
+                    if (ref != null) {
+                        withinDocument++;
+                    } else if ((ref = cross.exact.get(hash)) != null) {
+                        crossDocument++;
+                    } else if (simhash != null && (ref = nearest(simhash, withinCandidates(simhash))) != null) {
+                        withinDocument++;
+                        nearDuplicates++;
+                    } else if (simhash != null && (ref = nearest(simhash, cross.near)) != null) {
+                        crossDocument++;
+                        nearDuplicates++;
+                    }
+                }
+                refs[i] = ref;
+                register(hash, simhash, ref != null ? ref : vectorIds[i]);
+            }
+            return refs;
+        }
+
+        /**
+         * 本文档内消除的重复分块数
+         */
+        public int getWithinDocument() {
+            return withinDocument;
+        }
+
+        /**
+         * 与其他文档重复而消除的分块数
+         */
+        public int getCrossDocument() {
+            return crossDocument;
+        }
+
+        /**
+         * 其中按近似指纹判定的分块数
+         */
+        public int getNearDuplicates() {
+            return nearDuplicates;
+        }
+
+        public int getDuplicates() {
+            return withinDocument + crossDocument;
+        }
+
+        private CrossCandidates findCrossCandidates(List<String> contentHashes, List<Long> simhashes,
+                                                    Set<String> written, String[] vectorIds) {
+            Set<String> hashes = new LinkedHashSet<>();
+            for (int i = 0; i < vectorIds.length; i++) {
+                if (!written.contains(vectorIds[i]) && !exact.containsKey(contentHashes.get(i))) {
+                    hashes.add(contentHashes.get(i));
+                }
+            }
+            Map<String, String> exactMatches = new HashMap<>();
+            for (DocumentMilvusMapping mapping : documentMilvusMappingRepository
+                    .findCanonicalByContentHashes(userId, fileRecordId, hashes)) {
+                exactMatches.putIfAbsent(mapping.getContentHash(), mapping.getMilvusId());
+            }
+
+            List<Candidate> near = new ArrayList<>();
+            if (maxDistance() > 0) {
+                Set<Long> unmatched = new LinkedHashSet<>();
+                for (int i = 0; i < vectorIds.length; i++) {
+                    Long simhash = simhashes.get(i);
+                    if (simhash != null && hashes.contains(contentHashes.get(i))
+                            && !exactMatches.containsKey(contentHashes.get(i))) {
+                        unmatched.add(simhash);
+                    }
+                }
+                try {
+                    for (DocumentMilvusMapping mapping : documentMilvusMappingRepository.findCanonicalBySimhashBands(
+                            userId, fileRecordId, unmatched, properties.getMaxCandidates())) {
+                        near.add(new Candidate(mapping.getSimhash(), mapping.getMilvusId()));
+                    }
+                } catch (DataAccessException e) {
+                    // 表上缺少simhash分段生成列时（例如由JPA自动建表）退化为只做精确比对
+                    log.warn("用户 {} 近似重复分块查询失败，本批只做精确比对: {}", userId, e.getMessage());
+                }
+            }
+            return new CrossCandidates(exactMatches, near);
+        }
+
+        private List<Candidate> withinCandidates(long simhash) {
+            List<Candidate> candidates = new ArrayList<>();
+            for (int band = 0; band < ChunkFingerprint.BANDS; band++) {
+                List<Candidate> bucket = bands.get(bandKey(simhash, band));
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            return candidates;
+        }
+
+        /**
+         * 汉明距离最小且不超过阈值的候选的向量ID
+         */
+        private String nearest(long simhash, List<Candidate> candidates) {
+            int limit = maxDistance();
+            String best = null;
+            int bestDistance = limit + 1;
+            for (Candidate candidate : candidates) {
+                int distance = ChunkFingerprint.distance(simhash, candidate.simhash());
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = candidate.vectorId();
+                }
+            }
+            return best;
+        }
+
+        private int bandKey(long simhash, int band) {
+            return (band << 16) | ChunkFingerprint.band(simhash, band);
+        }
+    }
+
+    private record Candidate(long simhash, String vectorId) {
+    }
+
+    private record CrossCandidates(Map<String, String> exact, List<Candidate> near) {
+    }
+}
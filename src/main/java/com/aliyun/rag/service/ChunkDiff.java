@@ -0,0 +1,64 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.DocumentMilvusMapping;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档更新时新旧分块的比对
+ * <p>
+ * 原有映射按内容摘要分组，新内容的分块按顺序逐个匹配：同一摘要的原有映射按原位置依次取出，
+ * 重复出现的相同分块也能各自沿用一个原有映射，每个原有映射最多被沿用一次。
+ * 没有内容摘要的原有映射无法匹配，比对结束后与未被取出的映射一起视为已删除的分块。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class ChunkDiff {
+
+    private final Map<String, Deque<DocumentMilvusMapping>> reusable = new HashMap<>();
+    private final List<DocumentMilvusMapping> unmatched = new ArrayList<>();
+
+    /**
+     * @param oldMappings 文档现有的映射，按分块位置升序
+     */
+    ChunkDiff(List<DocumentMilvusMapping> oldMappings) {
+        for (DocumentMilvusMapping mapping : oldMappings) {
+            if (mapping.getContentHash() == null) {
+                unmatched.add(mapping);
+            } else {
+                reusable.computeIfAbsent(mapping.getContentHash(), k -> new ArrayDeque<>()).add(mapping);
+            }
+        }
+    }
+
+    /**
+     * 为新内容中的一个分块取出可沿用的原有映射
+     *
+     * @param contentHash 分块内容摘要
+     * @return 可沿用的原有映射，没有时为null，调用方需为该分块新建映射
+     */
+    DocumentMilvusMapping match(String contentHash) {
+        Deque<DocumentMilvusMapping> candidates = reusable.get(contentHash);
+        return candidates != null ? candidates.poll() : null;
+    }
+
+    /**
+     * 未被新内容匹配的原有映射
+     *
+     * @return 已删除的分块对应的映射
+     */
+    List<DocumentMilvusMapping> remaining() {
+        List<DocumentMilvusMapping> remaining = new ArrayList<>(unmatched);
+        for (Deque<DocumentMilvusMapping> candidates : reusable.values()) {
+            remaining.addAll(candidates);
+        }
+        return remaining;
+    }
+}
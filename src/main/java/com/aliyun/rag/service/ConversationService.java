@@ -213,14 +213,23 @@ public class ConversationService {
             searchRequest.setMaxResults(request.getMaxResults());
             searchRequest.setMinScore(request.getMinScore());
 
-            List<SearchResult> searchResults = ragService.searchKnowledgeBase(searchRequest, user);
-
-            // 5. 生成AI回答（带上下文）
-            String answer = ragService.generateAnswerWithContext(
-                    request.getQuestion(),
-                    searchResults,
-                    contextMessages
-            );
+            SemanticAnswerCache.Lookup lookup = ragService.lookupAnswer(searchRequest, contextMessages, user);
+            List<SearchResult> searchResults;
+            String answer;
+            if (lookup.isHit()) {
+                searchResults = lookup.getSources();
+                answer = lookup.getAnswer();
+            } else {
+                searchResults = ragService.searchKnowledgeBase(searchRequest, user, lookup.getQueryEmbedding());
+
+                // 5. 生成AI回答（带上下文）
+                answer = ragService.generateAnswerWithContext(
+                        request.getQuestion(),
+                        searchResults,
+                        contextMessages
+                );
+                lookup.store(answer, searchResults);
+            }
 
             // 6. 保存AI回答
             ConversationMessage assistantMessage = saveMessage(
@@ -1,13 +1,16 @@
 package com.aliyun.rag.service;
 
 import com.aliyun.rag.model.DocumentInfo;
+import com.aliyun.rag.util.StreamFileProcessor;
+import com.aliyun.rag.util.UploadBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +24,7 @@ import java.util.zip.ZipInputStream;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -43,12 +47,21 @@ public class DocumentProcessor {
     @Autowired
     private IntelligentChunkingService intelligentChunkingService;
 
+    @Autowired
+    private StreamFileProcessor streamFileProcessor;
+
+    @Autowired
+    private ParallelPdfExtractor parallelPdfExtractor;
+
     @Value("${document.chunk.size:1000}")
     private int CHUNK_SIZE;
 
     @Value("${document.chunk.overlap:200}")
     private int CHUNK_OVERLAP;
 
+    // TXT/Markdown每次输出的文本块大小（字符数）
+    private static final int TEXT_BLOCK_CHARS = 8 * 1024;
+
     // EPUB文件名匹配模式，用于识别.epub结尾的文件，不区分大小写
     private static final Pattern EPUB_PATTERN = Pattern.compile(".*\\.epub$", Pattern.CASE_INSENSITIVE);
 
@@ -56,17 +69,35 @@ public class DocumentProcessor {
      * 处理上传的文档
      */
     public String processDocument(MultipartFile file, DocumentInfo documentInfo) {
+        StringBuilder content = new StringBuilder();
+        streamDocument(file, documentInfo, content::append);
+        return content.toString();
+    }
+
+    /**
+     * 流式处理上传的文档
+     * <p>
+     * 按页（PDF）、段落（DOCX）、行块（TXT/Markdown）或章节（EPUB）增量输出文本，
+     * 调用方可以边解析边分块，不必持有整篇文档的文本。PDF每页文本之前回报页码。大文件先落盘再由解析器按需读取，
+     * 临时文件在解析结束后删除
+     * </p>
+     *
+     * @param file 上传的文件
+     * @param documentInfo 文档信息，会填充文件名、类型和大小
+     * @param sink 文本片段消费者，片段按文档顺序输出
+     */
+    public void streamDocument(MultipartFile file, DocumentInfo documentInfo, DocumentTextSink sink) {
         try {
             String fileName = file.getOriginalFilename();
             String fileExtension = getFileExtension(fileName);
 
-            String content = extractContent(file, fileExtension);
-
             documentInfo.setFileName(fileName);
             documentInfo.setFileType(fileExtension.toUpperCase());
             documentInfo.setFileSize(file.getSize());
 
-            return content;
+            try (UploadBuffer buffer = streamFileProcessor.openBuffer(file)) {
+                extractContent(buffer, fileExtension, sink);
+            }
 
         } catch (Exception e) {
             log.error("文档处理失败: {}", e.getMessage(), e);
@@ -77,77 +108,101 @@ public class DocumentProcessor {
     /**
      * 根据文件类型提取内容
      */
-    private String extractContent(MultipartFile file, String fileExtension) throws Exception {
-        return switch (fileExtension.toLowerCase()) {
-            case "pdf" -> extractPdfContent(file);
-            case "docx" -> extractDocxContent(file);
-            case "txt" -> extractTxtContent(file);
-            case "md" -> extractMdContent(file);
-            case "epub" -> extractEpubContent(file);
+    private void extractContent(UploadBuffer file, String fileExtension, DocumentTextSink sink) throws Exception {
+        switch (fileExtension.toLowerCase()) {
+            case "pdf" -> extractPdfContent(file, sink);
+            case "docx" -> extractDocxContent(file, sink);
+            case "txt" -> extractTxtContent(file, sink);
+            case "md" -> extractMdContent(file, sink);
+            case "epub" -> extractEpubContent(file, sink);
             default -> throw new IllegalArgumentException("不支持的文件类型: " + fileExtension);
-        };
+        }
     }
 
     /**
-     * 提取PDF内容
+     * 提取PDF内容，逐页输出
+     * <p>
+     * 磁盘文件通过随机访问读取，解码后的流缓存在临时文件中，不随页数增长占用堆内存；
+     * 页数较多时按页区间并行提取，输出顺序不变
+     * </p>
      */
-    private String extractPdfContent(MultipartFile file) throws Exception {
-        try (PDDocument document = Loader.loadPDF(file.getBytes())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+    private void extractPdfContent(UploadBuffer file, DocumentTextSink sink) throws Exception {
+        parallelPdfExtractor.extract(file, sink);
+    }
+
+    /**
+     * 提取DOCX内容，逐段落/表格输出
+     */
+    private void extractDocxContent(UploadBuffer file, Consumer<String> sink) throws Exception {
+        try (XWPFDocument document = openDocx(file)) {
+            for (IBodyElement element : document.getBodyElements()) {
+                if (element instanceof XWPFParagraph paragraph) {
+                    sink.accept(paragraph.getText() + "\n");
+                } else if (element instanceof XWPFTable table) {
+                    sink.accept(table.getText() + "\n");
+                }
+            }
         }
     }
 
     /**
-     * 提取DOCX内容
+     * 打开DOCX文档：磁盘文件以只读方式按ZIP条目随机读取，避免先把整个压缩包读入内存
      */
-    private String extractDocxContent(MultipartFile file) throws Exception {
-        try (XWPFDocument document = new XWPFDocument(file.getInputStream())) {
-            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-            return extractor.getText();
+    private XWPFDocument openDocx(UploadBuffer file) throws Exception {
+        if (!file.isFileBacked()) {
+            return new XWPFDocument(file.openStream());
+        }
+        OPCPackage pkg = OPCPackage.open(file.getPath().toFile(), PackageAccess.READ);
+        try {
+            return new XWPFDocument(pkg);
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
         }
     }
 
     /**
-     * 提取TXT内容
+     * 提取TXT内容，按行累积成块后输出
      */
-    private String extractTxtContent(MultipartFile file) throws Exception {
-        StringBuilder content = new StringBuilder();
+    private void extractTxtContent(UploadBuffer file, Consumer<String> sink) throws Exception {
+        StringBuilder block = new StringBuilder(TEXT_BLOCK_CHARS + 256);
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(file.openStream(), StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+                block.append(line).append("\n");
+                if (block.length() >= TEXT_BLOCK_CHARS) {
+                    sink.accept(block.toString());
+                    block.setLength(0);
+                }
             }
         }
-        return content.toString();
+        if (!block.isEmpty()) {
+            sink.accept(block.toString());
+        }
     }
 
     /**
      * 提取Markdown内容
      */
-    private String extractMdContent(MultipartFile file) throws Exception {
-        return extractTxtContent(file); // Markdown也是文本格式
+    private void extractMdContent(UploadBuffer file, Consumer<String> sink) throws Exception {
+        extractTxtContent(file, sink); // Markdown也是文本格式
     }
 
     /**
-     * 提取EPUB内容
+     * 提取EPUB内容，逐个章节文件输出
      */
-    private String extractEpubContent(MultipartFile file) throws Exception {
-        StringBuilder content = new StringBuilder();
-
-        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+    private void extractEpubContent(UploadBuffer file, Consumer<String> sink) throws Exception {
+        try (ZipInputStream zip = new ZipInputStream(file.openStream())) {
             ZipEntry entry;
             while ((entry = zip.getNextEntry()) != null) {
                 if (entry.getName().endsWith(".xhtml") || entry.getName().endsWith(".html")) {
                     Document doc = Jsoup.parse(zip, "UTF-8", "");
-                    content.append(doc.body().text()).append("\n");
+                    sink.accept(doc.body().text() + "\n");
                 }
                 zip.closeEntry();
             }
         }
-
-        return content.toString();
     }
 
     /**
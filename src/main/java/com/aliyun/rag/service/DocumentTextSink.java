@@ -0,0 +1,25 @@
+package com.aliyun.rag.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 文档文本消费者
+ * <p>
+ * 接收解析器按文档顺序输出的文本片段。分页的格式（PDF）在输出每页文本之前调用{@link #startPage}，
+ * 消费者据此把后续文本归属到该页；其他格式不调用，页码未知。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@FunctionalInterface
+public interface DocumentTextSink extends Consumer<String> {
+
+    /**
+     * 开始新的一页
+     *
+     * @param pageNumber 页码，从1开始
+     */
+    default void startPage(int pageNumber) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.EmbeddingCacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级嵌入向量缓存
+ * <p>
+ * 一级为进程内缓存，按LRU顺序存放紧凑的float[]并以总字节数限制容量；
+ * 二级为Redis，向量以小端序float数组的二进制形式存储。
+ * 缓存键由文本内容的SHA-256摘要、模型名称和向量维度组成，模型或维度变化时自然失效。
+ * Redis不可用时只降级为一级缓存，不影响嵌入调用。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    /**
+     * 每个本地缓存条目的固定开销估算（键字符串、数组头、链表节点）
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 200;
+
+    private final EmbeddingCacheProperties properties;
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+    private final String modelName;
+    private final int dimension;
+
+    private final LinkedHashMap<String, float[]> localCache = new LinkedHashMap<>(1024, 0.75f, true);
+    private long localBytes = 0;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+
+    public EmbeddingCache(EmbeddingCacheProperties properties,
+                          RedisTemplate<String, byte[]> binaryRedisTemplate,
+                          @Value("${langchain4j.community.dashscope.embedding-model.model-name:default}") String modelName,
+                          @Value("${milvus.collection.dimension}") int dimension) {
+        this.properties = properties;
+        this.binaryRedisTemplate = binaryRedisTemplate;
+        this.modelName = modelName;
+        this.dimension = dimension;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 生成缓存键
+     *
+     * @param text 文本
+     * @return 缓存键（不含Redis前缀）
+     */
+    public String key(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            return modelName + ":" + dimension + ":" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 批量查询缓存，先查本地再查Redis，Redis命中的结果回填本地
+     *
+     * @param keys 缓存键
+     * @return 与keys一一对应的向量，未命中为null
+     */
+    public float[][] getAll(List<String> keys) {
+        float[][] results = new float[keys.size()][];
+        int[] redisIndexes = new int[keys.size()];
+        int redisCount = 0;
+
+        synchronized (localCache) {
+            for (int i = 0; i < keys.size(); i++) {
+                float[] vector = localCache.get(keys.get(i));
+                if (vector != null) {
+                    results[i] = vector;
+                    localHits.incrementAndGet();
+                } else {
+                    redisIndexes[redisCount++] = i;
+                }
+            }
+        }
+        lookups.addAndGet(keys.size());
+
+        if (redisCount > 0 && properties.isRedisEnabled()) {
+            try {
+                String[] redisKeys = new String[redisCount];
+                for (int j = 0; j < redisCount; j++) {
+                    redisKeys[j] = properties.getRedisKeyPrefix() + keys.get(redisIndexes[j]);
+                }
+                List<byte[]> values = binaryRedisTemplate.opsForValue().multiGet(List.of(redisKeys));
+                if (values != null) {
+                    for (int j = 0; j < redisCount && j < values.size(); j++) {
+                        float[] vector = decode(values.get(j));
+                        if (vector != null) {
+                            int i = redisIndexes[j];
+                            results[i] = vector;
+                            redisHits.incrementAndGet();
+                            putLocal(keys.get(i), vector);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("读取Redis嵌入缓存失败，降级为仅本地缓存: {}", e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 批量写入两级缓存
+     *
+     * @param entries 缓存键到向量的映射
+     */
+    public void putAll(Map<String, float[]> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.forEach(this::putLocal);
+
+        if (!properties.isRedisEnabled()) {
+            return;
+        }
+        try {
+            long ttlSeconds = properties.getRedisTtl().getSeconds();
+            binaryRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                writeAll(connection, entries, ttlSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入Redis嵌入缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 当前累计命中率（本地+Redis）
+     */
+    public double hitRate() {
+        long total = lookups.get();
+        return total == 0 ? 0.0 : (double) (localHits.get() + redisHits.get()) / total;
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (localCache) {
+            stats.put("localEntries", localCache.size());
+            stats.put("localBytes", localBytes);
+        }
+        stats.put("localMaxBytes", properties.getLocalMaxBytes());
+        stats.put("lookups", lookups.get());
+        stats.put("localHits", localHits.get());
+        stats.put("redisHits", redisHits.get());
+        stats.put("hitRate", hitRate());
+        return stats;
+    }
+
+    private void writeAll(RedisConnection connection, Map<String, float[]> entries, long ttlSeconds) {
+        for (Map.Entry<String, float[]> entry : entries.entrySet()) {
+            byte[] key = (properties.getRedisKeyPrefix() + entry.getKey()).getBytes(StandardCharsets.UTF_8);
+            connection.stringCommands().setEx(key, ttlSeconds, encode(entry.getValue()));
+        }
+    }
+
+    private void putLocal(String key, float[] vector) {
+        long entryBytes = (long) vector.length * Float.BYTES + ENTRY_OVERHEAD_BYTES;
+        synchronized (localCache) {
+            float[] previous = localCache.put(key, vector);
+            if (previous != null) {
+                localBytes -= (long) previous.length * Float.BYTES + ENTRY_OVERHEAD_BYTES;
+            }
+            localBytes += entryBytes;
+
+            // 按访问顺序淘汰最久未使用的条目
+            Iterator<Map.Entry<String, float[]>> it = localCache.entrySet().iterator();
+            while (localBytes > properties.getLocalMaxBytes() && it.hasNext()) {
+                Map.Entry<String, float[]> eldest = it.next();
+                localBytes -= (long) eldest.getValue().length * Float.BYTES + ENTRY_OVERHEAD_BYTES;
+                it.remove();
+            }
+        }
+    }
+
+    static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    static float[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0 || bytes.length % Float.BYTES != 0) {
+            return null;
+        }
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,194 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.EmbeddingPipelineProperties;
+import com.aliyun.rag.util.TokenBucket;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 批量嵌入流水线
+ * <p>
+ * 将文本按模型单次请求上限切分成批次，在向量处理线程池上并发调用嵌入模型。
+ * 每次调用前先经过两个令牌桶（每秒请求数、每分钟token数）限流，失败的批次按指数退避重试，
+ * 各批结果按原始顺序写回，保证返回的向量与输入文本一一对应。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class EmbeddingPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingPipeline.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingPipelineProperties properties;
+    private final MetricsService metricsService;
+    private final ThreadPoolTaskExecutor vectorProcessExecutor;
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+
+    public EmbeddingPipeline(EmbeddingModel embeddingModel,
+                             EmbeddingPipelineProperties properties,
+                             MetricsService metricsService,
+                             @Qualifier("vectorProcessExecutor") ThreadPoolTaskExecutor vectorProcessExecutor) {
+        this.embeddingModel = embeddingModel;
+        this.properties = properties;
+        this.metricsService = metricsService;
+        this.vectorProcessExecutor = vectorProcessExecutor;
+        this.requestBucket = new TokenBucket(Math.max(1, properties.getRequestsPerSecond()),
+                properties.getRequestsPerSecond(), 1, TimeUnit.SECONDS);
+        this.tokenBucket = new TokenBucket(properties.getTokensPerMinute(),
+                properties.getTokensPerMinute(), 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 批量嵌入
+     *
+     * @param texts 文本列表
+     * @return 与输入顺序一致的嵌入向量
+     */
+    public List<Embedding> embedAll(List<String> texts) {
+        if (texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int batchCount = (texts.size() + batchSize - 1) / batchSize;
+        Embedding[] results = new Embedding[texts.size()];
+
+        metricsService.adjustEmbeddingQueueDepth(batchCount);
+        try {
+            if (batchCount == 1) {
+                // 单批（如查询向量）直接在调用线程执行，避免线程切换
+                try {
+                    embedBatch(texts, 0, results);
+                } finally {
+                    metricsService.adjustEmbeddingQueueDepth(-1);
+                }
+            } else {
+                embedConcurrently(texts, batchSize, batchCount, results);
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("批量嵌入失败: " + cause.getMessage(), cause);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed > 0) {
+            metricsService.updateEmbeddingThroughput(texts.size() * 1000L / elapsed);
+        }
+        log.debug("批量嵌入完成: 文本块 {} 条, 批次 {} 个, 耗时 {}ms", texts.size(), batchCount, elapsed);
+        return Arrays.asList(results);
+    }
+
+    private void embedConcurrently(List<String> texts, int batchSize, int batchCount, Embedding[] results) {
+        Semaphore inFlight = new Semaphore(Math.max(1, properties.getMaxConcurrency()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batchCount);
+        int submitted = 0;
+        try {
+            for (; submitted < batchCount; submitted++) {
+                if (futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    break;
+                }
+                inFlight.acquire();
+                int from = submitted * batchSize;
+                List<String> batch = texts.subList(from, Math.min(from + batchSize, texts.size()));
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        embedBatch(batch, from, results);
+                    } finally {
+                        inFlight.release();
+                        metricsService.adjustEmbeddingQueueDepth(-1);
+                    }
+                }, vectorProcessExecutor));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException("批量嵌入被中断", e);
+        } finally {
+            // 未提交的批次不再执行，从队列深度中扣除
+            metricsService.adjustEmbeddingQueueDepth(-(batchCount - submitted));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * 对单个批次限流、调用模型并在失败时退避重试，结果写入results[offset..]
+     */
+    private void embedBatch(List<String> batch, int offset, Embedding[] results) {
+        List<TextSegment> segments = batch.stream().map(TextSegment::from).collect(Collectors.toList());
+        long estimatedTokens = estimateTokens(batch);
+        int attempt = 0;
+        while (true) {
+            try {
+                requestBucket.acquire(1);
+                tokenBucket.acquire(estimatedTokens);
+
+                long start = System.currentTimeMillis();
+                List<Embedding> embedded = embeddingModel.embedAll(segments).content();
+                metricsService.recordEmbeddingBatch(batch.size(), System.currentTimeMillis() - start);
+                if (embedded == null || embedded.size() != batch.size()) {
+                    throw new IllegalStateException("嵌入模型返回数量不匹配: 期望 " + batch.size()
+                            + ", 实际 " + (embedded == null ? 0 : embedded.size()));
+                }
+                for (int i = 0; i < embedded.size(); i++) {
+                    results[offset + i] = embedded.get(i);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("批量嵌入被中断", e);
+            } catch (RuntimeException e) {
+                if (attempt >= properties.getMaxRetries()) {
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt++);
+                log.warn("嵌入批次失败（偏移 {}, {} 条），{}ms 后第 {} 次重试: {}",
+                        offset, batch.size(), backoff, attempt, e.getMessage());
+                metricsService.recordEmbeddingRetry();
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("批量嵌入被中断", ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * 指数退避加随机抖动，避免多个批次同时重试
+     */
+    private long backoffMillis(int attempt) {
+        long base = properties.getInitialBackoffMs() << Math.min(attempt, 20);
+        long capped = Math.min(properties.getMaxBackoffMs(), base);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private long estimateTokens(List<String> batch) {
+        long chars = 0;
+        for (String text : batch) {
+            chars += text.length();
+        }
+        return Math.max(1, (long) Math.ceil(chars / Math.max(0.1, properties.getCharsPerToken())));
+    }
+}
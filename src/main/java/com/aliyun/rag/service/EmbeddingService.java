@@ -1,14 +1,16 @@
 package com.aliyun.rag.service;
 
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.data.embedding.Embedding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -16,6 +18,7 @@ import java.util.stream.Collectors;
  * <p>
  * 提供文本嵌入向量生成服务，支持文本分块的向量化处理
  * 集成LangChain4j的嵌入模型，为语义搜索提供向量支持
+ * 模型调用统一经过{@link EmbeddingPipeline}进行分批、限流和重试
  * </p>
  *
  * @author Jason Ma
@@ -27,10 +30,16 @@ public class EmbeddingService {
 
     private static final Logger log = LoggerFactory.getLogger(EmbeddingService.class);
 
-    private final EmbeddingModel embeddingModel;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final EmbeddingCache embeddingCache;
+    private final MetricsService metricsService;
 
-    public EmbeddingService(EmbeddingModel embeddingModel) {
-        this.embeddingModel = embeddingModel;
+    public EmbeddingService(EmbeddingPipeline embeddingPipeline,
+                            EmbeddingCache embeddingCache,
+                            MetricsService metricsService) {
+        this.embeddingPipeline = embeddingPipeline;
+        this.embeddingCache = embeddingCache;
+        this.metricsService = metricsService;
     }
 
     /**
@@ -38,8 +47,10 @@ public class EmbeddingService {
      */
     public Embedding embedText(String text) {
         try {
-            TextSegment segment = TextSegment.from(text);
-            return embeddingModel.embed(segment).content();
+            if (!embeddingCache.isEnabled()) {
+                return embeddingPipeline.embedAll(List.of(text)).get(0);
+            }
+            return embedWithCache(List.of(text)).get(0);
         } catch (Exception e) {
             log.error("文本嵌入失败: {}", e.getMessage(), e);
             throw new RuntimeException("文本嵌入失败: " + e.getMessage(), e);
@@ -51,17 +62,70 @@ public class EmbeddingService {
      */
     public List<Embedding> embedTexts(List<String> texts) {
         try {
-            List<TextSegment> segments = texts.stream()
-                    .map(TextSegment::from)
-                    .collect(Collectors.toList());
-
-            return embeddingModel.embedAll(segments).content();
+            if (!embeddingCache.isEnabled()) {
+                return embeddingPipeline.embedAll(texts);
+            }
+            return embedWithCache(texts);
         } catch (Exception e) {
             log.error("批量文本嵌入失败: {}", e.getMessage(), e);
             throw new RuntimeException("批量文本嵌入失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 经过两级缓存的批量嵌入，只有未命中（且去重后）的文本才会发送给模型
+     */
+    private List<Embedding> embedWithCache(List<String> texts) {
+        List<String> keys = texts.stream().map(embeddingCache::key).collect(Collectors.toList());
+        float[][] vectors = embeddingCache.getAll(keys);
+
+        // 收集未命中的文本，相同内容只嵌入一次
+        Map<String, String> misses = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (vectors[i] == null) {
+                misses.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            List<Embedding> embedded = embeddingPipeline.embedAll(new ArrayList<>(misses.values()));
+
+            Map<String, float[]> fresh = new LinkedHashMap<>();
+            Iterator<String> missKeys = misses.keySet().iterator();
+            for (Embedding embedding : embedded) {
+                fresh.put(missKeys.next(), embedding.vector());
+            }
+            embeddingCache.putAll(fresh);
+
+            for (int i = 0; i < texts.size(); i++) {
+                if (vectors[i] == null) {
+                    vectors[i] = fresh.get(keys.get(i));
+                }
+            }
+            log.debug("嵌入缓存: 请求 {} 条, 命中 {} 条, 调用模型 {} 条",
+                    texts.size(), texts.size() - countMisses(keys, fresh), misses.size());
+        }
+
+        metricsService.updateCacheHitRate(embeddingCache.hitRate());
+
+        List<Embedding> results = new ArrayList<>(texts.size());
+        for (float[] vector : vectors) {
+            // 返回副本，避免调用方修改向量污染缓存
+            results.add(Embedding.from(vector.clone()));
+        }
+        return results;
+    }
+
+    private int countMisses(List<String> keys, Map<String, float[]> fresh) {
+        int count = 0;
+        for (String key : keys) {
+            if (fresh.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * 将文本块转换为嵌入向量
      */
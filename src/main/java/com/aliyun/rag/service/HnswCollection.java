@@ -0,0 +1,849 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * 进程内HNSW引擎的一个collection
+ * <p>
+ * 由若干只读段（{@link HnswSegment}）和一个可写段（{@link HnswGraph}）组成：
+ * <ul>
+ *   <li>写入先追加到可写段对应的预写日志 wal-N.log，再插入可写段；可写段写满后封存为 seg-N.hnsw 并删除日志</li>
+ *   <li>删除只做标记：可写段的删除记入预写日志，只读段的删除追加到 seg-N.del；同一ID重复写入时旧节点标记删除</li>
+ *   <li>删除比例过高或段数过多时在后台合并，新段在头部记录被取代的段号，启动时据此清理合并中断留下的文件</li>
+ * </ul>
+ * 检索读取不可变的快照（段列表和可写段），无需加锁；所有写操作由写锁串行化。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class HnswCollection implements EmbeddingStore<TextSegment> {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswCollection.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DELETE = 2;
+
+    /**
+     * 合并产生的单个段文件的向量数上限，留出余量避免超过2GB
+     */
+    private static final long MAX_SEGMENT_BYTES = 1_500_000_000L;
+
+    /**
+     * 节点位置
+     */
+    private record Location(HnswIndex index, int node) {
+    }
+
+    /**
+     * 检索使用的不可变快照
+     */
+    private record Snapshot(List<HnswSegment> segments, HnswGraph active) {
+    }
+
+    /**
+     * 预写日志记录
+     */
+    private record WalRecord(byte type, String id, String text, String metadata, float[] vector) {
+    }
+
+    private record Candidate(HnswIndex index, HnswIndex.Hit hit) {
+    }
+
+    private final String name;
+    private final Path dir;
+    private final VectorStoreProperties.Hnsw config;
+    private final int dimension;
+    private final Object writeLock = new Object();
+    private final ConcurrentHashMap<String, Location> locations = new ConcurrentHashMap<>();
+    private final Map<HnswSegment, int[]> pendingDeletes = new IdentityHashMap<>();
+    private final Map<HnswSegment, Integer> pendingDeleteCounts = new IdentityHashMap<>();
+    private final ByteArrayOutputStream walBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream walOut = new DataOutputStream(walBuffer);
+
+    private volatile Snapshot snapshot;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    private long activeNo;
+    private long nextSegmentNo;
+    private FileChannel wal;
+    private boolean compacting = false;
+
+    private HnswCollection(String name, Path dir, VectorStoreProperties.Hnsw config, int dimension) {
+        this.name = name;
+        this.dir = dir;
+        this.config = config;
+        this.dimension = dimension;
+    }
+
+    /**
+     * 打开collection目录，清理中断留下的文件并重放预写日志
+     *
+     * @param name collection名称
+     * @param dir collection目录，不存在时创建
+     * @param config 引擎配置
+     * @param dimension 向量维度
+     * @return collection
+     * @throws IOException 读取失败
+     */
+    static HnswCollection open(String name, Path dir, VectorStoreProperties.Hnsw config, int dimension) throws IOException {
+        Files.createDirectories(dir);
+        HnswCollection collection = new HnswCollection(name, dir, config, dimension);
+        collection.recover();
+        return collection;
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Long, HnswSegment> segments = new TreeMap<>();
+        TreeMap<Long, Path> wals = new TreeMap<>();
+        List<Path> deleteFiles = new ArrayList<>();
+        long maxNo = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (fileName.startsWith(HnswSegment.FILE_PREFIX) && fileName.endsWith(HnswSegment.FILE_SUFFIX)) {
+                    HnswSegment segment = HnswSegment.open(file);
+                    if (segment.dimension() != dimension) {
+                        throw new IOException("HNSW段维度不一致: " + file + ", 期望 " + dimension + ", 实际 " + segment.dimension());
+                    }
+                    segments.put(segment.segmentNo(), segment);
+                    maxNo = Math.max(maxNo, segment.segmentNo());
+                } else if (fileName.startsWith(HnswSegment.FILE_PREFIX) && fileName.endsWith(HnswSegment.DELETE_SUFFIX)) {
+                    deleteFiles.add(file);
+                } else if (fileName.startsWith(WAL_PREFIX) && fileName.endsWith(WAL_SUFFIX)) {
+                    long no = Long.parseLong(fileName.substring(WAL_PREFIX.length(), fileName.length() - WAL_SUFFIX.length()));
+                    wals.put(no, file);
+                    maxNo = Math.max(maxNo, no);
+                }
+            }
+        }
+
+        // 合并完成但源段未删除时，以合并后的段为准
+        Set<Long> replaced = new HashSet<>();
+        for (HnswSegment segment : segments.values()) {
+            for (long source : segment.sources()) {
+                replaced.add(source);
+                maxNo = Math.max(maxNo, source);
+            }
+        }
+        for (Long no : replaced) {
+            HnswSegment obsolete = segments.remove(no);
+            if (obsolete != null) {
+                obsolete.deleteFiles();
+            }
+        }
+        for (Path deleteFile : deleteFiles) {
+            String fileName = deleteFile.getFileName().toString();
+            String segmentName = fileName.substring(0, fileName.length() - HnswSegment.DELETE_SUFFIX.length()) + HnswSegment.FILE_SUFFIX;
+            if (!Files.exists(deleteFile.resolveSibling(segmentName))) {
+                Files.deleteIfExists(deleteFile);
+            }
+        }
+
+        for (HnswSegment segment : segments.values()) {
+            for (int node = 0; node < segment.size(); node++) {
+                if (!segment.isDeleted(node)) {
+                    Location previous = locations.put(segment.id(node), new Location(segment, node));
+                    if (previous != null) {
+                        deleteLocation(previous);
+                    }
+                }
+            }
+        }
+        nextSegmentNo = maxNo + 1;
+
+        // 已封存或已被合并的日志不再需要重放
+        List<Path> replay = new ArrayList<>();
+        for (Map.Entry<Long, Path> entry : wals.entrySet()) {
+            if (segments.containsKey(entry.getKey()) || replaced.contains(entry.getKey())) {
+                Files.deleteIfExists(entry.getValue());
+            } else {
+                replay.add(entry.getValue());
+            }
+        }
+
+        int[] addCount = new int[1];
+        for (Path file : replay) {
+            readWal(file, record -> {
+                if (record.type() == RECORD_ADD) {
+                    addCount[0]++;
+                }
+            });
+        }
+        HnswGraph active = new HnswGraph(dimension, config.getM(), config.getEfConstruction(),
+                Math.max(config.getSealThreshold(), addCount[0]));
+        snapshot = new Snapshot(List.copyOf(segments.values()), active);
+        long validLength = 0;
+        for (Path file : replay) {
+            validLength = readWal(file, this::apply);
+        }
+
+        synchronized (writeLock) {
+            if (replay.size() == 1) {
+                activeNo = walNo(replay.get(0));
+                wal = FileChannel.open(replay.get(0), StandardOpenOption.WRITE);
+                wal.truncate(validLength);
+                wal.position(validLength);
+            } else {
+                activeNo = nextSegmentNo++;
+                wal = openWal(activeNo);
+            }
+            flushPendingDeletes();
+            // 多个日志同时存在或重放后超过阈值时立即封存，避免下次启动重复重放
+            if (replay.size() > 1 || active.size() >= config.getSealThreshold()) {
+                List<Long> replayed = new ArrayList<>();
+                for (Path file : replay) {
+                    replayed.add(walNo(file));
+                }
+                seal(replayed);
+                for (Path file : replay) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (!replay.isEmpty()) {
+            log.info("HNSW collection {} 重放预写日志 {} 个，写入记录 {} 条", name, replay.size(), addCount[0]);
+        }
+    }
+
+    private static long walNo(Path file) {
+        String fileName = file.getFileName().toString();
+        return Long.parseLong(fileName.substring(WAL_PREFIX.length(), fileName.length() - WAL_SUFFIX.length()));
+    }
+
+    private FileChannel openWal(long no) throws IOException {
+        return FileChannel.open(dir.resolve(WAL_PREFIX + no + WAL_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 顺序读取预写日志
+     *
+     * @return 最后一条完整记录结束的位置，之后的内容是写入中断留下的
+     */
+    private static long readWal(Path file, Consumer<WalRecord> consumer) throws IOException {
+        long validLength = 0;
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            while (true) {
+                WalRecord record;
+                long length;
+                try {
+                    byte type = in.readByte();
+                    byte[] id = readBytes(in);
+                    length = 1 + 4 + id.length;
+                    if (type == RECORD_ADD) {
+                        byte[] text = readBytes(in);
+                        byte[] metadata = readBytes(in);
+                        float[] vector = new float[in.readInt()];
+                        for (int i = 0; i < vector.length; i++) {
+                            vector[i] = in.readFloat();
+                        }
+                        length += 4 + text.length + 4 + metadata.length + 4 + vector.length * 4L;
+                        record = new WalRecord(type, new String(id, StandardCharsets.UTF_8),
+                                new String(text, StandardCharsets.UTF_8), new String(metadata, StandardCharsets.UTF_8), vector);
+                    } else if (type == RECORD_DELETE) {
+                        record = new WalRecord(type, new String(id, StandardCharsets.UTF_8), null, null, null);
+                    } else {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                consumer.accept(record);
+                validLength += length;
+            }
+        }
+        return validLength;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (64 << 20)) {
+            throw new EOFException("预写日志记录长度无效");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void apply(WalRecord record) {
+        if (record.type() == RECORD_ADD) {
+            insert(record.id(), record.vector(), record.text(), record.metadata());
+        } else {
+            Location location = locations.remove(record.id());
+            if (location != null) {
+                deleteLocation(location);
+            }
+        }
+    }
+
+    private void insert(String id, float[] vector, String text, String metadata) {
+        Location previous = locations.get(id);
+        if (previous != null) {
+            deleteLocation(previous);
+        }
+        HnswGraph active = snapshot.active();
+        int node = active.insert(id, vector, text, metadata);
+        locations.put(id, new Location(active, node));
+    }
+
+    /**
+     * 标记删除；只读段的删除先缓存，批次结束时追加到删除标记文件
+     */
+    private void deleteLocation(Location location) {
+        location.index().markDeleted(location.node());
+        if (location.index() instanceof HnswSegment segment) {
+            int[] nodes = pendingDeletes.computeIfAbsent(segment, s -> new int[16]);
+            int n = pendingDeleteCounts.getOrDefault(segment, 0);
+            if (n == nodes.length) {
+                nodes = Arrays.copyOf(nodes, n * 2);
+                pendingDeletes.put(segment, nodes);
+            }
+            nodes[n] = location.node();
+            pendingDeleteCounts.put(segment, n + 1);
+        }
+    }
+
+    private void flushPendingDeletes() throws IOException {
+        for (Map.Entry<HnswSegment, int[]> entry : pendingDeletes.entrySet()) {
+            entry.getKey().appendDeletes(entry.getValue(), pendingDeleteCounts.get(entry.getKey()), config.isSyncWrites());
+        }
+        pendingDeletes.clear();
+        pendingDeleteCounts.clear();
+    }
+
+    private void flushWal() throws IOException {
+        if (walBuffer.size() == 0) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(walBuffer.toByteArray());
+        walBuffer.reset();
+        while (data.hasRemaining()) {
+            wal.write(data);
+        }
+        if (config.isSyncWrites()) {
+            wal.force(false);
+        }
+    }
+
+    /**
+     * 先落盘预写日志，再落盘只读段的删除标记；两者之间中断时重放日志会重新产生这些删除
+     */
+    private void flushPending() throws IOException {
+        flushWal();
+        flushPendingDeletes();
+    }
+
+    private void writeBytes(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        walOut.writeInt(bytes.length);
+        walOut.write(bytes);
+    }
+
+    /**
+     * 把可写段封存为只读段，并切换到新的可写段和预写日志，只能在写锁内调用
+     *
+     * @param sources 新段取代的其它日志号
+     */
+    private void seal(List<Long> sources) throws IOException {
+        Snapshot current = snapshot;
+        HnswGraph frozen = current.active();
+        if (frozen.size() == 0) {
+            return;
+        }
+        long sealedNo = activeNo;
+        long[] sourceNos = sources.stream().filter(no -> no != sealedNo).mapToLong(Long::longValue).toArray();
+        Path tmp = HnswSegment.writeTemp(dir, sealedNo, sourceNos, frozen);
+        int[] deleted = new int[frozen.size()];
+        int deletedCount = 0;
+        for (int node = 0; node < frozen.size(); node++) {
+            if (frozen.isDeleted(node)) {
+                deleted[deletedCount++] = node;
+            }
+        }
+        HnswSegment segment = HnswSegment.commit(dir, sealedNo, tmp, deleted, deletedCount);
+
+        wal.close();
+        activeNo = nextSegmentNo++;
+        wal = openWal(activeNo);
+
+        for (int node = 0; node < frozen.size(); node++) {
+            if (!frozen.isDeleted(node)) {
+                locations.put(frozen.id(node), new Location(segment, node));
+            }
+        }
+        List<HnswSegment> segments = new ArrayList<>(current.segments());
+        segments.add(segment);
+        snapshot = new Snapshot(List.copyOf(segments), newActive());
+        Files.deleteIfExists(dir.resolve(WAL_PREFIX + sealedNo + WAL_SUFFIX));
+        log.debug("HNSW collection {} 封存段 {}，向量数: {}", name, sealedNo, frozen.size());
+    }
+
+    private HnswGraph newActive() {
+        return new HnswGraph(dimension, config.getM(), config.getEfConstruction(), config.getSealThreshold());
+    }
+
+    private Snapshot requireOpen() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("HNSW collection已关闭: " + name);
+        }
+        return current;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != ids.size())) {
+            throw new IllegalArgumentException("向量ID、向量和分块的数量不一致");
+        }
+        lastAccessMillis = System.currentTimeMillis();
+        synchronized (writeLock) {
+            requireOpen();
+            try {
+                for (int i = 0; i < ids.size(); i++) {
+                    float[] vector = embeddings.get(i).vector();
+                    if (vector.length != dimension) {
+                        throw new IllegalArgumentException("向量维度不一致: 期望 " + dimension + ", 实际 " + vector.length);
+                    }
+                    TextSegment segment = textSegments != null ? textSegments.get(i) : null;
+                    String text = segment != null ? segment.text() : "";
+                    String metadata = segment != null ? OBJECT_MAPPER.writeValueAsString(segment.metadata().toMap()) : "{}";
+                    if (snapshot.active().isFull()) {
+                        flushPending();
+                        seal(List.of());
+                    }
+                    walOut.writeByte(RECORD_ADD);
+                    writeBytes(ids.get(i));
+                    writeBytes(text);
+                    writeBytes(metadata);
+                    walOut.writeInt(vector.length);
+                    for (float v : vector) {
+                        walOut.writeFloat(v);
+                    }
+                    insert(ids.get(i), vector, text, metadata);
+                }
+                flushPending();
+            } catch (IOException e) {
+                throw new RuntimeException("写入向量失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lastAccessMillis = System.currentTimeMillis();
+        synchronized (writeLock) {
+            requireOpen();
+            try {
+                for (String id : ids) {
+                    Location location = locations.remove(id);
+                    if (location == null) {
+                        continue;
+                    }
+                    if (location.index() instanceof HnswGraph) {
+                        walOut.writeByte(RECORD_DELETE);
+                        writeBytes(id);
+                    }
+                    deleteLocation(location);
+                }
+                flushPending();
+            } catch (IOException e) {
+                throw new RuntimeException("删除向量失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        removeAll(new ArrayList<>(locations.keySet()));
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return search(request, config.getEfSearch());
+    }
+
+    /**
+     * 使用指定的候选队列长度检索
+     *
+     * @param efSearch 候选队列长度，小于结果数时按结果数
+     */
+    EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int efSearch) {
+        lastAccessMillis = System.currentTimeMillis();
+        Snapshot current = requireOpen();
+        float[] query = request.queryEmbedding().vector();
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("查询向量维度不一致: 期望 " + dimension + ", 实际 " + query.length);
+        }
+        int k = request.maxResults();
+        int ef = Math.max(efSearch, k);
+        Filter filter = request.filter();
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<HnswIndex> indexes = new ArrayList<>(current.segments());
+        indexes.add(current.active());
+        for (HnswIndex index : indexes) {
+            IntPredicate accept = filter == null ? null : node -> filter.test(toMetadata(index.metadata(node)));
+            for (HnswIndex.Hit hit : index.search(query, k, ef, accept)) {
+                candidates.add(new Candidate(index, hit));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.hit().similarity()).reversed());
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(Math.min(k, candidates.size()));
+        for (Candidate candidate : candidates) {
+            double score = (candidate.hit().similarity() + 1.0) / 2.0;
+            if (matches.size() >= k || score < request.minScore()) {
+                break;
+            }
+            HnswIndex index = candidate.index();
+            int node = candidate.hit().node();
+            String text = index.text(node);
+            TextSegment segment = text == null || text.isBlank() ? null : TextSegment.from(text, toMetadata(index.metadata(node)));
+            matches.add(new EmbeddingMatch<>(score, index.id(node), Embedding.from(index.vector(node)), segment));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * 按ID读取向量
+     */
+    List<VectorStoreBackend.StoredVector> fetch(Collection<String> ids, boolean withVector) {
+        lastAccessMillis = System.currentTimeMillis();
+        requireOpen();
+        List<VectorStoreBackend.StoredVector> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Location location = locations.get(id);
+            if (location == null || location.index().isDeleted(location.node())) {
+                continue;
+            }
+            HnswIndex index = location.index();
+            int node = location.node();
+            result.add(new VectorStoreBackend.StoredVector(id, index.text(node), parseMetadata(index.metadata(node)),
+                    withVector ? index.vector(node) : null));
+        }
+        return result;
+    }
+
+    /**
+     * 按段顺序分页读取未删除的向量
+     */
+    List<VectorStoreBackend.StoredVector> page(long offset, int limit) {
+        lastAccessMillis = System.currentTimeMillis();
+        Snapshot current = requireOpen();
+        List<VectorStoreBackend.StoredVector> result = new ArrayList<>(limit);
+        List<HnswIndex> indexes = new ArrayList<>(current.segments());
+        indexes.add(current.active());
+        long skipped = 0;
+        for (HnswIndex index : indexes) {
+            if (skipped + index.liveCount() <= offset) {
+                skipped += index.liveCount();
+                continue;
+            }
+            int size = index.size();
+            for (int node = 0; node < size && result.size() < limit; node++) {
+                if (index.isDeleted(node)) {
+                    continue;
+                }
+                if (skipped++ < offset) {
+                    continue;
+                }
+                result.add(new VectorStoreBackend.StoredVector(index.id(node), index.text(node),
+                        parseMetadata(index.metadata(node)), null));
+            }
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 选出需要合并的段并在后台重建，只有重建后的发布在写锁内完成
+     *
+     * @return 是否执行了合并
+     * @throws IOException 写入失败
+     */
+    boolean compact() throws IOException {
+        List<HnswSegment> sources;
+        long targetNo;
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current == null || compacting) {
+                return false;
+            }
+            sources = selectCompaction(current.segments());
+            if (sources.isEmpty()) {
+                return false;
+            }
+            compacting = true;
+            targetNo = nextSegmentNo++;
+        }
+        try {
+            return compact(sources, targetNo);
+        } finally {
+            synchronized (writeLock) {
+                compacting = false;
+            }
+        }
+    }
+
+    private List<HnswSegment> selectCompaction(List<HnswSegment> segments) {
+        long bytesPerVector = dimension * 4L + 2048;
+        List<HnswSegment> selected = new ArrayList<>();
+        long selectedBytes = 0;
+        for (HnswSegment segment : segments) {
+            double deletedRatio = 1.0 - (double) segment.liveCount() / Math.max(1, segment.size());
+            if (deletedRatio >= config.getCompactionDeletedRatio()) {
+                long bytes = segment.liveCount() * bytesPerVector;
+                if (!selected.isEmpty() && selectedBytes + bytes > MAX_SEGMENT_BYTES) {
+                    continue;
+                }
+                selected.add(segment);
+                selectedBytes += bytes;
+            }
+        }
+        if (!selected.isEmpty() || segments.size() <= Math.max(1, config.getMaxSegments())) {
+            return selected;
+        }
+        // 段数过多时合并最小的若干段
+        List<HnswSegment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingInt(HnswSegment::liveCount));
+        int needed = segments.size() - config.getMaxSegments() + 1;
+        for (HnswSegment segment : bySize) {
+            long bytes = segment.liveCount() * bytesPerVector;
+            if (selected.size() >= Math.max(2, needed) || (!selected.isEmpty() && selectedBytes + bytes > MAX_SEGMENT_BYTES)) {
+                break;
+            }
+            selected.add(segment);
+            selectedBytes += bytes;
+        }
+        return selected.size() >= 2 ? selected : List.of();
+    }
+
+    private boolean compact(List<HnswSegment> sources, long targetNo) throws IOException {
+        int total = 0;
+        for (HnswSegment source : sources) {
+            total += source.liveCount();
+        }
+        HnswGraph graph = new HnswGraph(dimension, config.getM(), config.getEfConstruction(), Math.max(1, total));
+        List<int[]> mapping = new ArrayList<>(sources.size());
+        for (HnswSegment source : sources) {
+            int[] newNodes = new int[source.size()];
+            Arrays.fill(newNodes, -1);
+            for (int node = 0; node < source.size() && !graph.isFull(); node++) {
+                if (!source.isDeleted(node)) {
+                    newNodes[node] = graph.insert(source.id(node), source.vector(node), source.text(node), source.metadata(node));
+                }
+            }
+            mapping.add(newNodes);
+        }
+        long[] sourceNos = sources.stream().mapToLong(HnswSegment::segmentNo).toArray();
+        Path tmp = graph.size() > 0 ? HnswSegment.writeTemp(dir, targetNo, sourceNos, graph) : null;
+
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+                return false;
+            }
+            // 重建期间发生的删除
+            int[] deleted = new int[Math.max(1, graph.size())];
+            int deletedCount = 0;
+            for (int i = 0; i < sources.size(); i++) {
+                HnswSegment source = sources.get(i);
+                int[] newNodes = mapping.get(i);
+                for (int node = 0; node < newNodes.length; node++) {
+                    if (newNodes[node] >= 0 && source.isDeleted(node)) {
+                        deleted[deletedCount++] = newNodes[node];
+                    }
+                }
+            }
+            HnswSegment merged = tmp != null ? HnswSegment.commit(dir, targetNo, tmp, deleted, deletedCount) : null;
+            for (int i = 0; i < sources.size() && merged != null; i++) {
+                HnswSegment source = sources.get(i);
+                int[] newNodes = mapping.get(i);
+                for (int node = 0; node < newNodes.length; node++) {
+                    if (newNodes[node] >= 0 && !source.isDeleted(node)) {
+                        locations.replace(source.id(node), new Location(source, node), new Location(merged, newNodes[node]));
+                    }
+                }
+            }
+            Set<HnswSegment> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+            replaced.addAll(sources);
+            List<HnswSegment> segments = new ArrayList<>();
+            for (HnswSegment segment : current.segments()) {
+                if (!replaced.contains(segment)) {
+                    segments.add(segment);
+                }
+            }
+            if (merged != null) {
+                segments.add(merged);
+            }
+            snapshot = new Snapshot(List.copyOf(segments), current.active());
+            for (HnswSegment source : sources) {
+                source.deleteFiles();
+            }
+        }
+        log.info("HNSW collection {} 合并 {} 个段为段 {}，保留向量数: {}", name, sources.size(), targetNo, graph.size());
+        return true;
+    }
+
+    long lastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    /**
+     * 统计信息
+     */
+    Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("collection", name);
+        if (current == null) {
+            stats.put("closed", true);
+            return stats;
+        }
+        long live = current.active().liveCount();
+        long total = current.active().size();
+        long bytes = 0;
+        for (HnswSegment segment : current.segments()) {
+            live += segment.liveCount();
+            total += segment.size();
+            bytes += segment.fileSize();
+        }
+        stats.put("segments", current.segments().size());
+        stats.put("activeVectors", current.active().size());
+        stats.put("liveVectors", live);
+        stats.put("deletedVectors", total - live);
+        stats.put("segmentBytes", bytes);
+        return stats;
+    }
+
+    /**
+     * 关闭collection，落盘未写出的日志；之后的读写抛出异常
+     */
+    void close() {
+        synchronized (writeLock) {
+            if (snapshot == null) {
+                return;
+            }
+            try {
+                flushPending();
+                wal.close();
+            } catch (IOException e) {
+                log.warn("关闭HNSW collection {} 失败: {}", name, e.getMessage());
+            }
+            snapshot = null;
+            locations.clear();
+        }
+    }
+
+    private static Map<String, Object> parseMetadata(String json) {
+        if (json == null || json.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return OBJECT_MAPPER.readValue(json, METADATA_TYPE);
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 转换为langchain4j元数据，其不支持的值类型转为字符串
+     */
+    private static Metadata toMetadata(String json) {
+        Map<String, Object> values = parseMetadata(json);
+        values.replaceAll((key, value) -> value instanceof Integer || value instanceof Long
+                || value instanceof Float || value instanceof Double || value instanceof String ? value : String.valueOf(value));
+        return Metadata.from(values);
+    }
+}
@@ -0,0 +1,343 @@
+package com.aliyun.rag.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 可写的内存HNSW图
+ * <p>
+ * 用作collection的可写段，以及合并时重建只读段的中间结构。容量在创建时确定，写满后由collection封存为只读段。
+ * 只允许一个写线程（由collection的写锁保证），检索线程无需加锁：
+ * 节点的向量和内容先于邻居表写入，邻居表整体替换并通过{@link AtomicReferenceArray}或并发Map发布，
+ * 检索线程经由邻居表或入口节点看到新节点时，其数据一定已经可见。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class HnswGraph extends HnswIndex {
+
+    static final int MAX_LEVEL = 16;
+
+    /**
+     * 向量按页分配，空图只占很少内存
+     */
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int dimension;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final int capacity;
+    private final double levelMultiplier;
+    private final Random random = new Random();
+
+    private final float[][] vectorPages;
+    private final float[] invNorms;
+    private final byte[] levels;
+    private final AtomicReferenceArray<int[]> level0;
+    private final List<ConcurrentHashMap<Integer, int[]>> upperLevels = new ArrayList<>(MAX_LEVEL);
+    private final String[] ids;
+    private final String[] texts;
+    private final String[] metadata;
+    private final AtomicLongArray deleted;
+
+    private volatile int size = 0;
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+    private volatile int liveCount = 0;
+
+    /**
+     * @param dimension 向量维度
+     * @param m 上层最大邻居数，第0层为2m
+     * @param efConstruction 建图候选队列长度
+     * @param capacity 最大节点数
+     */
+    HnswGraph(int dimension, int m, int efConstruction, int capacity) {
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.m0 = this.m * 2;
+        this.efConstruction = Math.max(efConstruction, this.m0);
+        this.capacity = capacity;
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.vectorPages = new float[(capacity + PAGE_MASK) >>> PAGE_SHIFT][];
+        this.invNorms = new float[capacity];
+        this.levels = new byte[capacity];
+        this.level0 = new AtomicReferenceArray<>(capacity);
+        for (int level = 1; level < MAX_LEVEL; level++) {
+            upperLevels.add(new ConcurrentHashMap<>());
+        }
+        this.ids = new String[capacity];
+        this.texts = new String[capacity];
+        this.metadata = new String[capacity];
+        this.deleted = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    boolean isFull() {
+        return size >= capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int m() {
+        return m;
+    }
+
+    int level(int node) {
+        return levels[node];
+    }
+
+    /**
+     * 插入节点，只能由写线程调用
+     *
+     * @return 节点序号
+     */
+    int insert(String id, float[] vector, String text, String metadataJson) {
+        int node = size;
+        if (node >= capacity) {
+            throw new IllegalStateException("HNSW可写段已满");
+        }
+        int page = node >>> PAGE_SHIFT;
+        if (vectorPages[page] == null) {
+            vectorPages[page] = new float[(PAGE_MASK + 1) * dimension];
+        }
+        System.arraycopy(vector, 0, vectorPages[page], (node & PAGE_MASK) * dimension, dimension);
+        invNorms[node] = invNorm(vector);
+        ids[node] = id;
+        texts[node] = text;
+        metadata[node] = metadataJson;
+        int level = randomLevel();
+        levels[node] = (byte) level;
+        level0.set(node, EMPTY);
+        for (int l = 1; l <= level; l++) {
+            upperLevels.get(l - 1).put(node, EMPTY);
+        }
+
+        int entry = entryPoint;
+        if (entry < 0) {
+            publish(node, level, true);
+            return node;
+        }
+
+        float inv = invNorms[node];
+        int[] buffer = new int[m0];
+        int top = maxLevel;
+        int current = entry;
+        float currentSimilarity = similarity(vector, inv, current);
+        for (int l = top; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int count = neighbors(current, l, buffer);
+                for (int i = 0; i < count; i++) {
+                    float s = similarity(vector, inv, buffer[i]);
+                    if (s > currentSimilarity) {
+                        currentSimilarity = s;
+                        current = buffer[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            PriorityQueue<Hit> nearest = searchLayer(vector, inv, current, currentSimilarity, efConstruction, l, buffer, null);
+            List<Hit> sorted = new ArrayList<>(nearest);
+            sorted.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+            int maxConnections = l == 0 ? m0 : m;
+            int[] selected = selectNeighbors(sorted, maxConnections);
+            setNeighbors(node, l, selected);
+            for (int neighbor : selected) {
+                link(neighbor, node, l, maxConnections);
+            }
+            current = sorted.get(0).node();
+            currentSimilarity = sorted.get(0).similarity();
+        }
+        publish(node, level, level > top);
+        return node;
+    }
+
+    private void publish(int node, int level, boolean newEntry) {
+        size = node + 1;
+        liveCount = liveCount + 1;
+        if (newEntry) {
+            // 先更新层数再更新入口，检索线程读到新入口时层数一定已经更新
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return Math.min(MAX_LEVEL - 1, (int) (-Math.log(r) * levelMultiplier));
+    }
+
+    /**
+     * 启发式选择邻居：候选比已选中的任何邻居都更接近基准节点时才选中，保证邻居方向分散
+     *
+     * @param candidates 按与基准节点相似度降序的候选
+     */
+    private int[] selectNeighbors(List<Hit> candidates, int maxConnections) {
+        int[] selected = new int[maxConnections];
+        int count = 0;
+        for (Hit candidate : candidates) {
+            if (count >= maxConnections) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (similarityBetween(candidate.node(), selected[i]) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 把新节点加入邻居的邻居表，超出上限时重新选择
+     */
+    private void link(int neighbor, int node, int level, int maxConnections) {
+        int[] current = links(neighbor, level);
+        if (current == null) {
+            return;
+        }
+        if (current.length < maxConnections) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = node;
+            setNeighbors(neighbor, level, grown);
+            return;
+        }
+        List<Hit> candidates = new ArrayList<>(current.length + 1);
+        for (int existing : current) {
+            candidates.add(new Hit(existing, similarityBetween(neighbor, existing)));
+        }
+        candidates.add(new Hit(node, similarityBetween(neighbor, node)));
+        candidates.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        setNeighbors(neighbor, level, selectNeighbors(candidates, maxConnections));
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? level0.get(node) : upperLevels.get(level - 1).get(node);
+    }
+
+    private void setNeighbors(int node, int level, int[] neighbors) {
+        if (level == 0) {
+            level0.set(node, neighbors);
+        } else {
+            upperLevels.get(level - 1).put(node, neighbors);
+        }
+    }
+
+    private float similarityBetween(int a, int b) {
+        float[] pageA = vectorPages[a >>> PAGE_SHIFT];
+        float[] pageB = vectorPages[b >>> PAGE_SHIFT];
+        int offsetA = (a & PAGE_MASK) * dimension;
+        int offsetB = (b & PAGE_MASK) * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += pageA[offsetA + i] * pageB[offsetB + i];
+        }
+        return dot * invNorms[a] * invNorms[b];
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    float similarity(float[] query, float queryInvNorm, int node) {
+        float[] page = vectorPages[node >>> PAGE_SHIFT];
+        int offset = (node & PAGE_MASK) * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * page[offset + i];
+        }
+        return dot * queryInvNorm * invNorms[node];
+    }
+
+    @Override
+    int neighbors(int node, int level, int[] buffer) {
+        int[] links = links(node, level);
+        if (links == null) {
+            return 0;
+        }
+        System.arraycopy(links, 0, buffer, 0, links.length);
+        return links.length;
+    }
+
+    @Override
+    int maxConnections() {
+        return m0;
+    }
+
+    @Override
+    boolean isDeleted(int node) {
+        return (deleted.get(node >>> 6) & (1L << (node & 63))) != 0;
+    }
+
+    @Override
+    void markDeleted(int node) {
+        long mask = 1L << (node & 63);
+        long previous = deleted.getAndAccumulate(node >>> 6, mask, (a, b) -> a | b);
+        if ((previous & mask) == 0) {
+            liveCount = liveCount - 1;
+        }
+    }
+
+    @Override
+    int liveCount() {
+        return liveCount;
+    }
+
+    @Override
+    String id(int node) {
+        return ids[node];
+    }
+
+    @Override
+    String text(int node) {
+        return texts[node];
+    }
+
+    @Override
+    String metadata(int node) {
+        return metadata[node];
+    }
+
+    @Override
+    float[] vector(int node) {
+        int offset = (node & PAGE_MASK) * dimension;
+        return Arrays.copyOfRange(vectorPages[node >>> PAGE_SHIFT], offset, offset + dimension);
+    }
+}
@@ -0,0 +1,187 @@
+package com.aliyun.rag.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW图的检索
+ * <p>
+ * 可写段（{@link HnswGraph}）和只读段（{@link HnswSegment}）共用同一套分层贪心检索，
+ * 子类只提供节点向量、邻居表、删除标记和分块内容的访问。相似度为余弦相似度。
+ * 已删除的节点仍参与图的遍历以保持连通性，只是不进入结果。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+abstract class HnswIndex {
+
+    /**
+     * 检索命中
+     *
+     * @param node 节点序号
+     * @param similarity 余弦相似度
+     */
+    record Hit(int node, float similarity) {
+    }
+
+    private static final Comparator<Hit> BY_SIMILARITY = Comparator.comparingDouble(Hit::similarity);
+
+    /**
+     * 已发布的节点数，节点序号小于该值
+     */
+    abstract int size();
+
+    /**
+     * 入口节点，空图为-1
+     */
+    abstract int entryPoint();
+
+    /**
+     * 入口节点所在的最高层
+     */
+    abstract int maxLevel();
+
+    /**
+     * 查询向量与节点的余弦相似度
+     *
+     * @param queryInvNorm 查询向量范数的倒数
+     */
+    abstract float similarity(float[] query, float queryInvNorm, int node);
+
+    /**
+     * 读取节点在指定层的邻居
+     *
+     * @param buffer 输出缓冲区，长度不小于该层的最大邻居数
+     * @return 邻居数，节点不在该层时为0
+     */
+    abstract int neighbors(int node, int level, int[] buffer);
+
+    /**
+     * 第0层的最大邻居数，上层不超过该值
+     */
+    abstract int maxConnections();
+
+    abstract boolean isDeleted(int node);
+
+    abstract void markDeleted(int node);
+
+    /**
+     * 未删除的节点数
+     */
+    abstract int liveCount();
+
+    abstract String id(int node);
+
+    abstract String text(int node);
+
+    abstract String metadata(int node);
+
+    abstract float[] vector(int node);
+
+    /**
+     * 检索与查询向量最相似的节点
+     *
+     * @param query 查询向量
+     * @param k 结果数
+     * @param ef 第0层候选队列长度
+     * @param accept 额外的过滤条件，null表示不过滤
+     * @return 按相似度降序的命中
+     */
+    List<Hit> search(float[] query, int k, int ef, IntPredicate accept) {
+        int entry = entryPoint();
+        if (entry < 0 || k <= 0) {
+            return new ArrayList<>();
+        }
+        float queryInvNorm = invNorm(query);
+        int[] buffer = new int[maxConnections()];
+
+        int current = entry;
+        float currentSimilarity = similarity(query, queryInvNorm, current);
+        for (int level = maxLevel(); level > 0; level--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int count = neighbors(current, level, buffer);
+                for (int i = 0; i < count; i++) {
+                    float s = similarity(query, queryInvNorm, buffer[i]);
+                    if (s > currentSimilarity) {
+                        currentSimilarity = s;
+                        current = buffer[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        PriorityQueue<Hit> accepted = searchLayer(query, queryInvNorm, current, currentSimilarity,
+                Math.max(ef, k), 0, buffer, node -> !isDeleted(node) && (accept == null || accept.test(node)));
+        List<Hit> hits = new ArrayList<>(accepted);
+        hits.sort(BY_SIMILARITY.reversed());
+        return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+    }
+
+    /**
+     * 在单层上做束搜索
+     *
+     * @param filter 进入结果的条件，null表示全部节点；遍历不受其限制
+     * @return 满足条件的最多ef个最相似节点（最小堆）
+     */
+    PriorityQueue<Hit> searchLayer(float[] query, float queryInvNorm, int entry, float entrySimilarity,
+                                   int ef, int level, int[] buffer, IntPredicate filter) {
+        BitSet visited = new BitSet();
+        visited.set(entry);
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(BY_SIMILARITY.reversed());
+        PriorityQueue<Hit> nearest = new PriorityQueue<>(BY_SIMILARITY);
+        PriorityQueue<Hit> accepted = filter == null ? nearest : new PriorityQueue<>(BY_SIMILARITY);
+        Hit start = new Hit(entry, entrySimilarity);
+        candidates.add(start);
+        nearest.add(start);
+        if (filter != null && filter.test(entry)) {
+            accepted.add(start);
+        }
+
+        while (!candidates.isEmpty()) {
+            Hit candidate = candidates.poll();
+            if (nearest.size() >= ef && candidate.similarity() < nearest.peek().similarity()) {
+                break;
+            }
+            int count = neighbors(candidate.node(), level, buffer);
+            for (int i = 0; i < count; i++) {
+                int neighbor = buffer[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float s = similarity(query, queryInvNorm, neighbor);
+                if (nearest.size() < ef || s > nearest.peek().similarity()) {
+                    Hit hit = new Hit(neighbor, s);
+                    candidates.add(hit);
+                    nearest.add(hit);
+                    if (nearest.size() > ef) {
+                        nearest.poll();
+                    }
+                    if (filter != null && filter.test(neighbor)) {
+                        accepted.add(hit);
+                        if (accepted.size() > ef) {
+                            accepted.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return accepted;
+    }
+
+    static float invNorm(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += (double) v * v;
+        }
+        return sum == 0 ? 0f : (float) (1.0 / Math.sqrt(sum));
+    }
+}
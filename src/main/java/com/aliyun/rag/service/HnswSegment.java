@@ -0,0 +1,523 @@
+package com.aliyun.rag.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HNSW只读段
+ * <p>
+ * 可写段写满后封存为不可变的段文件，通过内存映射访问，向量和图结构都不占用堆内存。
+ * 文件布局（小端序，与x86一致以便向量直接读取）：
+ * <pre>
+ * header       : magic, version, dimension, count, m0, m, entryPoint, maxLevel, segmentNo(long), sourceCount,
+ *                invNormsOff, vectorsOff, levelsOff, level0Off, upperIndexOff, upperOff, payloadIndexOff, payloadOff
+ * sources      : sourceCount × long，本段取代的段号（合并产生的段）
+ * invNorms     : count × float，向量范数的倒数
+ * vectors      : count × dimension × float
+ * levels       : count × byte，按4字节对齐
+ * level0       : count × [n, neighbor × m0]
+ * upperIndex   : count × int，节点上层邻居表在upper中的起始下标，只在第0层的节点为-1
+ * upper        : 每层 [n, neighbor × m]
+ * payload      : 每个节点 [idLen, id, textLen, text, metadataLen, metadata]
+ * payloadIndex : (count + 1) × int，payload中的偏移
+ * </pre>
+ * 删除标记追加写入同名的 .del 文件（每条为一个节点序号），打开时载入内存位图。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class HnswSegment extends HnswIndex implements Closeable {
+
+    static final String FILE_PREFIX = "seg-";
+    static final String FILE_SUFFIX = ".hnsw";
+    static final String DELETE_SUFFIX = ".del";
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 80;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final Path deletePath;
+    private final ByteBuffer buffer;
+    private final int dimension;
+    private final int count;
+    private final int m0;
+    private final int m;
+    private final int entryPoint;
+    private final int maxLevel;
+    private final long segmentNo;
+    private final long[] sources;
+    private final FloatBuffer invNorms;
+    private final FloatBuffer vectors;
+    private final int levelsOff;
+    private final IntBuffer level0;
+    private final IntBuffer upperIndex;
+    private final IntBuffer upper;
+    private final int payloadOff;
+    private final IntBuffer payloadIndex;
+    private final AtomicLongArray deleted;
+    private volatile int liveCount;
+
+    private HnswSegment(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.deletePath = deletePath(path);
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("无效的HNSW段文件: " + path);
+        }
+        this.dimension = buffer.getInt(8);
+        this.count = buffer.getInt(12);
+        this.m0 = buffer.getInt(16);
+        this.m = buffer.getInt(20);
+        this.entryPoint = buffer.getInt(24);
+        this.maxLevel = buffer.getInt(28);
+        this.segmentNo = buffer.getLong(32);
+        this.sources = new long[buffer.getInt(40)];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = buffer.getLong(HEADER_SIZE + i * 8);
+        }
+        int invNormsOff = buffer.getInt(44);
+        int vectorsOff = buffer.getInt(48);
+        this.levelsOff = buffer.getInt(52);
+        int level0Off = buffer.getInt(56);
+        int upperIndexOff = buffer.getInt(60);
+        int upperOff = buffer.getInt(64);
+        int payloadIndexOff = buffer.getInt(68);
+        this.payloadOff = buffer.getInt(72);
+        this.invNorms = slice(invNormsOff, count * 4).asFloatBuffer();
+        this.vectors = slice(vectorsOff, count * dimension * 4).asFloatBuffer();
+        this.level0 = slice(level0Off, count * (1 + m0) * 4).asIntBuffer();
+        this.upperIndex = slice(upperIndexOff, count * 4).asIntBuffer();
+        this.upper = slice(upperOff, payloadOff - upperOff).asIntBuffer();
+        this.payloadIndex = slice(payloadIndexOff, (count + 1) * 4).asIntBuffer();
+        this.deleted = new AtomicLongArray((count + 63) >>> 6);
+        this.liveCount = count;
+        loadDeletes();
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        return buffer.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static Path segmentPath(Path dir, long segmentNo) {
+        return dir.resolve(FILE_PREFIX + segmentNo + FILE_SUFFIX);
+    }
+
+    static Path deletePath(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(name.substring(0, name.length() - FILE_SUFFIX.length()) + DELETE_SUFFIX);
+    }
+
+    /**
+     * 以内存映射方式打开段文件，并载入删除标记
+     *
+     * @param path 段文件路径
+     * @return 只读段
+     * @throws IOException 读取失败或文件无效
+     */
+    static HnswSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HnswSegment(path, mapped);
+        }
+    }
+
+    /**
+     * 把内存图写成临时段文件，耗时的部分放在collection写锁之外完成
+     *
+     * @param dir collection目录
+     * @param segmentNo 段号
+     * @param sources 本段取代的段号
+     * @param graph 内存图，写入期间不能再插入节点
+     * @return 临时文件路径，由{@link #commit}发布
+     * @throws IOException 写入失败或段文件超过2GB
+     */
+    static Path writeTemp(Path dir, long segmentNo, long[] sources, HnswGraph graph) throws IOException {
+        Path tmp = dir.resolve(FILE_PREFIX + segmentNo + FILE_SUFFIX + ".tmp");
+        int count = graph.size();
+        int dimension = graph.dimension();
+        int m = graph.m();
+        int m0 = graph.maxConnections();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.position(HEADER_SIZE);
+            for (long source : sources) {
+                out.putLong(source);
+            }
+
+            long invNormsOff = out.position();
+            for (int node = 0; node < count; node++) {
+                out.putFloat(invNorm(graph.vector(node)));
+            }
+            long vectorsOff = out.position();
+            for (int node = 0; node < count; node++) {
+                for (float v : graph.vector(node)) {
+                    out.putFloat(v);
+                }
+            }
+            long levelsOff = out.position();
+            for (int node = 0; node < count; node++) {
+                out.putByte((byte) graph.level(node));
+            }
+            while (out.position() % 4 != 0) {
+                out.putByte((byte) 0);
+            }
+
+            int[] neighbors = new int[m0];
+            long level0Off = out.position();
+            for (int node = 0; node < count; node++) {
+                int n = graph.neighbors(node, 0, neighbors);
+                out.putInt(n);
+                for (int i = 0; i < m0; i++) {
+                    out.putInt(i < n ? neighbors[i] : 0);
+                }
+            }
+            long upperIndexOff = out.position();
+            int upperCursor = 0;
+            for (int node = 0; node < count; node++) {
+                int level = graph.level(node);
+                out.putInt(level > 0 ? upperCursor : -1);
+                upperCursor += level * (1 + m);
+            }
+            long upperOff = out.position();
+            for (int node = 0; node < count; node++) {
+                for (int level = 1; level <= graph.level(node); level++) {
+                    int n = graph.neighbors(node, level, neighbors);
+                    out.putInt(n);
+                    for (int i = 0; i < m; i++) {
+                        out.putInt(i < n ? neighbors[i] : 0);
+                    }
+                }
+            }
+
+            long payloadOff = out.position();
+            int[] payloadOffsets = new int[count + 1];
+            for (int node = 0; node < count; node++) {
+                payloadOffsets[node] = (int) (out.position() - payloadOff);
+                out.putString(graph.id(node));
+                out.putString(graph.text(node));
+                out.putString(graph.metadata(node));
+                if (out.position() > Integer.MAX_VALUE) {
+                    throw new IOException("HNSW段文件超过2GB，请调小 vector-store.hnsw.seal-threshold");
+                }
+            }
+            payloadOffsets[count] = (int) (out.position() - payloadOff);
+            long payloadIndexOff = out.position();
+            for (int offset : payloadOffsets) {
+                out.putInt(offset);
+            }
+            if (out.position() > Integer.MAX_VALUE) {
+                throw new IOException("HNSW段文件超过2GB，请调小 vector-store.hnsw.seal-threshold");
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(count)
+                    .putInt(m0).putInt(m).putInt(graph.entryPoint()).putInt(graph.maxLevel())
+                    .putLong(segmentNo).putInt(sources.length)
+                    .putInt((int) invNormsOff).putInt((int) vectorsOff).putInt((int) levelsOff).putInt((int) level0Off)
+                    .putInt((int) upperIndexOff).putInt((int) upperOff).putInt((int) payloadIndexOff).putInt((int) payloadOff);
+            header.position(0).limit(HEADER_SIZE);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    /**
+     * 发布临时段文件：先写删除标记文件，再原子替换为正式段文件并打开
+     *
+     * @param dir collection目录
+     * @param segmentNo 段号
+     * @param tmp {@link #writeTemp}返回的临时文件
+     * @param deletedNodes 发布前已删除的节点序号
+     * @param deletedCount 有效的删除序号数
+     * @return 只读段
+     * @throws IOException 写入失败
+     */
+    static HnswSegment commit(Path dir, long segmentNo, Path tmp, int[] deletedNodes, int deletedCount) throws IOException {
+        Path target = segmentPath(dir, segmentNo);
+        Path deleteTarget = deletePath(target);
+        if (deletedCount > 0) {
+            Path deleteTmp = deleteTarget.resolveSibling(deleteTarget.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(deleteTmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeInts(channel, deletedNodes, deletedCount);
+                channel.force(true);
+            }
+            Files.move(deleteTmp, deleteTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * 标记删除并追加到删除标记文件，只能在collection写锁内调用
+     *
+     * @param nodes 节点序号
+     * @param n 有效的序号数
+     * @param sync 是否刷盘
+     * @throws IOException 写入失败
+     */
+    void appendDeletes(int[] nodes, int n, boolean sync) throws IOException {
+        if (n == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(deletePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            writeInts(channel, nodes, n);
+            if (sync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private void loadDeletes() throws IOException {
+        if (!Files.exists(deletePath)) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(deletePath)).order(ByteOrder.LITTLE_ENDIAN);
+        // 末尾不完整的记录是写入中断留下的，忽略
+        while (data.remaining() >= 4) {
+            int node = data.getInt();
+            if (node >= 0 && node < count) {
+                markDeleted(node);
+            }
+        }
+    }
+
+    private static void writeInts(FileChannel channel, int[] values, int n) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(n * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+            data.putInt(values[i]);
+        }
+        data.flip();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    long segmentNo() {
+        return segmentNo;
+    }
+
+    long[] sources() {
+        return sources.clone();
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    long fileSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 删除段文件和删除标记文件；已映射的内存在没有检索引用后由GC回收
+     */
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(deletePath);
+    }
+
+    /**
+     * 映射的内存由GC回收，这里不需要释放资源
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    int size() {
+        return count;
+    }
+
+    @Override
+    int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    int maxLevel() {
+        return maxLevel;
+    }
+
+    @Override
+    float similarity(float[] query, float queryInvNorm, int node) {
+        int base = node * dimension;
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors.get(base + i);
+        }
+        return dot * queryInvNorm * invNorms.get(node);
+    }
+
+    @Override
+    int neighbors(int node, int level, int[] buffer) {
+        int base;
+        if (level == 0) {
+            base = node * (1 + m0);
+            int n = level0.get(base);
+            level0.get(base + 1, buffer, 0, n);
+            return n;
+        }
+        int start = upperIndex.get(node);
+        if (start < 0 || level > this.buffer.get(levelsOff + node)) {
+            return 0;
+        }
+        base = start + (level - 1) * (1 + m);
+        int n = upper.get(base);
+        upper.get(base + 1, buffer, 0, n);
+        return n;
+    }
+
+    @Override
+    int maxConnections() {
+        return m0;
+    }
+
+    @Override
+    boolean isDeleted(int node) {
+        return (deleted.get(node >>> 6) & (1L << (node & 63))) != 0;
+    }
+
+    @Override
+    void markDeleted(int node) {
+        long mask = 1L << (node & 63);
+        long previous = deleted.getAndAccumulate(node >>> 6, mask, (a, b) -> a | b);
+        if ((previous & mask) == 0) {
+            liveCount = liveCount - 1;
+        }
+    }
+
+    @Override
+    int liveCount() {
+        return liveCount;
+    }
+
+    @Override
+    String id(int node) {
+        return readString(node, 0);
+    }
+
+    @Override
+    String text(int node) {
+        return readString(node, 1);
+    }
+
+    @Override
+    String metadata(int node) {
+        return readString(node, 2);
+    }
+
+    /**
+     * 读取节点payload中的第field个字符串
+     */
+    private String readString(int node, int field) {
+        int position = payloadOff + payloadIndex.get(node);
+        for (int i = 0; i < field; i++) {
+            position += 4 + buffer.getInt(position);
+        }
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    float[] vector(int node) {
+        float[] vector = new float[dimension];
+        vectors.get(node * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * 带缓冲的顺序写入，记录当前文件位置
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer staging = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return flushed + staging.position();
+        }
+
+        void position(long position) throws IOException {
+            flush();
+            flushed = position;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            staging.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            staging.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            staging.putLong(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(4);
+            staging.putFloat(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(staging.remaining(), bytes.length - offset);
+                staging.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (staging.remaining() < n) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            staging.flip();
+            while (staging.hasRemaining()) {
+                flushed += channel.write(staging, flushed);
+            }
+            staging.clear();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.model.SearchRequest;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内HNSW向量存储后端
+ * <p>
+ * 每个用户collection对应数据目录下的一个子目录，由{@link HnswCollection}管理段文件和预写日志。
+ * 打开的collection缓存在内存中，空闲超时后关闭；后台任务定期检查并合并删除比例过高或数量过多的段。
+ * 检索分数与Milvus后端一致，为 (余弦相似度 + 1) / 2。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "hnsw")
+public class HnswVectorStoreBackend implements VectorStoreBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswVectorStoreBackend.class);
+
+    private final VectorStoreProperties properties;
+    private final VectorStoreProperties.Hnsw config;
+    private final int dimension;
+    private final Path baseDir;
+    private final ConcurrentHashMap<String, HnswCollection> collections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    public HnswVectorStoreBackend(VectorStoreProperties properties, MilvusConfig milvusConfig) {
+        this.properties = properties;
+        this.config = properties.getHnsw();
+        this.dimension = milvusConfig.getDimension();
+        this.baseDir = Paths.get(config.getDir()).toAbsolutePath();
+        try {
+            Files.createDirectories(baseDir);
+        } catch (IOException e) {
+            throw new RuntimeException("创建向量数据目录失败: " + e.getMessage(), e);
+        }
+
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HnswVectorStore-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getCompactionIntervalSeconds());
+        this.maintenanceExecutor.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.SECONDS);
+        log.info("使用进程内HNSW向量存储，数据目录: {}", baseDir);
+    }
+
+    @Override
+    public String name() {
+        return "hnsw";
+    }
+
+    @Override
+    public String collectionName(Long userId, String username) {
+        return MilvusStoreRegistry.collectionName(userId, username);
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> getStore(Long userId, String username) {
+        return open(collectionName(userId, username));
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> getStore(Long userId, String username, SearchRequest.SearchProfile profile) {
+        HnswCollection collection = open(collectionName(userId, username));
+        int efSearch = properties.searchParams(profile).getEf();
+        return new ProfiledEmbeddingStore(collection, request -> collection.search(request, efSearch));
+    }
+
+    @Override
+    public boolean exists(Long userId, String username) {
+        String name = collectionName(userId, username);
+        return collections.containsKey(name) || Files.isDirectory(directory(name));
+    }
+
+    @Override
+    public List<StoredVector> fetch(Long userId, String username, Collection<String> ids, boolean withVector, boolean strong) {
+        if (ids.isEmpty() || !exists(userId, username)) {
+            return new ArrayList<>();
+        }
+        // 写入返回前已对检索可见，strong无需额外处理
+        return open(collectionName(userId, username)).fetch(ids, withVector);
+    }
+
+    @Override
+    public List<StoredVector> page(Long userId, String username, long offset, int limit) {
+        if (!exists(userId, username)) {
+            return new ArrayList<>();
+        }
+        return open(collectionName(userId, username)).page(offset, limit);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long liveVectors = 0;
+        long segments = 0;
+        long segmentBytes = 0;
+        for (HnswCollection collection : collections.values()) {
+            Map<String, Object> collectionStats = collection.getStats();
+            liveVectors += ((Number) collectionStats.getOrDefault("liveVectors", 0L)).longValue();
+            segments += ((Number) collectionStats.getOrDefault("segments", 0)).longValue();
+            segmentBytes += ((Number) collectionStats.getOrDefault("segmentBytes", 0L)).longValue();
+        }
+        stats.put("backend", name());
+        stats.put("dir", baseDir.toString());
+        stats.put("openCollections", collections.size());
+        stats.put("liveVectors", liveVectors);
+        stats.put("segments", segments);
+        stats.put("segmentBytes", segmentBytes);
+        stats.put("m", config.getM());
+        stats.put("efConstruction", config.getEfConstruction());
+        stats.put("efSearch", config.getEfSearch());
+        return stats;
+    }
+
+    private HnswCollection open(String name) {
+        return collections.computeIfAbsent(name, key -> {
+            try {
+                return HnswCollection.open(key, directory(key), config, dimension);
+            } catch (IOException e) {
+                throw new RuntimeException("打开向量collection失败: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * collection目录，名称中的特殊字符替换为下划线
+     */
+    private Path directory(String name) {
+        return baseDir.resolve(name.replaceAll("[^A-Za-z0-9_\\-]", "_"));
+    }
+
+    /**
+     * 定期维护：合并段 + 关闭空闲collection
+     */
+    private void maintain() {
+        long idleMillis = TimeUnit.SECONDS.toMillis(config.getIdleTimeoutSeconds());
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, HnswCollection> entry : collections.entrySet()) {
+            HnswCollection collection = entry.getValue();
+            try {
+                if (now - collection.lastAccessMillis() > idleMillis) {
+                    if (collections.remove(entry.getKey(), collection)) {
+                        collection.close();
+                        log.debug("collection {} 空闲超时，已关闭", entry.getKey());
+                    }
+                    continue;
+                }
+                while (collection.compact()) {
+                    log.debug("collection {} 完成一次段合并", entry.getKey());
+                }
+            } catch (Exception e) {
+                log.warn("HNSW collection {} 维护任务执行失败: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenanceExecutor.shutdownNow();
+        collections.values().forEach(HnswCollection::close);
+        collections.clear();
+    }
+}
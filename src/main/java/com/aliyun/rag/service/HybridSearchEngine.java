@@ -0,0 +1,198 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.HybridSearchProperties;
+import com.aliyun.rag.model.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 混合检索引擎
+ * <p>
+ * 在独立线程池上并发执行语义检索和关键词检索，每一路有各自的截止时间，
+ * 超时或失败的一路按空结果处理并返回另一路的部分结果（两路都失败时抛出异常）。
+ * 两路分数量纲不同（余弦相似度 vs BM25），因此按排名做倒数排名融合（RRF），
+ * 或将各路分数归一化后加权融合。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class HybridSearchEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridSearchEngine.class);
+
+    public static final String LEG_SEMANTIC = "semantic";
+    public static final String LEG_KEYWORD = "keyword";
+
+    private final HybridSearchProperties properties;
+    private final MetricsService metricsService;
+    private final ThreadPoolTaskExecutor hybridSearchExecutor;
+
+    public HybridSearchEngine(HybridSearchProperties properties,
+                              MetricsService metricsService,
+                              @Qualifier("hybridSearchExecutor") ThreadPoolTaskExecutor hybridSearchExecutor) {
+        this.properties = properties;
+        this.metricsService = metricsService;
+        this.hybridSearchExecutor = hybridSearchExecutor;
+    }
+
+    /**
+     * 每一路应召回的候选数量
+     *
+     * @param maxResults 最终结果数
+     * @return 单路候选数
+     */
+    public int candidateCount(int maxResults) {
+        return Math.max(maxResults, maxResults * properties.getCandidateMultiplier());
+    }
+
+    /**
+     * 并发执行两路检索并融合
+     *
+     * @param semanticLeg 语义检索
+     * @param keywordLeg 关键词检索
+     * @param maxResults 最大结果数
+     * @return 融合后的结果
+     */
+    public List<SearchResult> search(Supplier<List<SearchResult>> semanticLeg,
+                                     Supplier<List<SearchResult>> keywordLeg,
+                                     int maxResults) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<List<SearchResult>> semanticFuture = submit(LEG_SEMANTIC, semanticLeg);
+        CompletableFuture<List<SearchResult>> keywordFuture = submit(LEG_KEYWORD, keywordLeg);
+
+        LegResult semantic = await(LEG_SEMANTIC, semanticFuture, start + properties.getSemanticTimeoutMs());
+        LegResult keyword = await(LEG_KEYWORD, keywordFuture, start + properties.getKeywordTimeoutMs());
+
+        if (semantic.failure() != null && keyword.failure() != null) {
+            throw new RuntimeException("语义检索与关键词检索均失败: " + semantic.failure().getMessage(), semantic.failure());
+        }
+
+        return fuse(semantic.results(), keyword.results(), maxResults);
+    }
+
+    /**
+     * 融合两路结果
+     *
+     * @param semanticResults 语义检索结果（按相关度降序）
+     * @param keywordResults 关键词检索结果（按相关度降序）
+     * @param maxResults 最大结果数
+     * @return 融合后的结果，分数归一化到[0, 1]
+     */
+    public List<SearchResult> fuse(List<SearchResult> semanticResults, List<SearchResult> keywordResults, int maxResults) {
+        Map<String, SearchResult> documents = new LinkedHashMap<>();
+        Map<String, Double> fused = new LinkedHashMap<>();
+        double semanticWeight = properties.getSemanticWeight();
+        double keywordWeight = properties.getKeywordWeight();
+        double maxPossible;
+
+        if (properties.getFusion() == HybridSearchProperties.FusionStrategy.WEIGHTED) {
+            accumulateWeighted(semanticResults, semanticWeight, documents, fused);
+            accumulateWeighted(keywordResults, keywordWeight, documents, fused);
+            maxPossible = semanticWeight + keywordWeight;
+        } else {
+            int k = properties.getRrfK();
+            accumulateRrf(semanticResults, semanticWeight, k, documents, fused);
+            accumulateRrf(keywordResults, keywordWeight, k, documents, fused);
+            // 两路都排第一时得分为1
+            maxPossible = (semanticWeight + keywordWeight) / (k + 1);
+        }
+
+        return fused.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(maxResults)
+                .map(e -> {
+                    SearchResult result = documents.get(e.getKey());
+                    result.setScore(maxPossible > 0 ? Math.min(1.0, e.getValue() / maxPossible) : 0.0);
+                    return result;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<List<SearchResult>> submit(String leg, Supplier<List<SearchResult>> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            long legStart = System.currentTimeMillis();
+            boolean success = false;
+            try {
+                List<SearchResult> results = supplier.get();
+                success = true;
+                return results;
+            } finally {
+                metricsService.recordHybridLegTime(leg, System.currentTimeMillis() - legStart, success);
+            }
+        }, hybridSearchExecutor);
+    }
+
+    private LegResult await(String leg, CompletableFuture<List<SearchResult>> future, long deadline) {
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        try {
+            List<SearchResult> results = future.get(remaining, TimeUnit.MILLISECONDS);
+            return new LegResult(results != null ? results : Collections.emptyList(), null);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("混合检索{}路超时（>{}ms），返回部分结果", leg, remaining);
+            metricsService.recordHybridLegTimeout(leg);
+            return new LegResult(Collections.emptyList(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return new LegResult(Collections.emptyList(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("混合检索{}路失败，返回部分结果: {}", leg, cause.getMessage());
+            return new LegResult(Collections.emptyList(), cause);
+        }
+    }
+
+    private void accumulateRrf(List<SearchResult> results, double weight, int k,
+                               Map<String, SearchResult> documents, Map<String, Double> fused) {
+        for (int rank = 0; rank < results.size(); rank++) {
+            SearchResult result = results.get(rank);
+            String key = key(result);
+            documents.putIfAbsent(key, result);
+            fused.merge(key, weight / (k + rank + 1), Double::sum);
+        }
+    }
+
+    private void accumulateWeighted(List<SearchResult> results, double weight,
+                                    Map<String, SearchResult> documents, Map<String, Double> fused) {
+        if (results.isEmpty()) {
+            return;
+        }
+        // 最小-最大归一化，消除两路分数的量纲差异
+        double max = results.stream().mapToDouble(SearchResult::getScore).max().orElse(1.0);
+        double min = results.stream().mapToDouble(SearchResult::getScore).min().orElse(0.0);
+        double range = max - min;
+        for (SearchResult result : results) {
+            String key = key(result);
+            documents.putIfAbsent(key, result);
+            double normalized = range > 0 ? (result.getScore() - min) / range : 1.0;
+            fused.merge(key, weight * normalized, Double::sum);
+        }
+    }
+
+    private String key(SearchResult result) {
+        return result.getFileRecordId() + "_" + result.getPosition();
+    }
+
+    /**
+     * 单路检索结果
+     */
+    private record LegResult(List<SearchResult> results, Throwable failure) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.IngestionProperties;
+import com.aliyun.rag.exception.BusinessException;
+import com.aliyun.rag.model.DocumentRequest;
+import com.aliyun.rag.model.ErrorCode;
+import com.aliyun.rag.model.IngestionJob;
+import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.dto.IngestionJobDTO;
+import com.aliyun.rag.repository.IngestionJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 文档入库任务服务
+ * <p>
+ * 异步上传时把文件写入本地暂存目录并落库为排队任务后立即返回任务ID，
+ * 由{@link IngestionJobWorker}领取执行；提供任务状态查询和基于SSE的进度推送
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final IngestionJobWorker ingestionJobWorker;
+    private final IngestionProperties ingestionProperties;
+    private final ScheduledExecutorService progressScheduler;
+
+    public IngestionJobService(IngestionJobRepository ingestionJobRepository,
+                               IngestionJobWorker ingestionJobWorker,
+                               IngestionProperties ingestionProperties) {
+        this.ingestionJobRepository = ingestionJobRepository;
+        this.ingestionJobWorker = ingestionJobWorker;
+        this.ingestionProperties = ingestionProperties;
+        this.progressScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "IngestionJob-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交异步入库任务
+     * <p>
+     * 上传内容直接转存到暂存文件，不在内存中缓冲整个文件
+     * </p>
+     *
+     * @param request 文档请求
+     * @param user 用户
+     * @return 排队中的任务
+     */
+    public IngestionJobDTO submit(DocumentRequest request, User user) {
+        MultipartFile file = request.getFile();
+        Path stagedPath = stageFile(file);
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            IngestionJob job = new IngestionJob();
+            job.setUserId(user.getId());
+            job.setUsername(user.getUsername());
+            job.setFileName(file.getOriginalFilename());
+            job.setContentType(file.getContentType());
+            job.setFileSize(file.getSize());
+            job.setTitle(request.getTitle());
+            job.setDescription(request.getDescription());
+            job.setTags(request.getTags());
+            job.setStagedPath(stagedPath.toString());
+            job.setStatus(IngestionJob.Status.QUEUED);
+            job.setBatchChunks(Math.max(1, ingestionProperties.getBatchChunks()));
+            job.setChunksProcessed(0);
+            job.setBatchesCompleted(0);
+            job.setAttempts(0);
+            job.setGmtCreate(now);
+            job.setGmtModified(now);
+            job.setIsDeleted(0);
+            job = ingestionJobRepository.save(job);
+
+            log.info("用户 {} 提交入库任务 {}: {}", user.getUsername(), job.getId(), job.getFileName());
+            ingestionJobWorker.wakeUp();
+            return IngestionJobDTO.fromJob(job);
+        } catch (Exception e) {
+            deleteQuietly(stagedPath);
+            throw new RuntimeException("提交入库任务失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 查询任务状态
+     *
+     * @param jobId 任务ID
+     * @param userId 用户ID
+     * @return 任务
+     */
+    public IngestionJobDTO getJob(Long jobId, Long userId) {
+        return IngestionJobDTO.fromJob(loadJob(jobId, userId));
+    }
+
+    /**
+     * 订阅任务进度
+     * <p>
+     * 按固定间隔轮询任务状态，有变化时推送progress事件，任务结束时推送complete或failed事件并关闭连接
+     * </p>
+     *
+     * @param jobId 任务ID
+     * @param userId 用户ID
+     * @return SSE连接
+     */
+    public SseEmitter subscribe(Long jobId, Long userId) {
+        loadJob(jobId, userId);
+
+        IngestionProperties.Job properties = ingestionProperties.getJob();
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeoutMs());
+        AtomicReference<IngestionJobDTO> lastSent = new AtomicReference<>();
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        AtomicBoolean closed = new AtomicBoolean(false);
+
+        Runnable cancel = () -> {
+            closed.set(true);
+            ScheduledFuture<?> future = task.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(error -> cancel.run());
+
+        task.set(progressScheduler.scheduleWithFixedDelay(() -> {
+            if (closed.get()) {
+                cancel.run();
+                return;
+            }
+            try {
+                IngestionJobDTO job = IngestionJobDTO.fromJob(loadJob(jobId, userId));
+                if (changed(lastSent.get(), job)) {
+                    emitter.send(SseEmitter.event().name("progress").data(job));
+                    lastSent.set(job);
+                }
+                if (Boolean.TRUE.equals(job.getFinished())) {
+                    String event = IngestionJob.Status.DONE.name().equals(job.getStatus()) ? "complete" : "failed";
+                    emitter.send(SseEmitter.event().name(event).data(job));
+                    cancel.run();
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                // 客户端已断开
+                cancel.run();
+            } catch (Exception e) {
+                log.warn("推送入库任务 {} 进度失败: {}", jobId, e.getMessage());
+                cancel.run();
+                emitter.completeWithError(e);
+            }
+        }, 0, Math.max(100, properties.getSsePollIntervalMs()), TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+
+    private IngestionJob loadJob(Long jobId, Long userId) {
+        return ingestionJobRepository.findByIdAndUserIdAndIsDeleted(jobId, userId, 0)
+                .orElseThrow(() -> new BusinessException(ErrorCode.DOCUMENT_NOT_FOUND, "入库任务不存在"));
+    }
+
+    private boolean changed(IngestionJobDTO previous, IngestionJobDTO current) {
+        return previous == null
+                || !Objects.equals(previous.getStatus(), current.getStatus())
+                || !Objects.equals(previous.getChunksProcessed(), current.getChunksProcessed())
+                || !Objects.equals(previous.getAttempts(), current.getAttempts());
+    }
+
+    private Path stageFile(MultipartFile file) {
+        try {
+            Path stagingDir = Paths.get(ingestionProperties.getJob().getStagingDir()).toAbsolutePath();
+            Files.createDirectories(stagingDir);
+            Path stagedPath = stagingDir.resolve(UUID.randomUUID() + ".upload");
+            file.transferTo(stagedPath);
+            return stagedPath;
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.FILE_PROCESSING_FAILED, "文件暂存失败: " + e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        progressScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,298 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.IngestionProperties;
+import com.aliyun.rag.exception.BusinessException;
+import com.aliyun.rag.model.DocumentInfo;
+import com.aliyun.rag.model.DocumentRequest;
+import com.aliyun.rag.model.IngestionJob;
+import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.UserFileRecord;
+import com.aliyun.rag.repository.IngestionJobRepository;
+import com.aliyun.rag.repository.UserRepository;
+import com.aliyun.rag.util.FileSystemMultipartFile;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档入库任务执行器
+ * <p>
+ * 定时从数据库领取排队中或租约已过期的任务，在文件处理线程池上执行：上传七牛云→保存文件记录→流式入库。
+ * 执行期间定期续租，每完成一个批次写入一条检查点；进程宕机后租约过期，任务被重新领取并跳过已有检查点的批次。
+ * 可重试的失败重新排队，重试次数用尽或业务错误（如存储空间不足）时回滚上传并标记失败。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class IngestionJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobWorker.class);
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final RAGService ragService;
+    private final QiniuUploadService qiniuUploadService;
+    private final UserRepository userRepository;
+    private final IngestionProperties.Job properties;
+    private final ThreadPoolTaskExecutor fileProcessExecutor;
+
+    /**
+     * 本节点的租约持有者标识
+     */
+    private final String owner;
+    private final Semaphore slots;
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    public IngestionJobWorker(IngestionJobRepository ingestionJobRepository,
+                              RAGService ragService,
+                              QiniuUploadService qiniuUploadService,
+                              UserRepository userRepository,
+                              IngestionProperties ingestionProperties,
+                              @Qualifier("fileProcessExecutor") ThreadPoolTaskExecutor fileProcessExecutor) {
+        this.ingestionJobRepository = ingestionJobRepository;
+        this.ragService = ragService;
+        this.qiniuUploadService = qiniuUploadService;
+        this.userRepository = userRepository;
+        this.properties = ingestionProperties.getJob();
+        this.fileProcessExecutor = fileProcessExecutor;
+        this.owner = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.slots = new Semaphore(Math.max(1, properties.getWorkers()));
+
+        // 领取和续租分两个线程，领取时线程池满载回退到调用线程执行也不会耽误续租
+        this.scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "IngestionJobWorker-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long pollInterval = Math.max(100, properties.getPollIntervalMs());
+        this.scheduler.scheduleWithFixedDelay(this::pollQuietly, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        long renewInterval = Math.max(1, properties.getLeaseSeconds() / 3);
+        this.scheduler.scheduleWithFixedDelay(this::renewLeases, renewInterval, renewInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 有新任务提交时立即领取，不必等到下一个轮询周期
+     */
+    public void wakeUp() {
+        try {
+            scheduler.execute(this::pollQuietly);
+        } catch (RejectedExecutionException e) {
+            log.debug("入库任务执行器已关闭，忽略唤醒");
+        }
+    }
+
+    private synchronized void pollQuietly() {
+        try {
+            int free = slots.availablePermits();
+            if (free <= 0) {
+                return;
+            }
+            List<Long> claimed = ingestionJobRepository.claimJobs(owner, leaseUntil(), free);
+            for (Long jobId : claimed) {
+                slots.acquireUninterruptibly();
+                runningJobs.add(jobId);
+                try {
+                    fileProcessExecutor.execute(() -> {
+                        try {
+                            process(jobId);
+                        } finally {
+                            runningJobs.remove(jobId);
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 不续租，租约过期后任务会被重新领取
+                    log.warn("文件处理线程池已满，入库任务 {} 延后执行", jobId);
+                    runningJobs.remove(jobId);
+                    slots.release();
+                }
+            }
+        } catch (Exception e) {
+            log.error("领取入库任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void renewLeases() {
+        for (Long jobId : runningJobs) {
+            try {
+                if (ingestionJobRepository.renewLease(jobId, owner, leaseUntil()) == 0) {
+                    log.warn("入库任务 {} 的租约已丢失，可能已被其他节点接管", jobId);
+                }
+            } catch (Exception e) {
+                log.warn("入库任务 {} 续租失败: {}", jobId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 执行一个已领取的任务
+     *
+     * @param jobId 任务ID
+     */
+    private void process(Long jobId) {
+        IngestionJob job = ingestionJobRepository.loadClaimedJob(jobId, owner);
+        if (job == null) {
+            return;
+        }
+        User user = userRepository.findById(job.getUserId()).orElse(null);
+        Path stagedPath = Paths.get(job.getStagedPath());
+        if (user == null || !Files.exists(stagedPath)) {
+            fail(job, user, user == null ? "用户不存在" : "暂存文件不存在");
+            return;
+        }
+        if (job.getAttempts() > properties.getMaxAttempts()) {
+            // 任务在执行中反复导致进程退出时走到这里
+            fail(job, user, "超过最大执行次数: " + properties.getMaxAttempts());
+            return;
+        }
+
+        log.info("开始执行入库任务 {}: {}，第 {} 次执行", jobId, job.getFileName(), job.getAttempts());
+        FileSystemMultipartFile file = new FileSystemMultipartFile(stagedPath, job.getFileName(), job.getContentType());
+        try {
+            ingestionJobRepository.updateJobProgress(jobId, owner, IngestionJob.Status.PARSING,
+                    job.getChunksProcessed(), job.getBatchesCompleted());
+
+            if (job.getFileUrl() == null) {
+                job.setFileUrl(qiniuUploadService.uploadFile(file, user));
+                ingestionJobRepository.updateJobFile(jobId, owner, job.getFileUrl(), null);
+            }
+            if (job.getFileRecordId() == null) {
+                UserFileRecord record = ragService.saveUploadRecord(user, file, job.getFileUrl());
+                job.setFileRecordId(record.getId());
+                ingestionJobRepository.updateJobFile(jobId, owner, job.getFileUrl(), record.getId());
+            }
+
+            JobProgress progress = new JobProgress(job, ingestionJobRepository.listCompletedBatches(jobId));
+            DocumentRequest request = new DocumentRequest();
+            request.setFile(file);
+            request.setTitle(job.getTitle());
+            request.setDescription(job.getDescription());
+            request.setTags(job.getTags());
+            DocumentInfo documentInfo = ragService.ingestUploadedFile(
+                    request, user, job.getFileRecordId(), job.getBatchChunks(), progress);
+
+            ingestionJobRepository.completeJob(jobId, owner, IngestionJob.Status.DONE, documentInfo.getChunkCount(), null);
+            ingestionJobRepository.deleteBatchCheckpoints(jobId);
+            deleteStagedFile(stagedPath);
+            log.info("入库任务 {} 完成: {}, 分块数量: {}", jobId, job.getFileName(), documentInfo.getChunkCount());
+        } catch (Exception e) {
+            log.error("入库任务 {} 执行失败: {}", jobId, e.getMessage(), e);
+            // 流水线失败时已删除本次写入的向量，检查点随之作废
+            ingestionJobRepository.deleteBatchCheckpoints(jobId);
+            boolean retryable = !(e instanceof BusinessException) && job.getAttempts() < properties.getMaxAttempts();
+            if (retryable) {
+                ingestionJobRepository.requeueJob(jobId, owner,
+                        LocalDateTime.now().plusSeconds(properties.getRetryDelaySeconds()), e.getMessage());
+                log.info("入库任务 {} 将在 {} 秒后重试", jobId, properties.getRetryDelaySeconds());
+            } else {
+                fail(job, user, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 标记任务失败并回滚已完成的上传步骤
+     */
+    private void fail(IngestionJob job, User user, String errorMessage) {
+        if (user != null) {
+            ragService.rollbackUpload(job.getFileRecordId(), user, job.getFileUrl());
+        }
+        ingestionJobRepository.deleteBatchCheckpoints(job.getId());
+        ingestionJobRepository.completeJob(job.getId(), owner, IngestionJob.Status.FAILED, 0, errorMessage);
+        deleteStagedFile(Paths.get(job.getStagedPath()));
+        log.warn("入库任务 {} 失败: {}", job.getId(), errorMessage);
+    }
+
+    private void deleteStagedFile(Path stagedPath) {
+        try {
+            Files.deleteIfExists(stagedPath);
+        } catch (IOException e) {
+            log.warn("删除暂存文件失败: {}: {}", stagedPath, e.getMessage());
+        }
+    }
+
+    private LocalDateTime leaseUntil() {
+        return LocalDateTime.now().plusSeconds(properties.getLeaseSeconds());
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 将流水线进度持久化为任务状态和批次检查点
+     */
+    private final class JobProgress implements IngestionProgress {
+
+        private final Long jobId;
+        private final boolean resumed;
+        private final Set<Integer> completedBatches;
+
+        private IngestionJob.Status status = IngestionJob.Status.PARSING;
+        private int chunksProcessed;
+        private int batchesCompleted;
+
+        JobProgress(IngestionJob job, Set<Integer> completedBatches) {
+            this.jobId = job.getId();
+            // 之前的执行可能已写入部分向量，即使没有检查点也要先清理残留
+            this.resumed = job.getAttempts() > 1;
+            this.completedBatches = completedBatches;
+            this.chunksProcessed = job.getChunksProcessed();
+            this.batchesCompleted = job.getBatchesCompleted();
+        }
+
+        @Override
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        @Override
+        public boolean isBatchCompleted(int batchIndex) {
+            return completedBatches.contains(batchIndex);
+        }
+
+        @Override
+        public synchronized void onStatus(IngestionJob.Status status) {
+            this.status = status;
+            ingestionJobRepository.updateJobProgress(jobId, owner, status, chunksProcessed, batchesCompleted);
+        }
+
+        @Override
+        public synchronized void onBatchCompleted(int batchIndex, int firstChunkIndex, int chunkCount) {
+            ingestionJobRepository.insertBatchCheckpoint(jobId, batchIndex, firstChunkIndex, chunkCount);
+            chunksProcessed += chunkCount;
+            batchesCompleted++;
+            ingestionJobRepository.updateJobProgress(jobId, owner, status, chunksProcessed, batchesCompleted);
+        }
+    }
+}
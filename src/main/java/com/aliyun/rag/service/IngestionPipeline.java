@@ -0,0 +1,616 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.IngestionProperties;
+import com.aliyun.rag.exception.BusinessException;
+import com.aliyun.rag.model.DocumentInfo;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.ErrorCode;
+import com.aliyun.rag.model.IngestionJob;
+import com.aliyun.rag.model.UserFileRecord;
+import com.aliyun.rag.model.dto.DocumentUpdateResult;
+import com.aliyun.rag.util.ChunkFingerprint;
+import dev.langchain4j.data.embedding.Embedding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式文档入库流水线
+ * <p>
+ * 解析→分块→嵌入→写入四个阶段重叠执行：解析器增量输出文本，{@link StreamingChunker}按窗口切分，
+ * 分块凑满一个批次后提交到入库线程池依次嵌入、写入Milvus，同时解析线程继续读取后续内容。
+ * 在途批次数受信号量限制，达到上限时解析线程阻塞（背压），因此内存占用取决于窗口大小而不是文档大小。
+ * 关键词索引随分块增量构建，映射关系在全部批次写入成功后一次性入库；任一阶段失败时删除已写入的向量。
+ * 向量ID由分块序号确定，恢复中断的入库时跳过{@link IngestionProgress}标记为已完成的批次，只重做其余批次。
+ * 每个分块的内容摘要随映射入库；更新文档时按摘要比对新旧分块，只嵌入新出现的分块、删除消失的分块。
+ * 分块在嵌入前经{@link ChunkDeduplicator}比对，与本文档或用户其他文档重复的分块不嵌入，映射记录引用已有向量。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final DocumentProcessor documentProcessor;
+    private final EmbeddingService embeddingService;
+    private final VectorStoreService vectorStoreService;
+    private final KeywordIndexService keywordIndexService;
+    private final ChunkDeduplicator chunkDeduplicator;
+    private final IngestionProperties properties;
+    private final ThreadPoolTaskExecutor ingestionExecutor;
+
+    // 正在更新的文档，同一文档的更新不能并发执行
+    private final Set<Long> updatingDocuments = ConcurrentHashMap.newKeySet();
+
+    public IngestionPipeline(DocumentProcessor documentProcessor,
+                             EmbeddingService embeddingService,
+                             VectorStoreService vectorStoreService,
+                             KeywordIndexService keywordIndexService,
+                             ChunkDeduplicator chunkDeduplicator,
+                             IngestionProperties properties,
+                             @Qualifier("ingestionExecutor") ThreadPoolTaskExecutor ingestionExecutor) {
+        this.documentProcessor = documentProcessor;
+        this.embeddingService = embeddingService;
+        this.vectorStoreService = vectorStoreService;
+        this.keywordIndexService = keywordIndexService;
+        this.chunkDeduplicator = chunkDeduplicator;
+        this.properties = properties;
+        this.ingestionExecutor = ingestionExecutor;
+    }
+
+    /**
+     * 流式处理并入库一个文档
+     *
+     * @param file 上传的文件
+     * @param documentInfo 文档信息，完成后填充文件信息和分块数量
+     * @param fileRecordId 文件记录ID
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 分块数量
+     */
+    public int ingest(MultipartFile file, DocumentInfo documentInfo, Long fileRecordId, Long userId, String username) {
+        return ingest(file, documentInfo, fileRecordId, userId, username, properties.getBatchChunks(), IngestionProgress.NONE);
+    }
+
+    /**
+     * 流式处理并入库一个文档，按批次回报进度
+     * <p>
+     * 批次划分只取决于文档内容和batchChunks，恢复时必须使用与首次执行相同的batchChunks
+     * </p>
+     *
+     * @param file 上传的文件
+     * @param documentInfo 文档信息，完成后填充文件信息和分块数量
+     * @param fileRecordId 文件记录ID
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param batchChunks 每批分块数
+     * @param progress 进度回调
+     * @return 分块数量
+     */
+    public int ingest(MultipartFile file, DocumentInfo documentInfo, Long fileRecordId, Long userId, String username,
+                      int batchChunks, IngestionProgress progress) {
+        long start = System.currentTimeMillis();
+        String fileExtension = getFileExtension(file.getOriginalFilename());
+
+        KeywordIndexSegment.Builder keywordBuilder = keywordIndexService.openDocumentBuilder(
+                userId, username, fileRecordId, documentInfo.getTitle(), fileExtension.toUpperCase());
+        IngestionRun run = new IngestionRun(fileRecordId, userId, username, documentInfo, keywordBuilder,
+                Math.max(1, batchChunks), progress);
+
+        try {
+            StreamingChunker chunker = newChunker(fileExtension, run::accept);
+            documentProcessor.streamDocument(file, documentInfo, chunker);
+            chunker.finish();
+            run.flush();
+            List<DocumentMilvusMapping> mappings = run.awaitAll();
+            progress.onStatus(IngestionJob.Status.INDEXING);
+
+            // 关键词索引先于映射入库，避免首次加载索引时重复重建该文档
+            keywordIndexService.commitDocument(userId, username, fileRecordId, keywordBuilder);
+            try {
+                if (progress.isResumed()) {
+                    vectorStoreService.replaceVectorMappings(fileRecordId, mappings);
+                } else {
+                    vectorStoreService.saveVectorMappings(mappings);
+                }
+            } catch (Exception e) {
+                keywordIndexService.removeDocument(userId, fileRecordId);
+                throw e;
+            }
+
+            int chunkCount = mappings.size();
+            int duplicates = run.dedup.getDuplicates();
+            documentInfo.setChunkCount(chunkCount);
+            documentInfo.setVectorCount(chunkCount - duplicates);
+            log.info("用户 {}({}) 流式入库完成: {}, 分块数量: {}, 向量数量: {}, 重复分块: {}(文档内: {}, 跨文档: {}, 近似: {}), "
+                            + "节省嵌入: {}%, 批次数: {}, 跳过已完成批次: {}, 耗时: {}ms",
+                    username, userId, fileRecordId, chunkCount, chunkCount - duplicates, duplicates,
+                    run.dedup.getWithinDocument(), run.dedup.getCrossDocument(), run.dedup.getNearDuplicates(),
+                    chunkCount > 0 ? duplicates * 100 / chunkCount : 0, run.batchCount, run.skippedBatches,
+                    System.currentTimeMillis() - start);
+            return chunkCount;
+        } catch (Exception e) {
+            log.error("用户 {}({}) 流式入库失败: {}", username, userId, e.getMessage(), e);
+            run.abort();
+            keywordBuilder.close();
+            throw new RuntimeException("流式入库失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 以新内容更新已入库的文档
+     * <p>
+     * 新内容使用与首次入库相同的流式分块，逐个分块计算摘要并与现有映射比对：摘要相同的分块沿用原向量，
+     * 只调整其位置；新出现的分块凑满一批即嵌入并写入Milvus；剩余未匹配的原有分块视为已消失。
+     * 文件记录与映射的变化在一个事务中提交，提交后才删除消失分块的向量；提交前失败时删除本次写入的向量，
+     * 文档保持更新前的状态。没有内容摘要的旧映射（本功能上线前入库）无法匹配，首次更新时全部重新嵌入。
+     * </p>
+     *
+     * @param file 新内容文件
+     * @param documentInfo 文档信息，完成后填充文件信息和分块数量
+     * @param record 已修改（版本、文件信息）但尚未保存的文件记录
+     * @param username 用户名
+     * @return 更新结果
+     */
+    public DocumentUpdateResult update(MultipartFile file, DocumentInfo documentInfo, UserFileRecord record, String username) {
+        Long fileRecordId = record.getId();
+        if (!updatingDocuments.add(fileRecordId)) {
+            throw new BusinessException(ErrorCode.DOCUMENT_IN_PROCESSING, "文档正在更新中，请稍后再试");
+        }
+        try {
+            return doUpdate(file, documentInfo, record, username);
+        } finally {
+            updatingDocuments.remove(fileRecordId);
+        }
+    }
+
+    private DocumentUpdateResult doUpdate(MultipartFile file, DocumentInfo documentInfo, UserFileRecord record, String username) {
+        long start = System.currentTimeMillis();
+        Long fileRecordId = record.getId();
+        Long userId = record.getUserId();
+        String fileExtension = getFileExtension(file.getOriginalFilename());
+
+        List<DocumentMilvusMapping> oldMappings = vectorStoreService.findDocumentMappings(fileRecordId);
+        KeywordIndexSegment.Builder keywordBuilder = keywordIndexService.openDocumentBuilder(
+                userId, username, fileRecordId, documentInfo.getTitle(), fileExtension.toUpperCase());
+        UpdateRun run = new UpdateRun(record, username, documentInfo, keywordBuilder, oldMappings);
+
+        List<DocumentMilvusMapping> removed;
+        try {
+            StreamingChunker chunker = newChunker(fileExtension, run::accept);
+            documentProcessor.streamDocument(file, documentInfo, chunker);
+            chunker.finish();
+            run.flush();
+
+            removed = run.removedMappings();
+            List<DocumentMilvusMapping> changed = new ArrayList<>(run.movedMappings);
+            changed.addAll(removed);
+            vectorStoreService.applyDocumentUpdate(record, changed, run.newMappings);
+        } catch (Exception e) {
+            log.error("用户 {}({}) 文档 {} 更新失败: {}", username, userId, fileRecordId, e.getMessage(), e);
+            vectorStoreService.removeVectors(userId, username, run.insertedIds);
+            keywordBuilder.close();
+            throw new RuntimeException("文档更新失败: " + e.getMessage(), e);
+        }
+
+        // 以下步骤在映射提交之后执行，失败只留下可重建的残留，不影响更新结果
+        vectorStoreService.releaseVectors(userId, username, removed);
+        try {
+            keywordIndexService.commitDocument(userId, username, fileRecordId, keywordBuilder);
+        } catch (Exception e) {
+            log.warn("用户 {}({}) 文档 {} 关键词索引更新失败，检索将暂时使用旧内容: {}",
+                    username, userId, fileRecordId, e.getMessage());
+        }
+
+        DocumentUpdateResult result = new DocumentUpdateResult();
+        result.setDocumentId(String.valueOf(fileRecordId));
+        result.setVersion(record.getVersion());
+        result.setTotalChunks(run.chunkCount);
+        result.setReusedChunks(run.chunkCount - run.newMappings.size());
+        result.setAddedChunks(run.insertedIds.size());
+        result.setDuplicateChunks(run.dedup.getDuplicates());
+        result.setRemovedChunks(removed.size());
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        documentInfo.setChunkCount(run.chunkCount);
+        log.info("用户 {}({}) 文档 {} 已更新到版本 {}: 分块数量: {}, 沿用: {}, 新增: {}, 重复: {}, 删除: {}, 耗时: {}ms",
+                username, userId, fileRecordId, record.getVersion(), result.getTotalChunks(), result.getReusedChunks(),
+                result.getAddedChunks(), result.getDuplicateChunks(), result.getRemovedChunks(), result.getElapsedMs());
+        return result;
+    }
+
+    private StreamingChunker newChunker(String fileExtension, StreamingChunker.ChunkSink sink) {
+        int overlap = IntelligentChunkingService.DocumentType.fromExtension(fileExtension).getOptimalOverlap();
+        return new StreamingChunker(text -> documentProcessor.chunkText(text, fileExtension),
+                properties.getWindowChars(), overlap, sink);
+    }
+
+    /**
+     * 页码区间标签：单页为"3"，跨页为"3-4"，未知时为null
+     */
+    private static String pageLabel(int firstPage, int lastPage) {
+        if (firstPage <= 0) {
+            return null;
+        }
+        return lastPage > firstPage ? firstPage + "-" + lastPage : String.valueOf(firstPage);
+    }
+
+    private String getFileExtension(String fileName) {
+        if (fileName == null || fileName.lastIndexOf('.') == -1) {
+            return "";
+        }
+        return fileName.substring(fileName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 单个文档的入库状态
+     * <p>
+     * accept/flush只在解析线程上调用；批次完成回调在入库线程池上执行，只访问并发容器
+     * </p>
+     */
+    private final class IngestionRun {
+
+        private final Long fileRecordId;
+        private final Long userId;
+        private final String username;
+        private final DocumentInfo documentInfo;
+        private final KeywordIndexSegment.Builder keywordBuilder;
+        private final int batchChunks;
+        private final IngestionProgress progress;
+        private final ChunkDeduplicator.Session dedup;
+
+        private final Semaphore window = new Semaphore(Math.max(1, properties.getMaxInFlightBatches()));
+        private final List<CompletableFuture<String[]>> futures = new ArrayList<>();
+        private final Queue<String> written = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // 按分块顺序排列的指纹和引用，引用为null表示分块持有自己的向量
+        private final List<String> contentHashes = new ArrayList<>();
+        private final List<Long> simhashes = new ArrayList<>();
+        private final List<String> refIds = new ArrayList<>();
+        private List<String> pending = new ArrayList<>();
+        private List<String> pendingPages = new ArrayList<>();
+        private int nextChunkIndex = 0;
+        private int ownedVectors = 0;
+        private int batchCount = 0;
+        private int skippedBatches = 0;
+        private boolean embeddingStarted = false;
+
+        IngestionRun(Long fileRecordId, Long userId, String username, DocumentInfo documentInfo,
+                     KeywordIndexSegment.Builder keywordBuilder, int batchChunks, IngestionProgress progress) {
+            this.fileRecordId = fileRecordId;
+            this.userId = userId;
+            this.username = username;
+            this.documentInfo = documentInfo;
+            this.keywordBuilder = keywordBuilder;
+            this.batchChunks = batchChunks;
+            this.progress = progress;
+            this.dedup = chunkDeduplicator.open(userId, fileRecordId);
+        }
+
+        /**
+         * 接收分块器输出的一个分块
+         *
+         * @param firstPage 起始页码，未知时为0
+         * @param lastPage 结束页码，未知时为0
+         */
+        void accept(String chunk, int firstPage, int lastPage) {
+            try {
+                keywordBuilder.addChunk(chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            contentHashes.add(ChunkFingerprint.contentHash(chunk));
+            simhashes.add(chunkDeduplicator.simHash(chunk));
+            pending.add(chunk);
+            pendingPages.add(pageLabel(firstPage, lastPage));
+            if (pending.size() >= batchChunks) {
+                flush();
+            }
+        }
+
+        /**
+         * 提交当前累积的批次：先比对重复分块，只有不重复的分块进入嵌入和写入；在途批次已满时阻塞
+         */
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            throwIfFailed();
+
+            List<String> batch = pending;
+            List<String> batchPages = pendingPages;
+            int batchIndex = batchCount++;
+            int firstChunkIndex = nextChunkIndex;
+            pending = new ArrayList<>();
+            pendingPages = new ArrayList<>();
+            nextChunkIndex += batch.size();
+
+            String[] ids = VectorStoreService.vectorIds(fileRecordId, firstChunkIndex, batch.size());
+            boolean completed = progress.isBatchCompleted(batchIndex);
+            // 之前的执行已写入该批次，但重复分块没有向量，按向量库中实际存在的ID区分
+            Set<String> present = completed
+                    ? vectorStoreService.existingVectorIds(userId, username, Arrays.asList(ids))
+                    : Set.of();
+            String[] refs = dedup.resolve(contentHashes.subList(firstChunkIndex, nextChunkIndex),
+                    simhashes.subList(firstChunkIndex, nextChunkIndex), ids, present);
+            refIds.addAll(Arrays.asList(refs));
+
+            List<String> chunks = new ArrayList<>();
+            List<String> pages = new ArrayList<>();
+            List<String> embedIds = new ArrayList<>();
+            List<Integer> chunkIndexes = new ArrayList<>();
+            List<String> residual = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (!present.contains(ids[i])) {
+                    residual.add(ids[i]);
+                }
+                if (refs[i] != null) {
+                    continue;
+                }
+                ownedVectors++;
+                if (present.contains(ids[i])) {
+                    written.add(ids[i]);
+                } else {
+                    chunks.add(batch.get(i));
+                    pages.add(batchPages.get(i));
+                    embedIds.add(ids[i]);
+                    chunkIndexes.add(firstChunkIndex + i);
+                }
+            }
+            if (completed) {
+                skippedBatches++;
+            }
+            if (chunks.isEmpty()) {
+                if (!completed) {
+                    recordBatch(batchIndex, firstChunkIndex, batch.size());
+                }
+                return;
+            }
+            if (!embeddingStarted) {
+                embeddingStarted = true;
+                progress.onStatus(IngestionJob.Status.EMBEDDING);
+            }
+
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("流式入库被中断", e);
+            }
+
+            String[] milvusIds = embedIds.toArray(new String[0]);
+            int[] indexes = chunkIndexes.stream().mapToInt(Integer::intValue).toArray();
+            CompletableFuture<String[]> future = CompletableFuture
+                    .supplyAsync(() -> embeddingService.embedTexts(chunks), ingestionExecutor)
+                    .thenApplyAsync((List<Embedding> embeddings) -> {
+                        if (progress.isResumed()) {
+                            // 上次执行可能在本批写入途中中断，先按确定性ID清理残留，避免重复向量；
+                            // 上次写入而本次判定为重复的分块也一并清理
+                            vectorStoreService.removeVectors(userId, username, residual);
+                        }
+                        vectorStoreService.storeChunks(fileRecordId, userId, username, milvusIds, indexes,
+                                chunks, pages, embeddings, documentInfo);
+                        return milvusIds;
+                    }, ingestionExecutor)
+                    .whenComplete((stored, error) -> {
+                        if (error == null) {
+                            written.addAll(Arrays.asList(stored));
+                            if (!completed) {
+                                recordBatch(batchIndex, firstChunkIndex, batch.size());
+                            }
+                        } else {
+                            failure.compareAndSet(null, unwrap(error));
+                        }
+                        window.release();
+                    });
+            futures.add(future);
+        }
+
+        /**
+         * 等待全部批次完成
+         *
+         * @return 按分块顺序排列的映射记录
+         */
+        List<DocumentMilvusMapping> awaitAll() {
+            waitQuietly();
+            throwIfFailed();
+            if (written.size() != ownedVectors) {
+                throw new IllegalStateException("写入向量数(" + written.size() + ")与应写入数(" + ownedVectors + ")不一致");
+            }
+            String[] ids = VectorStoreService.vectorIds(fileRecordId, 0, nextChunkIndex);
+            LocalDateTime now = LocalDateTime.now();
+            List<DocumentMilvusMapping> mappings = new ArrayList<>(nextChunkIndex);
+            for (int i = 0; i < nextChunkIndex; i++) {
+                mappings.add(VectorStoreService.newMapping(fileRecordId, userId, ids[i], i,
+                        contentHashes.get(i), simhashes.get(i), refIds.get(i), now));
+            }
+            return mappings;
+        }
+
+        /**
+         * 等待在途批次结束并删除已写入的向量
+         */
+        void abort() {
+            waitQuietly();
+            vectorStoreService.removeVectors(userId, username, new ArrayList<>(written));
+        }
+
+        /**
+         * 回报批次完成；检查点写入失败只影响恢复时的跳过范围，不中断本次入库
+         */
+        private void recordBatch(int batchIndex, int firstChunkIndex, int chunkCount) {
+            try {
+                progress.onBatchCompleted(batchIndex, firstChunkIndex, chunkCount);
+            } catch (Exception e) {
+                log.warn("记录批次进度失败: {}#{}: {}", fileRecordId, batchIndex, e.getMessage());
+            }
+        }
+
+        private void waitQuietly() {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((r, e) -> null).join();
+        }
+
+        private void throwIfFailed() {
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("分块批次处理失败: " + error.getMessage(), error);
+            }
+        }
+
+        private Throwable unwrap(Throwable error) {
+            return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+    }
+
+    /**
+     * 单个文档的更新状态，只在调用线程上使用
+     * <p>
+     * 新旧分块按摘要比对（见{@link ChunkDiff}），重复出现的相同分块也能各自沿用一个原向量。
+     * 新出现的分块同样经过重复分块比对，与沿用的分块或其他文档重复时只记录引用
+     * </p>
+     */
+    private final class UpdateRun {
+
+        private final UserFileRecord record;
+        private final String username;
+        private final DocumentInfo documentInfo;
+        private final KeywordIndexSegment.Builder keywordBuilder;
+        private final ChunkDeduplicator.Session dedup;
+        private final ChunkDiff diff;
+        private final LocalDateTime now = LocalDateTime.now();
+
+        private final List<DocumentMilvusMapping> movedMappings = new ArrayList<>();
+        private final List<DocumentMilvusMapping> newMappings = new ArrayList<>();
+        private final List<String> insertedIds = new ArrayList<>();
+
+        private final List<String> pending = new ArrayList<>();
+        private final List<String> pendingPages = new ArrayList<>();
+        private final List<DocumentMilvusMapping> pendingMappings = new ArrayList<>();
+        private int chunkCount = 0;
+
+        UpdateRun(UserFileRecord record, String username, DocumentInfo documentInfo,
+                  KeywordIndexSegment.Builder keywordBuilder, List<DocumentMilvusMapping> oldMappings) {
+            this.record = record;
+            this.username = username;
+            this.documentInfo = documentInfo;
+            this.keywordBuilder = keywordBuilder;
+            this.dedup = chunkDeduplicator.open(record.getUserId(), record.getId());
+            this.diff = new ChunkDiff(oldMappings);
+        }
+
+        void accept(String chunk, int firstPage, int lastPage) {
+            try {
+                keywordBuilder.addChunk(chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int chunkIndex = chunkCount++;
+            String hash = ChunkFingerprint.contentHash(chunk);
+            Long simhash = chunkDeduplicator.simHash(chunk);
+            DocumentMilvusMapping kept = diff.match(hash);
+            if (kept != null) {
+                dedup.register(hash, simhash, kept.getVectorId());
+                if (kept.getVectorIndex() != chunkIndex || kept.getSimhash() == null) {
+                    kept.setVectorIndex(chunkIndex);
+                    kept.setSimhash(simhash);
+                    kept.setGmtModified(now);
+                    movedMappings.add(kept);
+                }
+                return;
+            }
+
+            DocumentMilvusMapping mapping = VectorStoreService.newMapping(record.getId(), record.getUserId(),
+                    VectorStoreService.vectorId(record.getId(), record.getVersion(), chunkIndex), chunkIndex,
+                    hash, simhash, null, now);
+            newMappings.add(mapping);
+
+            pending.add(chunk);
+            pendingPages.add(pageLabel(firstPage, lastPage));
+            pendingMappings.add(mapping);
+            if (pending.size() >= Math.max(1, properties.getBatchChunks())) {
+                flush();
+            }
+        }
+
+        /**
+         * 比对当前累积的新分块，嵌入并写入其中不重复的分块
+         */
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            int size = pendingMappings.size();
+            List<String> hashes = new ArrayList<>(size);
+            List<Long> fingerprints = new ArrayList<>(size);
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                DocumentMilvusMapping mapping = pendingMappings.get(i);
+                hashes.add(mapping.getContentHash());
+                fingerprints.add(mapping.getSimhash());
+                ids[i] = mapping.getMilvusId();
+            }
+            String[] refs = dedup.resolve(hashes, fingerprints, ids, Set.of());
+
+            List<String> chunks = new ArrayList<>();
+            List<String> pages = new ArrayList<>();
+            List<String> milvusIds = new ArrayList<>();
+            List<Integer> chunkIndexes = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                DocumentMilvusMapping mapping = pendingMappings.get(i);
+                if (refs[i] != null) {
+                    mapping.setRefMilvusId(refs[i]);
+                    continue;
+                }
+                chunks.add(pending.get(i));
+                pages.add(pendingPages.get(i));
+                milvusIds.add(ids[i]);
+                chunkIndexes.add(mapping.getVectorIndex());
+            }
+            pending.clear();
+            pendingPages.clear();
+            pendingMappings.clear();
+            if (chunks.isEmpty()) {
+                return;
+            }
+
+            List<Embedding> embeddings = embeddingService.embedTexts(chunks);
+            // 先登记ID再写入，写入中途失败时同样能清理
+            insertedIds.addAll(milvusIds);
+            vectorStoreService.storeChunks(record.getId(), record.getUserId(), username, milvusIds.toArray(new String[0]),
+                    chunkIndexes.stream().mapToInt(Integer::intValue).toArray(), chunks, pages, embeddings, documentInfo);
+        }
+
+        /**
+         * 未被新内容匹配的原有映射，标记为删除
+         */
+        List<DocumentMilvusMapping> removedMappings() {
+            List<DocumentMilvusMapping> removed = diff.remaining();
+            for (DocumentMilvusMapping mapping : removed) {
+                mapping.setIsDeleted(1);
+                mapping.setGmtModified(now);
+            }
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.IngestionJob;
+
+/**
+ * 入库进度回调
+ * <p>
+ * 由{@link IngestionPipeline}在阶段切换和批次完成时调用，入库任务据此持久化进度和批次检查点。
+ * 批次回调在入库线程池上执行，实现需线程安全；批次回调抛出的异常只记录日志，不影响本次入库。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public interface IngestionProgress {
+
+    /**
+     * 不记录进度（同步上传使用）
+     */
+    IngestionProgress NONE = new IngestionProgress() {
+    };
+
+    /**
+     * 是否为中断后恢复的入库，恢复时未完成批次写入前会先清理可能残留的向量
+     */
+    default boolean isResumed() {
+        return false;
+    }
+
+    /**
+     * 批次是否已在之前的执行中完成，已完成的批次不再嵌入和写入
+     *
+     * @param batchIndex 批次序号
+     */
+    default boolean isBatchCompleted(int batchIndex) {
+        return false;
+    }
+
+    /**
+     * 入库进入新阶段
+     *
+     * @param status 阶段
+     */
+    default void onStatus(IngestionJob.Status status) {
+    }
+
+    /**
+     * 一个批次已写入向量库
+     *
+     * @param batchIndex 批次序号
+     * @param firstChunkIndex 批次第一个分块的序号
+     * @param chunkCount 批次分块数
+     */
+    default void onBatchCompleted(int batchIndex, int firstChunkIndex, int chunkCount) {
+    }
+}
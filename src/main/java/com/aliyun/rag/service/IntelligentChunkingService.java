@@ -166,6 +166,10 @@ public class IntelligentChunkingService {
 
     /**
      * 基于语义的分块
+     * <p>
+     * 各策略只扫描一遍文本，以偏移量记录段落、句子、标题和章节边界，
+     * 分块内容是原文的子串，startIndex/endIndex为分块在原文中的位置（去除首尾空白后）
+     * </p>
      */
     public List<TextChunk> semanticChunking(String text, DocumentType type) {
         log.info("开始智能分块，文档类型: {}, 文本长度: {}", type, text.length());
@@ -186,223 +190,399 @@ public class IntelligentChunkingService {
 
     /**
      * PDF文档语义分块
+     * <p>
+     * 按空行分段，相邻段落合并到分块大小为止；超长段落按句子再切分
+     * </p>
      */
     private List<TextChunk> pdfSemanticChunking(String text) {
         List<TextChunk> chunks = new ArrayList<>();
-        
-        // PDF通常按段落分割
-        String[] paragraphs = text.split("\\n\\s*\\n");
-        StringBuilder currentChunk = new StringBuilder();
-        int currentIndex = 0;
-        
-        for (String paragraph : paragraphs) {
-            if (currentChunk.length() + paragraph.length() <= pdfChunkSize) {
-                currentChunk.append(paragraph).append("\n\n");
-            } else {
-                if (currentChunk.length() > 0) {
-                    chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                            currentIndex, currentIndex + currentChunk.length()));
-                    currentIndex += currentChunk.length();
-                }
-                
-                // 处理超长段落
-                if (paragraph.length() > pdfChunkSize) {
-                    List<TextChunk> subChunks = splitLongParagraph(paragraph, pdfChunkSize, pdfOverlap);
-                    chunks.addAll(subChunks);
-                } else {
-                    currentChunk = new StringBuilder(paragraph).append("\n\n");
-                }
-            }
-        }
-        
-        if (currentChunk.length() > 0) {
-            chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                    currentIndex, currentIndex + currentChunk.length()));
-        }
-        
+        ChunkPacker packer = new ChunkPacker(text, chunks, pdfChunkSize, 0, pdfOverlap, true);
+        scanParagraphs(text, 0, text.length(), packer);
+        packer.finish();
         return chunks;
     }
 
     /**
      * Markdown文档语义分块
+     * <p>
+     * 按行首标题分节（代码块内的#不视为标题），不超过分块大小的节单独成块，
+     * 超长的节按段落合并，超长段落按句子再切分
+     * </p>
      */
     private List<TextChunk> markdownSemanticChunking(String text) {
         List<TextChunk> chunks = new ArrayList<>();
-        
-        // Markdown按标题和段落分割
-        String[] sections = text.split("(?=^#{1,6}\\s)");
-        
-        for (String section : sections) {
-            if (section.trim().isEmpty()) continue;
-            
-            if (section.length() <= markdownChunkSize) {
-                chunks.add(new TextChunk(section.trim(), 0, section.length()));
-            } else {
-                // 按段落进一步分割
-                String[] paragraphs = section.split("\\n\\s*\\n");
-                StringBuilder currentChunk = new StringBuilder();
-                
-                for (String paragraph : paragraphs) {
-                    if (currentChunk.length() + paragraph.length() <= markdownChunkSize) {
-                        currentChunk.append(paragraph).append("\n\n");
-                    } else {
-                        if (currentChunk.length() > 0) {
-                            chunks.add(new TextChunk(currentChunk.toString().trim(), 0, currentChunk.length()));
-                        }
-                        currentChunk = new StringBuilder(paragraph).append("\n\n");
-                    }
-                }
-                
-                if (currentChunk.length() > 0) {
-                    chunks.add(new TextChunk(currentChunk.toString().trim(), 0, currentChunk.length()));
-                }
+        int end = text.length();
+        int sectionStart = 0;
+        boolean inFence = false;
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = end;
             }
+            if (isFenceLine(text, lineStart, lineEnd)) {
+                inFence = !inFence;
+            } else if (!inFence && lineStart > sectionStart && isHeadingLine(text, lineStart, lineEnd)) {
+                markdownSection(text, sectionStart, lineStart, chunks);
+                sectionStart = lineStart;
+            }
+            lineStart = lineEnd + 1;
         }
-        
+        markdownSection(text, sectionStart, end, chunks);
         return chunks;
     }
 
+    private void markdownSection(String text, int start, int end, List<TextChunk> chunks) {
+        if (end - start <= markdownChunkSize) {
+            addChunk(text, start, end, chunks);
+            return;
+        }
+        ChunkPacker packer = new ChunkPacker(text, chunks, markdownChunkSize, 0, markdownOverlap, true);
+        scanParagraphs(text, start, end, packer);
+        packer.finish();
+    }
+
     /**
      * DOCX文档语义分块
+     * <p>
+     * 按行（解析出的段落/表格）合并，新分块带上前一分块末尾的重叠内容；超长行按句子再切分
+     * </p>
      */
     private List<TextChunk> docxSemanticChunking(String text) {
         List<TextChunk> chunks = new ArrayList<>();
-        
-        // DOCX按段落和标题分割
-        String[] paragraphs = text.split("\\n");
-        StringBuilder currentChunk = new StringBuilder();
-        int currentIndex = 0;
-        
-        for (String paragraph : paragraphs) {
-            if (currentChunk.length() + paragraph.length() <= docxChunkSize) {
-                currentChunk.append(paragraph).append("\n");
-            } else {
-                if (currentChunk.length() > 0) {
-                    chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                            currentIndex, currentIndex + currentChunk.length()));
-                    currentIndex += currentChunk.length();
-                }
-                
-                // 添加重叠内容
-                String overlapContent = getOverlapContent(currentChunk.toString(), docxOverlap);
-                currentChunk = new StringBuilder(overlapContent).append(paragraph).append("\n");
+        ChunkPacker packer = new ChunkPacker(text, chunks, docxChunkSize, docxOverlap, docxOverlap, true);
+        int end = text.length();
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = end;
             }
+            packer.add(lineStart, lineEnd);
+            lineStart = lineEnd + 1;
         }
-        
-        if (currentChunk.length() > 0) {
-            chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                    currentIndex, currentIndex + currentChunk.length()));
-        }
-        
+        packer.finish();
         return chunks;
     }
 
     /**
      * EPUB文档语义分块
+     * <p>
+     * EPUB解析后每个章节文件是一行文本，按章节标题（第X章、Chapter N）切分，
+     * 不超过分块大小的章节单独成块，超长章节按句子合并
+     * </p>
      */
     private List<TextChunk> epubSemanticChunking(String text) {
-        // EPUB类似HTML结构，按章节分割
         List<TextChunk> chunks = new ArrayList<>();
-        
-        // 按章节标题分割
-        String[] chapters = text.split("(?=第[一二三四五六七八九十\\d]+章|Chapter\\s+\\d+)");
-        
-        for (String chapter : chapters) {
-            if (chapter.trim().isEmpty()) continue;
-            
-            if (chapter.length() <= defaultChunkSize) {
-                chunks.add(new TextChunk(chapter.trim(), 0, chapter.length()));
-            } else {
-                // 进一步分割
-                List<TextChunk> subChunks = splitLongText(chapter, defaultChunkSize, defaultOverlap);
-                chunks.addAll(subChunks);
+        int end = text.length();
+        int chapterStart = 0;
+        for (int i = 0; i < end; i++) {
+            if (i > chapterStart && isChapterMarker(text, i, end)) {
+                epubChapter(text, chapterStart, i, chunks);
+                chapterStart = i;
             }
         }
-        
+        epubChapter(text, chapterStart, end, chunks);
         return chunks;
     }
 
+    private void epubChapter(String text, int start, int end, List<TextChunk> chunks) {
+        if (end - start <= defaultChunkSize) {
+            addChunk(text, start, end, chunks);
+            return;
+        }
+        splitLongText(text, start, end, defaultChunkSize, defaultOverlap, chunks);
+    }
+
     /**
      * 默认语义分块
      */
     private List<TextChunk> defaultSemanticChunking(String text) {
-        return splitLongText(text, defaultChunkSize, defaultOverlap);
+        List<TextChunk> chunks = new ArrayList<>();
+        splitLongText(text, 0, text.length(), defaultChunkSize, defaultOverlap, chunks);
+        return chunks;
     }
 
     /**
-     * 分割长文本
+     * 按句子合并分割文本的[start, end)区间，新分块带上前一分块末尾的重叠内容，超长句子按固定窗口切分
      */
-    private List<TextChunk> splitLongText(String text, int chunkSize, int overlap) {
+    private void splitLongText(String text, int start, int end, int chunkSize, int overlap, List<TextChunk> chunks) {
+        ChunkPacker packer = new ChunkPacker(text, chunks, chunkSize, overlap, overlap, false);
+        scanSentences(text, start, end, packer);
+        packer.finish();
+    }
+
+    /**
+     * 默认分块方法（保持向后兼容）
+     */
+    private String[] defaultChunking(String text, String fileExtension) {
+        DocumentType type = DocumentType.fromExtension(fileExtension);
+        int chunkSize = type.getOptimalChunkSize();
+        int overlap = type.getOptimalOverlap();
+
         List<TextChunk> chunks = new ArrayList<>();
-        
-        String[] sentences = text.split("[.!?。！？]+");
-        StringBuilder currentChunk = new StringBuilder();
-        int currentIndex = 0;
-        
-        for (String sentence : sentences) {
-            if (currentChunk.length() + sentence.length() <= chunkSize) {
-                currentChunk.append(sentence).append(". ");
-            } else {
-                if (currentChunk.length() > 0) {
-                    chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                            currentIndex, currentIndex + currentChunk.length()));
-                    currentIndex += currentChunk.length();
-                    
-                    // 添加重叠内容
-                    String overlapContent = getOverlapContent(currentChunk.toString(), overlap);
-                    currentChunk = new StringBuilder(overlapContent).append(sentence).append(". ");
-                } else {
-                    // 单个句子过长，强制分割
-                    chunks.add(new TextChunk(sentence, currentIndex, currentIndex + sentence.length()));
-                    currentIndex += sentence.length();
+        splitLongText(text, 0, text.length(), chunkSize, overlap, chunks);
+        return chunks.stream()
+                .map(TextChunk::getContent)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * 扫描[start, end)区间内的段落，段落之间以包含至少两个换行的空白分隔
+     */
+    private static void scanParagraphs(String text, int start, int end, ChunkPacker packer) {
+        int paragraphStart = start;
+        int i = start;
+        while (i < end) {
+            int newline = text.indexOf('\n', i);
+            if (newline < 0 || newline >= end) {
+                break;
+            }
+            int j = newline + 1;
+            int lastNewline = -1;
+            while (j < end && Character.isWhitespace(text.charAt(j))) {
+                if (text.charAt(j) == '\n') {
+                    lastNewline = j;
                 }
+                j++;
+            }
+            if (lastNewline >= 0) {
+                packer.add(paragraphStart, newline);
+                paragraphStart = lastNewline + 1;
             }
+            i = j;
         }
-        
-        if (currentChunk.length() > 0) {
-            chunks.add(new TextChunk(currentChunk.toString().trim(), 
-                    currentIndex, currentIndex + currentChunk.length()));
+        packer.add(paragraphStart, end);
+    }
+
+    /**
+     * 扫描[start, end)区间内的句子，句子包含句末标点和紧随的右引号/右括号。
+     * 中文句末标点总是断句；英文句末标点只在其后是空白或区间末尾时断句，避免切开小数、网址和缩写
+     */
+    private static void scanSentences(String text, int start, int end, ChunkPacker packer) {
+        int sentenceStart = start;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (!isSentenceTerminator(c)) {
+                i++;
+                continue;
+            }
+            boolean fullWidth = false;
+            int j = i;
+            while (j < end && isSentenceTerminator(text.charAt(j))) {
+                fullWidth |= text.charAt(j) > 0x7F;
+                j++;
+            }
+            while (j < end && isClosingPunctuation(text.charAt(j))) {
+                j++;
+            }
+            if (fullWidth || j == end || Character.isWhitespace(text.charAt(j))) {
+                packer.add(sentenceStart, j);
+                sentenceStart = j;
+            }
+            i = j;
         }
-        
-        return chunks;
+        if (sentenceStart < end) {
+            packer.add(sentenceStart, end);
+        }
+    }
+
+    private static boolean isSentenceTerminator(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？';
+    }
+
+    private static boolean isClosingPunctuation(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == '”' || c == '’' || c == '）' || c == '」' || c == '』';
     }
 
     /**
-     * 分割超长段落
+     * 行首是否为Markdown标题：1~6个#后跟空格或制表符
      */
-    private List<TextChunk> splitLongParagraph(String paragraph, int chunkSize, int overlap) {
-        List<TextChunk> chunks = new ArrayList<>();
-        
-        for (int i = 0; i < paragraph.length(); i += chunkSize - overlap) {
-            int endIndex = Math.min(i + chunkSize, paragraph.length());
-            String chunk = paragraph.substring(i, endIndex);
-            chunks.add(new TextChunk(chunk, i, endIndex));
+    private static boolean isHeadingLine(String text, int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && i - lineStart < 7 && text.charAt(i) == '#') {
+            i++;
         }
-        
-        return chunks;
+        int level = i - lineStart;
+        return level >= 1 && level <= 6 && i < lineEnd && (text.charAt(i) == ' ' || text.charAt(i) == '\t');
     }
 
     /**
-     * 获取重叠内容
+     * 是否为代码块围栏行（``` 或 ~~~ 开头，允许最多3个前导空格）
      */
-    private String getOverlapContent(String text, int overlapSize) {
-        if (text.length() <= overlapSize) {
-            return text;
+    private static boolean isFenceLine(String text, int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && i - lineStart < 3 && text.charAt(i) == ' ') {
+            i++;
+        }
+        if (i + 3 > lineEnd) {
+            return false;
         }
-        return text.substring(text.length() - overlapSize);
+        char c = text.charAt(i);
+        return (c == '`' || c == '~') && text.charAt(i + 1) == c && text.charAt(i + 2) == c;
     }
 
     /**
-     * 默认分块方法（保持向后兼容）
+     * 位置i是否为章节标题：第[一二三四五六七八九十0-9]+章 或 Chapter\s+[0-9]
      */
-    private String[] defaultChunking(String text, String fileExtension) {
-        DocumentType type = DocumentType.fromExtension(fileExtension);
-        int chunkSize = type.getOptimalChunkSize();
-        int overlap = type.getOptimalOverlap();
-        
-        return splitLongText(text, chunkSize, overlap).stream()
-                .map(TextChunk::getContent)
-                .toArray(String[]::new);
+    private static boolean isChapterMarker(String text, int i, int end) {
+        char c = text.charAt(i);
+        if (c == '第') {
+            int j = i + 1;
+            while (j < end && isChapterNumeral(text.charAt(j))) {
+                j++;
+            }
+            return j > i + 1 && j < end && text.charAt(j) == '章';
+        }
+        if (c == 'C' && text.startsWith("Chapter", i)) {
+            int j = i + 7;
+            int digits = j;
+            while (digits < end && Character.isWhitespace(text.charAt(digits))) {
+                digits++;
+            }
+            return digits > j && digits < end && text.charAt(digits) >= '0' && text.charAt(digits) <= '9';
+        }
+        return false;
+    }
+
+    private static boolean isChapterNumeral(char c) {
+        return (c >= '0' && c <= '9') || "一二三四五六七八九十".indexOf(c) >= 0;
+    }
+
+    /**
+     * 去除首尾空白后把[start, end)区间作为一个分块
+     */
+    private static void addChunk(String text, int start, int end, List<TextChunk> chunks) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end) {
+            chunks.add(new TextChunk(text.substring(start, end), start, end));
+        }
+    }
+
+    /**
+     * 分块合并器
+     * <p>
+     * 按顺序接收单元（段落、行或句子）的偏移区间，贪心合并到分块大小为止，只记录边界，
+     * 输出分块时才截取子串。分块之间的重叠通过回退起始偏移实现，每个字符最多被重复覆盖overlap次以内，
+     * 整体为线性时间。超出分块大小的单元按句子（或固定窗口）继续切分
+     * </p>
+     */
+    private static final class ChunkPacker {
+
+        private final String text;
+        private final List<TextChunk> chunks;
+        private final int chunkSize;
+        private final int packOverlap;
+        private final int splitOverlap;
+        private final boolean splitBySentence;
+
+        private int chunkStart = -1;
+        private int chunkEnd;
+
+        /**
+         * @param chunkSize 分块大小
+         * @param packOverlap 合并单元时相邻分块的重叠字符数
+         * @param splitOverlap 切分超长单元时的重叠字符数
+         * @param splitBySentence 超长单元按句子切分，否则按固定窗口切分
+         */
+        ChunkPacker(String text, List<TextChunk> chunks, int chunkSize, int packOverlap, int splitOverlap,
+                    boolean splitBySentence) {
+            this.text = text;
+            this.chunks = chunks;
+            this.chunkSize = Math.max(2, chunkSize);
+            // 重叠不超过分块大小的一半，保证每个新分块都能前进
+            this.packOverlap = Math.max(0, Math.min(packOverlap, this.chunkSize / 2));
+            this.splitOverlap = Math.max(0, Math.min(splitOverlap, this.chunkSize / 2));
+            this.splitBySentence = splitBySentence;
+        }
+
+        void add(int start, int end) {
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            if (start >= end) {
+                return;
+            }
+
+            if (chunkStart >= 0) {
+                if (end - chunkStart <= chunkSize) {
+                    chunkEnd = end;
+                    return;
+                }
+                int previousStart = chunkStart;
+                int previousEnd = chunkEnd;
+                flush();
+                if (packOverlap > 0) {
+                    int overlapStart = Math.max(previousStart, backOff(previousEnd, packOverlap));
+                    if (end - overlapStart <= chunkSize) {
+                        chunkStart = overlapStart;
+                        chunkEnd = end;
+                        return;
+                    }
+                }
+            }
+
+            if (end - start <= chunkSize) {
+                chunkStart = start;
+                chunkEnd = end;
+            } else if (splitBySentence) {
+                ChunkPacker sentences = new ChunkPacker(text, chunks, chunkSize, splitOverlap, splitOverlap, false);
+                scanSentences(text, start, end, sentences);
+                sentences.finish();
+            } else {
+                splitFixed(start, end);
+            }
+        }
+
+        void finish() {
+            flush();
+        }
+
+        private void flush() {
+            if (chunkStart >= 0) {
+                addChunk(text, chunkStart, chunkEnd, chunks);
+                chunkStart = -1;
+            }
+        }
+
+        /**
+         * 按固定窗口切分，不切开代理对
+         */
+        private void splitFixed(int start, int end) {
+            int windowStart = start;
+            while (true) {
+                int windowEnd = Math.min(windowStart + chunkSize, end);
+                if (windowEnd < end && Character.isLowSurrogate(text.charAt(windowEnd))) {
+                    windowEnd--;
+                }
+                addChunk(text, windowStart, windowEnd, chunks);
+                if (windowEnd >= end) {
+                    return;
+                }
+                int next = splitOverlap > 0 ? backOff(windowEnd, splitOverlap) : windowEnd;
+                windowStart = next > windowStart ? next : windowEnd;
+            }
+        }
+
+        /**
+         * 从end回退overlap个字符作为下一分块的起点，不落在代理对中间
+         */
+        private int backOff(int end, int overlap) {
+            int start = end - overlap;
+            if (start > 0 && Character.isLowSurrogate(text.charAt(start))) {
+                start++;
+            }
+            return start;
+        }
     }
 
     /**
@@ -2,6 +2,7 @@ package com.aliyun.rag.service;
 
 import com.aliyun.rag.config.JwtConfig;
 import com.aliyun.rag.model.User;
+import com.aliyun.rag.model.VerifiedToken;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -10,8 +11,12 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -30,13 +35,31 @@ public class JwtTokenService {
 
     private static final Logger log = LoggerFactory.getLogger(JwtTokenService.class);
 
+    /**
+     * 剩余有效时间少于该值时提示客户端刷新（1小时）
+     */
+    private static final long EXPIRING_SOON_MILLIS = 3600000;
+
     private final JwtConfig jwtConfig;
     private final SecretKey secretKey;
+    private final JwtParser jwtParser;
+    private final LinkedHashMap<String, VerifiedToken> verifiedTokens;
 
     public JwtTokenService(JwtConfig jwtConfig) {
         this.jwtConfig = jwtConfig;
+        // 按访问顺序排列，超出容量时淘汰最久未使用的条目
+        this.verifiedTokens = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > jwtConfig.getVerifiedCacheSize();
+            }
+        };
         // 使用配置的密钥生成SecretKey
         this.secretKey = Keys.hmacShaKeyFor(jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8));
+        // 解析器线程安全，创建一次复用
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
     }
 
     /**
@@ -94,18 +117,49 @@ public class JwtTokenService {
     }
 
     /**
-     * 验证Token有效性
+     * 验证Token并提取声明
+     * <p>
+     * 以令牌摘要为键缓存验证结果，同一令牌在有效期内只验证一次签名；过期的缓存条目视为无效。
+     * 认证拦截器将结果存入请求属性，同一请求内不再重复验证
+     * </p>
      *
      * @param token JWT Token
-     * @return 是否有效
+     * @return 验证通过的令牌，无效或已过期时返回null
      */
-    public boolean validateToken(String token) {
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached;
+        synchronized (verifiedTokens) {
+            cached = verifiedTokens.get(digest);
+        }
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            synchronized (verifiedTokens) {
+                verifiedTokens.remove(digest, cached);
+            }
+            log.error("Expired JWT token: 令牌已于 {} 过期", new Date(cached.getExpiresAtMillis()));
+            return null;
+        }
+
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            VerifiedToken verified = new VerifiedToken(
+                    claims.get("userId", Long.class),
+                    claims.getSubject(),
+                    claims.get("level", Integer.class),
+                    claims.get("tokenType", String.class),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : now,
+                    claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE);
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(digest, verified);
+            }
+            return verified;
         } catch (SecurityException ex) {
             log.error("Invalid JWT signature: {}", ex.getMessage());
         } catch (MalformedJwtException ex) {
@@ -114,10 +168,22 @@ public class JwtTokenService {
             log.error("Expired JWT token: {}", ex.getMessage());
         } catch (UnsupportedJwtException ex) {
             log.error("Unsupported JWT token: {}", ex.getMessage());
+        } catch (JwtException ex) {
+            log.error("Invalid JWT token: {}", ex.getMessage());
         } catch (IllegalArgumentException ex) {
             log.error("JWT claims string is empty: {}", ex.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * 验证Token有效性
+     *
+     * @param token JWT Token
+     * @return 是否有效
+     */
+    public boolean validateToken(String token) {
+        return verify(token) != null;
     }
 
     /**
@@ -127,13 +193,8 @@ public class JwtTokenService {
      * @return 用户名
      */
     public String getUsernameFromToken(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.getSubject();
-        } catch (Exception e) {
-            log.error("获取用户名失败: {}", e.getMessage());
-            return null;
-        }
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getUsername() : null;
     }
 
     /**
@@ -143,13 +204,8 @@ public class JwtTokenService {
      * @return 用户ID
      */
     public Long getUserIdFromToken(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.get("userId", Long.class);
-        } catch (Exception e) {
-            log.error("获取用户ID失败: {}", e.getMessage());
-            return null;
-        }
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getUserId() : null;
     }
 
     /**
@@ -159,13 +215,8 @@ public class JwtTokenService {
      * @return 用户等级
      */
     public Integer getUserLevelFromToken(String token) {
-        try {
-            Claims claims = parseToken(token);
-            return claims.get("level", Integer.class);
-        } catch (Exception e) {
-            log.error("获取用户等级失败: {}", e.getMessage());
-            return null;
-        }
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getLevel() : null;
     }
 
     /**
@@ -175,32 +226,19 @@ public class JwtTokenService {
      * @return 是否即将过期
      */
     public boolean isTokenExpiringSoon(String token) {
-        try {
-            Claims claims = parseToken(token);
-            Date expiration = claims.getExpiration();
-            Date now = new Date();
-            long timeUntilExpiration = expiration.getTime() - now.getTime();
-            
-            // 如果剩余时间少于1小时，认为即将过期
-            return timeUntilExpiration < 3600000; // 1小时 = 3600000毫秒
-        } catch (Exception e) {
-            log.error("检查Token过期时间失败: {}", e.getMessage());
-            return true; // 如果解析失败，认为已过期
-        }
+        VerifiedToken verified = verify(token);
+        // 如果解析失败，认为已过期
+        return verified == null || isExpiringSoon(verified);
     }
 
     /**
-     * 解析Token获取Claims
+     * 检查已验证的Token是否即将过期（剩余时间少于1小时）
      *
-     * @param token JWT Token
-     * @return Claims
+     * @param token 已验证的Token
+     * @return 是否即将过期
      */
-    private Claims parseToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean isExpiringSoon(VerifiedToken token) {
+        return token.isExpiringWithin(System.currentTimeMillis(), EXPIRING_SOON_MILLIS);
     }
 
     /**
@@ -210,12 +248,19 @@ public class JwtTokenService {
      * @return Token类型
      */
     public String getTokenType(String token) {
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.getTokenType() : null;
+    }
+
+    /**
+     * 计算令牌摘要，缓存中不保存令牌原文
+     */
+    private static String digest(String token) {
         try {
-            Claims claims = parseToken(token);
-            return claims.get("tokenType", String.class);
-        } catch (Exception e) {
-            log.error("获取Token类型失败: {}", e.getMessage());
-            return null;
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
         }
     }
     
@@ -228,13 +273,13 @@ public class JwtTokenService {
      */
     public String refreshAccessToken(String refreshToken, User user) {
         // 验证刷新令牌有效性
-        if (!validateToken(refreshToken)) {
+        VerifiedToken verified = verify(refreshToken);
+        if (verified == null) {
             throw new IllegalArgumentException("无效的刷新令牌");
         }
         
         // 检查Token类型是否为REFRESH
-        String tokenType = getTokenType(refreshToken);
-        if (!"REFRESH".equals(tokenType)) {
+        if (!verified.isRefreshToken()) {
             throw new IllegalArgumentException("令牌类型不正确");
         }
         
@@ -0,0 +1,447 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.util.KeywordTokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 关键词倒排索引段
+ * <p>
+ * 每个文档（fileRecordId）对应一个不可变的段文件，写入后通过内存映射只读访问。
+ * 文件布局（大端序）：
+ * <pre>
+ * header   : magic, version, fileRecordId, chunkCount, termCount, totalTokens,
+ *            titleOff, titleLen, typeOff, typeLen, chunkTableOff, termTableOff, postingsOff, stringsOff
+ * chunks   : chunkCount × [chunkIndex, tokenLength, textOff, textLen]
+ * terms    : termCount  × [termOff, termLen, postingsOff, postingsCount]，按UTF-8字节序排序
+ * postings : [chunkOrdinal, tf] ...
+ * strings  : 词项、分块文本、标题等UTF-8字节
+ * </pre>
+ * 所有读取均使用绝对下标，可被多个线程并发访问。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class KeywordIndexSegment {
+
+    public static final String FILE_SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x4B575358; // "KWSX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHUNK_ENTRY_SIZE = 16;
+    private static final int TERM_ENTRY_SIZE = 16;
+    private static final int POSTING_SIZE = 8;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final long fileRecordId;
+    private final int chunkCount;
+    private final int termCount;
+    private final long totalTokens;
+    private final String title;
+    private final String fileType;
+    private final int chunkTableOff;
+    private final int termTableOff;
+    private final int postingsOff;
+    private final int stringsOff;
+
+    private KeywordIndexSegment(Path path, ByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("无效的关键词索引段文件: " + path);
+        }
+        this.fileRecordId = buffer.getLong(8);
+        this.chunkCount = buffer.getInt(16);
+        this.termCount = buffer.getInt(20);
+        this.totalTokens = buffer.getLong(24);
+        this.chunkTableOff = buffer.getInt(48);
+        this.termTableOff = buffer.getInt(52);
+        this.postingsOff = buffer.getInt(56);
+        this.stringsOff = buffer.getInt(60);
+        this.title = readString(buffer.getInt(32), buffer.getInt(36));
+        this.fileType = readString(buffer.getInt(40), buffer.getInt(44));
+    }
+
+    /**
+     * 以内存映射方式打开段文件
+     *
+     * @param path 段文件路径
+     * @return 索引段
+     * @throws IOException 读取失败
+     */
+    public static KeywordIndexSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new KeywordIndexSegment(path, mapped);
+        }
+    }
+
+    /**
+     * 为一个文档的全部分块构建段文件，先写临时文件再原子替换
+     *
+     * @param path 目标路径
+     * @param fileRecordId 文件记录ID
+     * @param title 文档标题
+     * @param fileType 文件类型
+     * @param chunks 分块文本，下标即分块序号
+     * @throws IOException 写入失败
+     */
+    public static void write(Path path, long fileRecordId, String title, String fileType, String[] chunks) throws IOException {
+        try (Builder builder = builder(path, fileRecordId, title, fileType)) {
+            for (String chunk : chunks) {
+                builder.addChunk(chunk);
+            }
+            builder.finish();
+        }
+    }
+
+    /**
+     * 创建增量构建器，分块可以边产生边加入
+     *
+     * @param path 目标路径
+     * @param fileRecordId 文件记录ID
+     * @param title 文档标题
+     * @param fileType 文件类型
+     * @return 构建器，使用完毕后必须关闭
+     * @throws IOException 创建临时文件失败
+     */
+    public static Builder builder(Path path, long fileRecordId, String title, String fileType) throws IOException {
+        return new Builder(path, fileRecordId, title, fileType);
+    }
+
+    /**
+     * 查找词项在词典中的下标
+     *
+     * @param term 词项UTF-8字节
+     * @return 下标，不存在时返回-1
+     */
+    public int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = termTableOff + mid * TERM_ENTRY_SIZE;
+            int cmp = compareTerm(buffer.getInt(entry), buffer.getInt(entry + 4), term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 词项的文档频率（包含该词项的分块数）
+     */
+    public int postingsCount(int termIndex) {
+        return buffer.getInt(termTableOff + termIndex * TERM_ENTRY_SIZE + 12);
+    }
+
+    /**
+     * 遍历词项的倒排列表
+     *
+     * @param termIndex 词项下标
+     * @param consumer 接收(分块序号, 词频)
+     */
+    public void forEachPosting(int termIndex, PostingConsumer consumer) {
+        int entry = termTableOff + termIndex * TERM_ENTRY_SIZE;
+        int start = postingsOff + buffer.getInt(entry + 8) * POSTING_SIZE;
+        int count = buffer.getInt(entry + 12);
+        for (int i = 0; i < count; i++) {
+            int pos = start + i * POSTING_SIZE;
+            consumer.accept(buffer.getInt(pos), buffer.getInt(pos + 4));
+        }
+    }
+
+    public int chunkIndex(int ordinal) {
+        return buffer.getInt(chunkTableOff + ordinal * CHUNK_ENTRY_SIZE);
+    }
+
+    public int tokenLength(int ordinal) {
+        return buffer.getInt(chunkTableOff + ordinal * CHUNK_ENTRY_SIZE + 4);
+    }
+
+    public String chunkText(int ordinal) {
+        int entry = chunkTableOff + ordinal * CHUNK_ENTRY_SIZE;
+        return readString(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFileRecordId() {
+        return fileRecordId;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    private int compareTerm(int off, int len, byte[] term) {
+        int base = stringsOff + off;
+        int n = Math.min(len, term.length);
+        for (int i = 0; i < n; i++) {
+            int a = buffer.get(base + i) & 0xff;
+            int b = term[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return len - term.length;
+    }
+
+    private String readString(int off, int len) {
+        byte[] bytes = new byte[len];
+        buffer.get(stringsOff + off, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 段文件增量构建器
+     * <p>
+     * 分块文本直接追加到临时的字符串区文件，内存中只保留分块表和倒排列表（紧凑int数组），
+     * finish时依次写出头部、各表和倒排区，再拷贝字符串区，最后原子替换目标文件。
+     * 非线程安全。
+     * </p>
+     */
+    public static final class Builder implements Closeable {
+
+        private final Path path;
+        private final long fileRecordId;
+        private final Path stringsSpill;
+        private final OutputStream strings;
+        private long stringsSize = 0;
+        private final int[] titleRef;
+        private final int[] typeRef;
+
+        private int[] chunkTokenLengths = new int[64];
+        private int[] chunkTextOffs = new int[64];
+        private int[] chunkTextLens = new int[64];
+        private int chunkCount = 0;
+        private final Map<String, PostingList> postings = new HashMap<>();
+        private long totalTokens = 0;
+        private boolean closed = false;
+
+        private Builder(Path path, long fileRecordId, String title, String fileType) throws IOException {
+            this.path = path;
+            this.fileRecordId = fileRecordId;
+            Files.createDirectories(path.getParent());
+            this.stringsSpill = path.resolveSibling(path.getFileName() + ".strings.tmp");
+            this.strings = new BufferedOutputStream(Files.newOutputStream(stringsSpill,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+            this.titleRef = appendString(title);
+            this.typeRef = appendString(fileType);
+        }
+
+        /**
+         * 加入下一个分块，分块序号按加入顺序递增
+         */
+        public void addChunk(String chunk) throws IOException {
+            String text = chunk != null ? chunk : "";
+            List<String> tokens = KeywordTokenizer.tokenize(text);
+            if (chunkCount == chunkTokenLengths.length) {
+                int capacity = chunkCount * 2;
+                chunkTokenLengths = Arrays.copyOf(chunkTokenLengths, capacity);
+                chunkTextOffs = Arrays.copyOf(chunkTextOffs, capacity);
+                chunkTextLens = Arrays.copyOf(chunkTextLens, capacity);
+            }
+            int ord = chunkCount++;
+            chunkTokenLengths[ord] = tokens.size();
+            totalTokens += tokens.size();
+
+            Map<String, Integer> tf = new HashMap<>();
+            for (String token : tokens) {
+                tf.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new PostingList()).add(ord, e.getValue());
+            }
+
+            int[] ref = appendString(text);
+            chunkTextOffs[ord] = ref[0];
+            chunkTextLens[ord] = ref[1];
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * 写出段文件
+         */
+        public void finish() throws IOException {
+            // 词项按UTF-8无符号字节序排序，便于读取时二分查找
+            String[] termStrings = postings.keySet().toArray(new String[0]);
+            byte[][] terms = new byte[termStrings.length][];
+            for (int i = 0; i < termStrings.length; i++) {
+                terms[i] = termStrings[i].getBytes(StandardCharsets.UTF_8);
+            }
+            Integer[] order = new Integer[terms.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(terms[x], terms[y]));
+
+            long postingCount = 0;
+            for (PostingList list : postings.values()) {
+                postingCount += list.size;
+            }
+            long chunkTableOff = HEADER_SIZE;
+            long termTableOff = chunkTableOff + (long) chunkCount * CHUNK_ENTRY_SIZE;
+            long postingsOff = termTableOff + (long) terms.length * TERM_ENTRY_SIZE;
+            long stringsOff = postingsOff + postingCount * POSTING_SIZE;
+
+            // 词项字节同样追加到字符串区
+            int[] termOffs = new int[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                byte[] term = terms[order[i]];
+                termOffs[i] = (int) stringsSize;
+                strings.write(term);
+                stringsSize += term.length;
+            }
+            strings.close();
+
+            long totalSize = stringsOff + stringsSize;
+            if (totalSize > Integer.MAX_VALUE) {
+                throw new IOException("关键词索引段过大: " + totalSize + " bytes");
+            }
+
+            ByteBuffer out = ByteBuffer.allocate((int) stringsOff);
+            out.putInt(MAGIC).putInt(VERSION).putLong(fileRecordId)
+                    .putInt(chunkCount).putInt(terms.length).putLong(totalTokens)
+                    .putInt(titleRef[0]).putInt(titleRef[1]).putInt(typeRef[0]).putInt(typeRef[1])
+                    .putInt((int) chunkTableOff).putInt((int) termTableOff).putInt((int) postingsOff).putInt((int) stringsOff);
+
+            for (int ord = 0; ord < chunkCount; ord++) {
+                out.putInt(ord).putInt(chunkTokenLengths[ord]).putInt(chunkTextOffs[ord]).putInt(chunkTextLens[ord]);
+            }
+
+            int postingCursor = 0;
+            int postingBase = (int) postingsOff;
+            for (int i = 0; i < terms.length; i++) {
+                PostingList list = postings.get(termStrings[order[i]]);
+                out.putInt(termOffs[i]).putInt(terms[order[i]].length).putInt(postingCursor).putInt(list.size);
+                for (int j = 0; j < list.size; j++) {
+                    int pos = postingBase + (postingCursor + j) * POSTING_SIZE;
+                    out.putInt(pos, list.data[j * 2]).putInt(pos + 4, list.data[j * 2 + 1]);
+                }
+                postingCursor += list.size;
+            }
+            out.position(0).limit(out.capacity());
+
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 FileChannel spill = FileChannel.open(stringsSpill, StandardOpenOption.READ)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                long copied = 0;
+                while (copied < stringsSize) {
+                    copied += spill.transferTo(copied, stringsSize - copied, channel);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * 删除临时文件；未调用finish时放弃构建
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                strings.close();
+            } catch (IOException ignored) {
+                // 已在finish中关闭或写入失败，删除临时文件即可
+            }
+            try {
+                Files.deleteIfExists(stringsSpill);
+            } catch (IOException ignored) {
+                // 临时文件残留不影响读取，下次构建时会被覆盖
+            }
+        }
+
+        private int[] appendString(String value) throws IOException {
+            byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+            if (stringsSize + bytes.length > Integer.MAX_VALUE) {
+                throw new IOException("关键词索引段过大: " + (stringsSize + bytes.length) + " bytes");
+            }
+            int off = (int) stringsSize;
+            strings.write(bytes);
+            stringsSize += bytes.length;
+            return new int[]{off, bytes.length};
+        }
+    }
+
+    /**
+     * 构建期间的倒排列表，按[分块序号, 词频]交替存放
+     */
+    private static final class PostingList {
+        private int[] data = new int[4];
+        private int size = 0;
+
+        void add(int ordinal, int termFrequency) {
+            if (size * 2 == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 2] = ordinal;
+            data[size * 2 + 1] = termFrequency;
+            size++;
+        }
+    }
+
+    /**
+     * 倒排项回调
+     */
+    @FunctionalInterface
+    public interface PostingConsumer {
+        void accept(int chunkOrdinal, int termFrequency);
+    }
+}
@@ -0,0 +1,628 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.KeywordIndexProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.SearchResult;
+import com.aliyun.rag.model.UserFileRecord;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.repository.UserFileRecordRepository;
+import com.aliyun.rag.util.KeywordTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 关键词倒排索引服务
+ * <p>
+ * 为每个用户维护一份本地倒排索引，替代向Milvus发送零向量再逐条contains的关键词检索方式。
+ * 索引按文档分段存储在磁盘上（见{@link KeywordIndexSegment}），写入文档时新增段、删除文档时移除段，
+ * 检索时对所有段做BM25打分。本地无索引的老用户在首次检索时从向量存储重建。
+ * </p>
+ * <p>
+ * 索引在每个节点的本地磁盘上各有一份。用户的知识库版本号（Redis，上传、更新、删除文档后递增，见
+ * {@link SemanticAnswerCache#bumpVersion}）变化后，各节点在下次访问该用户索引时按数据库中的映射关系核对：
+ * 已删除文档的段被移除，缺少或向量ID指纹不一致的文档从向量存储重建。版本号最多每 sync-interval-seconds 读取一次，
+ * 核对或重建失败时不记录版本，下次访问时重试。本节点正在写入、映射尚未入库的文档不参与核对。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class KeywordIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(KeywordIndexService.class);
+
+    /**
+     * 核对状态文件，记录已核对的知识库版本和各文档段的向量ID指纹
+     */
+    private static final String SYNC_STATE_FILE = "sync.properties";
+
+    /**
+     * 本节点写入的文档在该时间内不参与核对，等待映射入库（毫秒）
+     */
+    private static final long PENDING_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 加载用户索引的锁分段数
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private final KeywordIndexProperties properties;
+    private final VectorStoreBackend vectorStoreBackend;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+    private final UserFileRecordRepository userFileRecordRepository;
+    private final SemanticAnswerCache semanticAnswerCache;
+
+    private final ConcurrentHashMap<Long, UserIndex> userIndexes = new ConcurrentHashMap<>();
+    private final Object[] loadLocks = new Object[LOCK_STRIPES];
+
+    public KeywordIndexService(KeywordIndexProperties properties,
+                               VectorStoreBackend vectorStoreBackend,
+                               DocumentMilvusMappingRepository documentMilvusMappingRepository,
+                               UserFileRecordRepository userFileRecordRepository,
+                               SemanticAnswerCache semanticAnswerCache) {
+        this.properties = properties;
+        this.vectorStoreBackend = vectorStoreBackend;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+        this.userFileRecordRepository = userFileRecordRepository;
+        this.semanticAnswerCache = semanticAnswerCache;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            loadLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 为文档建立索引段
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param fileRecordId 文件记录ID
+     * @param title 文档标题
+     * @param fileType 文件类型
+     * @param chunks 文档分块
+     */
+    public void indexDocument(Long userId, String username, Long fileRecordId, String title, String fileType, String[] chunks) {
+        UserIndex index = getUserIndex(userId, username);
+        index.markPending(fileRecordId);
+        Path path = segmentPath(userId, fileRecordId);
+        try {
+            KeywordIndexSegment.write(path, fileRecordId, title, fileType, chunks);
+            index.put(fileRecordId, KeywordIndexSegment.open(path), null);
+            index.markPending(fileRecordId);
+            log.info("用户 {}({}) 文档 {} 关键词索引已建立，分块数量: {}", username, userId, fileRecordId, chunks.length);
+        } catch (IOException e) {
+            log.error("用户 {}({}) 文档 {} 建立关键词索引失败: {}", username, userId, fileRecordId, e.getMessage(), e);
+            throw new RuntimeException("建立关键词索引失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 为流式入库的文档打开增量构建器，分块可以边产生边加入
+     * <p>
+     * 打开前先加载该用户已有的索引（必要时从向量存储重建），与{@link #indexDocument}一样需在映射入库前调用
+     * </p>
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param fileRecordId 文件记录ID
+     * @param title 文档标题
+     * @param fileType 文件类型
+     * @return 构建器，完成后交给{@link #commitDocument}，失败时直接关闭
+     */
+    public KeywordIndexSegment.Builder openDocumentBuilder(Long userId, String username, Long fileRecordId,
+                                                           String title, String fileType) {
+        getUserIndex(userId, username).markPending(fileRecordId);
+        try {
+            return KeywordIndexSegment.builder(segmentPath(userId, fileRecordId), fileRecordId, title, fileType);
+        } catch (IOException e) {
+            log.error("用户 {}({}) 文档 {} 创建关键词索引构建器失败: {}", username, userId, fileRecordId, e.getMessage(), e);
+            throw new RuntimeException("建立关键词索引失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 写出增量构建的索引段并加入用户索引
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param fileRecordId 文件记录ID
+     * @param builder 已加入全部分块的构建器，方法返回后已关闭
+     */
+    public void commitDocument(Long userId, String username, Long fileRecordId, KeywordIndexSegment.Builder builder) {
+        UserIndex index = getUserIndex(userId, username);
+        index.markPending(fileRecordId);
+        try (builder) {
+            builder.finish();
+            index.put(fileRecordId, KeywordIndexSegment.open(segmentPath(userId, fileRecordId)), null);
+            index.markPending(fileRecordId);
+            log.info("用户 {}({}) 文档 {} 关键词索引已建立，分块数量: {}", username, userId, fileRecordId, builder.getChunkCount());
+        } catch (IOException e) {
+            log.error("用户 {}({}) 文档 {} 建立关键词索引失败: {}", username, userId, fileRecordId, e.getMessage(), e);
+            throw new RuntimeException("建立关键词索引失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 删除文档的索引段
+     *
+     * @param userId 用户ID
+     * @param fileRecordId 文件记录ID
+     */
+    public void removeDocument(Long userId, Long fileRecordId) {
+        UserIndex index = userIndexes.get(userId);
+        if (index != null) {
+            index.remove(fileRecordId);
+        }
+        try {
+            // 已映射的缓冲区在GC后释放，Linux下删除已映射文件是安全的
+            Files.deleteIfExists(segmentPath(userId, fileRecordId));
+            log.info("用户 {} 文档 {} 关键词索引已删除", userId, fileRecordId);
+        } catch (IOException e) {
+            log.warn("用户 {} 删除文档 {} 关键词索引文件失败: {}", userId, fileRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * BM25关键词检索
+     *
+     * @param query 查询内容
+     * @param maxResults 最大结果数
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 按相关度降序的结果，分数归一化到(0, 1]
+     */
+    public List<SearchResult> search(String query, int maxResults, Long userId, String username) {
+        Set<String> terms = KeywordTokenizer.tokenizeQuery(query);
+        List<KeywordIndexSegment> segments = new ArrayList<>(getUserIndex(userId, username).segments.values());
+        if (terms.isEmpty() || segments.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        // 全局统计量：分块总数、平均长度、各词项文档频率
+        long chunkTotal = 0;
+        long tokenTotal = 0;
+        for (KeywordIndexSegment segment : segments) {
+            chunkTotal += segment.getChunkCount();
+            tokenTotal += segment.getTotalTokens();
+        }
+        if (chunkTotal == 0) {
+            return new ArrayList<>();
+        }
+        double avgLength = Math.max(1.0, (double) tokenTotal / chunkTotal);
+
+        List<byte[]> termBytes = terms.stream()
+                .map(t -> t.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+        int[][] termIndexes = new int[segments.size()][termBytes.size()];
+        long[] documentFrequency = new long[termBytes.size()];
+        for (int s = 0; s < segments.size(); s++) {
+            for (int t = 0; t < termBytes.size(); t++) {
+                int idx = segments.get(s).findTerm(termBytes.get(t));
+                termIndexes[s][t] = idx;
+                if (idx >= 0) {
+                    documentFrequency[t] += segments.get(s).postingsCount(idx);
+                }
+            }
+        }
+
+        double k1 = properties.getK1();
+        double b = properties.getB();
+        PriorityQueue<ScoredChunk> topK = new PriorityQueue<>(Comparator.comparingDouble(ScoredChunk::score));
+
+        for (int s = 0; s < segments.size(); s++) {
+            KeywordIndexSegment segment = segments.get(s);
+            double[] scores = null;
+            for (int t = 0; t < termBytes.size(); t++) {
+                int idx = termIndexes[s][t];
+                if (idx < 0) {
+                    continue;
+                }
+                if (scores == null) {
+                    scores = new double[segment.getChunkCount()];
+                }
+                double df = documentFrequency[t];
+                double idf = Math.log(1.0 + (chunkTotal - df + 0.5) / (df + 0.5));
+                double[] segmentScores = scores;
+                segment.forEachPosting(idx, (ordinal, tf) -> {
+                    double norm = k1 * (1 - b + b * segment.tokenLength(ordinal) / avgLength);
+                    segmentScores[ordinal] += idf * tf * (k1 + 1) / (tf + norm);
+                });
+            }
+            if (scores == null) {
+                continue;
+            }
+            for (int ordinal = 0; ordinal < scores.length; ordinal++) {
+                if (scores[ordinal] <= 0) {
+                    continue;
+                }
+                if (topK.size() < maxResults) {
+                    topK.offer(new ScoredChunk(segment, ordinal, scores[ordinal]));
+                } else if (scores[ordinal] > topK.peek().score()) {
+                    topK.poll();
+                    topK.offer(new ScoredChunk(segment, ordinal, scores[ordinal]));
+                }
+            }
+        }
+
+        List<ScoredChunk> ranked = new ArrayList<>(topK);
+        ranked.sort(Comparator.comparingDouble(ScoredChunk::score).reversed());
+        double maxScore = ranked.isEmpty() ? 1.0 : ranked.get(0).score();
+
+        List<SearchResult> results = new ArrayList<>(ranked.size());
+        for (ScoredChunk hit : ranked) {
+            SearchResult result = new SearchResult();
+            result.setFileRecordId(String.valueOf(hit.segment().getFileRecordId()));
+            result.setTitle(hit.segment().getTitle());
+            result.setContent(hit.segment().chunkText(hit.ordinal()));
+            result.setSource(hit.segment().getFileType());
+            result.setPosition(hit.segment().chunkIndex(hit.ordinal()));
+            result.setScore(hit.score() / maxScore);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * 获取用户索引状态
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 状态信息
+     */
+    public Map<String, Object> getIndexStats(Long userId, String username) {
+        Map<Long, KeywordIndexSegment> segments = getUserIndex(userId, username).segments;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("segmentCount", segments.size());
+        stats.put("chunkCount", segments.values().stream().mapToLong(KeywordIndexSegment::getChunkCount).sum());
+        stats.put("termCount", segments.values().stream().mapToLong(KeywordIndexSegment::getTermCount).sum());
+        stats.put("sizeInBytes", segments.values().stream().mapToLong(KeywordIndexSegment::sizeInBytes).sum());
+        return stats;
+    }
+
+    /**
+     * 获取用户索引，首次访问时从本地磁盘加载，知识库版本变化后与数据库核对
+     * <p>
+     * 加载和核对都在映射表之外进行，同一用户只有一个线程执行；已有可用索引时其他线程直接使用当前索引，
+     * 尚未完成首次核对时等待
+     * </p>
+     */
+    private UserIndex getUserIndex(Long userId, String username) {
+        UserIndex index = userIndexes.get(userId);
+        if (index == null) {
+            synchronized (loadLocks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)]) {
+                index = userIndexes.get(userId);
+                if (index == null) {
+                    index = loadUserIndex(userId, username);
+                    userIndexes.put(userId, index);
+                }
+            }
+        }
+        syncIfStale(userId, username, index);
+        return index;
+    }
+
+    private UserIndex loadUserIndex(Long userId, String username) {
+        UserIndex index = new UserIndex();
+        Path dir = userDir(userId);
+        if (!Files.isDirectory(dir)) {
+            return index;
+        }
+
+        Properties state = readSyncState(dir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + KeywordIndexSegment.FILE_SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    KeywordIndexSegment segment = KeywordIndexSegment.open(path);
+                    String fingerprint = state.getProperty("fingerprint." + segment.getFileRecordId());
+                    index.put(segment.getFileRecordId(), segment, fingerprint != null ? Long.valueOf(fingerprint) : null);
+                } catch (Exception e) {
+                    log.warn("加载关键词索引段 {} 失败，已忽略: {}", path, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("加载用户 {} 关键词索引失败: {}", userId, e.getMessage(), e);
+        }
+        String version = state.getProperty("version");
+        index.syncedVersion = version != null ? Long.valueOf(version) : null;
+        log.info("用户 {}({}) 关键词索引已加载，段数量: {}", username, userId, index.segments.size());
+        return index;
+    }
+
+    /**
+     * 知识库版本与已核对版本不同时与数据库核对
+     */
+    private void syncIfStale(Long userId, String username, UserIndex index) {
+        long now = System.currentTimeMillis();
+        if (index.syncedVersion != null && now < index.nextCheckAt) {
+            return;
+        }
+        index.nextCheckAt = now + TimeUnit.SECONDS.toMillis(properties.getSyncIntervalSeconds());
+        Long version = semanticAnswerCache.knowledgeBaseVersion(userId);
+        if (version == null || version.equals(index.syncedVersion)) {
+            return;
+        }
+
+        if (index.syncedVersion == null) {
+            index.syncLock.lock();
+        } else if (!index.syncLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!version.equals(index.syncedVersion)) {
+                reconcile(userId, username, index, version);
+            }
+        } catch (Exception e) {
+            log.error("用户 {}({}) 核对关键词索引失败，下次访问时重试: {}", username, userId, e.getMessage(), e);
+        } finally {
+            index.syncLock.unlock();
+        }
+    }
+
+    /**
+     * 按数据库中的映射关系核对用户索引：移除已删除文档的段，重建缺少或指纹不一致的段
+     */
+    private void reconcile(Long userId, String username, UserIndex index, long version) throws IOException {
+        Map<Long, List<DocumentMilvusMapping>> byFile = documentMilvusMappingRepository.findByUserIdAndIsDeleted(userId, 0)
+                .stream()
+                .collect(Collectors.groupingBy(DocumentMilvusMapping::getFileRecordId));
+        Path dir = userDir(userId);
+
+        if (!Files.isDirectory(dir) && index.segments.isEmpty()) {
+            if (!byFile.isEmpty() && properties.isRebuildOnMissing() && vectorStoreBackend.exists(userId, username)) {
+                buildAll(userId, username, index, byFile, version);
+            }
+            index.syncedVersion = version;
+            return;
+        }
+
+        int removed = 0;
+        int rebuilt = 0;
+        for (Long fileRecordId : new ArrayList<>(index.segments.keySet())) {
+            if (!byFile.containsKey(fileRecordId) && !index.isPending(fileRecordId)) {
+                removeDocument(userId, fileRecordId);
+                removed++;
+            }
+        }
+        for (Map.Entry<Long, List<DocumentMilvusMapping>> entry : byFile.entrySet()) {
+            Long fileRecordId = entry.getKey();
+            long fingerprint = fingerprint(entry.getValue());
+            boolean present = index.segments.containsKey(fileRecordId);
+            Long local = index.fingerprints.get(fileRecordId);
+            if (present && (local == null || local == fingerprint)) {
+                // 本节点写入的段在映射入库后记录指纹
+                index.fingerprints.put(fileRecordId, fingerprint);
+                index.pending.remove(fileRecordId);
+                continue;
+            }
+            if (index.isPending(fileRecordId) || !properties.isRebuildOnMissing()) {
+                continue;
+            }
+            Path path = segmentPath(userId, fileRecordId);
+            buildSegment(userId, username, path, fileRecordId, entry.getValue());
+            index.put(fileRecordId, KeywordIndexSegment.open(path), fingerprint);
+            rebuilt++;
+        }
+        writeSyncState(dir, index, version);
+        index.syncedVersion = version;
+        if (removed > 0 || rebuilt > 0) {
+            log.info("用户 {}({}) 关键词索引已按知识库版本 {} 核对，移除 {} 个段，重建 {} 个段",
+                    username, userId, version, removed, rebuilt);
+        }
+    }
+
+    /**
+     * 本地没有索引目录时全量重建：先写入临时目录，全部成功后再改名为用户目录
+     */
+    private void buildAll(Long userId, String username, UserIndex index,
+                          Map<Long, List<DocumentMilvusMapping>> byFile, long version) throws IOException {
+        log.info("用户 {}({}) 本地无关键词索引，开始从向量存储重建，文档数量: {}", username, userId, byFile.size());
+        Path dir = userDir(userId);
+        Path building = dir.resolveSibling(dir.getFileName() + ".building");
+        deleteDirectory(building);
+        Files.createDirectories(building);
+
+        Map<Long, Long> fingerprints = new HashMap<>();
+        try {
+            for (Map.Entry<Long, List<DocumentMilvusMapping>> entry : byFile.entrySet()) {
+                buildSegment(userId, username, building.resolve(entry.getKey() + KeywordIndexSegment.FILE_SUFFIX),
+                        entry.getKey(), entry.getValue());
+                fingerprints.put(entry.getKey(), fingerprint(entry.getValue()));
+            }
+            UserIndex built = new UserIndex();
+            fingerprints.forEach((fileRecordId, fingerprint) -> built.fingerprints.put(fileRecordId, fingerprint));
+            writeSyncState(building, built, version);
+            Files.move(building, dir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(building);
+            throw e;
+        }
+
+        for (Map.Entry<Long, Long> entry : fingerprints.entrySet()) {
+            index.put(entry.getKey(), KeywordIndexSegment.open(segmentPath(userId, entry.getKey())), entry.getValue());
+        }
+        log.info("用户 {}({}) 关键词索引重建完成，段数量: {}", username, userId, index.segments.size());
+    }
+
+    /**
+     * 用映射关系和向量存储中的分块文本构建一个文档的索引段
+     */
+    private void buildSegment(Long userId, String username, Path path, Long fileRecordId,
+                              List<DocumentMilvusMapping> fileMappings) throws IOException {
+        int chunkCount = fileMappings.stream().mapToInt(DocumentMilvusMapping::getVectorIndex).max().orElse(-1) + 1;
+        String[] chunks = new String[chunkCount];
+        Arrays.fill(chunks, "");
+
+        Map<String, String> texts = queryTexts(userId, username,
+                fileMappings.stream().map(DocumentMilvusMapping::getVectorId).distinct().collect(Collectors.toList()));
+        for (DocumentMilvusMapping mapping : fileMappings) {
+            chunks[mapping.getVectorIndex()] = texts.getOrDefault(mapping.getVectorId(), "");
+        }
+
+        Optional<UserFileRecord> record = userFileRecordRepository.findByIdAndIsDeleted(fileRecordId, 0);
+        String title = record.map(UserFileRecord::getFileName).orElse("Unknown");
+        String fileType = record.map(UserFileRecord::getFileType).orElse("Unknown");
+        KeywordIndexSegment.write(path, fileRecordId, title, fileType, chunks);
+    }
+
+    /**
+     * 文档全部分块的（序号, 向量ID）指纹，文档内容更新后分块对应的向量ID会变化
+     */
+    private static long fingerprint(List<DocumentMilvusMapping> fileMappings) {
+        List<String> keys = new ArrayList<>(fileMappings.size());
+        for (DocumentMilvusMapping mapping : fileMappings) {
+            keys.add(mapping.getVectorIndex() + ":" + mapping.getVectorId());
+        }
+        keys.sort(null);
+        // FNV-1a 64位
+        long hash = 0xcbf29ce484222325L;
+        for (String key : keys) {
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= '\n';
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Properties readSyncState(Path dir) {
+        Properties state = new Properties();
+        Path file = dir.resolve(SYNC_STATE_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("读取关键词索引核对状态 {} 失败，将重新核对: {}", file, e.getMessage());
+                return new Properties();
+            }
+        }
+        return state;
+    }
+
+    private static void writeSyncState(Path dir, UserIndex index, long version) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("version", String.valueOf(version));
+        index.fingerprints.forEach((fileRecordId, fingerprint) ->
+                state.setProperty("fingerprint." + fileRecordId, String.valueOf(fingerprint)));
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(SYNC_STATE_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            state.store(out, null);
+        }
+        Files.move(tmp, dir.resolve(SYNC_STATE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Map<String, String> queryTexts(Long userId, String username, List<String> milvusIds) {
+        Map<String, String> texts = new HashMap<>();
+        for (VectorStoreBackend.StoredVector vector : vectorStoreBackend.fetch(userId, username, milvusIds, false, false)) {
+            texts.put(vector.id(), vector.text());
+        }
+        return texts;
+    }
+
+    private Path userDir(Long userId) {
+        return Paths.get(properties.getDir(), "user-" + userId);
+    }
+
+    private Path segmentPath(Long userId, Long fileRecordId) {
+        return userDir(userId).resolve(fileRecordId + KeywordIndexSegment.FILE_SUFFIX);
+    }
+
+    /**
+     * 检索候选
+     */
+    private record ScoredChunk(KeywordIndexSegment segment, int ordinal, double score) {
+    }
+
+    /**
+     * 单个用户的本地索引
+     */
+    private static final class UserIndex {
+
+        /**
+         * fileRecordId -> 段
+         */
+        private final ConcurrentHashMap<Long, KeywordIndexSegment> segments = new ConcurrentHashMap<>();
+
+        /**
+         * fileRecordId -> 建段时的向量ID指纹；本节点写入、尚未核对的段没有指纹
+         */
+        private final ConcurrentHashMap<Long, Long> fingerprints = new ConcurrentHashMap<>();
+
+        /**
+         * fileRecordId -> 本节点最近一次写入该文档索引的时间
+         */
+        private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+
+        private final ReentrantLock syncLock = new ReentrantLock();
+
+        /**
+         * 已核对的知识库版本，为空表示尚未核对
+         */
+        private volatile Long syncedVersion;
+
+        private volatile long nextCheckAt;
+
+        private void put(Long fileRecordId, KeywordIndexSegment segment, Long fingerprint) {
+            segments.put(fileRecordId, segment);
+            if (fingerprint != null) {
+                fingerprints.put(fileRecordId, fingerprint);
+            } else {
+                fingerprints.remove(fileRecordId);
+            }
+        }
+
+        private void remove(Long fileRecordId) {
+            segments.remove(fileRecordId);
+            fingerprints.remove(fileRecordId);
+            pending.remove(fileRecordId);
+        }
+
+        private void markPending(Long fileRecordId) {
+            pending.put(fileRecordId, System.currentTimeMillis());
+        }
+
+        private boolean isPending(Long fileRecordId) {
+            Long writtenAt = pending.get(fileRecordId);
+            return writtenAt != null && System.currentTimeMillis() - writtenAt < PENDING_GRACE_MILLIS;
+        }
+    }
+}
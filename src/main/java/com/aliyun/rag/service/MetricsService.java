@@ -36,6 +36,16 @@ public class MetricsService {
     private final Counter aiChatCounter;
     private final Counter rateLimitCounter;
     private final Counter errorCounter;
+    private final Counter milvusInsertVectorCounter;
+    private final Counter hybridLegFailureCounter;
+    private final Counter embeddingRetryCounter;
+    private final Counter answerCacheHitCounter;
+    private final Counter answerCacheMissCounter;
+    private final Counter answerCacheEvictionCounter;
+    private final Counter rateLimitAllowCounter;
+    private final Counter rateLimitLeaseRefillCounter;
+    private final Counter accessLogDroppedCounter;
+    private final Timer xssFilterTimer;
 
     // 计时器
     private final Timer documentProcessingTimer;
@@ -43,6 +53,10 @@ public class MetricsService {
     private final Timer fileUploadTimer;
     private final Timer aiResponseTimer;
     private final Timer chunkingTimer;
+    private final Timer milvusInsertBatchTimer;
+    private final Timer hybridSemanticLegTimer;
+    private final Timer hybridKeywordLegTimer;
+    private final Timer embeddingBatchTimer;
 
     // Gauge指标
     private final AtomicLong activeUsersGauge;
@@ -50,6 +64,10 @@ public class MetricsService {
     private final AtomicLong totalDocumentsGauge;
     private final AtomicLong totalVectorsGauge;
     private final AtomicLong cacheHitRateGauge;
+    private final AtomicLong milvusInsertThroughputGauge;
+    private final AtomicLong embeddingThroughputGauge;
+    private final AtomicLong embeddingQueueDepthGauge;
+    private final AtomicLong answerCacheSizeGauge;
 
     public MetricsService(Counter documentUploadCounter, 
                          Counter documentUploadFailureCounter,
@@ -70,7 +88,25 @@ public class MetricsService {
                          AtomicLong storageUsageGauge,
                          AtomicLong totalDocumentsGauge,
                          AtomicLong totalVectorsGauge,
-                         AtomicLong cacheHitRateGauge) {
+                         AtomicLong cacheHitRateGauge,
+                         Timer milvusInsertBatchTimer,
+                         Counter milvusInsertVectorCounter,
+                         AtomicLong milvusInsertThroughputGauge,
+                         Timer hybridSemanticLegTimer,
+                         Timer hybridKeywordLegTimer,
+                         Counter hybridLegFailureCounter,
+                         Timer embeddingBatchTimer,
+                         Counter embeddingRetryCounter,
+                         AtomicLong embeddingThroughputGauge,
+                         AtomicLong embeddingQueueDepthGauge,
+                         Counter answerCacheHitCounter,
+                         Counter answerCacheMissCounter,
+                         Counter answerCacheEvictionCounter,
+                         AtomicLong answerCacheSizeGauge,
+                         Counter rateLimitAllowCounter,
+                         Counter rateLimitLeaseRefillCounter,
+                         Counter accessLogDroppedCounter,
+                         Timer xssFilterTimer) {
         this.documentUploadCounter = documentUploadCounter;
         this.documentUploadFailureCounter = documentUploadFailureCounter;
         this.documentDeleteCounter = documentDeleteCounter;
@@ -91,6 +127,24 @@ public class MetricsService {
         this.totalDocumentsGauge = totalDocumentsGauge;
         this.totalVectorsGauge = totalVectorsGauge;
         this.cacheHitRateGauge = cacheHitRateGauge;
+        this.milvusInsertBatchTimer = milvusInsertBatchTimer;
+        this.milvusInsertVectorCounter = milvusInsertVectorCounter;
+        this.milvusInsertThroughputGauge = milvusInsertThroughputGauge;
+        this.hybridSemanticLegTimer = hybridSemanticLegTimer;
+        this.hybridKeywordLegTimer = hybridKeywordLegTimer;
+        this.hybridLegFailureCounter = hybridLegFailureCounter;
+        this.embeddingBatchTimer = embeddingBatchTimer;
+        this.embeddingRetryCounter = embeddingRetryCounter;
+        this.embeddingThroughputGauge = embeddingThroughputGauge;
+        this.embeddingQueueDepthGauge = embeddingQueueDepthGauge;
+        this.answerCacheHitCounter = answerCacheHitCounter;
+        this.answerCacheMissCounter = answerCacheMissCounter;
+        this.answerCacheEvictionCounter = answerCacheEvictionCounter;
+        this.answerCacheSizeGauge = answerCacheSizeGauge;
+        this.rateLimitAllowCounter = rateLimitAllowCounter;
+        this.rateLimitLeaseRefillCounter = rateLimitLeaseRefillCounter;
+        this.accessLogDroppedCounter = accessLogDroppedCounter;
+        this.xssFilterTimer = xssFilterTimer;
     }
 
     /**
@@ -289,6 +343,34 @@ public class MetricsService {
         log.debug("记录限流指标: 端点={}, 客户端={}", endpoint, clientId);
     }
 
+    /**
+     * 记录限流放行
+     */
+    public void recordRateLimitAllowed() {
+        rateLimitAllowCounter.increment();
+    }
+
+    /**
+     * 记录一次从Redis预取限流令牌
+     */
+    public void recordRateLimitLeaseRefill() {
+        rateLimitLeaseRefillCounter.increment();
+    }
+
+    /**
+     * 记录因缓冲区已满丢弃的访问日志
+     */
+    public void recordAccessLogDropped() {
+        accessLogDroppedCounter.increment();
+    }
+
+    /**
+     * 记录XSS过滤器检查耗时
+     */
+    public void recordXssFilterTime(long nanos) {
+        xssFilterTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * 记录错误
      */
@@ -329,6 +411,107 @@ public class MetricsService {
         log.debug("更新缓存命中率: {}%", rate * 100);
     }
 
+    /**
+     * 记录Milvus单批写入指标
+     */
+    public void recordMilvusInsertBatch(int vectorCount, long latencyMillis) {
+        milvusInsertBatchTimer.record(latencyMillis, TimeUnit.MILLISECONDS);
+        milvusInsertVectorCounter.increment(vectorCount);
+        log.debug("记录Milvus批量写入指标: 向量数={}, 耗时={}ms", vectorCount, latencyMillis);
+    }
+
+    /**
+     * 更新Milvus写入吞吐量（向量数/秒）
+     */
+    public void updateMilvusInsertThroughput(long vectorsPerSecond) {
+        milvusInsertThroughputGauge.set(vectorsPerSecond);
+        log.debug("更新Milvus写入吞吐量: {} vectors/s", vectorsPerSecond);
+    }
+
+    /**
+     * 记录混合检索单路耗时
+     *
+     * @param leg 检索路（semantic/keyword）
+     * @param latencyMillis 耗时
+     * @param success 是否成功返回
+     */
+    public void recordHybridLegTime(String leg, long latencyMillis, boolean success) {
+        Timer timer = "keyword".equals(leg) ? hybridKeywordLegTimer : hybridSemanticLegTimer;
+        timer.record(latencyMillis, TimeUnit.MILLISECONDS);
+        if (!success) {
+            hybridLegFailureCounter.increment();
+        }
+        log.debug("记录混合检索单路指标: 路={}, 耗时={}ms, 成功={}", leg, latencyMillis, success);
+    }
+
+    /**
+     * 记录混合检索单路超时（耗时在该路实际结束时另行记录）
+     */
+    public void recordHybridLegTimeout(String leg) {
+        hybridLegFailureCounter.increment();
+        log.debug("记录混合检索单路超时: 路={}", leg);
+    }
+
+    /**
+     * 记录嵌入模型单批调用耗时
+     */
+    public void recordEmbeddingBatch(int chunkCount, long latencyMillis) {
+        embeddingBatchTimer.record(latencyMillis, TimeUnit.MILLISECONDS);
+        log.debug("记录嵌入批次指标: 文本块数={}, 耗时={}ms", chunkCount, latencyMillis);
+    }
+
+    /**
+     * 记录嵌入批次重试
+     */
+    public void recordEmbeddingRetry() {
+        embeddingRetryCounter.increment();
+    }
+
+    /**
+     * 更新嵌入吞吐量（文本块数/秒）
+     */
+    public void updateEmbeddingThroughput(long chunksPerSecond) {
+        embeddingThroughputGauge.set(chunksPerSecond);
+        log.debug("更新嵌入吞吐量: {} chunks/s", chunksPerSecond);
+    }
+
+    /**
+     * 调整嵌入队列深度
+     *
+     * @param delta 批次数变化量，入队为正、完成为负
+     */
+    public void adjustEmbeddingQueueDepth(long delta) {
+        embeddingQueueDepthGauge.addAndGet(delta);
+    }
+
+    /**
+     * 记录问答缓存命中
+     */
+    public void recordAnswerCacheHit() {
+        answerCacheHitCounter.increment();
+    }
+
+    /**
+     * 记录问答缓存未命中
+     */
+    public void recordAnswerCacheMiss() {
+        answerCacheMissCounter.increment();
+    }
+
+    /**
+     * 记录问答缓存淘汰条目数
+     */
+    public void recordAnswerCacheEviction(long count) {
+        answerCacheEvictionCounter.increment(count);
+    }
+
+    /**
+     * 更新问答缓存条目数
+     */
+    public void updateAnswerCacheSize(long size) {
+        answerCacheSizeGauge.set(size);
+    }
+
     /**
      * 记录文档处理指标（带类型标签）
      */
@@ -0,0 +1,106 @@
+package com.aliyun.rag.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 迁移中或重建索引中用户的向量存储
+ * <p>
+ * 检索仍读原有的独立collection；写入和删除同时作用于独立collection和目标collection（迁移时为共享collection，
+ * 重建索引时为建好新索引的影子collection），复制期间的新数据不会因为复制批次已经走过而遗漏。
+ * 写操作与同节点的复制批次持有同一把锁，删除要么发生在复制读取之前，要么发生在复制写入之后，
+ * 不会把已删除的向量复制过去。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class MigratingEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> legacy;
+    private final EmbeddingStore<TextSegment> target;
+    private final Object lock;
+
+    MigratingEmbeddingStore(EmbeddingStore<TextSegment> legacy, EmbeddingStore<TextSegment> target, Object lock) {
+        this.legacy = legacy;
+        this.target = target;
+        this.lock = lock;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        synchronized (lock) {
+            legacy.addAll(ids, embeddings, textSegments);
+            target.addAll(ids, embeddings, textSegments);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        synchronized (lock) {
+            legacy.removeAll(ids);
+            target.removeAll(ids);
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        synchronized (lock) {
+            legacy.removeAll(filter);
+            target.removeAll(filter);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        synchronized (lock) {
+            legacy.removeAll();
+            target.removeAll();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return legacy.search(request);
+    }
+}
@@ -0,0 +1,289 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.MilvusIndexProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Milvus向量索引管理
+ * <p>
+ * 按 milvus.index.profiles 中的方案重建用户独立collection的向量索引。Milvus同一字段只能有一个索引，
+ * 不在线上collection里原地替换，而是先建好新索引再切换：
+ * <ol>
+ *   <li>创建空的影子collection，按新方案建好索引并加载</li>
+ *   <li>在Redis中把用户标记为重建中，等待状态在集群内生效，此后所有写入双写到独立collection和影子collection</li>
+ *   <li>按文档映射表中的向量ID分批复制到影子collection，再核对删除复制期间已被删除的向量</li>
+ *   <li>把读写切换到影子collection，等待生效后把独立collection的名称改为指向影子collection的别名并删除原collection</li>
+ * </ol>
+ * 重建期间检索不受影响，向量ID保持不变。复制完成前失败时回到原collection并删除影子collection；
+ * 切换阶段失败时保持读写影子collection，重新发起即继续完成切换；进程中断留下的重建中状态在再次发起时
+ * 沿用已建好索引的影子collection从头复制（写入可重复执行）。
+ * 共享collection承载多个用户的数据，不能由单个用户发起重建；迁移中的用户需等迁移完成后再重建。
+ * 重建在单个后台线程中依次执行。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(MilvusIndexService.class);
+
+    private final MilvusConfig milvusConfig;
+    private final MilvusIndexProperties indexProperties;
+    private final MilvusStoreRegistry milvusStoreRegistry;
+    private final MilvusLayoutState milvusLayoutState;
+    private final MilvusVectorStoreBackend milvusVectorStoreBackend;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private final ExecutorService rebuildExecutor;
+
+    public MilvusIndexService(MilvusConfig milvusConfig,
+                              MilvusIndexProperties indexProperties,
+                              MilvusStoreRegistry milvusStoreRegistry,
+                              MilvusLayoutState milvusLayoutState,
+                              MilvusVectorStoreBackend milvusVectorStoreBackend,
+                              DocumentMilvusMappingRepository documentMilvusMappingRepository) {
+        this.milvusConfig = milvusConfig;
+        this.indexProperties = indexProperties;
+        this.milvusStoreRegistry = milvusStoreRegistry;
+        this.milvusLayoutState = milvusLayoutState;
+        this.milvusVectorStoreBackend = milvusVectorStoreBackend;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MilvusIndex-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交用户独立collection的索引重建，同一collection已在排队或执行中时不重复提交
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param profileName 索引方案名称，为空时使用默认方案
+     * @return 索引状态
+     */
+    public Map<String, Object> rebuild(Long userId, String username, String profileName) {
+        String profile = profileName == null || profileName.isBlank() ? indexProperties.getDefaultProfile() : profileName;
+        if (!indexProperties.getProfiles().containsKey(profile)) {
+            throw new IllegalArgumentException("未配置的索引方案: " + profile);
+        }
+        MilvusLayoutState.State state = milvusLayoutState.resolve(userId, username);
+        if (state == MilvusLayoutState.State.SHARED) {
+            throw new IllegalStateException("共享collection承载多个用户的数据，不能按单个用户重建索引");
+        }
+        if (state == MilvusLayoutState.State.MIGRATING) {
+            throw new IllegalStateException("向量正在迁移到共享collection，请在迁移完成后再重建索引");
+        }
+        String collectionName = MilvusStoreRegistry.collectionName(userId, username);
+        if (!milvusStoreRegistry.collectionExists(collectionName)) {
+            throw new IllegalStateException("collection不存在: " + collectionName);
+        }
+
+        Progress submitted = new Progress(profile);
+        Progress existing = progress.putIfAbsent(collectionName, submitted);
+        if (existing != null && existing.isActive()) {
+            return getStatus(userId, username);
+        }
+        if (existing != null) {
+            progress.put(collectionName, submitted);
+        }
+        rebuildExecutor.execute(() -> rebuildCollection(userId, username, submitted));
+        return getStatus(userId, username);
+    }
+
+    /**
+     * 获取用户所在collection的索引状态
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 状态信息
+     */
+    public Map<String, Object> getStatus(Long userId, String username) {
+        String collectionName = milvusVectorStoreBackend.collectionName(userId, username);
+        Map<String, Object> status = new HashMap<>();
+        status.put("collectionName", collectionName);
+        status.put("sharedCollection", milvusLayoutState.resolve(userId, username) == MilvusLayoutState.State.SHARED);
+        status.put("indexType", milvusStoreRegistry.collectionExists(collectionName)
+                ? milvusStoreRegistry.indexType(collectionName) : "");
+        status.put("defaultProfile", indexProperties.getDefaultProfile());
+
+        Map<String, String> profiles = new LinkedHashMap<>();
+        indexProperties.getProfiles().forEach((name, profile) -> profiles.put(name, profile.getType().name()));
+        status.put("profiles", profiles);
+
+        Progress current = progress.get(MilvusStoreRegistry.collectionName(userId, username));
+        if (current != null) {
+            status.put("rebuildProfile", current.profile);
+            status.put("phase", current.phase);
+            status.put("totalVectors", current.total);
+            status.put("copiedVectors", current.copied);
+            status.put("removedVectors", current.removed);
+            status.put("startedAt", current.startedAt);
+            status.put("finishedAt", current.finishedAt);
+            status.put("error", current.error);
+        }
+        return status;
+    }
+
+    private void rebuildCollection(Long userId, String username, Progress current) {
+        current.phase = "PREPARING";
+        current.startedAt = LocalDateTime.now();
+        String collectionName = MilvusStoreRegistry.collectionName(userId, username);
+        boolean copying = false;
+        try {
+            MilvusLayoutState.State state = milvusLayoutState.resolve(userId, username);
+            if (state == MilvusLayoutState.State.SHARED || state == MilvusLayoutState.State.MIGRATING) {
+                throw new IllegalStateException("用户的向量已不在独立collection中，无法重建索引");
+            }
+            if (state == MilvusLayoutState.State.LEGACY) {
+                milvusStoreRegistry.prepareRebuild(collectionName, current.profile);
+                if (!milvusLayoutState.markRebuilding(userId)) {
+                    throw new IllegalStateException("用户的向量正在迁移或重建索引，请稍后再试");
+                }
+            }
+            copying = state != MilvusLayoutState.State.SWITCHING;
+            log.info("开始按方案 {} 重建collection {} 的索引", current.profile, collectionName);
+            milvusLayoutState.awaitPropagation();
+
+            if (copying) {
+                copy(userId, username, current);
+                milvusLayoutState.markSwitching(userId);
+                copying = false;
+                milvusLayoutState.awaitPropagation();
+            }
+
+            current.phase = "SWITCHING";
+            milvusStoreRegistry.switchToRebuilt(collectionName);
+            milvusLayoutState.reset(userId);
+            milvusLayoutState.awaitPropagation();
+            milvusStoreRegistry.retireRebuildName(collectionName);
+            current.phase = "DONE";
+            log.info("collection {} 已按方案 {} 重建索引，复制 {} 个向量，清理 {} 个复制期间删除的向量",
+                    collectionName, current.profile, current.copied, current.removed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current.phase = "FAILED";
+            current.error = "重建被中断";
+        } catch (Exception e) {
+            log.error("重建collection {} 的索引失败: {}", collectionName, e.getMessage(), e);
+            current.phase = "FAILED";
+            current.error = e.getMessage();
+            if (copying) {
+                rollback(userId, collectionName);
+            }
+        } finally {
+            current.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 按文档映射表中的向量ID把独立collection复制到影子collection，再清理复制期间已被删除的向量
+     */
+    private void copy(Long userId, String username, Progress current) {
+        String target = MilvusStoreRegistry.rebuildCollectionName(MilvusStoreRegistry.collectionName(userId, username));
+        List<String> ids = documentMilvusMappingRepository.findByUserIdAndIsDeleted(userId, 0).stream()
+                .filter(mapping -> mapping.getRefMilvusId() == null)
+                .map(DocumentMilvusMapping::getMilvusId)
+                .distinct()
+                .toList();
+        current.total = ids.size();
+        int batchSize = Math.max(1, milvusConfig.getMigrationBatchSize());
+
+        current.phase = "COPYING";
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            synchronized (milvusLayoutState.lock(userId)) {
+                PartitionedMilvusStore.upsert(milvusStoreRegistry, target, null,
+                        milvusVectorStoreBackend.fetchLegacy(userId, username, batch, true));
+            }
+            current.copied += batch.size();
+        }
+
+        current.phase = "VERIFYING";
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            Set<String> present = new HashSet<>();
+            for (VectorStoreBackend.StoredVector vector : milvusVectorStoreBackend.fetchLegacy(userId, username, batch, false)) {
+                present.add(vector.id());
+            }
+            List<String> removed = new ArrayList<>();
+            for (String id : batch) {
+                if (!present.contains(id)) {
+                    removed.add(id);
+                }
+            }
+            if (!removed.isEmpty()) {
+                milvusStoreRegistry.getStore(target).removeAll(removed);
+                current.removed += removed.size();
+            }
+        }
+    }
+
+    /**
+     * 回到原collection，等其他节点停止双写后删除影子collection
+     */
+    private void rollback(Long userId, String collectionName) {
+        try {
+            milvusLayoutState.reset(userId);
+            milvusLayoutState.awaitPropagation();
+            milvusStoreRegistry.dropCollection(MilvusStoreRegistry.rebuildCollectionName(collectionName));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("删除collection {} 的影子collection失败，下次重建开始时会重新清理: {}", collectionName, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 单个collection的重建进度
+     */
+    private static final class Progress {
+
+        private final String profile;
+        private volatile String phase = "QUEUED";
+        private volatile int total;
+        private volatile int copied;
+        private volatile int removed;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Progress(String profile) {
+            this.profile = profile;
+        }
+
+        private boolean isActive() {
+            return !"DONE".equals(phase) && !"FAILED".equals(phase);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.User;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 独立collection到共享collection的在线迁移
+ * <p>
+ * 单个用户的迁移步骤：
+ * <ol>
+ *   <li>在Redis中把用户标记为迁移中，等待状态在集群内生效，此后所有写入双写到独立collection和共享collection</li>
+ *   <li>按文档映射表中的向量ID分批从独立collection读取（含向量）并写入共享collection，ID已存在时覆盖</li>
+ *   <li>再按同一批ID核对：独立collection中已不存在的（复制期间被其他节点删除）从共享collection中删除</li>
+ *   <li>标记为已迁移，此后读写都走共享collection；按配置在状态生效后删除独立collection</li>
+ * </ol>
+ * 迁移期间检索不受影响，向量ID保持不变，关键词索引和量化索引无需重建。失败时回到独立collection并清理已复制的数据，可以重新发起；
+ * 进程中断留下的迁移中状态在再次发起时从头复制（写入可重复执行）。迁移在单个后台线程中依次执行。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusLayoutMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(MilvusLayoutMigrationService.class);
+
+    /**
+     * 启动后延迟多久开始自动迁移（秒）
+     */
+    private static final long AUTO_MIGRATE_DELAY_SECONDS = 60;
+
+    private final MilvusConfig milvusConfig;
+    private final MilvusStoreRegistry milvusStoreRegistry;
+    private final MilvusLayoutState milvusLayoutState;
+    private final MilvusVectorStoreBackend milvusVectorStoreBackend;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+    private final UserRepository userRepository;
+
+    private final Map<Long, Progress> progress = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService migrationExecutor;
+
+    public MilvusLayoutMigrationService(MilvusConfig milvusConfig,
+                                        MilvusStoreRegistry milvusStoreRegistry,
+                                        MilvusLayoutState milvusLayoutState,
+                                        MilvusVectorStoreBackend milvusVectorStoreBackend,
+                                        DocumentMilvusMappingRepository documentMilvusMappingRepository,
+                                        UserRepository userRepository) {
+        this.milvusConfig = milvusConfig;
+        this.milvusStoreRegistry = milvusStoreRegistry;
+        this.milvusLayoutState = milvusLayoutState;
+        this.milvusVectorStoreBackend = milvusVectorStoreBackend;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+        this.userRepository = userRepository;
+
+        this.migrationExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MilvusLayout-migration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (milvusConfig.isSharedLayout() && Boolean.TRUE.equals(milvusConfig.getAutoMigrate())) {
+            migrationExecutor.schedule(this::migrateAllUsers, AUTO_MIGRATE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 提交单个用户的迁移，已在排队或执行中时不重复提交
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 迁移状态
+     */
+    public Map<String, Object> migrate(Long userId, String username) {
+        if (!milvusConfig.isSharedLayout()) {
+            throw new IllegalStateException("当前为独立collection布局，请先将 milvus.layout.mode 设置为 shared");
+        }
+        if (MilvusLayoutState.isRebuilding(milvusLayoutState.resolve(userId, username))) {
+            throw new IllegalStateException("向量索引正在重建，请在重建完成后再迁移");
+        }
+        Progress submitted = new Progress();
+        Progress existing = progress.putIfAbsent(userId, submitted);
+        if (existing != null && existing.isActive()) {
+            return getStatus(userId, username);
+        }
+        if (existing != null) {
+            progress.put(userId, submitted);
+        }
+        migrationExecutor.execute(() -> migrateUser(userId, username, submitted));
+        return getStatus(userId, username);
+    }
+
+    /**
+     * 获取用户的布局和迁移状态
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 状态信息
+     */
+    public Map<String, Object> getStatus(Long userId, String username) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("layout", milvusConfig.isSharedLayout() ? "shared" : "per-user");
+        status.put("state", milvusLayoutState.resolve(userId, username).name());
+        status.put("collectionName", milvusVectorStoreBackend.collectionName(userId, username));
+        Progress current = progress.get(userId);
+        if (current != null) {
+            status.put("phase", current.phase);
+            status.put("totalVectors", current.total);
+            status.put("copiedVectors", current.copied);
+            status.put("removedVectors", current.removed);
+            status.put("startedAt", current.startedAt);
+            status.put("finishedAt", current.finishedAt);
+            status.put("error", current.error);
+        }
+        return status;
+    }
+
+    /**
+     * 依次迁移所有仍使用独立collection的用户
+     */
+    private void migrateAllUsers() {
+        int migrated = 0;
+        for (User user : userRepository.findAll()) {
+            try {
+                MilvusLayoutState.State state = milvusLayoutState.resolve(user.getId(), user.getUsername());
+                if (state == MilvusLayoutState.State.SHARED || MilvusLayoutState.isRebuilding(state)) {
+                    continue;
+                }
+                Progress submitted = new Progress();
+                Progress existing = progress.putIfAbsent(user.getId(), submitted);
+                if (existing != null && existing.isActive()) {
+                    continue;
+                }
+                progress.put(user.getId(), submitted);
+                migrateUser(user.getId(), user.getUsername(), submitted);
+                migrated++;
+            } catch (Exception e) {
+                log.warn("自动迁移用户 {} 失败: {}", user.getId(), e.getMessage());
+            }
+        }
+        log.info("自动迁移完成，共处理 {} 个用户", migrated);
+    }
+
+    private void migrateUser(Long userId, String username, Progress current) {
+        current.phase = "PREPARING";
+        current.startedAt = LocalDateTime.now();
+        boolean migrating = false;
+        try {
+            MilvusLayoutState.State state = milvusLayoutState.resolve(userId, username);
+            if (state == MilvusLayoutState.State.SHARED) {
+                current.phase = "DONE";
+                return;
+            }
+            if (MilvusLayoutState.isRebuilding(state)) {
+                throw new IllegalStateException("向量索引正在重建，请在重建完成后再迁移");
+            }
+            String legacyCollection = MilvusStoreRegistry.collectionName(userId, username);
+            if (!milvusStoreRegistry.collectionExists(legacyCollection)) {
+                milvusLayoutState.markShared(userId);
+                current.phase = "DONE";
+                return;
+            }
+            if (state == MilvusLayoutState.State.LEGACY) {
+                // 清理此前失败的迁移可能残留的数据；继续被中断的迁移（已是迁移中）时双写已生效，不能清理
+                milvusStoreRegistry.getPartitionedStore(userId).removeAll();
+            }
+            if (!milvusLayoutState.markMigrating(userId)) {
+                current.phase = "DONE";
+                return;
+            }
+            migrating = true;
+            log.info("开始迁移用户 {}({}) 的向量到共享collection {}", username, userId,
+                    milvusStoreRegistry.sharedCollectionName(userId));
+            milvusLayoutState.awaitPropagation();
+
+            List<String> ids = documentMilvusMappingRepository.findByUserIdAndIsDeleted(userId, 0).stream()
+                    .filter(mapping -> mapping.getRefMilvusId() == null)
+                    .map(DocumentMilvusMapping::getMilvusId)
+                    .distinct()
+                    .toList();
+            current.total = ids.size();
+            PartitionedMilvusStore shared = milvusStoreRegistry.getPartitionedStore(userId);
+            int batchSize = Math.max(1, milvusConfig.getMigrationBatchSize());
+
+            current.phase = "COPYING";
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                synchronized (milvusLayoutState.lock(userId)) {
+                    shared.upsert(milvusVectorStoreBackend.fetchLegacy(userId, username, batch, true));
+                }
+                current.copied += batch.size();
+            }
+
+            current.phase = "VERIFYING";
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                Set<String> present = new HashSet<>();
+                for (VectorStoreBackend.StoredVector vector : milvusVectorStoreBackend.fetchLegacy(userId, username, batch, false)) {
+                    present.add(vector.id());
+                }
+                List<String> removed = new ArrayList<>();
+                for (String id : batch) {
+                    if (!present.contains(id)) {
+                        removed.add(id);
+                    }
+                }
+                if (!removed.isEmpty()) {
+                    shared.removeAll(removed);
+                    current.removed += removed.size();
+                }
+            }
+
+            milvusLayoutState.markShared(userId);
+            migrating = false;
+            if (Boolean.TRUE.equals(milvusConfig.getDropLegacyAfterMigration())) {
+                current.phase = "DROPPING_LEGACY";
+                milvusLayoutState.awaitPropagation();
+                milvusStoreRegistry.dropCollection(legacyCollection);
+                log.info("已删除用户 {} 的独立collection {}", userId, legacyCollection);
+            }
+            current.phase = "DONE";
+            log.info("用户 {}({}) 迁移完成，复制 {} 个向量，清理 {} 个复制期间删除的向量",
+                    username, userId, current.copied, current.removed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current.phase = "FAILED";
+            current.error = "迁移被中断";
+        } catch (Exception e) {
+            log.error("迁移用户 {}({}) 的向量失败: {}", username, userId, e.getMessage(), e);
+            current.phase = "FAILED";
+            current.error = e.getMessage();
+            if (migrating) {
+                rollback(userId);
+            }
+        } finally {
+            current.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 回到独立collection，等其他节点停止双写后清理共享collection中已复制的数据
+     */
+    private void rollback(Long userId) {
+        try {
+            milvusLayoutState.reset(userId);
+            milvusLayoutState.awaitPropagation();
+            milvusStoreRegistry.getPartitionedStore(userId).removeAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("清理用户 {} 在共享collection中的部分数据失败，下次迁移开始时会重新清理: {}", userId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrationExecutor.shutdownNow();
+    }
+
+    /**
+     * 单个用户的迁移进度
+     */
+    private static final class Progress {
+
+        private volatile String phase = "QUEUED";
+        private volatile int total;
+        private volatile int copied;
+        private volatile int removed;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private boolean isActive() {
+            return !"DONE".equals(phase) && !"FAILED".equals(phase);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户向量数据所在的collection布局状态
+ * <p>
+ * 共享布局下，每个用户处于以下状态之一：
+ * <ul>
+ *   <li>LEGACY：数据仍在独立collection中，读写都走独立collection</li>
+ *   <li>MIGRATING：迁移中，读走独立collection，写同时进入独立collection和共享collection</li>
+ *   <li>SHARED：数据已在共享collection中</li>
+ * </ul>
+ * 独立collection重建索引期间另有两个状态，两种布局下都可能出现：
+ * <ul>
+ *   <li>REBUILDING：读走独立collection，写同时进入独立collection和建好新索引的影子collection</li>
+ *   <li>SWITCHING：数据已复制完，读写都走影子collection，等待独立collection的名称切换过去</li>
+ * </ul>
+ * 迁移、重建中和已迁移的状态记录在Redis哈希中，集群内所有节点共用；没有记录的用户有独立collection时为LEGACY，
+ * 否则为SHARED（新用户直接使用共享collection）。各节点在本地缓存状态，状态切换后最多在缓存时间内生效。
+ * 独立布局下只认重建索引的记录，其余用户都是LEGACY。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusLayoutState {
+
+    private static final Logger log = LoggerFactory.getLogger(MilvusLayoutState.class);
+
+    private static final String STATE_KEY = "rag:vector-layout:state";
+
+    /**
+     * 用户写入与复制批次之间互斥的锁分段数
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    /**
+     * 本地状态缓存超过该数量时清理过期条目
+     */
+    private static final int MAX_CACHED_USERS = 10000;
+
+    /**
+     * 用户布局状态
+     */
+    public enum State {
+        LEGACY,     // 独立collection
+        MIGRATING,  // 迁移中，双写
+        SHARED,     // 共享collection
+        REBUILDING, // 重建索引中，双写
+        SWITCHING   // 重建索引中，读写影子collection
+    }
+
+    private final MilvusConfig milvusConfig;
+    private final MilvusStoreRegistry milvusStoreRegistry;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public MilvusLayoutState(MilvusConfig milvusConfig,
+                             MilvusStoreRegistry milvusStoreRegistry,
+                             StringRedisTemplate stringRedisTemplate) {
+        this.milvusConfig = milvusConfig;
+        this.milvusStoreRegistry = milvusStoreRegistry;
+        this.stringRedisTemplate = stringRedisTemplate;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 是否启用共享布局
+     */
+    public boolean isShared() {
+        return milvusConfig.isSharedLayout();
+    }
+
+    /**
+     * 获取用户当前的布局状态
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 布局状态
+     */
+    public State resolve(Long userId, String username) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && now < entry.expiresAt()) {
+            return entry.state();
+        }
+
+        State state;
+        Object stored = stringRedisTemplate.opsForHash().get(STATE_KEY, String.valueOf(userId));
+        State recorded = stored != null ? State.valueOf(stored.toString()) : null;
+        if (recorded != null && (milvusConfig.isSharedLayout() || isRebuilding(recorded))) {
+            state = recorded;
+        } else if (!milvusConfig.isSharedLayout()) {
+            state = State.LEGACY;
+        } else {
+            state = milvusStoreRegistry.collectionExists(MilvusStoreRegistry.collectionName(userId, username))
+                    ? State.LEGACY : State.SHARED;
+        }
+        cache(userId, state);
+        return state;
+    }
+
+    /**
+     * 把用户标记为迁移中，集群内只有一个调用者能从无记录切换成功
+     *
+     * @param userId 用户ID
+     * @return 是否切换成功；已是迁移中（例如上次迁移中断）也返回true
+     */
+    boolean markMigrating(Long userId) {
+        Boolean set = stringRedisTemplate.opsForHash().putIfAbsent(STATE_KEY, String.valueOf(userId), State.MIGRATING.name());
+        Object current = stringRedisTemplate.opsForHash().get(STATE_KEY, String.valueOf(userId));
+        boolean migrating = Boolean.TRUE.equals(set) || State.MIGRATING.name().equals(current);
+        if (migrating) {
+            cache(userId, State.MIGRATING);
+        }
+        return migrating;
+    }
+
+    /**
+     * 把用户标记为重建索引中，集群内只有一个调用者能从无记录切换成功
+     *
+     * @param userId 用户ID
+     * @return 是否切换成功
+     */
+    boolean markRebuilding(Long userId) {
+        Boolean set = stringRedisTemplate.opsForHash().putIfAbsent(STATE_KEY, String.valueOf(userId), State.REBUILDING.name());
+        if (Boolean.TRUE.equals(set)) {
+            cache(userId, State.REBUILDING);
+        }
+        return Boolean.TRUE.equals(set);
+    }
+
+    /**
+     * 影子collection数据复制完成，读写切换过去
+     */
+    void markSwitching(Long userId) {
+        stringRedisTemplate.opsForHash().put(STATE_KEY, String.valueOf(userId), State.SWITCHING.name());
+        cache(userId, State.SWITCHING);
+        log.info("用户 {} 的读写已切换到重建索引的影子collection", userId);
+    }
+
+    /**
+     * 是否处于重建索引的某个阶段
+     */
+    static boolean isRebuilding(State state) {
+        return state == State.REBUILDING || state == State.SWITCHING;
+    }
+
+    void markShared(Long userId) {
+        stringRedisTemplate.opsForHash().put(STATE_KEY, String.valueOf(userId), State.SHARED.name());
+        cache(userId, State.SHARED);
+        log.info("用户 {} 的向量已切换到共享collection", userId);
+    }
+
+    /**
+     * 迁移失败或重建索引结束时回到独立collection
+     */
+    void reset(Long userId) {
+        stringRedisTemplate.opsForHash().delete(STATE_KEY, String.valueOf(userId));
+        entries.remove(userId);
+    }
+
+    /**
+     * 用户写入与迁移、重建索引的复制共用的锁
+     */
+    Object lock(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * 等待其他节点的本地缓存过期，使状态切换在整个集群生效
+     */
+    void awaitPropagation() throws InterruptedException {
+        TimeUnit.SECONDS.sleep(milvusConfig.getLayoutStateCacheSeconds() + 1);
+    }
+
+    private void cache(Long userId, State state) {
+        long now = System.currentTimeMillis();
+        entries.put(userId, new Entry(state, now + TimeUnit.SECONDS.toMillis(milvusConfig.getLayoutStateCacheSeconds())));
+        if (entries.size() > MAX_CACHED_USERS) {
+            entries.values().removeIf(entry -> now >= entry.expiresAt());
+        }
+    }
+
+    private record Entry(State state, long expiresAt) {
+    }
+}
@@ -0,0 +1,717 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.MilvusIndexProperties;
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.model.SearchRequest;
+import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.CheckHealthResponse;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.DescribeIndexResponse;
+import io.milvus.grpc.IndexDescription;
+import io.milvus.grpc.KeyValuePair;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.alias.AlterAliasParam;
+import io.milvus.param.alias.CreateAliasParam;
+import io.milvus.param.alias.DropAliasParam;
+import io.milvus.param.collection.CreateCollectionParam;
+import io.milvus.param.collection.DescribeCollectionParam;
+import io.milvus.param.collection.DropCollectionParam;
+import io.milvus.param.collection.FieldType;
+import io.milvus.param.collection.HasCollectionParam;
+import io.milvus.param.collection.LoadCollectionParam;
+import io.milvus.param.collection.ReleaseCollectionParam;
+import io.milvus.param.collection.RenameCollectionParam;
+import io.milvus.param.index.CreateIndexParam;
+import io.milvus.param.index.DescribeIndexParam;
+import io.milvus.param.index.DropIndexParam;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Milvus向量存储注册表
+ * <p>
+ * 按collection名称缓存长期存活的MilvusEmbeddingStore实例，所有实例共用同一个MilvusServiceClient，
+ * 避免每次存储/检索/删除时重新建立gRPC连接。注册表容量有上限，超出后按最近访问时间淘汰，
+ * 空闲过久的实例由后台任务定期清理；同一后台任务负责检查Milvus健康状态，
+ * 不健康时清空“collection已存在”缓存，待恢复后重新校验。
+ * 共享布局下的collection由注册表按固定schema创建（含 tenant_id 分区键），每个用户的存储只是带用户ID的轻量视图。
+ * 新建的collection按 milvus.index.default-profile 建索引；各collection的实际索引类型缓存在注册表中，
+ * 检索时据此把检索档位换算为对应索引的检索参数。重建索引在影子collection上进行，完成后原名称改为指向它的别名。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusStoreRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MilvusStoreRegistry.class);
+
+    private static final String VECTOR_FIELD = "vector";
+
+    /**
+     * 索引类型本地缓存时间（毫秒），其他节点重建索引后最多在该时间内按新的索引类型选择检索参数
+     */
+    private static final long INDEX_TYPE_CACHE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final MilvusServiceClient milvusClient;
+    private final MilvusConfig milvusConfig;
+    private final MilvusIndexProperties indexProperties;
+    private final VectorStoreProperties vectorStoreProperties;
+
+    private final ConcurrentHashMap<String, StoreEntry> stores = new ConcurrentHashMap<>();
+    private final Set<String> existingCollections = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, IndexTypeEntry> indexTypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> preparingCollections = new ConcurrentHashMap<>();
+    private final AtomicBoolean healthy = new AtomicBoolean(true);
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    public MilvusStoreRegistry(MilvusServiceClient milvusClient,
+                               MilvusConfig milvusConfig,
+                               MilvusIndexProperties indexProperties,
+                               VectorStoreProperties vectorStoreProperties,
+                               MeterRegistry meterRegistry) {
+        this.milvusClient = milvusClient;
+        this.milvusConfig = milvusConfig;
+        this.indexProperties = indexProperties;
+        this.vectorStoreProperties = vectorStoreProperties;
+
+        this.hitCounter = Counter.builder("milvus.store.registry.hit")
+                .description("Number of embedding store lookups served from the registry")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("milvus.store.registry.miss")
+                .description("Number of embedding store lookups that had to build a new store")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("milvus.store.registry.eviction")
+                .description("Number of embedding stores evicted from the registry")
+                .register(meterRegistry);
+        Gauge.builder("milvus.store.registry.size", stores, Map::size)
+                .description("Number of embedding stores currently held by the registry")
+                .register(meterRegistry);
+        Gauge.builder("milvus.client.healthy", healthy, h -> h.get() ? 1 : 0)
+                .description("Whether the last Milvus health check succeeded (1) or failed (0)")
+                .register(meterRegistry);
+
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MilvusStoreRegistry-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = milvusConfig.getHealthCheckIntervalSeconds();
+        this.maintenanceExecutor.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 生成用户专属collection名称
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return collection名称
+     */
+    public static String collectionName(Long userId, String username) {
+        return username + "_" + userId;
+    }
+
+    /**
+     * 获取用户专属的向量存储
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return MilvusEmbeddingStore实例
+     */
+    public MilvusEmbeddingStore getStore(Long userId, String username) {
+        return getStore(collectionName(userId, username));
+    }
+
+    /**
+     * 按collection名称获取向量存储，不存在时创建并放入注册表
+     *
+     * @param collectionName collection名称
+     * @return MilvusEmbeddingStore实例
+     */
+    public MilvusEmbeddingStore getStore(String collectionName) {
+        StoreEntry entry = stores.get(collectionName);
+        if (entry != null) {
+            hitCounter.increment();
+            entry.touch();
+            return entry.store;
+        }
+
+        // 构建实例需要访问Milvus，放在映射表之外进行；并发构建时只保留先放入的实例
+        missCounter.increment();
+        log.info("为collection {} 创建向量存储实例", collectionName);
+        prepareCollection(collectionName, () -> {
+            // LangChain4j建collection时使用FLAT索引，空collection上直接替换为默认方案
+            buildStore(collectionName);
+            replaceIndex(collectionName, indexProperties.getDefaultProfile());
+        });
+        MilvusEmbeddingStore store = buildStore(collectionName);
+
+        StoreEntry built = new StoreEntry(store);
+        entry = stores.putIfAbsent(collectionName, built);
+        if (entry == null) {
+            entry = built;
+        } else {
+            // 实例共用注册表的客户端，自身不持有连接，落选的实例直接丢弃
+            log.debug("collection {} 的向量存储实例已由其他线程创建，丢弃本次创建的实例", collectionName);
+        }
+        entry.touch();
+
+        if (stores.size() > milvusConfig.getMaxStores()) {
+            evictLeastRecentlyUsed();
+        }
+        return entry.store;
+    }
+
+    /**
+     * 构建collection的向量存储实例，collection不存在时LangChain4j会自动创建并加载
+     */
+    private MilvusEmbeddingStore buildStore(String collectionName) {
+        return MilvusEmbeddingStore.builder()
+                .milvusClient(milvusClient)
+                .collectionName(collectionName)
+                .dimension(milvusConfig.getDimension())
+                .idFieldName("id")
+                .textFieldName("text")
+                .vectorFieldName(VECTOR_FIELD)
+                .build();
+    }
+
+    /**
+     * 确保collection存在且已建好索引，不存在时执行创建操作
+     * <p>
+     * 同一collection在本节点只由一个线程创建，其他线程等待其完成；collection和索引都建好后才登记为已存在，
+     * 期间{@link #collectionExists}同样会等待，不会把尚未建好索引的collection登记进缓存。
+     * </p>
+     *
+     * @param collectionName collection名称
+     * @param create 创建collection及其索引的操作
+     */
+    private void prepareCollection(String collectionName, Runnable create) {
+        if (existingCollections.contains(collectionName)) {
+            return;
+        }
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> running = preparingCollections.putIfAbsent(collectionName, mine);
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            return;
+        }
+        try {
+            if (!hasCollection(collectionName)) {
+                create.run();
+            }
+            existingCollections.add(collectionName);
+            mine.complete(null);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            preparingCollections.remove(collectionName, mine);
+        }
+    }
+
+    /**
+     * 共享布局下用户所在的共享collection名称
+     *
+     * @param userId 用户ID
+     * @return collection名称
+     */
+    public String sharedCollectionName(Long userId) {
+        return milvusConfig.getSharedCollectionPrefix() + "_" + Math.floorMod(userId, milvusConfig.getSharedCollections());
+    }
+
+    /**
+     * 获取用户在共享collection中的存储视图，共享collection不存在时先创建
+     *
+     * @param userId 用户ID
+     * @return 只读写该用户数据的向量存储，按默认档位检索
+     */
+    PartitionedMilvusStore getPartitionedStore(Long userId) {
+        return getPartitionedStore(userId, null);
+    }
+
+    /**
+     * 获取用户在共享collection中的存储视图，共享collection不存在时先创建
+     *
+     * @param userId 用户ID
+     * @param profile 检索档位，为空时使用默认档位
+     * @return 只读写该用户数据的向量存储
+     */
+    PartitionedMilvusStore getPartitionedStore(Long userId, SearchRequest.SearchProfile profile) {
+        String collectionName = sharedCollectionName(userId);
+        ensureSharedCollection(collectionName);
+        return new PartitionedMilvusStore(this, collectionName, userId, profile);
+    }
+
+    /**
+     * 创建并加载共享collection，多个节点同时创建时以先成功者为准
+     */
+    private void ensureSharedCollection(String collectionName) {
+        prepareCollection(collectionName, () -> {
+            log.info("创建共享collection {}，分区数 {}", collectionName, milvusConfig.getPartitionNum());
+            R<RpcStatus> created = milvusClient.createCollection(CreateCollectionParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withDescription("RAG shared collection partitioned by tenant_id")
+                    .withPartitionsNum(milvusConfig.getPartitionNum())
+                    .withConsistencyLevel(ConsistencyLevelEnum.BOUNDED)
+                    .addFieldType(FieldType.newBuilder().withName("id").withDataType(DataType.VarChar)
+                            .withMaxLength(64).withPrimaryKey(true).withAutoID(false).build())
+                    .addFieldType(FieldType.newBuilder().withName("text").withDataType(DataType.VarChar)
+                            .withMaxLength(65535).build())
+                    .addFieldType(FieldType.newBuilder().withName("metadata").withDataType(DataType.JSON).build())
+                    .addFieldType(FieldType.newBuilder().withName("vector").withDataType(DataType.FloatVector)
+                            .withDimension(milvusConfig.getDimension()).build())
+                    .addFieldType(FieldType.newBuilder().withName(PartitionedMilvusStore.TENANT_FIELD)
+                            .withDataType(DataType.Int64).withPartitionKey(true).build())
+                    .build());
+            if (created.getStatus() != R.Status.Success.getCode()) {
+                if (hasCollection(collectionName)) {
+                    return;
+                }
+                throw new RuntimeException("创建共享collection失败: " + created.getMessage());
+            }
+            createIndex(collectionName, profile(indexProperties.getDefaultProfile()));
+            load(collectionName);
+        });
+    }
+
+    /**
+     * 重建索引时影子collection的名称，新索引在影子collection上建好、数据复制完之后再切换过去
+     *
+     * @param collectionName 独立collection名称
+     * @return 影子collection名称
+     */
+    public static String rebuildCollectionName(String collectionName) {
+        return collectionName + "_rebuild";
+    }
+
+    /**
+     * 创建重建索引用的影子collection，按索引方案建好索引并加载
+     * <p>
+     * 影子collection名称上残留的collection（上次重建失败未清理）先删除；上次切换后未及改名、
+     * 仍在承载数据的影子collection先改为正式名称。
+     * </p>
+     *
+     * @param collectionName 独立collection名称
+     * @param profileName 索引方案名称
+     */
+    void prepareRebuild(String collectionName, String profileName) {
+        profile(profileName);
+        String target = rebuildCollectionName(collectionName);
+        retireRebuildName(collectionName);
+        if (hasCollection(target)) {
+            dropCollection(target);
+        }
+        prepareCollection(target, () -> {
+            buildStore(target);
+            replaceIndex(target, profileName);
+        });
+    }
+
+    /**
+     * 把独立collection的名称切换到影子collection，并删除原collection
+     * <p>
+     * 首次重建时原collection就使用这个名称，删除后建同名别名指向影子collection；此后该名称已是别名，直接改指向。
+     * 调用时所有节点的读写都已走影子collection，删除与建别名之间不会有请求使用该名称。
+     * </p>
+     *
+     * @param collectionName 独立collection名称
+     */
+    void switchToRebuilt(String collectionName) {
+        String target = rebuildCollectionName(collectionName);
+        String previous = physicalName(collectionName);
+        if (previous.equals(target)) {
+            return;
+        }
+        if (previous.equals(collectionName)) {
+            dropCollection(collectionName);
+            check(milvusClient.createAlias(CreateAliasParam.newBuilder()
+                    .withCollectionName(target)
+                    .withAlias(collectionName)
+                    .build()), "创建collection别名失败: ");
+        } else {
+            check(milvusClient.alterAlias(AlterAliasParam.newBuilder()
+                    .withCollectionName(target)
+                    .withAlias(collectionName)
+                    .build()), "修改collection别名失败: ");
+            dropCollection(previous);
+        }
+        invalidate(collectionName);
+        log.info("collection {} 已切换到重建索引后的 {}", collectionName, target);
+    }
+
+    /**
+     * 切换完成且不再有节点按影子名称读写后，把影子collection改为正式名称，腾出影子名称供下次重建使用；
+     * 别名跟随collection本身，改名不影响按原名称的读写
+     *
+     * @param collectionName 独立collection名称
+     */
+    void retireRebuildName(String collectionName) {
+        String target = rebuildCollectionName(collectionName);
+        if (!target.equals(physicalName(collectionName))) {
+            return;
+        }
+        String active = collectionName + "_active";
+        check(milvusClient.renameCollection(RenameCollectionParam.newBuilder()
+                .withOldCollectionName(target)
+                .withNewCollectionName(active)
+                .build()), "重命名collection失败: ");
+        invalidate(target);
+        invalidate(active);
+    }
+
+    /**
+     * 名称实际对应的collection，名称是别名时为其指向的collection，查询失败时原样返回
+     */
+    private String physicalName(String collectionName) {
+        R<DescribeCollectionResponse> response = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build());
+        if (response.getStatus() != R.Status.Success.getCode() || response.getData() == null
+                || response.getData().getCollectionName().isEmpty()) {
+            return collectionName;
+        }
+        return response.getData().getCollectionName();
+    }
+
+    /**
+     * 替换collection的向量索引
+     * <p>
+     * Milvus同一字段只能有一个索引，需要先释放collection、删除旧索引，新索引建好并重新加载前该collection不可检索，
+     * 因此只用于尚未承载检索的空collection。
+     * </p>
+     */
+    private void replaceIndex(String collectionName, String profileName) {
+        MilvusIndexProperties.Profile profile = profile(profileName);
+        indexTypes.remove(collectionName);
+        check(milvusClient.releaseCollection(ReleaseCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build()), "释放collection失败: ");
+        R<DescribeIndexResponse> described = milvusClient.describeIndex(DescribeIndexParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFieldName(VECTOR_FIELD)
+                .build());
+        if (described.getStatus() == R.Status.Success.getCode() && described.getData() != null) {
+            for (IndexDescription index : described.getData().getIndexDescriptionsList()) {
+                check(milvusClient.dropIndex(DropIndexParam.newBuilder()
+                        .withCollectionName(collectionName)
+                        .withIndexName(index.getIndexName())
+                        .build()), "删除旧索引失败: ");
+            }
+        }
+        createIndex(collectionName, profile);
+        load(collectionName);
+        log.info("collection {} 已按方案 {}（{}）建好索引", collectionName, profileName, profile.getType());
+    }
+
+    /**
+     * collection向量字段的索引类型，未建索引或查询失败时为空字符串
+     *
+     * @param collectionName collection名称
+     * @return 索引类型，如 HNSW、IVF_FLAT
+     */
+    public String indexType(String collectionName) {
+        IndexTypeEntry cached = indexTypes.get(collectionName);
+        if (cached != null && System.currentTimeMillis() < cached.expiresAt()) {
+            return cached.type();
+        }
+        String type = "";
+        R<DescribeIndexResponse> response = milvusClient.describeIndex(DescribeIndexParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFieldName(VECTOR_FIELD)
+                .build());
+        if (response.getStatus() == R.Status.Success.getCode() && response.getData() != null) {
+            for (IndexDescription index : response.getData().getIndexDescriptionsList()) {
+                for (KeyValuePair param : index.getParamsList()) {
+                    if ("index_type".equals(param.getKey())) {
+                        type = param.getValue();
+                    }
+                }
+            }
+            cacheIndexType(collectionName, type);
+        }
+        return type;
+    }
+
+    /**
+     * 把检索档位换算为collection当前索引的检索参数
+     *
+     * @param collectionName collection名称
+     * @param profile 检索档位，为空时使用默认档位
+     * @param topK 结果数
+     * @return JSON格式的检索参数
+     */
+    String searchParams(String collectionName, SearchRequest.SearchProfile profile, int topK) {
+        VectorStoreProperties.SearchParams params = vectorStoreProperties.searchParams(profile);
+        String type = indexType(collectionName);
+        if ("HNSW".equals(type)) {
+            return "{\"ef\":" + Math.max(params.getEf(), topK) + "}";
+        }
+        if (type.startsWith("IVF")) {
+            return "{\"nprobe\":" + Math.max(1, params.getNprobe()) + "}";
+        }
+        if ("DISKANN".equals(type)) {
+            return "{\"search_list\":" + Math.max(params.getSearchList(), topK) + "}";
+        }
+        return "{}";
+    }
+
+    private MilvusIndexProperties.Profile profile(String profileName) {
+        MilvusIndexProperties.Profile profile = indexProperties.getProfiles().get(profileName);
+        if (profile == null) {
+            throw new IllegalArgumentException("未配置的索引方案: " + profileName);
+        }
+        return profile;
+    }
+
+    private void createIndex(String collectionName, MilvusIndexProperties.Profile profile) {
+        String extraParam = profile.getParams().entrySet().stream()
+                .map(e -> "\"" + e.getKey() + "\":" + (e.getValue().matches("-?\\d+(\\.\\d+)?") ? e.getValue() : "\"" + e.getValue() + "\""))
+                .collect(Collectors.joining(",", "{", "}"));
+        check(milvusClient.createIndex(CreateIndexParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFieldName(VECTOR_FIELD)
+                .withIndexType(IndexType.valueOf(profile.getType().name()))
+                .withMetricType(MetricType.COSINE)
+                .withExtraParam(extraParam)
+                .withSyncMode(Boolean.TRUE)
+                .build()), "创建索引失败: ");
+        cacheIndexType(collectionName, profile.getType().name());
+    }
+
+    private void cacheIndexType(String collectionName, String type) {
+        indexTypes.put(collectionName, new IndexTypeEntry(type, System.currentTimeMillis() + INDEX_TYPE_CACHE_MILLIS));
+    }
+
+    private void load(String collectionName) {
+        check(milvusClient.loadCollection(LoadCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build()), "加载collection失败: ");
+    }
+
+    private static void check(R<RpcStatus> response, String message) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException(message + response.getMessage());
+        }
+    }
+
+    /**
+     * 删除collection并使其缓存失效，名称是重建索引后留下的别名时连同其指向的collection一起删除
+     *
+     * @param collectionName collection名称
+     */
+    public void dropCollection(String collectionName) {
+        String physical = physicalName(collectionName);
+        invalidate(collectionName);
+        if (!physical.equals(collectionName)) {
+            check(milvusClient.dropAlias(DropAliasParam.newBuilder()
+                    .withAlias(collectionName)
+                    .build()), "删除collection别名失败: ");
+            invalidate(physical);
+        }
+        R<RpcStatus> response = milvusClient.dropCollection(DropCollectionParam.newBuilder()
+                .withCollectionName(physical)
+                .build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("删除collection失败: " + response.getMessage());
+        }
+    }
+
+    /**
+     * 判断collection是否存在，存在的结果会被缓存，直到健康检查失败或显式失效
+     *
+     * @param collectionName collection名称
+     * @return 是否存在
+     */
+    public boolean collectionExists(String collectionName) {
+        if (existingCollections.contains(collectionName)) {
+            return true;
+        }
+        boolean exists = hasCollection(collectionName);
+        if (exists) {
+            CompletableFuture<Void> preparing = preparingCollections.get(collectionName);
+            if (preparing != null) {
+                // 本节点正在创建该collection，索引建好后由创建线程登记
+                preparing.handle((result, error) -> null).join();
+            } else {
+                existingCollections.add(collectionName);
+            }
+        }
+        return exists;
+    }
+
+    private boolean hasCollection(String collectionName) {
+        R<Boolean> response = milvusClient.hasCollection(HasCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build());
+        return response.getData() != null && response.getData();
+    }
+
+    /**
+     * 使指定collection的缓存失效（例如collection被删除或重建后）
+     *
+     * @param collectionName collection名称
+     */
+    public void invalidate(String collectionName) {
+        stores.remove(collectionName);
+        existingCollections.remove(collectionName);
+        indexTypes.remove(collectionName);
+    }
+
+    /**
+     * 获取共享的Milvus客户端，供查询、统计等底层操作使用
+     *
+     * @return Milvus客户端
+     */
+    public MilvusServiceClient getClient() {
+        return milvusClient;
+    }
+
+    /**
+     * 获取注册表状态
+     *
+     * @return 状态信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("openStores", stores.size());
+        stats.put("maxStores", milvusConfig.getMaxStores());
+        stats.put("knownCollections", existingCollections.size());
+        stats.put("layout", milvusConfig.isSharedLayout() ? "shared" : "per-user");
+        stats.put("defaultIndexProfile", indexProperties.getDefaultProfile());
+        stats.put("healthy", healthy.get());
+        stats.put("hitCount", (long) hitCounter.count());
+        stats.put("missCount", (long) missCounter.count());
+        stats.put("evictionCount", (long) evictionCounter.count());
+        return stats;
+    }
+
+    /**
+     * 定期维护：健康检查 + 淘汰空闲实例
+     */
+    private void maintain() {
+        try {
+            checkHealth();
+            evictIdle();
+        } catch (Exception e) {
+            log.warn("Milvus存储注册表维护任务执行失败: {}", e.getMessage());
+        }
+    }
+
+    private void checkHealth() {
+        boolean nowHealthy;
+        try {
+            R<CheckHealthResponse> response = milvusClient.checkHealth();
+            nowHealthy = response.getStatus() == R.Status.Success.getCode()
+                    && response.getData() != null
+                    && response.getData().getIsHealthy();
+        } catch (Exception e) {
+            nowHealthy = false;
+        }
+
+        boolean wasHealthy = healthy.getAndSet(nowHealthy);
+        if (!nowHealthy) {
+            // Milvus不可用期间collection可能被重建，恢复后需要重新校验
+            existingCollections.clear();
+            indexTypes.clear();
+            if (wasHealthy) {
+                log.warn("Milvus健康检查失败，已清空collection状态缓存");
+            }
+        } else if (!wasHealthy) {
+            log.info("Milvus健康检查恢复正常，丢弃旧的向量存储实例");
+            stores.clear();
+        }
+    }
+
+    private void evictIdle() {
+        long idleMillis = TimeUnit.SECONDS.toMillis(milvusConfig.getIdleTimeoutSeconds());
+        long now = System.currentTimeMillis();
+        stores.entrySet().removeIf(e -> {
+            boolean idle = now - e.getValue().lastAccess > idleMillis;
+            if (idle) {
+                evictionCounter.increment();
+                log.debug("collection {} 空闲超时，从注册表中移除", e.getKey());
+            }
+            return idle;
+        });
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (stores.size() > milvusConfig.getMaxStores()) {
+            Optional<Map.Entry<String, StoreEntry>> eldest = stores.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            if (eldest.isEmpty()) {
+                return;
+            }
+            if (stores.remove(eldest.get().getKey(), eldest.get().getValue())) {
+                evictionCounter.increment();
+                log.debug("注册表已满，移除最久未使用的collection {}", eldest.get().getKey());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenanceExecutor.shutdownNow();
+        stores.clear();
+    }
+
+    /**
+     * 注册表条目
+     */
+    private static final class StoreEntry {
+
+        private final MilvusEmbeddingStore store;
+        private volatile long lastAccess;
+
+        private StoreEntry(MilvusEmbeddingStore store) {
+            this.store = store;
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private record IndexTypeEntry(String type, long expiresAt) {
+    }
+}
@@ -0,0 +1,230 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.SearchRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.QueryResults;
+import io.milvus.param.R;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.response.QueryResultsWrapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Milvus向量存储后端
+ * <p>
+ * 独立布局下每个用户一个collection，向量存储实例由{@link MilvusStoreRegistry}缓存；
+ * 共享布局下按{@link MilvusLayoutState}中的用户状态路由到独立collection、共享collection或迁移期间的双写存储，
+ * 共享collection上的读取都附加 tenant_id 条件；独立collection重建索引期间路由到双写存储或影子collection。
+ * 按ID读取和分页通过共享客户端的query完成。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "vector-store", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusVectorStoreBackend implements VectorStoreBackend {
+
+    /**
+     * 单次按ID查询Milvus的数量
+     */
+    private static final int QUERY_BATCH = 500;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final MilvusStoreRegistry milvusStoreRegistry;
+    private final MilvusLayoutState milvusLayoutState;
+
+    public MilvusVectorStoreBackend(MilvusStoreRegistry milvusStoreRegistry, MilvusLayoutState milvusLayoutState) {
+        this.milvusStoreRegistry = milvusStoreRegistry;
+        this.milvusLayoutState = milvusLayoutState;
+    }
+
+    @Override
+    public String name() {
+        return "milvus";
+    }
+
+    @Override
+    public String collectionName(Long userId, String username) {
+        return switch (milvusLayoutState.resolve(userId, username)) {
+            case SHARED -> milvusStoreRegistry.sharedCollectionName(userId);
+            case SWITCHING -> rebuildCollectionName(userId, username);
+            case LEGACY, MIGRATING, REBUILDING -> MilvusStoreRegistry.collectionName(userId, username);
+        };
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> getStore(Long userId, String username) {
+        return switch (milvusLayoutState.resolve(userId, username)) {
+            case SHARED -> milvusStoreRegistry.getPartitionedStore(userId);
+            case MIGRATING -> new MigratingEmbeddingStore(milvusStoreRegistry.getStore(userId, username),
+                    milvusStoreRegistry.getPartitionedStore(userId), milvusLayoutState.lock(userId));
+            case REBUILDING -> new MigratingEmbeddingStore(milvusStoreRegistry.getStore(userId, username),
+                    milvusStoreRegistry.getStore(rebuildCollectionName(userId, username)), milvusLayoutState.lock(userId));
+            case SWITCHING -> milvusStoreRegistry.getStore(rebuildCollectionName(userId, username));
+            case LEGACY -> milvusStoreRegistry.getStore(userId, username);
+        };
+    }
+
+    @Override
+    public EmbeddingStore<TextSegment> getStore(Long userId, String username, SearchRequest.SearchProfile profile) {
+        return switch (milvusLayoutState.resolve(userId, username)) {
+            case SHARED -> milvusStoreRegistry.getPartitionedStore(userId, profile);
+            case MIGRATING -> new MigratingEmbeddingStore(profiledStore(MilvusStoreRegistry.collectionName(userId, username), profile),
+                    milvusStoreRegistry.getPartitionedStore(userId, profile), milvusLayoutState.lock(userId));
+            case REBUILDING -> new MigratingEmbeddingStore(profiledStore(MilvusStoreRegistry.collectionName(userId, username), profile),
+                    milvusStoreRegistry.getStore(rebuildCollectionName(userId, username)), milvusLayoutState.lock(userId));
+            case SWITCHING -> profiledStore(rebuildCollectionName(userId, username), profile);
+            case LEGACY -> profiledStore(MilvusStoreRegistry.collectionName(userId, username), profile);
+        };
+    }
+
+    @Override
+    public boolean exists(Long userId, String username) {
+        return milvusStoreRegistry.collectionExists(collectionName(userId, username));
+    }
+
+    @Override
+    public List<StoredVector> fetch(Long userId, String username, Collection<String> ids, boolean withVector, boolean strong) {
+        return fetch(collectionName(userId, username), scope(userId, username), ids, withVector, strong);
+    }
+
+    @Override
+    public List<StoredVector> page(Long userId, String username, long offset, int limit) {
+        List<StoredVector> result = new ArrayList<>(limit);
+        String collectionName = collectionName(userId, username);
+        if (!milvusStoreRegistry.collectionExists(collectionName)) {
+            return result;
+        }
+        QueryParam.Builder builder = QueryParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withOffset(offset)
+                .withLimit((long) limit)
+                .withOutFields(List.of("id", "text", "metadata"));
+        String scope = scope(userId, username);
+        if (scope != null) {
+            builder.withExpr(scope);
+        }
+        QueryResultsWrapper wrapper = query(builder.build());
+        List<?> ids = wrapper.getFieldWrapper("id").getFieldData();
+        List<?> texts = wrapper.getFieldWrapper("text").getFieldData();
+        List<?> metadata = wrapper.getFieldWrapper("metadata").getFieldData();
+        for (int i = 0; i < ids.size(); i++) {
+            result.add(new StoredVector(ids.get(i).toString(), texts.get(i).toString(), parseMetadata(metadata.get(i)), null));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = milvusStoreRegistry.getStats();
+        stats.put("backend", name());
+        return stats;
+    }
+
+    /**
+     * 从用户的独立collection按ID读取，供布局迁移和重建索引使用，不受用户当前布局状态影响
+     */
+    List<StoredVector> fetchLegacy(Long userId, String username, Collection<String> ids, boolean withVector) {
+        return fetch(MilvusStoreRegistry.collectionName(userId, username), null, ids, withVector, true);
+    }
+
+    /**
+     * 独立collection或其影子collection的存储，写入仍由LangChain4j完成，检索按档位设置索引检索参数
+     */
+    private EmbeddingStore<TextSegment> profiledStore(String collectionName, SearchRequest.SearchProfile profile) {
+        return new ProfiledEmbeddingStore(milvusStoreRegistry.getStore(collectionName),
+                request -> PartitionedMilvusStore.search(milvusStoreRegistry, collectionName, null, profile, request));
+    }
+
+    private static String rebuildCollectionName(Long userId, String username) {
+        return MilvusStoreRegistry.rebuildCollectionName(MilvusStoreRegistry.collectionName(userId, username));
+    }
+
+    /**
+     * 共享collection中限定到该用户的条件，独立collection不需要
+     */
+    private String scope(Long userId, String username) {
+        return milvusLayoutState.resolve(userId, username) == MilvusLayoutState.State.SHARED
+                ? PartitionedMilvusStore.tenantExpr(userId)
+                : null;
+    }
+
+    private List<StoredVector> fetch(String collectionName, String scope, Collection<String> ids, boolean withVector, boolean strong) {
+        List<StoredVector> result = new ArrayList<>(ids.size());
+        if (ids.isEmpty() || !milvusStoreRegistry.collectionExists(collectionName)) {
+            return result;
+        }
+        List<String> outFields = withVector
+                ? List.of("id", "text", "metadata", "vector")
+                : List.of("id", "text", "metadata");
+        List<String> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += QUERY_BATCH) {
+            List<String> batch = idList.subList(from, Math.min(from + QUERY_BATCH, idList.size()));
+            String expr = PartitionedMilvusStore.idInExpr(batch);
+            QueryParam.Builder builder = QueryParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withExpr(scope != null ? scope + " && " + expr : expr)
+                    .withOutFields(outFields);
+            if (strong) {
+                builder.withConsistencyLevel(ConsistencyLevelEnum.STRONG);
+            }
+            QueryResultsWrapper wrapper = query(builder.build());
+            List<?> resultIds = wrapper.getFieldWrapper("id").getFieldData();
+            List<?> texts = wrapper.getFieldWrapper("text").getFieldData();
+            List<?> metadata = wrapper.getFieldWrapper("metadata").getFieldData();
+            List<?> vectors = withVector ? wrapper.getFieldWrapper("vector").getFieldData() : null;
+            for (int i = 0; i < resultIds.size(); i++) {
+                result.add(new StoredVector(resultIds.get(i).toString(), texts.get(i).toString(),
+                        parseMetadata(metadata.get(i)), vectors != null ? toArray(vectors.get(i)) : null));
+            }
+        }
+        return result;
+    }
+
+    private QueryResultsWrapper query(QueryParam param) {
+        R<QueryResults> response = milvusStoreRegistry.getClient().query(param);
+        if (response.getStatus() != R.Status.Success.getCode() || response.getData() == null) {
+            throw new RuntimeException("查询向量失败: " + response.getMessage());
+        }
+        return new QueryResultsWrapper(response.getData());
+    }
+
+    /**
+     * JSON字段在不同版本的SDK中可能以字节数组或JSON对象返回
+     */
+    static Map<String, Object> parseMetadata(Object value) {
+        if (value == null) {
+            return Map.of();
+        }
+        String json = value instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : value.toString();
+        try {
+            return OBJECT_MAPPER.readValue(json, METADATA_TYPE);
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private static float[] toArray(Object vector) {
+        List<?> values = (List<?>) vector;
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ((Number) values.get(i)).floatValue();
+        }
+        return array;
+    }
+}
@@ -1,6 +1,5 @@
 package com.aliyun.rag.service;
 
-import com.aliyun.rag.config.MilvusConfig;
 import com.aliyun.rag.model.DocumentInfo;
 import com.aliyun.rag.model.DocumentMilvusMapping;
 import com.aliyun.rag.model.SearchResult;
@@ -12,7 +11,7 @@ import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
-import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,14 +38,20 @@ public class OptimizedVectorStoreService {
 
     private final EmbeddingModel embeddingModel;
     private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
-    private final MilvusConfig milvusConfig;
+    private final VectorStoreBackend vectorStoreBackend;
+    private final KeywordIndexService keywordIndexService;
+    private final HybridSearchEngine hybridSearchEngine;
 
     public OptimizedVectorStoreService(EmbeddingModel embeddingModel,
                                       DocumentMilvusMappingRepository documentMilvusMappingRepository,
-                                      MilvusConfig milvusConfig) {
+                                      VectorStoreBackend vectorStoreBackend,
+                                      KeywordIndexService keywordIndexService,
+                                      HybridSearchEngine hybridSearchEngine) {
         this.embeddingModel = embeddingModel;
         this.documentMilvusMappingRepository = documentMilvusMappingRepository;
-        this.milvusConfig = milvusConfig;
+        this.vectorStoreBackend = vectorStoreBackend;
+        this.keywordIndexService = keywordIndexService;
+        this.hybridSearchEngine = hybridSearchEngine;
     }
 
     /**
@@ -62,7 +67,7 @@ public class OptimizedVectorStoreService {
             Embedding queryEmbedding = embeddingModel.embed(TextSegment.from(query)).content();
             
             // 获取用户专属的向量存储
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
+            EmbeddingStore<TextSegment> userEmbeddingStore = getUserEmbeddingStore(userId, username);
             
             // 执行向量搜索
             EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
@@ -99,39 +104,8 @@ public class OptimizedVectorStoreService {
         log.info("执行优化关键词搜索: 用户={}, 查询={}", username, query);
         
         try {
-            // 使用全文索引进行关键词搜索
-            List<DocumentMilvusMapping> mappings = documentMilvusMappingRepository
-                    .findByUserIdAndIsDeleted(userId, 0);
-            
-            List<SearchResult> results = new ArrayList<>();
-            
-            // 获取用户专属的向量存储
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
-            
-            // 获取所有向量进行关键词匹配
-            EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
-                    .queryEmbedding(Embedding.from(new float[embeddingModel.dimension()])) // 零向量
-                    .maxResults(1000) // 限制结果数量
-                    .build();
-            
-            List<EmbeddingMatch<TextSegment>> matches = userEmbeddingStore.search(searchRequest).matches();
-            
-            for (EmbeddingMatch<TextSegment> match : matches) {
-                String content = match.embedded().text();
-                
-                if (containsKeywords(content, query)) {
-                    SearchResult result = convertToSearchResult(match);
-                    result.setScore(calculateKeywordScore(content, query));
-                    results.add(result);
-                }
-            }
-            
-            // 按分数排序并限制结果数量
-            return results.stream()
-                    .sorted((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()))
-                    .limit(maxResults)
-                    .collect(Collectors.toList());
-                    
+            // 使用本地倒排索引进行BM25检索
+            return keywordIndexService.search(query, maxResults, userId, username);
         } catch (Exception e) {
             log.error("优化关键词搜索失败: {}", e.getMessage(), e);
             throw new RuntimeException("关键词搜索失败: " + e.getMessage(), e);
@@ -146,37 +120,15 @@ public class OptimizedVectorStoreService {
         log.info("执行高级混合搜索: 用户={}, 查询={}", username, query);
         
         try {
-            // 并行执行语义搜索和关键词搜索
-            List<SearchResult> semanticResults = cachedSemanticSearch(query, userId, username, maxResults, minScore);
-            List<SearchResult> keywordResults = optimizedKeywordSearch(query, userId, username, maxResults);
-            
-            // 合并结果并去重
-            Map<String, SearchResult> combinedResults = new LinkedHashMap<>();
-            
-            // 语义搜索结果权重更高
-            for (SearchResult result : semanticResults) {
-                String key = result.getFileRecordId() + "_" + result.getPosition();
-                result.setScore(result.getScore() * 1.2); // 提高语义搜索权重
-                combinedResults.put(key, result);
-            }
-            
-            // 添加关键词搜索结果
-            for (SearchResult result : keywordResults) {
-                String key = result.getFileRecordId() + "_" + result.getPosition();
-                if (!combinedResults.containsKey(key)) {
-                    combinedResults.put(key, result);
-                } else {
-                    // 如果已存在，取较高分数
-                    SearchResult existing = combinedResults.get(key);
-                    if (result.getScore() > existing.getScore()) {
-                        combinedResults.put(key, result);
-                    }
-                }
-            }
+            // 并行执行语义搜索和关键词搜索，按排名融合
+            int candidates = hybridSearchEngine.candidateCount(maxResults);
+            List<SearchResult> fusedResults = hybridSearchEngine.search(
+                    () -> cachedSemanticSearch(query, userId, username, candidates, minScore),
+                    () -> optimizedKeywordSearch(query, userId, username, candidates),
+                    candidates);
             
             // 应用高级重排序算法
-            List<SearchResult> finalResults = advancedRerankResults(
-                    new ArrayList<>(combinedResults.values()), query);
+            List<SearchResult> finalResults = advancedRerankResults(fusedResults, query);
             
             return finalResults.stream()
                     .limit(maxResults)
@@ -299,48 +251,6 @@ public class OptimizedVectorStoreService {
         }
     }
 
-    /**
-     * 检查内容是否包含关键词
-     */
-    private boolean containsKeywords(String content, String query) {
-        String[] keywords = query.toLowerCase().split("\\s+");
-        String contentLower = content.toLowerCase();
-        
-        for (String keyword : keywords) {
-            if (contentLower.contains(keyword)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * 计算关键词匹配分数
-     */
-    private double calculateKeywordScore(String content, String query) {
-        String[] queryWords = query.toLowerCase().split("\\s+");
-        String contentLower = content.toLowerCase();
-        
-        int totalMatches = 0;
-        int exactMatches = 0;
-        
-        for (String word : queryWords) {
-            if (contentLower.contains(word)) {
-                totalMatches++;
-                // 检查是否为精确匹配
-                if (contentLower.contains(" " + word + " ") || 
-                    contentLower.startsWith(word + " ") || 
-                    contentLower.endsWith(" " + word)) {
-                    exactMatches++;
-                }
-            }
-        }
-        
-        // 计算分数：精确匹配权重更高
-        double score = (exactMatches * 2.0 + totalMatches) / (queryWords.length * 2.0);
-        return Math.min(score, 1.0);
-    }
-
     /**
      * 转换为SearchResult
      */
@@ -351,6 +261,7 @@ public class OptimizedVectorStoreService {
         result.setContent(match.embedded().text());
         result.setScore(match.score());
         result.setSource(match.embedded().metadata().getString("fileType"));
+        result.setPage(match.embedded().metadata().getString("page"));
         
         try {
             result.setPosition(Integer.parseInt(match.embedded().metadata().getString("chunkIndex")));
@@ -364,18 +275,8 @@ public class OptimizedVectorStoreService {
     /**
      * 获取用户专属的向量存储
      */
-    private MilvusEmbeddingStore getUserEmbeddingStore(Long userId, String username) {
-        String collectionName = username + "_" + userId;
-        
-        return MilvusEmbeddingStore.builder()
-                .host(milvusConfig.getHost())
-                .port(milvusConfig.getPort())
-                .collectionName(collectionName)
-                .dimension(milvusConfig.getDimension())
-                .idFieldName("id")
-                .textFieldName("text")
-                .vectorFieldName("vector")
-                .build();
+    private EmbeddingStore<TextSegment> getUserEmbeddingStore(Long userId, String username) {
+        return vectorStoreBackend.getStore(userId, username);
     }
 
     /**
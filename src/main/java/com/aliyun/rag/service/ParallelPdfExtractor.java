@@ -0,0 +1,293 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.PdfParseProperties;
+import com.aliyun.rag.util.UploadBuffer;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * PDF并行文本提取
+ * <p>
+ * 把文档按页区间切分，调用线程和文档解析线程池中的若干辅助任务按页序领取区间并行提取，
+ * 每个任务通过自己的随机访问源打开同一个缓冲文件（或同一块内存），互不共享PDFBox对象。
+ * 调用线程按页序输出已完成的区间，每页之前调用{@link DocumentTextSink#startPage}记录页码。
+ * 领取区间不能超前于输出超过 parallelism × 2 个区间，未输出的文本量有上限；
+ * 调用线程自己也领取区间，辅助任务被线程池拒绝或迟迟未调度时解析仍能完成，只是退化为顺序解析。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class ParallelPdfExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelPdfExtractor.class);
+
+    private final PdfParseProperties properties;
+    private final ThreadPoolTaskExecutor documentParseExecutor;
+
+    public ParallelPdfExtractor(PdfParseProperties properties,
+                                @Qualifier("documentParseExecutor") ThreadPoolTaskExecutor documentParseExecutor) {
+        this.properties = properties;
+        this.documentParseExecutor = documentParseExecutor;
+    }
+
+    /**
+     * 提取PDF文本，按页序输出
+     *
+     * @param file 上传文件缓冲区
+     * @param sink 文本消费者，只在调用线程上调用
+     */
+    public void extract(UploadBuffer file, DocumentTextSink sink) throws IOException {
+        try (PDDocument document = load(file)) {
+            int pageCount = document.getNumberOfPages();
+            int parallelism = Math.min(properties.getParallelism(), availableThreads());
+            if (parallelism <= 1 || pageCount < Math.max(1, properties.getMinPages())) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                for (int page = 1; page <= pageCount; page++) {
+                    sink.startPage(page);
+                    sink.accept(stripPage(stripper, document, page));
+                }
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            Extraction extraction = new Extraction(file, pageCount, parallelism);
+            extraction.run(document, sink);
+            log.info("PDF并行解析完成: 页数: {}, 区间数: {}, 并行度: {}, 耗时: {}ms",
+                    pageCount, extraction.rangeCount, extraction.helpersStarted + 1, System.currentTimeMillis() - start);
+        }
+    }
+
+    private int availableThreads() {
+        return Math.max(1, documentParseExecutor.getMaxPoolSize() + 1);
+    }
+
+    private static PDDocument load(UploadBuffer file) throws IOException {
+        RandomAccessRead source = file.openRandomAccessRead();
+        try {
+            // 关闭文档时一并关闭随机访问源
+            return Loader.loadPDF(source, null, null, null, IOUtils.createTempFileOnlyStreamCache());
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private static String stripPage(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    /**
+     * 一次并行提取
+     * <p>
+     * 区间领取、完成和输出状态都由lock保护；提取本身在锁外进行
+     * </p>
+     */
+    private final class Extraction {
+
+        private final UploadBuffer file;
+        private final int pageCount;
+        private final int pagesPerRange;
+        private final int rangeCount;
+        private final int parallelism;
+        private final int maxAheadRanges;
+
+        private final Object lock = new Object();
+        private final String[][] results;
+        private int nextRange = 0;
+        private int emittedRanges = 0;
+        private int activeHelpers = 0;
+        private int helpersStarted = 0;
+        private boolean closed = false;
+        private Throwable failure;
+
+        Extraction(UploadBuffer file, int pageCount, int parallelism) {
+            this.file = file;
+            this.pageCount = pageCount;
+            this.pagesPerRange = Math.max(1, properties.getPagesPerRange());
+            this.rangeCount = (pageCount + pagesPerRange - 1) / pagesPerRange;
+            this.parallelism = parallelism;
+            this.maxAheadRanges = parallelism * 2;
+            this.results = new String[rangeCount][];
+        }
+
+        /**
+         * 在调用线程上执行：启动辅助任务，参与提取并按页序输出
+         *
+         * @param document 调用线程使用的文档实例
+         */
+        void run(PDDocument document, DocumentTextSink sink) throws IOException {
+            int helpers = Math.min(parallelism - 1, rangeCount - 1);
+            for (int i = 0; i < helpers; i++) {
+                try {
+                    documentParseExecutor.execute(this::help);
+                } catch (TaskRejectedException e) {
+                    log.debug("文档解析线程池拒绝PDF辅助解析任务，剩余区间由调用线程处理");
+                    break;
+                }
+            }
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            try {
+                for (int range = 0; range < rangeCount; range++) {
+                    String[] pages = awaitRange(range, document, stripper);
+                    int firstPage = range * pagesPerRange + 1;
+                    for (int i = 0; i < pages.length; i++) {
+                        sink.startPage(firstPage + i);
+                        sink.accept(pages[i]);
+                    }
+                }
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * 取得指定区间的结果：已完成则直接返回，否则领取后续区间自己提取，无区间可领时等待
+         */
+        private String[] awaitRange(int range, PDDocument document, PDFTextStripper stripper) throws IOException {
+            while (true) {
+                int claimed;
+                synchronized (lock) {
+                    throwIfFailed();
+                    if (results[range] != null) {
+                        String[] pages = results[range];
+                        results[range] = null;
+                        emittedRanges = range + 1;
+                        lock.notifyAll();
+                        return pages;
+                    }
+                    claimed = claim();
+                    if (claimed < 0) {
+                        waitOnLock();
+                        continue;
+                    }
+                }
+                complete(claimed, extractRange(claimed, document, stripper));
+            }
+        }
+
+        /**
+         * 辅助任务：打开自己的文档实例，循环领取区间直到全部领完或提取结束
+         */
+        private void help() {
+            synchronized (lock) {
+                if (closed || nextRange >= rangeCount) {
+                    return;
+                }
+                activeHelpers++;
+                helpersStarted++;
+            }
+            try (PDDocument document = load(file)) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                while (true) {
+                    int claimed = -1;
+                    synchronized (lock) {
+                        while (!closed && nextRange < rangeCount && (claimed = claim()) < 0) {
+                            // 未持有区间时被中断直接退出，剩余区间由调用线程处理
+                            lock.wait();
+                        }
+                        if (claimed < 0) {
+                            return;
+                        }
+                    }
+                    complete(claimed, extractRange(claimed, document, stripper));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                synchronized (lock) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    lock.notifyAll();
+                }
+            } finally {
+                synchronized (lock) {
+                    activeHelpers--;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * 领取下一个区间，超前输出过多时返回-1，调用方需持有lock
+         */
+        private int claim() {
+            if (nextRange < rangeCount && nextRange < emittedRanges + maxAheadRanges) {
+                return nextRange++;
+            }
+            return -1;
+        }
+
+        private String[] extractRange(int range, PDDocument document, PDFTextStripper stripper) throws IOException {
+            int firstPage = range * pagesPerRange + 1;
+            int lastPage = Math.min(pageCount, firstPage + pagesPerRange - 1);
+            String[] pages = new String[lastPage - firstPage + 1];
+            for (int page = firstPage; page <= lastPage; page++) {
+                pages[page - firstPage] = stripPage(stripper, document, page);
+            }
+            return pages;
+        }
+
+        private void complete(int range, String[] pages) {
+            synchronized (lock) {
+                results[range] = pages;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * 结束提取，等待正在运行的辅助任务退出，之后才能删除缓冲文件
+         */
+        private void close() {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+                boolean interrupted = false;
+                while (activeHelpers > 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void waitOnLock() {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("PDF解析被中断", e);
+            }
+        }
+
+        private void throwIfFailed() throws IOException {
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            if (failure != null) {
+                throw new RuntimeException("PDF解析失败: " + failure.getMessage(), failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.SearchRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.SearchResults;
+import io.milvus.param.MetricType;
+import io.milvus.param.R;
+import io.milvus.param.dml.DeleteParam;
+import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.SearchParam;
+import io.milvus.param.dml.UpsertParam;
+import io.milvus.response.SearchResultsWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 共享collection中单个用户的向量存储
+ * <p>
+ * 共享collection以 tenant_id（用户ID）为分区键，写入时带上用户ID，检索、删除都附加 tenant_id 条件，
+ * Milvus据此只扫描该用户所在的分区，用户之间互不可见。字段名与LangChain4j创建的独立collection一致，
+ * 迁移时可以原样复制。检索参数由检索档位和collection的索引类型决定（见{@link MilvusStoreRegistry#searchParams}），
+ * 分数与{@code MilvusEmbeddingStore}一致，为 (余弦相似度 + 1) / 2。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class PartitionedMilvusStore implements EmbeddingStore<TextSegment> {
+
+    static final String TENANT_FIELD = "tenant_id";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final MilvusStoreRegistry registry;
+    private final String collectionName;
+    private final long tenantId;
+    private final SearchRequest.SearchProfile profile;
+
+    PartitionedMilvusStore(MilvusStoreRegistry registry, String collectionName, long tenantId,
+                           SearchRequest.SearchProfile profile) {
+        this.registry = registry;
+        this.collectionName = collectionName;
+        this.tenantId = tenantId;
+        this.profile = profile;
+    }
+
+    String collectionName() {
+        return collectionName;
+    }
+
+    /**
+     * 限定到指定用户的过滤表达式
+     */
+    static String tenantExpr(long tenantId) {
+        return TENANT_FIELD + " == " + tenantId;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), null);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        List<String> ids = embeddings.stream().map(e -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || (textSegments != null && textSegments.size() != ids.size())) {
+            throw new IllegalArgumentException("向量ID、向量和分块的数量不一致");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(ids.size());
+        List<Map<String, Object>> metadata = new ArrayList<>(ids.size());
+        List<float[]> vectors = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            TextSegment segment = textSegments != null ? textSegments.get(i) : null;
+            texts.add(segment != null ? segment.text() : "");
+            metadata.add(segment != null ? segment.metadata().toMap() : Map.of());
+            vectors.add(embeddings.get(i).vector());
+        }
+        R<MutationResult> response = registry.getClient().insert(InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields(ids, texts, metadata, vectors, tenantId))
+                .build());
+        check(response, "写入向量失败: ");
+    }
+
+    /**
+     * 按原ID写入已有向量，ID已存在时覆盖，用于迁移时可重复执行的复制
+     *
+     * @param vectors 需包含向量本身
+     */
+    void upsert(List<VectorStoreBackend.StoredVector> vectors) {
+        upsert(registry, collectionName, tenantId, vectors);
+    }
+
+    /**
+     * 按原ID写入已有向量，ID已存在时覆盖，共享collection和独立collection共用
+     *
+     * @param tenantId 共享collection中的用户ID，独立collection为空
+     * @param vectors 需包含向量本身
+     */
+    static void upsert(MilvusStoreRegistry registry, String collectionName, Long tenantId,
+                       List<VectorStoreBackend.StoredVector> vectors) {
+        if (vectors.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(vectors.size());
+        List<String> texts = new ArrayList<>(vectors.size());
+        List<Map<String, Object>> metadata = new ArrayList<>(vectors.size());
+        List<float[]> values = new ArrayList<>(vectors.size());
+        for (VectorStoreBackend.StoredVector vector : vectors) {
+            ids.add(vector.id());
+            texts.add(vector.text());
+            metadata.add(vector.metadata());
+            values.add(vector.vector());
+        }
+        R<MutationResult> response = registry.getClient().upsert(UpsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields(ids, texts, metadata, values, tenantId))
+                .build());
+        check(response, "复制向量失败: ");
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        delete(tenantExpr(tenantId) + " && " + idInExpr(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delete(tenantExpr(tenantId) + " && (" + toExpr(filter) + ")");
+    }
+
+    @Override
+    public void removeAll() {
+        delete(tenantExpr(tenantId));
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return search(registry, collectionName, tenantExpr(tenantId), profile, request);
+    }
+
+    /**
+     * 按检索档位检索collection，独立collection和共享collection共用
+     *
+     * @param scope 附加的过滤条件，为空表示不限定
+     * @param profile 检索档位，为空时使用默认档位
+     */
+    static EmbeddingSearchResult<TextSegment> search(MilvusStoreRegistry registry, String collectionName, String scope,
+                                                     SearchRequest.SearchProfile profile, EmbeddingSearchRequest request) {
+        List<Float> query = new ArrayList<>(request.queryEmbedding().vector().length);
+        for (float v : request.queryEmbedding().vector()) {
+            query.add(v);
+        }
+        String expr = scope;
+        if (request.filter() != null) {
+            expr = (expr != null ? expr + " && " : "") + "(" + toExpr(request.filter()) + ")";
+        }
+        int k = request.maxResults();
+        SearchParam.Builder builder = SearchParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withVectorFieldName("vector")
+                .withMetricType(MetricType.COSINE)
+                .withFloatVectors(List.of(query))
+                .withTopK(k)
+                .withParams(registry.searchParams(collectionName, profile, k))
+                .withOutFields(List.of("text", "metadata"));
+        if (expr != null) {
+            builder.withExpr(expr);
+        }
+        R<SearchResults> response = registry.getClient().search(builder.build());
+        if (response.getStatus() != R.Status.Success.getCode() || response.getData() == null) {
+            throw new RuntimeException("检索向量失败: " + response.getMessage());
+        }
+
+        SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
+        List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(0);
+        List<?> texts = wrapper.getFieldData("text", 0);
+        List<?> metadata = wrapper.getFieldData("metadata", 0);
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(scores.size());
+        for (int i = 0; i < scores.size(); i++) {
+            double score = RelevanceScore.fromCosineSimilarity(scores.get(i).getScore());
+            if (score < request.minScore()) {
+                continue;
+            }
+            String text = texts.get(i) != null ? texts.get(i).toString() : "";
+            TextSegment segment = text.isBlank() ? null : TextSegment.from(text, toMetadata(metadata.get(i)));
+            matches.add(new EmbeddingMatch<>(score, scores.get(i).getStrID(), null, segment));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    private static List<InsertParam.Field> fields(List<String> ids, List<String> texts, List<Map<String, Object>> metadata,
+                                                  List<float[]> vectors, Long tenantId) {
+        List<JsonObject> metadataJson = new ArrayList<>(metadata.size());
+        List<List<Float>> vectorValues = new ArrayList<>(vectors.size());
+        try {
+            for (Map<String, Object> values : metadata) {
+                metadataJson.add(JsonParser.parseString(OBJECT_MAPPER.writeValueAsString(values)).getAsJsonObject());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("序列化向量元数据失败: " + e.getMessage(), e);
+        }
+        for (float[] vector : vectors) {
+            List<Float> values = new ArrayList<>(vector.length);
+            for (float v : vector) {
+                values.add(v);
+            }
+            vectorValues.add(values);
+        }
+        List<InsertParam.Field> fields = new ArrayList<>(5);
+        fields.add(new InsertParam.Field("id", ids));
+        fields.add(new InsertParam.Field("text", texts));
+        fields.add(new InsertParam.Field("metadata", metadataJson));
+        fields.add(new InsertParam.Field("vector", vectorValues));
+        if (tenantId != null) {
+            fields.add(new InsertParam.Field(TENANT_FIELD, Collections.nCopies(ids.size(), tenantId)));
+        }
+        return fields;
+    }
+
+    private void delete(String expr) {
+        R<MutationResult> response = registry.getClient().delete(DeleteParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withExpr(expr)
+                .build());
+        check(response, "删除向量失败: ");
+    }
+
+    private static void check(R<?> response, String message) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException(message + response.getMessage());
+        }
+    }
+
+    static String idInExpr(Collection<String> ids) {
+        return ids.stream().map(PartitionedMilvusStore::literal).collect(Collectors.joining(",", "id in [", "]"));
+    }
+
+    /**
+     * 把LangChain4j的元数据过滤条件转换为Milvus的JSON字段表达式
+     */
+    static String toExpr(Filter filter) {
+        if (filter instanceof And and) {
+            return "(" + toExpr(and.left()) + ") && (" + toExpr(and.right()) + ")";
+        }
+        if (filter instanceof Or or) {
+            return "(" + toExpr(or.left()) + ") || (" + toExpr(or.right()) + ")";
+        }
+        if (filter instanceof Not not) {
+            return "not (" + toExpr(not.expression()) + ")";
+        }
+        if (filter instanceof IsEqualTo f) {
+            return field(f.key()) + " == " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsNotEqualTo f) {
+            return field(f.key()) + " != " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsGreaterThan f) {
+            return field(f.key()) + " > " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo f) {
+            return field(f.key()) + " >= " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsLessThan f) {
+            return field(f.key()) + " < " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsLessThanOrEqualTo f) {
+            return field(f.key()) + " <= " + literal(f.comparisonValue());
+        }
+        if (filter instanceof IsIn f) {
+            return field(f.key()) + " in " + f.comparisonValues().stream()
+                    .map(PartitionedMilvusStore::literal).collect(Collectors.joining(",", "[", "]"));
+        }
+        if (filter instanceof IsNotIn f) {
+            return field(f.key()) + " not in " + f.comparisonValues().stream()
+                    .map(PartitionedMilvusStore::literal).collect(Collectors.joining(",", "[", "]"));
+        }
+        throw new IllegalArgumentException("不支持的元数据过滤条件: " + filter.getClass().getSimpleName());
+    }
+
+    private static String field(String key) {
+        return "metadata[" + literal(key) + "]";
+    }
+
+    private static String literal(Object value) {
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        return "\"" + value.toString().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static Metadata toMetadata(Object value) {
+        Map<String, Object> values = new HashMap<>(MilvusVectorStoreBackend.parseMetadata(value));
+        values.replaceAll((key, v) -> v instanceof Integer || v instanceof Long
+                || v instanceof Float || v instanceof Double || v instanceof String ? v : String.valueOf(v));
+        return Metadata.from(values);
+    }
+}
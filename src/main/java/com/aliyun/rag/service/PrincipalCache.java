@@ -0,0 +1,168 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.PrincipalCacheProperties;
+import com.aliyun.rag.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 认证用户缓存
+ * <p>
+ * 按用户ID缓存不可变的用户快照，每次读取都复制出新的{@link User}，请求内修改不会影响缓存。
+ * 密码、等级、配额或已用空间变化后调用{@link #invalidate(Long)}，本节点立即失效并通过Redis频道通知其他节点；
+ * 失效消息丢失时最多在TTL内读到旧数据。加载期间发生过失效时不写入加载结果，避免旧数据覆盖失效。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+public class PrincipalCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private final PrincipalCacheProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PrincipalCache(PrincipalCacheProperties properties,
+                          StringRedisTemplate stringRedisTemplate,
+                          RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(properties.getInvalidationChannel()));
+    }
+
+    /**
+     * 获取用户，缓存未命中或已过期时通过loader加载
+     *
+     * @param userId 用户ID
+     * @param loader 加载函数，用户不存在时返回null
+     * @return 用户副本，不存在时返回null
+     */
+    public User get(Long userId, Function<Long, User> loader) {
+        if (!properties.isEnabled()) {
+            return loader.apply(userId);
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && now < entry.expiresAt()) {
+            return entry.snapshot().toUser();
+        }
+
+        long epoch = invalidations.get();
+        User user = loader.apply(userId);
+        if (user == null) {
+            entries.remove(userId);
+            return null;
+        }
+        if (invalidations.get() == epoch) {
+            entries.put(userId, new Entry(Snapshot.of(user), now + properties.getTtl().toMillis()));
+            if (entries.size() > properties.getMaxSize()) {
+                evict(now);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * 使用户缓存失效并通知集群内其他节点
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        evictLocal(userId);
+        try {
+            stringRedisTemplate.convertAndSend(properties.getInvalidationChannel(), String.valueOf(userId));
+        } catch (Exception e) {
+            log.warn("广播用户 {} 缓存失效失败，其他节点将在TTL后刷新: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            evictLocal(Long.valueOf(body));
+        } catch (NumberFormatException e) {
+            log.warn("无效的用户缓存失效消息: {}", body);
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        invalidations.incrementAndGet();
+        entries.remove(userId);
+    }
+
+    /**
+     * 超出容量时先清理过期条目，仍超出则淘汰最早过期的条目
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> now >= entry.expiresAt());
+        while (entries.size() > properties.getMaxSize()) {
+            Long oldest = null;
+            long oldestExpiresAt = Long.MAX_VALUE;
+            for (Map.Entry<Long, Entry> candidate : entries.entrySet()) {
+                if (candidate.getValue().expiresAt() < oldestExpiresAt) {
+                    oldest = candidate.getKey();
+                    oldestExpiresAt = candidate.getValue().expiresAt();
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+    private record Entry(Snapshot snapshot, long expiresAt) {
+    }
+
+    /**
+     * 用户信息快照
+     */
+    private record Snapshot(Long id, String username, String password, String email, Integer level,
+                            Long storageQuota, Long usedStorage, LocalDateTime lastLoginTime,
+                            LocalDateTime gmtCreate, LocalDateTime gmtModified, Integer isDeleted) {
+
+        static Snapshot of(User user) {
+            return new Snapshot(user.getId(), user.getUsername(), user.getPassword(), user.getEmail(),
+                    user.getLevel(), user.getStorageQuota(), user.getUsedStorage(), user.getLastLoginTime(),
+                    user.getGmtCreate(), user.getGmtModified(), user.getIsDeleted());
+        }
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setPassword(password);
+            user.setEmail(email);
+            user.setLevel(level);
+            user.setStorageQuota(storageQuota);
+            user.setUsedStorage(usedStorage);
+            user.setLastLoginTime(lastLoginTime);
+            user.setGmtCreate(gmtCreate);
+            user.setGmtModified(gmtModified);
+            user.setIsDeleted(isDeleted);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.aliyun.rag.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 按检索档位检索的向量存储
+ * <p>
+ * 写入和删除原样交给底层存储，检索改用按档位确定检索参数的实现。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+final class ProfiledEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final Function<EmbeddingSearchRequest, EmbeddingSearchResult<TextSegment>> searcher;
+
+    ProfiledEmbeddingStore(EmbeddingStore<TextSegment> delegate,
+                           Function<EmbeddingSearchRequest, EmbeddingSearchResult<TextSegment>> searcher) {
+        this.delegate = delegate;
+        this.searcher = searcher;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return delegate.add(embedding, textSegment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        return delegate.addAll(embeddings, textSegments);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        delegate.addAll(ids, embeddings, textSegments);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return searcher.apply(request);
+    }
+}
@@ -17,6 +17,7 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.UUID;
@@ -111,15 +112,17 @@ public class QiniuUploadService {
             // 生成上传凭证
             String upToken = auth.uploadToken(bucket);
 
-            // 上传文件
-            Response response = uploadManager.put(file.getBytes(), key, upToken);
+            // 流式上传文件，不把整个文件读入内存
+            try (InputStream inputStream = file.getInputStream()) {
+                Response response = uploadManager.put(inputStream, key, upToken, null, file.getContentType());
 
-            if (response.isOK()) {
-                log.info("文件上传成功: {}", key);
-                return domain + "/" + key;
-            } else {
-                log.error("文件上传失败: {}", response.error);
-                throw new RuntimeException("文件上传失败: " + response.error);
+                if (response.isOK()) {
+                    log.info("文件上传成功: {}", key);
+                    return domain + "/" + key;
+                } else {
+                    log.error("文件上传失败: {}", response.error);
+                    throw new RuntimeException("文件上传失败: " + response.error);
+                }
             }
         } catch (QiniuException e) {
             log.error("七牛云上传异常: {}", e.getMessage(), e);
@@ -0,0 +1,767 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.QuantizedIndexProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.SearchResult;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.util.VectorQuantizer;
+import dev.langchain4j.data.embedding.Embedding;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 量化候选索引
+ * <p>
+ * 为每个用户在进程内维护一份量化后的向量副本（int8或二值，见{@link VectorQuantizer}），存放在堆外内存中。
+ * 语义检索时先顺序扫描量化副本选出 maxResults × rescoreMultiplier 个候选，
+ * 再按ID从向量存储取回候选的全精度向量、文本和元数据重新打分，不再对每个查询发起向量检索。
+ * </p>
+ * <p>
+ * 索引在用户首次语义检索时由后台线程从向量存储加载，加载完成前检索仍走向量存储。
+ * 写入和删除向量时由{@link VectorStoreService}同步更新已加载的索引；加载期间的写入直接进入索引，
+ * 加载期间删除的ID不会被加载线程加回。加载开始前写入向量存储、但映射尚未入库的向量可能被漏掉，
+ * 后台任务定期用数据库中的向量数核对，不一致且期间没有写入时丢弃索引，下次检索时重新加载。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class QuantizedVectorIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizedVectorIndex.class);
+
+    /**
+     * 加载索引时单次按ID读取的数量
+     */
+    private static final int LOAD_QUERY_BATCH = 500;
+
+    /**
+     * 每个向量在堆上的开销估算：ID字符串约96字节 + 哈希表项约48字节 + 数组引用
+     */
+    private static final int HEAP_BYTES_PER_VECTOR = 152;
+
+    private final QuantizedIndexProperties properties;
+    private final VectorStoreBackend vectorStoreBackend;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+    private final int dimension;
+
+    private final ConcurrentHashMap<Long, UserIndex> indexes = new ConcurrentHashMap<>();
+    /**
+     * 向量过多或加载失败的用户，在记录的时间之前不再尝试加载
+     */
+    private final ConcurrentHashMap<Long, Long> deferredUntil = new ConcurrentHashMap<>();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final ExecutorService loadExecutor;
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    public QuantizedVectorIndex(QuantizedIndexProperties properties,
+                                MilvusConfig milvusConfig,
+                                VectorStoreBackend vectorStoreBackend,
+                                DocumentMilvusMappingRepository documentMilvusMappingRepository) {
+        this.properties = properties;
+        this.vectorStoreBackend = vectorStoreBackend;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+        this.dimension = milvusConfig.getDimension();
+
+        this.loadExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getLoadConcurrency()), r -> {
+            Thread thread = new Thread(r, "QuantizedVectorIndex-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "QuantizedVectorIndex-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, Math.min(60, properties.getVerifyIntervalSeconds()));
+        this.maintenanceExecutor.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 在量化索引上做语义检索
+     *
+     * @param queryEmbedding 查询向量
+     * @param maxResults 最大结果数
+     * @param minScore 最小相似度分数，与向量存储检索一致，为 (余弦相似度 + 1) / 2
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 按分数降序的结果；索引未启用、尚未加载完成或不适用于该用户时返回null，由调用方改走向量存储检索
+     */
+    public List<SearchResult> search(Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username) {
+        return search(queryEmbedding, maxResults, minScore, userId, username, 0);
+    }
+
+    /**
+     * 在量化索引上做语义检索
+     *
+     * @param rescoreMultiplier 重打分候选倍数，0表示使用配置值
+     * @see #search(Embedding, int, double, Long, String)
+     */
+    public List<SearchResult> search(Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username,
+                                     int rescoreMultiplier) {
+        if (!properties.isEnabled() || maxResults <= 0) {
+            return null;
+        }
+        float[] query = queryEmbedding.vector();
+        UserIndex index = acquire(userId, username);
+        if (index == null || query.length != dimension) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+
+        int multiplier = rescoreMultiplier > 0 ? rescoreMultiplier : properties.getRescoreMultiplier();
+        int candidateCount = maxResults * Math.max(1, multiplier);
+        List<String> candidates = index.topCandidates(query, candidateCount);
+        if (candidates == null) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return rescore(userId, username, query, candidates, maxResults, minScore);
+    }
+
+    /**
+     * 向已加载的索引写入向量，未加载的用户忽略（加载时会从向量存储读到）
+     *
+     * @param userId 用户ID
+     * @param milvusIds 向量ID
+     * @param embeddings 向量，与ID一一对应
+     */
+    public void add(Long userId, List<String> milvusIds, List<Embedding> embeddings) {
+        UserIndex index = indexes.get(userId);
+        if (index == null || milvusIds.isEmpty()) {
+            return;
+        }
+        Encoded encoded = encode(embeddings);
+        if (encoded == null) {
+            discard(index, "向量维度与配置不一致");
+            return;
+        }
+        if (!index.add(milvusIds, encoded, false)) {
+            discard(index, "超出向量数或内存上限");
+        }
+    }
+
+    /**
+     * 从已加载的索引删除向量
+     *
+     * @param userId 用户ID
+     * @param milvusIds 向量ID
+     */
+    public void remove(Long userId, Collection<String> milvusIds) {
+        UserIndex index = indexes.get(userId);
+        if (index != null && !milvusIds.isEmpty()) {
+            index.remove(milvusIds);
+        }
+    }
+
+    /**
+     * 获取索引状态，包括每百万向量的内存占用
+     *
+     * @param userId 用户ID
+     * @return 状态信息
+     */
+    public Map<String, Object> getStats(Long userId) {
+        int codeBytes = codeBytes();
+        int heapBytes = HEAP_BYTES_PER_VECTOR + Float.BYTES;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("quantization", properties.getQuantization().name());
+        stats.put("dimension", dimension);
+        stats.put("rescoreMultiplier", properties.getRescoreMultiplier());
+        stats.put("offHeapBytesPerVector", codeBytes);
+        stats.put("heapBytesPerVector", heapBytes);
+        stats.put("megabytesPerMillionVectors", toMegabytes((long) (codeBytes + heapBytes) * 1_000_000L));
+        stats.put("fullPrecisionMegabytesPerMillionVectors", toMegabytes((long) dimension * Float.BYTES * 1_000_000L));
+        stats.put("loadedUsers", indexes.size());
+        stats.put("offHeapBytes", offHeapBytes.get());
+        stats.put("maxOffHeapBytes", maxOffHeapBytes());
+        stats.put("hitCount", hitCount.get());
+        stats.put("fallbackCount", fallbackCount.get());
+        stats.put("loadCount", loadCount.get());
+        stats.put("evictionCount", evictionCount.get());
+
+        UserIndex index = indexes.get(userId);
+        stats.put("userState", index != null ? index.state.name() : "NOT_LOADED");
+        stats.put("userVectorCount", index != null ? index.size() : 0);
+        stats.put("userOffHeapBytes", index != null ? index.reservedBytes() : 0L);
+        return stats;
+    }
+
+    /**
+     * 取得可检索的用户索引，不存在时提交后台加载并返回null
+     */
+    private UserIndex acquire(Long userId, String username) {
+        UserIndex index = indexes.get(userId);
+        if (index != null) {
+            index.lastAccess = System.currentTimeMillis();
+            return index.state == State.READY ? index : null;
+        }
+        Long until = deferredUntil.get(userId);
+        if (until != null && until > System.currentTimeMillis()) {
+            return null;
+        }
+        UserIndex created = new UserIndex(userId, username);
+        if (indexes.putIfAbsent(userId, created) == null) {
+            try {
+                loadExecutor.execute(() -> load(created));
+            } catch (RejectedExecutionException e) {
+                indexes.remove(userId, created);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从数据库取得用户持有的向量ID，再按ID从向量存储读取向量
+     */
+    private void load(UserIndex index) {
+        Long userId = index.userId;
+        String username = index.username;
+        long start = System.currentTimeMillis();
+        try {
+            List<String> milvusIds = documentMilvusMappingRepository.findByUserIdAndIsDeleted(userId, 0).stream()
+                    .filter(mapping -> mapping.getRefMilvusId() == null)
+                    .map(DocumentMilvusMapping::getMilvusId)
+                    .collect(Collectors.toList());
+            if (milvusIds.size() > properties.getMaxVectorsPerUser()) {
+                defer(index, "向量数 " + milvusIds.size() + " 超过上限 " + properties.getMaxVectorsPerUser());
+                return;
+            }
+            evictFor((long) milvusIds.size() * codeBytes(), index);
+            if (!index.reserve(milvusIds.size())) {
+                defer(index, "堆外内存不足");
+                return;
+            }
+
+            if (!milvusIds.isEmpty() && vectorStoreBackend.exists(userId, username)) {
+                for (int from = 0; from < milvusIds.size(); from += LOAD_QUERY_BATCH) {
+                    if (index.state == State.CLOSED) {
+                        return;
+                    }
+                    List<String> batch = milvusIds.subList(from, Math.min(from + LOAD_QUERY_BATCH, milvusIds.size()));
+                    List<VectorStoreBackend.StoredVector> stored = vectorStoreBackend.fetch(userId, username, batch, true, true);
+                    List<String> loadedIds = new ArrayList<>(stored.size());
+                    List<float[]> loadedVectors = new ArrayList<>(stored.size());
+                    for (VectorStoreBackend.StoredVector vector : stored) {
+                        loadedIds.add(vector.id());
+                        loadedVectors.add(vector.vector());
+                    }
+                    Encoded encoded = encodeArrays(loadedVectors);
+                    if (encoded == null || !index.add(loadedIds, encoded, true)) {
+                        defer(index, "加载的向量超出上限或维度不一致");
+                        return;
+                    }
+                }
+            }
+            index.ready();
+            if (index.state != State.READY) {
+                return;
+            }
+            loadCount.incrementAndGet();
+            log.info("用户 {}({}) 量化索引加载完成，向量数量: {}, 堆外内存: {} 字节, 耗时: {}ms",
+                    username, userId, index.size(), index.reservedBytes(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            defer(index, "加载失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 放弃加载，一个核对周期内不再尝试
+     */
+    private void defer(UserIndex index, String reason) {
+        deferredUntil.put(index.userId, System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(Math.max(10, properties.getVerifyIntervalSeconds())));
+        discard(index, reason);
+    }
+
+    /**
+     * 丢弃用户索引，释放堆外内存
+     */
+    private void discard(UserIndex index, String reason) {
+        indexes.remove(index.userId, index);
+        index.close();
+        log.info("用户 {}({}) 量化索引已丢弃，检索改走向量存储: {}", index.username, index.userId, reason);
+    }
+
+    /**
+     * 为即将加载的索引腾出内存，按最近检索时间淘汰其他已加载的用户
+     * <p>
+     * 只在加载线程上调用，此时不持有任何索引的锁
+     * </p>
+     */
+    private void evictFor(long bytes, UserIndex requester) {
+        long limit = maxOffHeapBytes();
+        while (offHeapBytes.get() + bytes > limit) {
+            UserIndex victim = indexes.values().stream()
+                    .filter(index -> index != requester && index.state == State.READY)
+                    .min(Comparator.comparingLong(index -> index.lastAccess))
+                    .orElse(null);
+            if (victim == null) {
+                return;
+            }
+            if (indexes.remove(victim.userId, victim)) {
+                victim.close();
+                evictionCount.incrementAndGet();
+                log.debug("量化索引内存不足，淘汰用户 {} 的索引", victim.userId);
+            }
+        }
+    }
+
+    /**
+     * 定期维护：释放空闲索引，核对向量数
+     */
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            long idleMillis = TimeUnit.SECONDS.toMillis(properties.getIdleTimeoutSeconds());
+            long verifyMillis = TimeUnit.SECONDS.toMillis(properties.getVerifyIntervalSeconds());
+            deferredUntil.values().removeIf(until -> until <= now);
+            for (UserIndex index : indexes.values()) {
+                if (index.state != State.READY) {
+                    continue;
+                }
+                if (now - index.lastAccess > idleMillis) {
+                    if (indexes.remove(index.userId, index)) {
+                        index.close();
+                        evictionCount.incrementAndGet();
+                        log.debug("用户 {} 的量化索引空闲超时，已释放", index.userId);
+                    }
+                } else if (now - index.verifiedAt > verifyMillis) {
+                    verify(index, now);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("量化索引维护任务执行失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用数据库中用户持有的向量数核对索引；两次核对之间有写入时数量可能暂时不一致（映射尚未入库），留到下次核对
+     */
+    private void verify(UserIndex index, long now) {
+        long expected = documentMilvusMappingRepository.countByUserIdAndIsDeletedAndRefMilvusIdIsNull(index.userId, 0);
+        long previous = index.verifiedAt;
+        index.verifiedAt = now;
+        if (expected != index.size() && index.lastWrite < previous) {
+            discard(index, "索引向量数 " + index.size() + " 与数据库 " + expected + " 不一致");
+        }
+    }
+
+    /**
+     * 从向量存储取回候选的全精度向量重新打分
+     */
+    private List<SearchResult> rescore(Long userId, String username, float[] query, List<String> candidates,
+                                       int maxResults, double minScore) {
+        List<VectorStoreBackend.StoredVector> stored = vectorStoreBackend.fetch(userId, username, candidates, true, false);
+
+        List<SearchResult> results = new ArrayList<>(stored.size());
+        for (VectorStoreBackend.StoredVector vector : stored) {
+            double score = (VectorQuantizer.cosine(query, vector.vector()) + 1) / 2;
+            if (score < minScore) {
+                continue;
+            }
+            Map<String, Object> fields = vector.metadata();
+            SearchResult result = new SearchResult();
+            result.setFileRecordId(stringValue(fields.get("fileRecordId")));
+            result.setTitle(stringValue(fields.get("title")));
+            result.setContent(vector.text());
+            result.setScore(score);
+            result.setSource(stringValue(fields.get("fileType")));
+            result.setPage(stringValue(fields.get("page")));
+            try {
+                result.setPosition(Integer.parseInt(stringValue(fields.get("chunkIndex"))));
+            } catch (NumberFormatException e) {
+                result.setPosition(0);
+            }
+            results.add(result);
+        }
+        results.sort(Comparator.comparingDouble(SearchResult::getScore).reversed());
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private Encoded encode(List<Embedding> embeddings) {
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(embedding.vector());
+        }
+        return encodeArrays(vectors);
+    }
+
+    /**
+     * 在锁外完成量化，维度不一致时返回null
+     */
+    private Encoded encodeArrays(List<float[]> vectors) {
+        int codeBytes = codeBytes();
+        byte[] codes = new byte[vectors.size() * codeBytes];
+        float[] factors = new float[vectors.size()];
+        byte[] int8 = isInt8() ? new byte[dimension] : null;
+        long[] words = isInt8() ? null : new long[VectorQuantizer.binaryWords(dimension)];
+        ByteBuffer target = ByteBuffer.wrap(codes).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < vectors.size(); i++) {
+            float[] vector = vectors.get(i);
+            if (vector.length != dimension) {
+                return null;
+            }
+            if (int8 != null) {
+                factors[i] = VectorQuantizer.quantizeInt8(vector, int8);
+                target.put(i * codeBytes, int8);
+            } else {
+                VectorQuantizer.quantizeBinary(vector, words);
+                for (int w = 0; w < words.length; w++) {
+                    target.putLong(i * codeBytes + w * Long.BYTES, words[w]);
+                }
+            }
+        }
+        return new Encoded(codes, factors);
+    }
+
+    private boolean isInt8() {
+        return properties.getQuantization() == QuantizedIndexProperties.Quantization.INT8;
+    }
+
+    private int codeBytes() {
+        return isInt8() ? dimension : VectorQuantizer.binaryWords(dimension) * Long.BYTES;
+    }
+
+    private long maxOffHeapBytes() {
+        return properties.getMaxMemoryMb() * 1024 * 1024;
+    }
+
+    private static double toMegabytes(long bytes) {
+        return Math.round(bytes / 1024.0 / 1024.0 * 100.0) / 100.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenanceExecutor.shutdownNow();
+        loadExecutor.shutdownNow();
+        indexes.values().forEach(UserIndex::close);
+        indexes.clear();
+    }
+
+    private enum State {
+        LOADING, READY, CLOSED
+    }
+
+    /**
+     * 在锁外量化好的一组向量，codes按向量顺序连续存放
+     */
+    private record Encoded(byte[] codes, float[] factors) {
+    }
+
+    /**
+     * 扫描候选
+     */
+    private record Candidate(int slot, float score) {
+    }
+
+    /**
+     * 单个用户的量化索引
+     * <p>
+     * 量化值按槽位连续存放在一块堆外缓冲区中，容量不足时按倍数扩容并复制；删除的槽位记入空闲列表复用。
+     * 检索持读锁，写入、删除和释放持写锁。
+     * </p>
+     */
+    private final class UserIndex {
+
+        private final Long userId;
+        private final String username;
+        private final boolean int8 = isInt8();
+        private final int codeBytes = codeBytes();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private volatile State state = State.LOADING;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile long lastWrite = System.currentTimeMillis();
+        private volatile long verifiedAt = System.currentTimeMillis();
+
+        private ByteBuffer codes;
+        private String[] ids = new String[0];
+        private float[] factors = new float[0];
+        private final Map<String, Integer> slots = new HashMap<>();
+        private int[] freeSlots = new int[16];
+        private int freeCount = 0;
+        private int slotCount = 0;
+        private long reservedBytes = 0;
+        /**
+         * 加载期间删除的ID，加载线程不再加回
+         */
+        private Set<String> removedWhileLoading = new HashSet<>();
+
+        UserIndex(Long userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return slots.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long reservedBytes() {
+            lock.readLock().lock();
+            try {
+                return reservedBytes;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 预留容纳指定向量数的空间
+         */
+        boolean reserve(int vectors) {
+            lock.writeLock().lock();
+            try {
+                return state != State.CLOSED && ensureCapacity(vectors);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 写入一组量化向量，已存在的ID覆盖原值
+         *
+         * @param fromLoader 是否来自加载线程，加载期间已删除的ID跳过
+         * @return 超出向量数或内存上限时返回false
+         */
+        boolean add(List<String> milvusIds, Encoded encoded, boolean fromLoader) {
+            lock.writeLock().lock();
+            try {
+                if (state == State.CLOSED) {
+                    return true;
+                }
+                for (int i = 0; i < milvusIds.size(); i++) {
+                    String id = milvusIds.get(i);
+                    Integer slot = slots.get(id);
+                    if (fromLoader && (slot != null || removedWhileLoading.contains(id))) {
+                        // 加载期间直接写入的向量比从向量存储读到的更新
+                        continue;
+                    }
+                    if (!fromLoader && removedWhileLoading != null) {
+                        removedWhileLoading.remove(id);
+                    }
+                    if (slot == null) {
+                        if (slots.size() >= properties.getMaxVectorsPerUser()) {
+                            return false;
+                        }
+                        if (freeCount > 0) {
+                            slot = freeSlots[--freeCount];
+                        } else {
+                            if (!ensureCapacity(slotCount + 1)) {
+                                return false;
+                            }
+                            slot = slotCount++;
+                        }
+                        slots.put(id, slot);
+                        ids[slot] = id;
+                    }
+                    codes.put(slot * codeBytes, encoded.codes(), i * codeBytes, codeBytes);
+                    factors[slot] = encoded.factors()[i];
+                }
+                if (!fromLoader) {
+                    lastWrite = System.currentTimeMillis();
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Collection<String> milvusIds) {
+            lock.writeLock().lock();
+            try {
+                for (String id : milvusIds) {
+                    if (removedWhileLoading != null) {
+                        removedWhileLoading.add(id);
+                    }
+                    Integer slot = slots.remove(id);
+                    if (slot == null) {
+                        continue;
+                    }
+                    ids[slot] = null;
+                    if (freeCount == freeSlots.length) {
+                        freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                    }
+                    freeSlots[freeCount++] = slot;
+                }
+                lastWrite = System.currentTimeMillis();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void ready() {
+            lock.writeLock().lock();
+            try {
+                if (state == State.LOADING) {
+                    state = State.READY;
+                    removedWhileLoading = null;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                state = State.CLOSED;
+                // 直接缓冲区在GC回收后释放
+                codes = null;
+                ids = new String[0];
+                factors = new float[0];
+                slots.clear();
+                removedWhileLoading = null;
+                offHeapBytes.addAndGet(-reservedBytes);
+                reservedBytes = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 扩容到至少容纳指定槽位数，超出全局内存上限时返回false，调用方需持有写锁
+         */
+        private boolean ensureCapacity(int required) {
+            int capacity = ids.length;
+            if (required <= capacity) {
+                return true;
+            }
+            int grown = Math.max(required, Math.max(64, capacity * 2));
+            grown = Math.min(grown, Math.max(required, properties.getMaxVectorsPerUser()));
+            long bytes = (long) grown * codeBytes;
+            if (bytes > Integer.MAX_VALUE) {
+                return false;
+            }
+            long delta = bytes - reservedBytes;
+            long limit = maxOffHeapBytes();
+            long current;
+            do {
+                current = offHeapBytes.get();
+                if (current + delta > limit) {
+                    return false;
+                }
+            } while (!offHeapBytes.compareAndSet(current, current + delta));
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+            if (codes != null) {
+                buffer.put(0, codes, 0, slotCount * codeBytes);
+            }
+            codes = buffer;
+            ids = Arrays.copyOf(ids, grown);
+            factors = Arrays.copyOf(factors, grown);
+            reservedBytes = bytes;
+            return true;
+        }
+
+        /**
+         * 扫描全部量化向量，返回近似分数最高的候选ID；索引已释放时返回null
+         */
+        List<String> topCandidates(float[] query, int limit) {
+            lock.readLock().lock();
+            try {
+                if (state != State.READY) {
+                    return null;
+                }
+                PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Candidate::score));
+                if (int8) {
+                    scanInt8(query, limit, top);
+                } else {
+                    scanBinary(query, limit, top);
+                }
+                List<String> result = new ArrayList<>(top.size());
+                for (Candidate candidate : top) {
+                    result.add(ids[candidate.slot()]);
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void scanInt8(float[] query, int limit, PriorityQueue<Candidate> top) {
+            byte[] quantized = new byte[dimension];
+            VectorQuantizer.quantizeInt8(query, quantized);
+            byte[] row = new byte[dimension];
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (ids[slot] == null) {
+                    continue;
+                }
+                codes.get(slot * codeBytes, row, 0, dimension);
+                // 查询向量的系数对所有候选相同，排序时省略
+                offer(top, limit, slot, VectorQuantizer.dotInt8(quantized, row, dimension) * factors[slot]);
+            }
+        }
+
+        private void scanBinary(float[] query, int limit, PriorityQueue<Candidate> top) {
+            int words = VectorQuantizer.binaryWords(dimension);
+            long[] quantized = new long[words];
+            VectorQuantizer.quantizeBinary(query, quantized);
+            long[] row = new long[words];
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (ids[slot] == null) {
+                    continue;
+                }
+                int base = slot * codeBytes;
+                for (int w = 0; w < words; w++) {
+                    row[w] = codes.getLong(base + w * Long.BYTES);
+                }
+                offer(top, limit, slot, -VectorQuantizer.hamming(quantized, row, words));
+            }
+        }
+
+        private void offer(PriorityQueue<Candidate> top, int limit, int slot, float score) {
+            if (top.size() < limit) {
+                top.offer(new Candidate(slot, score));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.offer(new Candidate(slot, score));
+            }
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.aliyun.rag.service;
 
+import com.aliyun.rag.exception.BusinessException;
 import com.aliyun.rag.model.DocumentInfo;
 import com.aliyun.rag.model.DocumentRequest;
-import com.aliyun.rag.model.DocumentProcessResult;
+import com.aliyun.rag.model.ErrorCode;
 import com.aliyun.rag.model.PageResult;
 import com.aliyun.rag.model.SearchRequest;
 import com.aliyun.rag.model.SearchResult;
 import com.aliyun.rag.model.User;
 import com.aliyun.rag.model.UserFileRecord;
+import com.aliyun.rag.model.dto.DocumentUpdateResult;
 import com.aliyun.rag.repository.UserFileRecordRepository;
 import com.aliyun.rag.repository.UserRepository;
 import dev.langchain4j.data.embedding.Embedding;
@@ -30,10 +32,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -52,7 +50,7 @@ public class RAGService {
 
     private static final Logger log = LoggerFactory.getLogger(RAGService.class);
 
-    private final DocumentProcessor documentProcessor;
+    private final IngestionPipeline ingestionPipeline;
     private final EmbeddingService embeddingService;
     private final VectorStoreService vectorStoreService;
     private final ChatModel qwenChatModel;
@@ -60,9 +58,10 @@ public class RAGService {
     private final UserFileRecordRepository userFileRecordRepository;
     private final UserRepository userRepository;
     private final QiniuUploadService qiniuUploadService;
-    private final Executor fileProcessExecutor;
+    private final SemanticAnswerCache answerCache;
+    private final PrincipalCache principalCache;
 
-    public RAGService(DocumentProcessor documentProcessor,
+    public RAGService(IngestionPipeline ingestionPipeline,
                       EmbeddingService embeddingService,
                       VectorStoreService vectorStoreService,
                       ChatModel qwenChatModel,
@@ -70,8 +69,9 @@ public class RAGService {
                       UserFileRecordRepository userFileRecordRepository,
                       UserRepository userRepository,
                       QiniuUploadService qiniuUploadService,
-                      Executor fileProcessExecutor) {
-        this.documentProcessor = documentProcessor;
+                      SemanticAnswerCache answerCache,
+                      PrincipalCache principalCache) {
+        this.ingestionPipeline = ingestionPipeline;
         this.embeddingService = embeddingService;
         this.vectorStoreService = vectorStoreService;
         this.qwenChatModel = qwenChatModel;
@@ -79,29 +79,44 @@ public class RAGService {
         this.userFileRecordRepository = userFileRecordRepository;
         this.userRepository = userRepository;
         this.qiniuUploadService = qiniuUploadService;
-        this.fileProcessExecutor = fileProcessExecutor;
+        this.answerCache = answerCache;
+        this.principalCache = principalCache;
     }
 
     /**
      * 上传并处理文档
      * <p>
-     * 先处理文件（不在事务中），再执行数据库操作（事务中）
+     * 先保存文件记录，再流式完成解析、分块、嵌入和向量写入；入库失败时回滚文件记录和存储容量
      * </p>
      */
     public DocumentInfo uploadDocument(DocumentRequest request, User user, String fileUrl) {
         try {
             MultipartFile file = request.getFile();
             
-            // 1. 预处理检查（非事务操作）
+            // 1. 预处理检查
             if (!checkStorageQuota(user, file.getSize())) {
                 throw new RuntimeException("存储空间不足，请联系管理员");
             }
             
-            // 2. 处理文档内容（非事务操作）
-            DocumentProcessResult processResult = processDocumentFile(request, file, fileUrl);
+            // 2. 保存文件记录，向量元数据需要记录ID
+            DocumentInfo documentInfo = createDocumentInfo(request, file);
+            UserFileRecord userFileRecord = userFileRecordRepository.save(buildUserFileRecord(user, file, fileUrl));
             
-            // 3. 执行数据库操作（事务中）
-            return saveDocumentInfo(processResult, user, file);
+            try {
+                // 3. 更新用户存储容量
+                updateUserStorageAfterUpload(user, file.getSize());
+                
+                // 4. 流式处理文档内容并写入向量数据库
+                ingestionPipeline.ingest(file, documentInfo, userFileRecord.getId(), user.getId(), user.getUsername());
+            } catch (Exception e) {
+                // 七牛云文件由调用方回滚
+                rollbackOperations(userFileRecord, true, false, user, null);
+                throw e;
+            }
+            
+            answerCache.bumpVersion(user.getId());
+            log.info("文档保存成功: {}, 分块数量: {}", documentInfo.getId(), documentInfo.getChunkCount());
+            return documentInfo;
             
         } catch (Exception e) {
             log.error("文档上传失败: {}", e.getMessage(), e);
@@ -110,79 +125,34 @@ public class RAGService {
     }
     
     /**
-     * 处理文档文件（非事务操作）
+     * 创建文档信息
      */
-    private DocumentProcessResult processDocumentFile(DocumentRequest request, MultipartFile file, String fileUrl) {
-        try {
-            // 创建文档信息
-            DocumentInfo documentInfo = new DocumentInfo();
-            String documentId = UUID.randomUUID().toString();
-            documentInfo.setId(documentId);
-            documentInfo.setTitle(request.getTitle() != null ? request.getTitle() : file.getOriginalFilename());
-            documentInfo.setDescription(request.getDescription());
-            documentInfo.setTags(request.getTags());
-            documentInfo.setUploadTime(LocalDateTime.now());
-            
-            // 处理文档内容
-            String content = documentProcessor.processDocument(file, documentInfo);
-            
-            // 分块（使用智能分块策略）
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-            String[] chunks = documentProcessor.chunkText(content, fileExtension);
-            documentInfo.setChunkCount(chunks.length);
-            
-            // 生成嵌入向量
-            List<Embedding> embeddings = embeddingService.embedTextChunks(chunks);
-            
-            log.info("文档处理完成: {}, 分块数量: {}", documentId, chunks.length);
-            
-            return new DocumentProcessResult(documentInfo, chunks, embeddings, fileUrl);
-            
-        } catch (Exception e) {
-            log.error("文档处理失败: {}", e.getMessage(), e);
-            throw new RuntimeException("文档处理失败: " + e.getMessage(), e);
-        }
+    private DocumentInfo createDocumentInfo(DocumentRequest request, MultipartFile file) {
+        DocumentInfo documentInfo = new DocumentInfo();
+        documentInfo.setId(UUID.randomUUID().toString());
+        documentInfo.setTitle(request.getTitle() != null ? request.getTitle() : file.getOriginalFilename());
+        documentInfo.setDescription(request.getDescription());
+        documentInfo.setTags(request.getTags());
+        documentInfo.setUploadTime(LocalDateTime.now());
+        return documentInfo;
     }
     
     /**
-     * 保存文档信息到数据库（事务操作）
+     * 构建用户文件记录
      */
-    @org.springframework.transaction.annotation.Transactional(rollbackFor = Exception.class)
-    public DocumentInfo saveDocumentInfo(DocumentProcessResult processResult, User user, MultipartFile file) {
-        try {
-            DocumentInfo documentInfo = processResult.getDocumentInfo();
-            String[] chunks = processResult.getChunks();
-            List<Embedding> embeddings = processResult.getEmbeddings();
-            String fileUrl = processResult.getFileUrl();
-            
-            // 保存用户文件记录到数据库
-            UserFileRecord userFileRecord = new UserFileRecord();
-            userFileRecord.setUserId(user.getId());
-            userFileRecord.setFileName(file.getOriginalFilename());
-            userFileRecord.setFilePath(fileUrl);
-            userFileRecord.setFileSize(file.getSize());
-            userFileRecord.setFileType(getFileExtension(file.getOriginalFilename()));
-            userFileRecord.setUploadTime(LocalDateTime.now());
-            userFileRecord.setGmtCreate(LocalDateTime.now());
-            userFileRecord.setGmtModified(LocalDateTime.now());
-            userFileRecord.setIsDeleted(0);
-            
-            userFileRecordRepository.save(userFileRecord);
-            
-            // 更新用户存储容量
-            updateUserStorageAfterUpload(user, file.getSize());
-            
-            // 存储到向量数据库（使用数据库记录ID、用户ID和用户名）
-            vectorStoreService.storeDocument(userFileRecord.getId(), user.getId(), user.getUsername(), chunks, embeddings, documentInfo);
-            
-            log.info("文档保存成功: {}, 分块数量: {}", documentInfo.getId(), chunks.length);
-            
-            return documentInfo;
-            
-        } catch (Exception e) {
-            log.error("文档保存失败: {}", e.getMessage(), e);
-            throw e; // 重新抛出以触发事务回滚
-        }
+    private UserFileRecord buildUserFileRecord(User user, MultipartFile file, String fileUrl) {
+        UserFileRecord userFileRecord = new UserFileRecord();
+        userFileRecord.setUserId(user.getId());
+        userFileRecord.setFileName(file.getOriginalFilename());
+        userFileRecord.setFilePath(fileUrl);
+        userFileRecord.setFileSize(file.getSize());
+        userFileRecord.setFileType(getFileExtension(file.getOriginalFilename()));
+        userFileRecord.setVersion(1);
+        userFileRecord.setUploadTime(LocalDateTime.now());
+        userFileRecord.setGmtCreate(LocalDateTime.now());
+        userFileRecord.setGmtModified(LocalDateTime.now());
+        userFileRecord.setIsDeleted(0);
+        return userFileRecord;
     }
 
     /**
@@ -205,6 +175,7 @@ public class RAGService {
 
                 // 保存更新后的用户信息
                 userRepository.save(updatedUser);
+                principalCache.invalidate(updatedUser.getId());
 
                 log.info("用户 {} 存储容量更新成功，已使用存储: {} 字节", updatedUser.getUsername(), newUsedStorage);
             }
@@ -226,10 +197,12 @@ public class RAGService {
 
             List<SearchResult> allResults = switch (request.getSearchType()) {
                 case SEMANTIC -> vectorStoreService.semanticSearch(
-                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername());
+                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername(),
+                        request.getSearchProfile());
                 case KEYWORD -> vectorStoreService.keywordSearch(query, request.getMaxResults(), user.getId(), user.getUsername());
                 case HYBRID -> vectorStoreService.hybridSearch(
-                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername());
+                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername(),
+                        request.getSearchProfile());
                 default -> new ArrayList<>();
             };
 
@@ -258,18 +231,34 @@ public class RAGService {
      * 搜索知识库（不支持分页，保持向后兼容）
      */
     public List<SearchResult> searchKnowledgeBase(SearchRequest request, User user) {
+        return searchKnowledgeBase(request, user, null);
+    }
+
+    /**
+     * 使用已计算好的问题向量搜索知识库
+     *
+     * @param request 搜索请求
+     * @param user 用户
+     * @param queryEmbedding 问题向量，为null时现场生成
+     * @return 搜索结果
+     */
+    public List<SearchResult> searchKnowledgeBase(SearchRequest request, User user, Embedding queryEmbedding) {
         try {
             String query = request.getQuery();
 
             // 生成查询的嵌入向量
-            Embedding queryEmbedding = embeddingService.embedText(query);
+            if (queryEmbedding == null) {
+                queryEmbedding = embeddingService.embedText(query);
+            }
 
             List<SearchResult> results = switch (request.getSearchType()) {
                 case SEMANTIC -> vectorStoreService.semanticSearch(
-                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername());
+                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername(),
+                        request.getSearchProfile());
                 case KEYWORD -> vectorStoreService.keywordSearch(query, request.getMaxResults(), user.getId(), user.getUsername());
                 case HYBRID -> vectorStoreService.hybridSearch(
-                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername());
+                        query, queryEmbedding, request.getMaxResults(), request.getMinScore(), user.getId(), user.getUsername(),
+                        request.getSearchProfile());
                 default -> new ArrayList<>();
             };
 
@@ -391,17 +380,28 @@ public class RAGService {
      */
     public Map<String, Object> askQuestion(String question, SearchRequest searchRequest, User user) {
         try {
-            // 搜索相关知识
-            List<SearchResult> searchResults = searchKnowledgeBase(searchRequest, user);
-
-            // 生成回答
-            String answer = generateAnswer(question, searchResults);
+            SemanticAnswerCache.Lookup lookup = lookupAnswer(searchRequest, null, user);
+
+            List<SearchResult> searchResults;
+            String answer;
+            if (lookup.isHit()) {
+                searchResults = lookup.getSources();
+                answer = lookup.getAnswer();
+            } else {
+                // 搜索相关知识
+                searchResults = searchKnowledgeBase(searchRequest, user, lookup.getQueryEmbedding());
+
+                // 生成回答
+                answer = generateAnswer(question, searchResults);
+                lookup.store(answer, searchResults);
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("question", question);
             response.put("answer", answer);
             response.put("sources", searchResults);
             response.put("sourceCount", searchResults.size());
+            response.put("cached", lookup.isHit());
 
             return response;
 
@@ -416,8 +416,15 @@ public class RAGService {
      */
     public void askQuestionStreaming(String question, SearchRequest searchRequest, User user, dev.langchain4j.model.StreamingResponseHandler<AiMessage> handler) {
         try {
+            SemanticAnswerCache.Lookup lookup = lookupAnswer(searchRequest, null, user);
+            if (lookup.isHit()) {
+                log.info("问答缓存命中，回放回答: {}", question);
+                replayAnswer(lookup.getAnswer(), handler);
+                return;
+            }
+
             // 搜索相关知识
-            List<SearchResult> searchResults = searchKnowledgeBase(searchRequest, user);
+            List<SearchResult> searchResults = searchKnowledgeBase(searchRequest, user, lookup.getQueryEmbedding());
 
             // 构建上下文
             StringBuilder context = new StringBuilder();
@@ -454,6 +461,7 @@ public class RAGService {
 
                 @Override
                 public void onCompleteResponse(dev.langchain4j.model.chat.response.ChatResponse response) {
+                    lookup.store(response.aiMessage().text(), searchResults);
                     handler.onComplete(new Response<>(response.aiMessage()));
                 }
 
@@ -547,6 +555,32 @@ public class RAGService {
         }
     }
 
+    /**
+     * 查询语义问答缓存
+     * <p>
+     * 问题向量在这里生成，未命中时通过{@link SemanticAnswerCache.Lookup#getQueryEmbedding()}交给检索复用
+     * </p>
+     *
+     * @param searchRequest 搜索请求
+     * @param contextMessages 对话上下文，无上下文时为null
+     * @param user 用户
+     * @return 缓存查询结果
+     */
+    public SemanticAnswerCache.Lookup lookupAnswer(SearchRequest searchRequest, List<ChatMessage> contextMessages, User user) {
+        Embedding queryEmbedding = embeddingService.embedText(searchRequest.getQuery());
+        return answerCache.lookup(user.getId(), SemanticAnswerCache.scopeOf(searchRequest, contextMessages), queryEmbedding);
+    }
+
+    /**
+     * 以流式事件回放缓存的回答
+     *
+     * @param answer 缓存的回答
+     * @param handler 流式响应处理器
+     */
+    public void replayAnswer(String answer, dev.langchain4j.model.StreamingResponseHandler<AiMessage> handler) {
+        answerCache.replay(answer, handler);
+    }
+
     /**
      * 流式响应处理器接口
      */
@@ -692,6 +726,8 @@ public class RAGService {
 
                 // 更新用户存储容量
                 updateUserStorageAfterDelete(user, record.getFileSize());
+
+                answerCache.bumpVersion(user.getId());
             }
 
             log.info("文档删除成功: {}", documentId);
@@ -701,6 +737,63 @@ public class RAGService {
         }
     }
 
+    /**
+     * 以新文件更新文档
+     * <p>
+     * 文档ID不变，版本加1；只有内容变化的分块重新嵌入。更新成功后删除七牛云上的旧文件，
+     * 失败时文档保持原状，新上传的七牛云文件由调用方删除
+     * </p>
+     *
+     * @param documentId 文档ID
+     * @param request 新文件及文档信息
+     * @param user 用户
+     * @param fileUrl 新文件在七牛云上的路径
+     * @return 更新结果
+     */
+    public DocumentUpdateResult updateDocument(String documentId, DocumentRequest request, User user, String fileUrl) {
+        UserFileRecord record = userFileRecordRepository.findByIdAndUserIdAndIsDeleted(
+                        Long.valueOf(documentId), user.getId(), 0)
+                .orElseThrow(() -> new BusinessException(ErrorCode.DOCUMENT_NOT_FOUND));
+        MultipartFile file = request.getFile();
+        long oldSize = record.getFileSize() != null ? record.getFileSize() : 0L;
+        long sizeDelta = file.getSize() - oldSize;
+        if (sizeDelta > 0 && !checkStorageQuota(user, sizeDelta)) {
+            throw new BusinessException(ErrorCode.STORAGE_QUOTA_EXCEEDED);
+        }
+
+        try {
+            String oldFilePath = record.getFilePath();
+            record.setFileName(file.getOriginalFilename());
+            record.setFilePath(fileUrl);
+            record.setFileSize(file.getSize());
+            record.setFileType(getFileExtension(file.getOriginalFilename()));
+            record.setVersion((record.getVersion() != null ? record.getVersion() : 1) + 1);
+            record.setGmtModified(LocalDateTime.now());
+
+            DocumentInfo documentInfo = createDocumentInfo(request, file);
+            DocumentUpdateResult result = ingestionPipeline.update(file, documentInfo, record, user.getUsername());
+
+            if (sizeDelta > 0) {
+                updateUserStorageAfterUpload(user, sizeDelta);
+            } else if (sizeDelta < 0) {
+                updateUserStorageAfterDelete(user, -sizeDelta);
+            }
+            answerCache.bumpVersion(user.getId());
+
+            try {
+                qiniuUploadService.deleteFile(oldFilePath);
+            } catch (Exception e) {
+                log.warn("从七牛云删除旧文件失败: {}, 错误: {}", oldFilePath, e.getMessage());
+            }
+            return result;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("文档更新失败: {}", e.getMessage(), e);
+            throw new RuntimeException("文档更新失败: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * 根据ID获取文档信息
      */
@@ -752,6 +845,7 @@ public class RAGService {
 
                 // 保存更新后的用户信息
                 userRepository.save(updatedUser);
+                principalCache.invalidate(updatedUser.getId());
 
                 log.info("用户 {} 存储容量更新成功，已使用存储: {} 字节", updatedUser.getUsername(), newUsedStorage);
             }
@@ -822,96 +916,57 @@ public class RAGService {
     }
 
     /**
-     * 并行处理文件上传和向量库操作
+     * 保存异步上传的文件记录并占用存储容量
      *
-     * @param request 文档请求
-     * @param user    用户信息
+     * @param user 用户
+     * @param file 上传的文件
      * @param fileUrl 文件URL
-     * @return DocumentInfo
-     * @throws Exception 处理异常
+     * @return 文件记录
      */
-    public DocumentInfo processFileInParallel(DocumentRequest request, User user, String fileUrl) throws Exception {
-        // 处理文档
-        DocumentInfo documentInfo = new DocumentInfo();
-        String documentId = UUID.randomUUID().toString();
-        documentInfo.setId(documentId);
-        documentInfo.setTitle(request.getTitle() != null ? request.getTitle() : request.getFile().getOriginalFilename());
-        documentInfo.setDescription(request.getDescription());
-        documentInfo.setTags(request.getTags());
-        documentInfo.setUploadTime(LocalDateTime.now());
-        documentInfo.setFileName(fileUrl);
-
-        String content = documentProcessor.processDocument(request.getFile(), documentInfo);
-
-        // 分块
-        String[] chunks = documentProcessor.chunkText(content);
-        documentInfo.setChunkCount(chunks.length);
-
-        // 生成嵌入向量
-        List<Embedding> embeddings = embeddingService.embedTextChunks(chunks);
-
-        // 检查用户存储容量是否足够
-        if (!checkStorageQuota(user, request.getFile().getSize())) {
-            throw new RuntimeException("存储空间不足，请联系管理员");
+    public UserFileRecord saveUploadRecord(User user, MultipartFile file, String fileUrl) {
+        if (!checkStorageQuota(user, file.getSize())) {
+            throw new BusinessException(ErrorCode.STORAGE_QUOTA_EXCEEDED, "存储空间不足，请联系管理员");
         }
+        UserFileRecord userFileRecord = userFileRecordRepository.save(buildUserFileRecord(user, file, fileUrl));
+        updateUserStorageAfterUpload(user, file.getSize());
+        log.info("用户文件记录保存成功: {}", userFileRecord.getId());
+        return userFileRecord;
+    }
 
-        // 用于存储操作结果和状态
-        UserFileRecord userFileRecord = null;
-        boolean databaseSaveSuccess = false;
-        boolean vectorStoreSuccess = false;
-
-        try {
-            // 并行执行数据库保存和向量库操作
-            CompletableFuture<UserFileRecord> databaseFuture = CompletableFuture.supplyAsync(() -> {
-                try {
-                    log.info("开始保存用户文件记录到数据库: {}", request.getFile().getOriginalFilename());
-                    // 保存用户文件记录到数据库
-                    UserFileRecord record = new UserFileRecord();
-                    record.setUserId(user.getId());
-                    record.setFileName(request.getFile().getOriginalFilename());
-                    record.setFileSize(request.getFile().getSize());
-                    record.setFileType(getFileExtension(request.getFile().getOriginalFilename()));
-                    record.setFilePath(fileUrl);
-                    record.setUploadTime(LocalDateTime.now());
-                    record.setGmtCreate(LocalDateTime.now());
-                    record.setGmtModified(LocalDateTime.now());
-                    record.setIsDeleted(0);
-
-                    return userFileRecordRepository.save(record);
-                } catch (Exception e) {
-                    log.error("保存用户文件记录到数据库失败: {}", e.getMessage(), e);
-                    throw new RuntimeException("保存用户文件记录到数据库失败: " + e.getMessage(), e);
-                }
-            }, fileProcessExecutor);
-
-            // 等待数据库保存完成，设置超时时间为30秒
-            try {
-                userFileRecord = databaseFuture.get(30, TimeUnit.SECONDS);
-                databaseSaveSuccess = true;
-                log.info("用户文件记录保存到数据库成功: {}", userFileRecord.getId());
-            } catch (TimeoutException e) {
-                log.error("数据库保存超时: {}", e.getMessage(), e);
-                throw new RuntimeException("数据库保存超时: " + e.getMessage(), e);
-            }
-
-            // 更新用户存储容量
-            updateUserStorageAfterUpload(user, request.getFile().getSize());
-
-            // 存储到向量数据库
-            vectorStoreService.storeDocument(userFileRecord.getId(), user.getId(), user.getUsername(), chunks, embeddings, documentInfo);
-            vectorStoreSuccess = true;
-
-            log.info("文档处理完成: {}", documentId);
-
-            return documentInfo;
-        } catch (Exception e) {
-            log.error("并行处理文件失败: {}", e.getMessage(), e);
-
-            // 执行回滚操作
-            rollbackOperations(userFileRecord, databaseSaveSuccess, vectorStoreSuccess, user, fileUrl);
+    /**
+     * 将已保存记录的上传文件流式入库（异步入库任务使用）
+     *
+     * @param request 文档请求
+     * @param user 用户
+     * @param fileRecordId 文件记录ID
+     * @param batchChunks 每批分块数
+     * @param progress 进度回调
+     * @return 文档信息
+     */
+    public DocumentInfo ingestUploadedFile(DocumentRequest request, User user, Long fileRecordId,
+                                           int batchChunks, IngestionProgress progress) {
+        DocumentInfo documentInfo = createDocumentInfo(request, request.getFile());
+        ingestionPipeline.ingest(request.getFile(), documentInfo, fileRecordId, user.getId(), user.getUsername(),
+                batchChunks, progress);
+        answerCache.bumpVersion(user.getId());
+        log.info("文档处理完成: {}, 分块数量: {}", documentInfo.getId(), documentInfo.getChunkCount());
+        return documentInfo;
+    }
 
-            throw new RuntimeException("文件处理失败: " + e.getMessage(), e);
-        }
+    /**
+     * 回滚异步上传：释放存储容量、标记文件记录删除并删除七牛云文件
+     * <p>
+     * 已写入的向量由入库流水线在失败时清理
+     * </p>
+     *
+     * @param fileRecordId 文件记录ID，未保存记录时为null
+     * @param user 用户
+     * @param fileUrl 文件URL，未上传时为null
+     */
+    public void rollbackUpload(Long fileRecordId, User user, String fileUrl) {
+        UserFileRecord userFileRecord = fileRecordId != null
+                ? userFileRecordRepository.findById(fileRecordId).orElse(null) : null;
+        rollbackOperations(userFileRecord, userFileRecord != null, false, user, fileUrl);
     }
 
     /**
@@ -969,6 +1024,9 @@ public class RAGService {
                     log.warn("回滚七牛云文件上传失败: {}", e.getMessage());
                 }
             }
+
+            // 入库过程中写入的向量可能已被检索到并进入问答缓存
+            answerCache.bumpVersion(user.getId());
         } catch (Exception e) {
             log.warn("回滚操作失败: {}", e.getMessage());
         }
@@ -0,0 +1,263 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.RateLimitProperties;
+import com.aliyun.rag.config.UserLevelProperties;
+import com.aliyun.rag.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 分布式限流服务
+ * <p>
+ * 每个客户端、每个接口类别对应Redis中的一个令牌桶，容量为窗口限额，按窗口匀速补充；
+ * 补充、扣减和过期在一个Lua脚本中完成，每次只需一次往返且没有并发竞争。
+ * 节点一次从桶中预取少量令牌作为本地租约，热点客户端在租约有效期内不访问Redis；
+ * 被拒绝的客户端在本地记录可重试时间，期间直接拒绝。
+ * Redis不可用时放行，避免影响正常业务。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class RateLimiterService {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiterService.class);
+
+    /**
+     * KEYS[1]=桶键，ARGV[1]=容量，ARGV[2]=窗口毫秒数，ARGV[3]=申请令牌数；
+     * 返回{发放数, 下一个令牌的等待毫秒数, 剩余令牌数}，使用Redis服务器时间避免节点时钟偏差
+     */
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local window = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1])
+            local ts = tonumber(state[2])
+            if tokens == nil or ts == nil then
+                tokens = capacity
+                ts = now
+            end
+            local rate = capacity / window
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+            local granted = math.min(requested, math.floor(tokens))
+            tokens = tokens - granted
+            local retry = 0
+            if granted < 1 and requested > 0 then
+                retry = math.ceil((1 - tokens) / rate)
+            end
+            redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], window * 2)
+            return {granted, retry, math.floor(tokens)}
+            """, List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RateLimitProperties properties;
+    private final UserLevelProperties userLevelProperties;
+    private final MetricsService metricsService;
+
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    public RateLimiterService(StringRedisTemplate stringRedisTemplate,
+                              RateLimitProperties properties,
+                              UserLevelProperties userLevelProperties,
+                              MetricsService metricsService) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+        this.userLevelProperties = userLevelProperties;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * 尝试为一次请求获取令牌
+     *
+     * @param clientId 客户端标识
+     * @param endpointClass 接口类别
+     * @param user 当前用户，未认证时为null
+     * @return 限流结果
+     */
+    public Decision tryAcquire(String clientId, RateLimitProperties.EndpointClass endpointClass, User user) {
+        int limit = getLimit(endpointClass, user);
+        String leaseKey = clientId + ":" + endpointClass.key();
+        Lease lease = leases.computeIfAbsent(leaseKey, key -> new Lease());
+
+        Decision decision;
+        synchronized (lease) {
+            decision = acquire(lease, leaseKey, limit);
+        }
+        if (decision.isAllowed()) {
+            metricsService.recordRateLimitAllowed();
+        } else {
+            metricsService.recordRateLimit(endpointClass.key(), clientId);
+        }
+        if (leases.size() > properties.getMaxLocalLeases()) {
+            evictExpiredLeases();
+        }
+        return decision;
+    }
+
+    /**
+     * 查询限流状态，不消耗令牌；本地已预取未使用的令牌计入剩余数
+     *
+     * @param clientId 客户端标识
+     * @param endpointClass 接口类别
+     * @param user 当前用户
+     * @return 限流结果，allowed表示当前是否还有可用令牌
+     */
+    public Decision getStatus(String clientId, RateLimitProperties.EndpointClass endpointClass, User user) {
+        int limit = getLimit(endpointClass, user);
+        String leaseKey = clientId + ":" + endpointClass.key();
+        long[] result = callScript(leaseKey, limit, 0);
+        if (result == null) {
+            return new Decision(true, limit, limit, 0);
+        }
+        Lease lease = leases.get(leaseKey);
+        int remaining = (int) result[2];
+        if (lease != null) {
+            synchronized (lease) {
+                if (System.currentTimeMillis() < lease.expiresAt) {
+                    remaining += lease.remaining;
+                }
+            }
+        }
+        return new Decision(remaining > 0, limit, remaining, result[1]);
+    }
+
+    /**
+     * 计算客户端在某个接口类别上的限额：用户等级配置优先，其次为接口类别默认值
+     */
+    public int getLimit(RateLimitProperties.EndpointClass endpointClass, User user) {
+        if (user != null && user.getLevel() != null) {
+            try {
+                Integer limit = userLevelProperties.getConfigByCode(user.getLevel())
+                        .getRateLimits().get(endpointClass.key());
+                if (limit != null) {
+                    return limit;
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("未知用户等级 {}，使用默认限额", user.getLevel());
+            }
+        }
+        return properties.getDefaultLimit(endpointClass);
+    }
+
+    private Decision acquire(Lease lease, String leaseKey, int limit) {
+        long now = System.currentTimeMillis();
+        if (now < lease.blockedUntil) {
+            return new Decision(false, limit, 0, lease.blockedUntil - now);
+        }
+        if (lease.remaining > 0 && now < lease.expiresAt) {
+            lease.remaining--;
+            return new Decision(true, limit, lease.remaining, 0);
+        }
+
+        int requested = leaseSize(limit);
+        long[] result = callScript(leaseKey, limit, requested);
+        if (result == null) {
+            return new Decision(true, limit, limit, 0);
+        }
+        metricsService.recordRateLimitLeaseRefill();
+
+        int granted = (int) result[0];
+        if (granted <= 0) {
+            lease.remaining = 0;
+            lease.blockedUntil = now + Math.max(1, Math.min(result[1], properties.getLeaseTtlMs()));
+            return new Decision(false, limit, 0, result[1]);
+        }
+        lease.remaining = granted - 1;
+        lease.expiresAt = now + properties.getLeaseTtlMs();
+        lease.blockedUntil = 0;
+        return new Decision(true, limit, (int) result[2] + lease.remaining, 0);
+    }
+
+    /**
+     * 预取数不超过限额的1/10，保证多个节点分摊配额时不会出现某个节点囤积大部分令牌
+     */
+    private int leaseSize(int limit) {
+        return Math.max(1, Math.min(properties.getLeaseSize(), limit / 10));
+    }
+
+    @SuppressWarnings("unchecked")
+    private long[] callScript(String leaseKey, int limit, int requested) {
+        try {
+            List<Object> result = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    List.of(properties.getKeyPrefix() + leaseKey),
+                    String.valueOf(Math.max(1, limit)),
+                    String.valueOf(Math.max(1, properties.getWindowSeconds()) * 1000L),
+                    String.valueOf(requested));
+            if (result == null || result.size() < 3) {
+                return null;
+            }
+            return new long[]{
+                    ((Number) result.get(0)).longValue(),
+                    ((Number) result.get(1)).longValue(),
+                    ((Number) result.get(2)).longValue()};
+        } catch (Exception e) {
+            log.warn("限流检查失败，放行请求: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictExpiredLeases() {
+        long now = System.currentTimeMillis();
+        leases.entrySet().removeIf(entry -> {
+            Lease lease = entry.getValue();
+            synchronized (lease) {
+                return now >= lease.expiresAt && now >= lease.blockedUntil;
+            }
+        });
+    }
+
+    /**
+     * 本地令牌租约，所有字段在持有该对象锁时访问
+     */
+    private static final class Lease {
+        private int remaining;
+        private long expiresAt;
+        private long blockedUntil;
+    }
+
+    /**
+     * 限流结果
+     */
+    public static class Decision {
+        private final boolean allowed;
+        private final int limit;
+        private final int remaining;
+        private final long retryAfterMs;
+
+        public Decision(boolean allowed, int limit, int remaining, long retryAfterMs) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getRemaining() {
+            return remaining;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+}
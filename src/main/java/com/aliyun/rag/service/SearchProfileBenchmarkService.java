@@ -0,0 +1,223 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.SearchRequest;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 检索档位评测
+ * <p>
+ * 在当前用户的向量上对比各检索档位的召回率与延迟：先对用户的全部向量做精确的余弦暴力检索得到标准结果，
+ * 再用各档位在向量存储上检索同一批查询，计算 recall@k 和单次检索延迟。评测绕过量化索引，只衡量向量存储的索引。
+ * 暴力检索需要把用户的全部向量读入内存，向量数超过 vector-store.benchmark.max-vectors 时拒绝执行。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Service
+public class SearchProfileBenchmarkService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchProfileBenchmarkService.class);
+
+    /**
+     * 分批读取向量的批大小
+     */
+    private static final int FETCH_BATCH_SIZE = 1000;
+
+    private final VectorStoreBackend vectorStoreBackend;
+    private final VectorStoreProperties vectorStoreProperties;
+    private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
+    private final EmbeddingService embeddingService;
+
+    public SearchProfileBenchmarkService(VectorStoreBackend vectorStoreBackend,
+                                         VectorStoreProperties vectorStoreProperties,
+                                         DocumentMilvusMappingRepository documentMilvusMappingRepository,
+                                         EmbeddingService embeddingService) {
+        this.vectorStoreBackend = vectorStoreBackend;
+        this.vectorStoreProperties = vectorStoreProperties;
+        this.documentMilvusMappingRepository = documentMilvusMappingRepository;
+        this.embeddingService = embeddingService;
+    }
+
+    /**
+     * 评测各检索档位
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param queries 查询文本，为空时从用户已有的向量中随机抽样作为查询
+     * @param topK 结果数，为空时使用配置值
+     * @return 评测结果
+     */
+    public Map<String, Object> benchmark(Long userId, String username, List<String> queries, Integer topK) {
+        VectorStoreProperties.Benchmark config = vectorStoreProperties.getBenchmark();
+        int k = topK != null && topK > 0 ? topK : config.getTopK();
+
+        List<String> ids = documentMilvusMappingRepository.findByUserIdAndIsDeleted(userId, 0).stream()
+                .filter(mapping -> mapping.getRefMilvusId() == null)
+                .map(DocumentMilvusMapping::getMilvusId)
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("知识库中没有向量，无法评测");
+        }
+        if (ids.size() > config.getMaxVectors()) {
+            throw new IllegalStateException("向量数 " + ids.size() + " 超过评测上限 " + config.getMaxVectors());
+        }
+
+        List<String> vectorIds = new ArrayList<>(ids.size());
+        List<float[]> vectors = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + FETCH_BATCH_SIZE, ids.size()));
+            for (VectorStoreBackend.StoredVector stored : vectorStoreBackend.fetch(userId, username, batch, true, true)) {
+                if (stored.vector() != null) {
+                    vectorIds.add(stored.id());
+                    vectors.add(normalize(stored.vector()));
+                }
+            }
+        }
+
+        if (vectors.isEmpty()) {
+            throw new IllegalStateException("未能从向量存储读取到向量，无法评测");
+        }
+
+        List<float[]> queryVectors = new ArrayList<>();
+        if (queries != null && !queries.isEmpty()) {
+            for (String query : queries) {
+                queryVectors.add(normalize(embeddingService.embedText(query).vector()));
+            }
+        } else {
+            List<float[]> sample = new ArrayList<>(vectors);
+            Collections.shuffle(sample, ThreadLocalRandom.current());
+            queryVectors.addAll(sample.subList(0, Math.min(config.getSampleQueries(), sample.size())));
+        }
+
+        List<Set<String>> truth = new ArrayList<>(queryVectors.size());
+        for (float[] query : queryVectors) {
+            truth.add(exactTopK(query, vectorIds, vectors, k));
+        }
+
+        Map<String, Object> profiles = new LinkedHashMap<>();
+        for (SearchRequest.SearchProfile profile : SearchRequest.SearchProfile.values()) {
+            profiles.put(profile.name(), run(userId, username, profile, queryVectors, truth, k));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("backend", vectorStoreBackend.name());
+        result.put("collectionName", vectorStoreBackend.collectionName(userId, username));
+        result.put("vectorCount", vectors.size());
+        result.put("queryCount", queryVectors.size());
+        result.put("topK", k);
+        result.put("defaultProfile", vectorStoreProperties.getDefaultSearchProfile());
+        result.put("profiles", profiles);
+        log.info("用户 {}({}) 检索档位评测完成: {} 个向量, {} 个查询", username, userId, vectors.size(), queryVectors.size());
+        return result;
+    }
+
+    private Map<String, Object> run(Long userId, String username, SearchRequest.SearchProfile profile,
+                                    List<float[]> queryVectors, List<Set<String>> truth, int k) {
+        EmbeddingStore<TextSegment> store = vectorStoreBackend.getStore(userId, username, profile);
+        // 预热一次，避免首次检索的连接和加载开销计入延迟
+        store.search(request(queryVectors.get(0), k));
+
+        double recallSum = 0;
+        long[] latencies = new long[queryVectors.size()];
+        for (int i = 0; i < queryVectors.size(); i++) {
+            long start = System.nanoTime();
+            List<EmbeddingMatch<TextSegment>> matches = store.search(request(queryVectors.get(i), k)).matches();
+            latencies[i] = System.nanoTime() - start;
+
+            Set<String> expected = truth.get(i);
+            int hits = 0;
+            for (EmbeddingMatch<TextSegment> match : matches) {
+                if (expected.contains(match.embeddingId())) {
+                    hits++;
+                }
+            }
+            recallSum += expected.isEmpty() ? 1.0 : (double) hits / expected.size();
+        }
+        Arrays.sort(latencies);
+
+        VectorStoreProperties.SearchParams params = vectorStoreProperties.searchParams(profile);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recall", recallSum / queryVectors.size());
+        stats.put("avgLatencyMs", Arrays.stream(latencies).average().orElse(0) / 1_000_000.0);
+        stats.put("p50LatencyMs", percentile(latencies, 0.50) / 1_000_000.0);
+        stats.put("p95LatencyMs", percentile(latencies, 0.95) / 1_000_000.0);
+        stats.put("ef", params.getEf());
+        stats.put("nprobe", params.getNprobe());
+        stats.put("searchList", params.getSearchList());
+        return stats;
+    }
+
+    private static EmbeddingSearchRequest request(float[] vector, int k) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(vector))
+                .maxResults(k)
+                .minScore(0.0)
+                .build();
+    }
+
+    /**
+     * 精确检索：与全部向量逐一计算余弦相似度，取前k个
+     */
+    private static Set<String> exactTopK(float[] query, List<String> ids, List<float[]> vectors, int k) {
+        Integer[] order = new Integer[vectors.size()];
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            order[i] = i;
+            scores[i] = dot(query, vectors.get(i));
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        Set<String> top = new HashSet<>();
+        for (int i = 0; i < Math.min(k, order.length); i++) {
+            top.add(ids.get(order[i]));
+        }
+        return top;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
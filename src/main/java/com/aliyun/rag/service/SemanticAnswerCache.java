@@ -0,0 +1,372 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.AnswerCacheProperties;
+import com.aliyun.rag.model.SearchRequest;
+import com.aliyun.rag.model.SearchResult;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语义问答缓存
+ * <p>
+ * 按用户隔离，缓存条目以问题向量为键：新问题与同一用户、同一检索参数下的已有问题余弦相似度达到阈值即命中。
+ * 每个用户有一个知识库版本号（存放在Redis，多节点共享），上传或删除文档时递增，
+ * 条目记录写入时的版本号，版本不一致的条目视为过期，因此知识库变化后不会返回旧回答。
+ * Redis不可用时不读写缓存，直接走检索和大模型。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final AnswerCacheProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MetricsService metricsService;
+
+    private final AtomicLong totalEntries = new AtomicLong();
+    private final Map<Long, UserBucket> buckets;
+
+    public SemanticAnswerCache(AnswerCacheProperties properties,
+                               StringRedisTemplate stringRedisTemplate,
+                               MetricsService metricsService) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.metricsService = metricsService;
+        this.buckets = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserBucket> eldest) {
+                if (size() > Math.max(1, properties.getMaxUsers())) {
+                    int removed = eldest.getValue().clear();
+                    onEvicted(removed);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param userId 用户ID
+     * @param scope 检索范围（见{@link #scopeOf}）
+     * @param queryEmbedding 问题向量
+     * @return 查询结果，未命中时可通过{@link Lookup#store}写入回答
+     */
+    public Lookup lookup(Long userId, String scope, Embedding queryEmbedding) {
+        if (!properties.isEnabled() || queryEmbedding == null) {
+            return Lookup.disabled(queryEmbedding);
+        }
+        Long version = knowledgeBaseVersion(userId);
+        if (version == null) {
+            return Lookup.disabled(queryEmbedding);
+        }
+        float[] vector = normalize(queryEmbedding.vector());
+        long now = System.currentTimeMillis();
+
+        Entry best = null;
+        UserBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.get(userId);
+        }
+        if (bucket != null) {
+            best = bucket.findBest(scope, vector, version, now);
+        }
+
+        if (best != null) {
+            metricsService.recordAnswerCacheHit();
+            log.debug("用户 {} 问答缓存命中，知识库版本: {}", userId, version);
+            return new Lookup(this, userId, scope, queryEmbedding, vector, version, best.answer(), best.sources());
+        }
+        metricsService.recordAnswerCacheMiss();
+        return new Lookup(this, userId, scope, queryEmbedding, vector, version, null, null);
+    }
+
+    /**
+     * 用户知识库发生变化（上传、删除文档）后递增版本号，并清空本节点该用户的缓存
+     *
+     * @param userId 用户ID
+     */
+    public void bumpVersion(Long userId) {
+        UserBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.remove(userId);
+        }
+        if (bucket != null) {
+            onEvicted(bucket.clear());
+        }
+        try {
+            stringRedisTemplate.opsForValue().increment(properties.getVersionKeyPrefix() + userId);
+        } catch (Exception e) {
+            log.warn("递增用户 {} 知识库版本号失败: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 生成检索范围：检索方式、结果数、分数阈值、检索档位以及对话上下文都会影响回答，只在相同范围内匹配
+     *
+     * @param request 检索请求
+     * @param contextMessages 对话上下文，可为null
+     * @return 范围标识
+     */
+    public static String scopeOf(SearchRequest request, List<ChatMessage> contextMessages) {
+        StringBuilder scope = new StringBuilder()
+                .append(request.getSearchType()).append('|')
+                .append(request.getMaxResults()).append('|')
+                .append(request.getMinScore()).append('|')
+                .append(request.getSearchProfile());
+        if (contextMessages != null && !contextMessages.isEmpty()) {
+            StringBuilder context = new StringBuilder();
+            for (ChatMessage message : contextMessages) {
+                context.append(message).append('\n');
+            }
+            scope.append('|').append(sha256(context.toString()));
+        }
+        return scope.toString();
+    }
+
+    /**
+     * 按固定长度分段回放缓存的回答，流式接口命中缓存时保持与模型输出相同的事件序列
+     *
+     * @param answer 缓存的回答
+     * @param handler 流式响应处理器
+     */
+    public void replay(String answer, StreamingResponseHandler<AiMessage> handler) {
+        int step = Math.max(1, properties.getReplayChunkChars());
+        int offset = 0;
+        while (offset < answer.length()) {
+            int end = Math.min(answer.length(), offset + step);
+            // 不拆开代理对
+            if (end < answer.length() && Character.isHighSurrogate(answer.charAt(end - 1))) {
+                end++;
+            }
+            handler.onNext(answer.substring(offset, end));
+            offset = end;
+        }
+        handler.onComplete(new Response<>(AiMessage.from(answer)));
+    }
+
+    private void store(Long userId, String scope, float[] vector, long version, String answer, List<SearchResult> sources) {
+        Entry entry = new Entry(scope, vector, version, answer, new ArrayList<>(sources), System.currentTimeMillis());
+        UserBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.computeIfAbsent(userId, id -> new UserBucket());
+        }
+        int evicted = bucket.add(entry, Math.max(1, properties.getMaxEntriesPerUser()));
+        totalEntries.incrementAndGet();
+        onEvicted(evicted);
+    }
+
+    private void onEvicted(int count) {
+        if (count > 0) {
+            totalEntries.addAndGet(-count);
+            metricsService.recordAnswerCacheEviction(count);
+        }
+        metricsService.updateAnswerCacheSize(totalEntries.get());
+    }
+
+    /**
+     * 读取用户知识库版本号，未上传过文档时为0
+     *
+     * @param userId 用户ID
+     * @return 版本号，读取Redis失败时为null
+     */
+    public Long knowledgeBaseVersion(Long userId) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(properties.getVersionKeyPrefix() + userId);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            log.warn("读取用户 {} 知识库版本号失败: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 一次缓存查询的结果
+     */
+    public static final class Lookup {
+
+        private final SemanticAnswerCache cache;
+        private final Long userId;
+        private final String scope;
+        private final Embedding queryEmbedding;
+        private final float[] vector;
+        private final long version;
+        private final String answer;
+        private final List<SearchResult> sources;
+
+        private Lookup(SemanticAnswerCache cache, Long userId, String scope, Embedding queryEmbedding,
+                       float[] vector, long version, String answer, List<SearchResult> sources) {
+            this.cache = cache;
+            this.userId = userId;
+            this.scope = scope;
+            this.queryEmbedding = queryEmbedding;
+            this.vector = vector;
+            this.version = version;
+            this.answer = answer;
+            this.sources = sources;
+        }
+
+        /**
+         * 缓存未启用或不可用时的结果，写入为空操作
+         */
+        static Lookup disabled(Embedding queryEmbedding) {
+            return new Lookup(null, null, null, queryEmbedding, null, 0, null, null);
+        }
+
+        public boolean isHit() {
+            return answer != null;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public List<SearchResult> getSources() {
+            return sources;
+        }
+
+        /**
+         * 问题向量，未命中时检索直接复用，不再重复嵌入
+         */
+        public Embedding getQueryEmbedding() {
+            return queryEmbedding;
+        }
+
+        /**
+         * 写入本次生成的回答；没有检索到内容的回答不缓存
+         * <p>
+         * 使用查询时读取的版本号，生成回答期间知识库发生变化时该条目会直接过期
+         * </p>
+         *
+         * @param answer 回答
+         * @param sources 引用来源
+         */
+        public void store(String answer, List<SearchResult> sources) {
+            if (cache == null || isHit() || answer == null || answer.isEmpty() || sources == null || sources.isEmpty()) {
+                return;
+            }
+            cache.store(userId, scope, vector, version, answer, sources);
+        }
+    }
+
+    private record Entry(String scope, float[] vector, long version, String answer,
+                         List<SearchResult> sources, long createdAt) {
+    }
+
+    /**
+     * 单个用户的缓存条目，按最近命中顺序排列
+     */
+    private final class UserBucket {
+
+        private final LinkedHashMap<Entry, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized Entry findBest(String scope, float[] vector, long version, long now) {
+            long ttlMillis = properties.getTtl().toMillis();
+            Entry best = null;
+            double bestScore = properties.getSimilarityThreshold();
+            int expired = 0;
+            Iterator<Entry> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.version() != version || now - entry.createdAt() > ttlMillis) {
+                    iterator.remove();
+                    expired++;
+                    continue;
+                }
+                if (!entry.scope().equals(scope)) {
+                    continue;
+                }
+                double score = dot(vector, entry.vector());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                // 刷新最近命中顺序
+                entries.get(best);
+            }
+            if (expired > 0) {
+                onEvicted(expired);
+            }
+            return best;
+        }
+
+        synchronized int add(Entry entry, int maxEntries) {
+            entries.put(entry, entry.createdAt());
+            int evicted = 0;
+            Iterator<Entry> iterator = entries.keySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized int clear() {
+            int size = entries.size();
+            entries.clear();
+            return size;
+        }
+    }
+}
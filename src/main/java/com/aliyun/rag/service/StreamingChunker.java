@@ -0,0 +1,200 @@
+package com.aliyun.rag.service;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * 流式分块器
+ * <p>
+ * 接收解析器增量输出的文本片段，累积到窗口大小后在段落边界处切出一段，
+ * 交给现有的分块策略处理并立即输出分块；窗口末尾的一小段文本作为重叠保留到下一个窗口，
+ * 避免窗口边界处的上下文被截断。缓冲区大小与文档长度无关。
+ * 解析器回报页码时记录每页在文本流中的起始位置，分块策略输出的分块是窗口的子串，
+ * 按其在窗口中的位置换算出所跨的页码区间；找不到位置时使用整个窗口的页码区间。
+ * 非线程安全，每个文档使用一个实例。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class StreamingChunker implements DocumentTextSink {
+
+    /**
+     * 分块输出
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+
+        /**
+         * @param chunk 分块内容
+         * @param firstPage 分块起始页码，未知时为0
+         * @param lastPage 分块结束页码，未知时为0
+         */
+        void accept(String chunk, int firstPage, int lastPage);
+    }
+
+    private final Function<String, String[]> chunkStrategy;
+    private final int windowChars;
+    private final int overlapChars;
+    private final ChunkSink chunkSink;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private int chunkCount = 0;
+
+    // 缓冲区第一个字符在整个文本流中的位置
+    private long bufferOffset = 0;
+    // 页起始位置与页码，按位置递增；只保留缓冲区内的页及缓冲区开头所在的页
+    private long[] pageStarts = new long[16];
+    private int[] pageNumbers = new int[16];
+    private int pageCount = 0;
+
+    /**
+     * @param chunkStrategy 对一段完整文本分块的策略
+     * @param windowChars 窗口大小（字符数）
+     * @param overlapChars 窗口间重叠字符数
+     * @param chunkSink 分块输出
+     */
+    public StreamingChunker(Function<String, String[]> chunkStrategy, int windowChars,
+                            int overlapChars, ChunkSink chunkSink) {
+        this.chunkStrategy = chunkStrategy;
+        this.windowChars = Math.max(1024, windowChars);
+        this.overlapChars = Math.max(0, Math.min(overlapChars, this.windowChars / 4));
+        this.chunkSink = chunkSink;
+    }
+
+    /**
+     * 记录新一页在文本流中的起始位置
+     */
+    @Override
+    public void startPage(int pageNumber) {
+        if (pageCount == pageStarts.length) {
+            pageStarts = Arrays.copyOf(pageStarts, pageCount * 2);
+            pageNumbers = Arrays.copyOf(pageNumbers, pageCount * 2);
+        }
+        pageStarts[pageCount] = bufferOffset + buffer.length();
+        pageNumbers[pageCount] = pageNumber;
+        pageCount++;
+    }
+
+    /**
+     * 追加一段解析出的文本
+     */
+    @Override
+    public void accept(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        buffer.append(text);
+        while (buffer.length() >= windowChars) {
+            int cut = findBoundary();
+            String window = buffer.substring(0, cut);
+            long windowOffset = bufferOffset;
+            int keepFrom = Math.max(0, cut - overlapChars);
+            buffer.delete(0, keepFrom);
+            bufferOffset += keepFrom;
+            emit(window, windowOffset);
+            discardPagesBefore(bufferOffset);
+        }
+    }
+
+    /**
+     * 输出缓冲区中剩余的文本
+     */
+    public void finish() {
+        if (buffer.length() > 0) {
+            emit(buffer.toString(), bufferOffset);
+            bufferOffset += buffer.length();
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * 已输出的分块数
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * 在窗口后半段寻找切分点：优先空行，其次换行、句末标点，都没有时硬切
+     */
+    private int findBoundary() {
+        int limit = Math.min(buffer.length(), windowChars);
+        int floor = limit / 2;
+        int paragraph = buffer.lastIndexOf("\n\n", limit - 2);
+        if (paragraph >= floor) {
+            return paragraph + 2;
+        }
+        int line = buffer.lastIndexOf("\n", limit - 1);
+        if (line >= floor) {
+            return line + 1;
+        }
+        for (int i = limit - 1; i >= floor; i--) {
+            char c = buffer.charAt(i);
+            if (c == '。' || c == '！' || c == '？' || c == '.' || c == '!' || c == '?') {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private void emit(String window, long windowOffset) {
+        if (window.trim().isEmpty()) {
+            return;
+        }
+        int searchFrom = 0;
+        for (String chunk : chunkStrategy.apply(window)) {
+            if (chunk == null || chunk.trim().isEmpty()) {
+                continue;
+            }
+            int firstPage = 0;
+            int lastPage = 0;
+            if (pageCount > 0) {
+                int index = window.indexOf(chunk, searchFrom);
+                long start = index >= 0 ? windowOffset + index : windowOffset;
+                long end = index >= 0 ? start + chunk.length() : windowOffset + window.length();
+                if (index >= 0) {
+                    searchFrom = index + 1;
+                }
+                firstPage = pageAt(start);
+                lastPage = pageAt(Math.max(start, end - 1));
+            }
+            chunkSink.accept(chunk, firstPage, lastPage);
+            chunkCount++;
+        }
+    }
+
+    /**
+     * 文本流位置所在的页码，位置在第一页之前时为0
+     */
+    private int pageAt(long position) {
+        int low = 0;
+        int high = pageCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (pageStarts[mid] <= position) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 ? pageNumbers[found] : 0;
+    }
+
+    /**
+     * 丢弃完全位于position之前的页，保留position所在的页
+     */
+    private void discardPagesBefore(long position) {
+        int drop = 0;
+        while (drop + 1 < pageCount && pageStarts[drop + 1] <= position) {
+            drop++;
+        }
+        if (drop > 0) {
+            System.arraycopy(pageStarts, drop, pageStarts, 0, pageCount - drop);
+            System.arraycopy(pageNumbers, drop, pageNumbers, 0, pageCount - drop);
+            pageCount -= drop;
+        }
+    }
+}
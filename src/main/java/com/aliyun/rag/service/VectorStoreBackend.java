@@ -0,0 +1,106 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.SearchRequest;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量存储后端
+ * <p>
+ * 屏蔽具体的向量引擎：写入、删除和相似度检索通过每个用户collection的{@link EmbeddingStore}完成，
+ * 按ID读取和分页浏览等EmbeddingStore不提供的操作由本接口提供。
+ * 部署时通过 vector-store.type 选择实现，同一时刻只有一个实现生效。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public interface VectorStoreBackend {
+
+    /**
+     * 已存储的向量
+     *
+     * @param id 向量ID
+     * @param text 分块文本
+     * @param metadata 文档元数据
+     * @param vector 向量，未要求读取时为null
+     */
+    record StoredVector(String id, String text, Map<String, Object> metadata, float[] vector) {
+    }
+
+    /**
+     * 后端名称
+     */
+    String name();
+
+    /**
+     * 用户collection的名称
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return collection名称
+     */
+    String collectionName(Long userId, String username);
+
+    /**
+     * 获取用户collection的向量存储，不存在时创建
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 向量存储
+     */
+    EmbeddingStore<TextSegment> getStore(Long userId, String username);
+
+    /**
+     * 获取用户collection的向量存储，检索时使用指定档位的检索参数
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param profile 检索档位，为空时使用 vector-store.default-search-profile
+     * @return 向量存储
+     */
+    EmbeddingStore<TextSegment> getStore(Long userId, String username, SearchRequest.SearchProfile profile);
+
+    /**
+     * 用户collection是否存在，不会创建collection
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @return 是否存在
+     */
+    boolean exists(Long userId, String username);
+
+    /**
+     * 按ID读取向量，不存在的ID忽略，结果顺序不保证
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param ids 向量ID
+     * @param withVector 是否读取向量本身
+     * @param strong 是否要求读到此前刚写入的数据，检索路径上不需要
+     * @return 存在的向量
+     */
+    List<StoredVector> fetch(Long userId, String username, Collection<String> ids, boolean withVector, boolean strong);
+
+    /**
+     * 分页读取向量（不含向量本身）
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param offset 偏移量
+     * @param limit 数量
+     * @return 向量列表
+     */
+    List<StoredVector> page(Long userId, String username, long offset, int limit);
+
+    /**
+     * 获取后端状态
+     *
+     * @return 状态信息
+     */
+    Map<String, Object> getStats();
+}
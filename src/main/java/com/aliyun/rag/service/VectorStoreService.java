@@ -1,9 +1,12 @@
 package com.aliyun.rag.service;
 
 import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.constants.VectorStoreConstants;
 import com.aliyun.rag.model.DocumentInfo;
 import com.aliyun.rag.model.DocumentMilvusMapping;
 import com.aliyun.rag.model.PageResult;
+import com.aliyun.rag.model.SearchRequest;
 import com.aliyun.rag.model.SearchResult;
 import com.aliyun.rag.model.User;
 import com.aliyun.rag.model.UserFileRecord;
@@ -15,28 +18,26 @@ import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
-import dev.langchain4j.store.embedding.milvus.MilvusEmbeddingStore;
+import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import io.milvus.client.MilvusServiceClient;
-import io.milvus.grpc.GetCollectionStatisticsResponse;
-import io.milvus.param.ConnectParam;
-import io.milvus.param.R;
-import io.milvus.param.collection.HasCollectionParam;
-import io.milvus.param.collection.GetCollectionStatisticsParam;
-import io.milvus.param.dml.QueryParam;
-import io.milvus.response.GetCollStatResponseWrapper;
-import io.milvus.response.QueryResultsWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 /**
@@ -54,136 +55,471 @@ public class VectorStoreService {
     private final DocumentMilvusMappingRepository documentMilvusMappingRepository;
     private final UserFileRecordRepository userFileRecordRepository;
     private final MilvusConfig milvusConfig;
+    private final VectorStoreBackend vectorStoreBackend;
+    private final MetricsService metricsService;
+    private final ThreadPoolTaskExecutor vectorProcessExecutor;
+    private final KeywordIndexService keywordIndexService;
+    private final HybridSearchEngine hybridSearchEngine;
+    private final QuantizedVectorIndex quantizedVectorIndex;
+    private final VectorStoreProperties vectorStoreProperties;
 
     public VectorStoreService(EmbeddingModel embeddingModel,
                               DocumentMilvusMappingRepository documentMilvusMappingRepository,
                               UserFileRecordRepository userFileRecordRepository,
-                              MilvusConfig milvusConfig) {
+                              MilvusConfig milvusConfig,
+                              VectorStoreBackend vectorStoreBackend,
+                              MetricsService metricsService,
+                              @Qualifier("vectorProcessExecutor") ThreadPoolTaskExecutor vectorProcessExecutor,
+                              KeywordIndexService keywordIndexService,
+                              HybridSearchEngine hybridSearchEngine,
+                              QuantizedVectorIndex quantizedVectorIndex,
+                              VectorStoreProperties vectorStoreProperties) {
         this.embeddingModel = embeddingModel;
         this.documentMilvusMappingRepository = documentMilvusMappingRepository;
         this.userFileRecordRepository = userFileRecordRepository;
         this.milvusConfig = milvusConfig;
+        this.vectorStoreBackend = vectorStoreBackend;
+        this.metricsService = metricsService;
+        this.vectorProcessExecutor = vectorProcessExecutor;
+        this.keywordIndexService = keywordIndexService;
+        this.hybridSearchEngine = hybridSearchEngine;
+        this.quantizedVectorIndex = quantizedVectorIndex;
+        this.vectorStoreProperties = vectorStoreProperties;
     }
 
     /**
-     * 为指定用户ID和用户名创建MilvusEmbeddingStore实例
-     * 确保collection存在，如果不存在则创建
+     * 获取指定用户的向量存储实例
+     * 实例由向量存储后端统一缓存
      *
      * @param userId 用户ID
      * @param username 用户名
-     * @return MilvusEmbeddingStore实例
+     * @return 向量存储实例
      */
-    private MilvusEmbeddingStore getUserEmbeddingStore(Long userId, String username) {
-        // 生成用户专属collection名称
-        String collectionName = username + "_" + userId;
-
-        // 检查collection是否存在，如果不存在则创建
-        ensureCollectionExists(collectionName);
-
-        // 创建并返回MilvusEmbeddingStore实例
-        return MilvusEmbeddingStore.builder()
-                .host(milvusConfig.getHost())
-                .port(milvusConfig.getPort())
-                .collectionName(collectionName)
-                .dimension(milvusConfig.getDimension())
-                .idFieldName("id")
-                .textFieldName("text")
-                .vectorFieldName("vector")
-                .build();
+    private EmbeddingStore<TextSegment> getUserEmbeddingStore(Long userId, String username) {
+        return vectorStoreBackend.getStore(userId, username);
     }
 
     /**
-     * 确保指定的collection存在，如果不存在则创建
+     * 以指定的向量ID和分块序号写入一组分块（流式入库和更新文档使用）
+     * <p>
+     * 按条数和字节数切分并发写入；失败时本次已写入的部分会被删除，之前写入的向量由调用方通过{@link #removeVectors}清理
+     * </p>
      *
-     * @param collectionName collection名称
+     * @param fileRecordId 文件记录ID
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param milvusIds 向量ID，与分块一一对应
+     * @param chunkIndexes 分块在文档中的序号，与分块一一对应
+     * @param chunks 分块文本
+     * @param pages 分块所在页码，与分块一一对应，元素为null表示页码未知
+     * @param embeddings 向量嵌入
+     * @param documentInfo 文档信息
      */
-    private void ensureCollectionExists(String collectionName) {
-        try {
-            // 创建Milvus客户端连接
-            ConnectParam connectParam = ConnectParam.newBuilder()
-                    .withHost(milvusConfig.getHost())
-                    .withPort(milvusConfig.getPort())
-                    .build();
+    public void storeChunks(Long fileRecordId, Long userId, String username, String[] milvusIds, int[] chunkIndexes,
+                            List<String> chunks, List<String> pages, List<Embedding> embeddings, DocumentInfo documentInfo) {
+        if (embeddings.size() != chunks.size()) {
+            throw new IllegalArgumentException("分块数量(" + chunks.size() + ")与向量数量(" + embeddings.size() + ")不一致");
+        }
+        EmbeddingStore<TextSegment> userEmbeddingStore = getUserEmbeddingStore(userId, username);
+        List<TextSegment> segments = buildSegments(fileRecordId, chunkIndexes, chunks, pages, documentInfo);
+        long startTime = System.currentTimeMillis();
+        insertBatches(userEmbeddingStore, milvusIds, embeddings, segments, planInsertBatches(segments));
+        quantizedVectorIndex.add(userId, Arrays.asList(milvusIds), embeddings);
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        metricsService.updateMilvusInsertThroughput(chunks.size() * 1000L / elapsed);
+    }
 
-            MilvusServiceClient milvusClient = new MilvusServiceClient(connectParam);
+    /**
+     * 计算分块的向量ID
+     * <p>
+     * 由文件记录ID和分块序号确定性生成，同一分块重复写入时ID不变，
+     * 中断的入库任务恢复时据此推算已写入批次的ID并清理未完成批次的残留
+     * </p>
+     *
+     * @param fileRecordId 文件记录ID
+     * @param chunkIndex 分块序号
+     * @return 向量ID
+     */
+    public static String vectorId(Long fileRecordId, int chunkIndex) {
+        return UUID.nameUUIDFromBytes((fileRecordId + ":" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
+    }
 
-            // 检查collection是否存在
-            R<Boolean> hasCollectionResponse = milvusClient.hasCollection(HasCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build());
+    /**
+     * 计算一段连续分块的向量ID
+     *
+     * @param fileRecordId 文件记录ID
+     * @param firstChunkIndex 第一个分块序号
+     * @param count 分块数量
+     * @return 按分块顺序排列的向量ID
+     */
+    public static String[] vectorIds(Long fileRecordId, int firstChunkIndex, int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = vectorId(fileRecordId, firstChunkIndex + i);
+        }
+        return ids;
+    }
 
-            if (!hasCollectionResponse.getData()) {
-                log.info("Collection {} 不存在，将依赖MilvusEmbeddingStore自动创建", collectionName);
-                // 实际的collection创建会在第一次使用MilvusEmbeddingStore时自动完成
-            } else {
-                log.debug("Collection {} 已存在", collectionName);
+    /**
+     * 计算指定文档版本中新写入分块的向量ID
+     * <p>
+     * 更新文档时保留的分块沿用原ID但序号可能变化，新分块的ID加入版本号，避免与保留分块的ID冲突；
+     * 版本1与{@link #vectorId(Long, int)}一致
+     * </p>
+     *
+     * @param fileRecordId 文件记录ID
+     * @param version 文档版本
+     * @param chunkIndex 分块序号
+     * @return 向量ID
+     */
+    public static String vectorId(Long fileRecordId, int version, int chunkIndex) {
+        if (version <= 1) {
+            return vectorId(fileRecordId, chunkIndex);
+        }
+        return UUID.nameUUIDFromBytes((fileRecordId + ":" + version + ":" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * 构建一条映射记录
+     *
+     * @param fileRecordId 文件记录ID
+     * @param userId 用户ID
+     * @param milvusId 分块自己的向量ID
+     * @param vectorIndex 分块序号
+     * @param contentHash 内容摘要
+     * @param simhash SimHash指纹，可为null
+     * @param refMilvusId 重复分块引用的向量ID，分块持有自己的向量时为null
+     * @param now 创建时间
+     * @return 映射记录
+     */
+    public static DocumentMilvusMapping newMapping(Long fileRecordId, Long userId, String milvusId, int vectorIndex,
+                                                   String contentHash, Long simhash, String refMilvusId, LocalDateTime now) {
+        DocumentMilvusMapping mapping = new DocumentMilvusMapping();
+        mapping.setFileRecordId(fileRecordId);
+        mapping.setUserId(userId);
+        mapping.setMilvusId(milvusId);
+        mapping.setVectorIndex(vectorIndex);
+        mapping.setContentHash(contentHash);
+        mapping.setSimhash(simhash);
+        mapping.setRefMilvusId(refMilvusId);
+        mapping.setGmtCreate(now);
+        mapping.setGmtModified(now);
+        mapping.setIsDeleted(0);
+        return mapping;
+    }
+
+    /**
+     * 保存文件与向量ID的映射关系
+     *
+     * @param mappings 按分块顺序排列的映射记录
+     */
+    public void saveVectorMappings(List<DocumentMilvusMapping> mappings) {
+        documentMilvusMappingRepository.insertBatch(mappings, VectorStoreConstants.MAPPING_INSERT_BATCH_SIZE);
+    }
+
+    /**
+     * 覆盖保存文件与向量ID的映射关系，先删除该文件已有的映射（恢复中断的入库使用）
+     *
+     * @param fileRecordId 文件记录ID
+     * @param mappings 按分块顺序排列的映射记录
+     */
+    public void replaceVectorMappings(Long fileRecordId, List<DocumentMilvusMapping> mappings) {
+        int purged = documentMilvusMappingRepository.purgeByFileRecordId(fileRecordId);
+        if (purged > 0) {
+            log.info("文件 {} 清理了 {} 条残留的向量映射", fileRecordId, purged);
+        }
+        saveVectorMappings(mappings);
+    }
+
+    /**
+     * 查询文档当前有效的映射关系（不经过缓存）
+     *
+     * @param fileRecordId 文件记录ID
+     * @return 按向量索引排序的映射记录
+     */
+    public List<DocumentMilvusMapping> findDocumentMappings(Long fileRecordId) {
+        List<DocumentMilvusMapping> mappings = new ArrayList<>(
+                documentMilvusMappingRepository.findByFileRecordIdAndIsDeleted(fileRecordId, 0));
+        mappings.sort(Comparator.comparing(DocumentMilvusMapping::getVectorIndex));
+        return mappings;
+    }
+
+    /**
+     * 在一个事务中提交文档更新：保存文件记录，更新已有映射（调整位置或标记删除），插入新分块的映射
+     *
+     * @param record 已修改的文件记录
+     * @param changedMappings 位置变化或已消失的原有映射
+     * @param newMappings 新分块的映射
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @Caching(evict = {
+        @CacheEvict(value = "documentMappings", key = "#record.id"),
+        @CacheEvict(value = "userVectorStats", allEntries = true),
+        @CacheEvict(value = "vectorCount", allEntries = true),
+        @CacheEvict(value = "userMappings", key = "#record.userId")
+    })
+    public void applyDocumentUpdate(UserFileRecord record, List<DocumentMilvusMapping> changedMappings,
+                                    List<DocumentMilvusMapping> newMappings) {
+        userFileRecordRepository.save(record);
+        documentMilvusMappingRepository.updateBatch(changedMappings, VectorStoreConstants.MAPPING_INSERT_BATCH_SIZE);
+        documentMilvusMappingRepository.insertBatch(newMappings, VectorStoreConstants.MAPPING_INSERT_BATCH_SIZE);
+    }
+
+    /**
+     * 查询指定的向量ID中已写入向量库的部分
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param milvusIds Milvus向量ID
+     * @return 已存在的向量ID
+     */
+    public Set<String> existingVectorIds(Long userId, String username, Collection<String> milvusIds) {
+        Set<String> existing = new HashSet<>();
+        if (milvusIds.isEmpty() || !vectorStoreBackend.exists(userId, username)) {
+            return existing;
+        }
+        for (VectorStoreBackend.StoredVector vector : vectorStoreBackend.fetch(userId, username, milvusIds, false, true)) {
+            existing.add(vector.id());
+        }
+        return existing;
+    }
+
+    /**
+     * 释放已标记删除的映射所持有的向量
+     * <p>
+     * 引用其他向量的映射不持有向量，直接跳过；持有的向量仍被其他未删除的映射引用时不删除，
+     * 而是把第一个引用方提升为持有方，其他引用方保持不变。提升到其他文档时重写向量的文档元数据，
+     * 检索结果归属到仍存在的文档。调用前映射的删除标记必须已提交。
+     * </p>
+     *
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param released 已标记删除的映射
+     */
+    public void releaseVectors(Long userId, String username, List<DocumentMilvusMapping> released) {
+        Map<String, DocumentMilvusMapping> owners = new LinkedHashMap<>();
+        for (DocumentMilvusMapping mapping : released) {
+            if (mapping.getRefMilvusId() == null) {
+                owners.put(mapping.getMilvusId(), mapping);
             }
+        }
+        if (owners.isEmpty()) {
+            return;
+        }
+
+        Map<String, DocumentMilvusMapping> heirs = new LinkedHashMap<>();
+        for (DocumentMilvusMapping reference : documentMilvusMappingRepository.findReferences(owners.keySet())) {
+            heirs.putIfAbsent(reference.getRefMilvusId(), reference);
+        }
+        List<String> removable = new ArrayList<>();
+        List<DocumentMilvusMapping> reassigned = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, DocumentMilvusMapping> entry : owners.entrySet()) {
+            DocumentMilvusMapping heir = heirs.get(entry.getKey());
+            if (heir == null) {
+                removable.add(entry.getKey());
+                continue;
+            }
+            heir.setMilvusId(entry.getKey());
+            heir.setRefMilvusId(null);
+            heir.setGmtModified(now);
+            if (!heir.getFileRecordId().equals(entry.getValue().getFileRecordId())) {
+                reassigned.add(heir);
+            }
+        }
+        if (!heirs.isEmpty()) {
+            documentMilvusMappingRepository.updateBatch(new ArrayList<>(heirs.values()),
+                    VectorStoreConstants.MAPPING_INSERT_BATCH_SIZE);
+            log.info("用户 {}({}) {} 条仍被引用的向量转由其他分块持有", username, userId, heirs.size());
+        }
+        removeVectors(userId, username, removable);
+        reassignVectors(userId, username, reassigned);
+    }
 
-            // 关闭客户端连接
-            milvusClient.close();
+    /**
+     * 把向量的文档元数据改写为新持有方的文档，向量、文本和其余元数据从向量库读取，不重新嵌入
+     */
+    private void reassignVectors(Long userId, String username, List<DocumentMilvusMapping> heirs) {
+        if (heirs.isEmpty()) {
+            return;
+        }
+        Map<String, DocumentMilvusMapping> byId = new LinkedHashMap<>();
+        for (DocumentMilvusMapping heir : heirs) {
+            byId.put(heir.getMilvusId(), heir);
+        }
+        try {
+            List<VectorStoreBackend.StoredVector> stored = vectorStoreBackend.fetch(userId, username, byId.keySet(), true, true);
+
+            Map<Long, UserFileRecord> records = new HashMap<>();
+            List<String> milvusIds = new ArrayList<>(stored.size());
+            List<Embedding> embeddings = new ArrayList<>(stored.size());
+            List<TextSegment> segments = new ArrayList<>(stored.size());
+            for (VectorStoreBackend.StoredVector vector : stored) {
+                DocumentMilvusMapping heir = byId.get(vector.id());
+                UserFileRecord record = records.computeIfAbsent(heir.getFileRecordId(),
+                        id -> userFileRecordRepository.findById(id).orElse(null));
+                milvusIds.add(heir.getMilvusId());
+                embeddings.add(Embedding.from(vector.vector()));
+                // 保留已存储的元数据（页码、标签等），只改写文档归属相关的字段
+                Map<String, Object> values = new LinkedHashMap<>();
+                vector.metadata().forEach((key, value) -> {
+                    if (value != null) {
+                        values.put(key, value instanceof Integer || value instanceof Long || value instanceof Float
+                                || value instanceof Double || value instanceof String ? value : String.valueOf(value));
+                    }
+                });
+                values.put("fileRecordId", heir.getFileRecordId().toString());
+                values.put("title", record != null ? record.getFileName() : "Unknown");
+                values.put("fileType", record != null ? record.getFileType() : "Unknown");
+                values.put("chunkIndex", String.valueOf(heir.getVectorIndex()));
+                segments.add(TextSegment.from(vector.text(), Metadata.from(values)));
+            }
+            EmbeddingStore<TextSegment> store = getUserEmbeddingStore(userId, username);
+            store.removeAll(milvusIds);
+            store.addAll(milvusIds, embeddings, segments);
+            log.info("用户 {}({}) 已改写 {} 条向量的文档归属", username, userId, milvusIds.size());
         } catch (Exception e) {
-            log.error("检查collection {} 失败: {}", collectionName, e.getMessage(), e);
-            // 不抛出异常，让MilvusEmbeddingStore处理collection创建
-            log.info("将继续依赖MilvusEmbeddingStore自动处理collection创建");
+            log.warn("用户 {}({}) 改写向量文档归属失败，检索结果仍显示原文档: {}", username, userId, e.getMessage());
         }
     }
 
     /**
-     * 存储文档的向量表示
+     * 删除指定的向量（回滚未完成的入库，或清理文档更新后消失的分块）
      *
-     * @param fileRecordId 文件记录ID
      * @param userId 用户ID
      * @param username 用户名
-     * @param chunks 文档分块
-     * @param embeddings 向量嵌入
-     * @param documentInfo 文档信息
+     * @param milvusIds Milvus向量ID
      */
-    public void storeDocument(Long fileRecordId, Long userId, String username, String[] chunks, List<Embedding> embeddings, DocumentInfo documentInfo) {
+    public void removeVectors(Long userId, String username, Collection<String> milvusIds) {
+        if (milvusIds.isEmpty()) {
+            return;
+        }
+        quantizedVectorIndex.remove(userId, milvusIds);
         try {
-            log.info("用户 {}({}) 正在存储文档到专属collection", username, userId);
-
-            // 为用户创建独立的MilvusEmbeddingStore实例
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
-
-            List<DocumentMilvusMapping> mappings = new ArrayList<>();
-
-            for (int i = 0; i < chunks.length; i++) {
-                TextSegment segment = TextSegment.from(
-                        chunks[i],
-                        Metadata.from(
-                                Map.of(
-                                        "fileRecordId", fileRecordId.toString(),
-                                        "title", (documentInfo != null) ? String.valueOf(documentInfo) : "Unknown",
-                                        "fileType", "Unknown",
-                                        "chunkIndex", String.valueOf(i),
-                                        "tags", documentInfo.getTags() != null ? documentInfo.getTags() : ""
-                                )
-                        )
-                );
-
-                // 存储向量并获取向量ID
-                String milvusId = userEmbeddingStore.add(embeddings.get(i), segment);
-
-                // 记录文件ID与向量ID的映射关系
-                DocumentMilvusMapping mapping = new DocumentMilvusMapping();
-                mapping.setFileRecordId(fileRecordId);
-                mapping.setMilvusId(milvusId);
-                mapping.setVectorIndex(i);
-                mapping.setGmtCreate(LocalDateTime.now());
-                mapping.setGmtModified(LocalDateTime.now());
-                mapping.setIsDeleted(0);
-                mapping.setUserId(userId);
-                mappings.add(mapping);
+            getUserEmbeddingStore(userId, username).removeAll(milvusIds);
+            log.info("用户 {}({}) 已删除 {} 条向量", username, userId, milvusIds.size());
+        } catch (Exception e) {
+            log.warn("用户 {}({}) 删除向量失败: {}", username, userId, e.getMessage());
+        }
+    }
 
+    /**
+     * 构建带元数据的文本片段
+     */
+    private List<TextSegment> buildSegments(Long fileRecordId, int[] chunkIndexes, List<String> chunks,
+                                            List<String> pages, DocumentInfo documentInfo) {
+        List<TextSegment> segments = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Metadata metadata = Metadata.from(
+                    Map.of(
+                            "fileRecordId", fileRecordId.toString(),
+                            "title", (documentInfo != null) ? String.valueOf(documentInfo) : "Unknown",
+                            "fileType", "Unknown",
+                            "chunkIndex", String.valueOf(chunkIndexes[i]),
+                            "tags", documentInfo.getTags() != null ? documentInfo.getTags() : ""
+                    )
+            );
+            String page = pages != null ? pages.get(i) : null;
+            if (page != null) {
+                metadata.put("page", page);
             }
+            segments.add(TextSegment.from(chunks.get(i), metadata));
+        }
+        return segments;
+    }
 
-            // 批量保存映射关系到数据库
-            documentMilvusMappingRepository.saveAll(mappings);
+    /**
+     * 按条数和估算字节数切分写入批次
+     *
+     * @param segments 文本片段
+     * @return 批次区间列表，每项为[起始下标, 结束下标)
+     */
+    private List<int[]> planInsertBatches(List<TextSegment> segments) {
+        int maxCount = Math.max(1, milvusConfig.getInsertBatchSize());
+        long maxBytes = milvusConfig.getInsertMaxBatchBytes();
+        long vectorBytes = (long) milvusConfig.getDimension() * Float.BYTES;
+
+        List<int[]> batches = new ArrayList<>();
+        int batchStart = 0;
+        long batchBytes = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            // 文本按UTF-8最坏情况估算，另加元数据开销
+            long rowBytes = vectorBytes + segments.get(i).text().length() * 3L + 256;
+            int batchCount = i - batchStart;
+            if (batchCount > 0 && (batchCount >= maxCount || batchBytes + rowBytes > maxBytes)) {
+                batches.add(new int[]{batchStart, i});
+                batchStart = i;
+                batchBytes = 0;
+            }
+            batchBytes += rowBytes;
+        }
+        if (batchStart < segments.size()) {
+            batches.add(new int[]{batchStart, segments.size()});
+        }
+        return batches;
+    }
 
-            log.info("用户 {}({}) 成功存储文档: {}, 分块数量: {}", username, userId, fileRecordId, chunks.length);
+    /**
+     * 分批写入向量，最多同时有 max-in-flight 个批次在途
+     * <p>
+     * 任一批次失败时等待其余批次结束，并删除已写入的向量后抛出异常
+     * </p>
+     *
+     * @param milvusIds 与分块顺序一致的预分配向量ID
+     */
+    private void insertBatches(EmbeddingStore<TextSegment> store, String[] milvusIds, List<Embedding> embeddings,
+                               List<TextSegment> segments, List<int[]> batches) {
+        boolean[] inserted = new boolean[segments.size()];
+        Semaphore inFlight = new Semaphore(Math.max(1, milvusConfig.getInsertMaxInFlight()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+
+        try {
+            for (int[] range : batches) {
+                inFlight.acquire();
+                if (futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    inFlight.release();
+                    break;
+                }
+                CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+                    long batchStart = System.currentTimeMillis();
+                    store.addAll(Arrays.asList(milvusIds).subList(range[0], range[1]),
+                            embeddings.subList(range[0], range[1]), segments.subList(range[0], range[1]));
+                    Arrays.fill(inserted, range[0], range[1], true);
+                    metricsService.recordMilvusInsertBatch(range[1] - range[0], System.currentTimeMillis() - batchStart);
+                }, vectorProcessExecutor).whenComplete((result, error) -> inFlight.release());
+                futures.add(future);
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rollbackInsertedVectors(store, futures, milvusIds, inserted);
+            throw new RuntimeException("批量写入向量被中断", e);
+        } catch (CompletionException e) {
+            rollbackInsertedVectors(store, futures, milvusIds, inserted);
+            throw new RuntimeException("批量写入向量失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 删除部分写入成功的向量
+     */
+    private void rollbackInsertedVectors(EmbeddingStore<TextSegment> store, List<CompletableFuture<Void>> futures,
+                                         String[] milvusIds, boolean[] inserted) {
+        futures.forEach(f -> f.handle((r, e) -> null).join());
+        List<String> insertedIds = new ArrayList<>();
+        for (int i = 0; i < milvusIds.length; i++) {
+            if (inserted[i]) {
+                insertedIds.add(milvusIds[i]);
+            }
+        }
+        if (insertedIds.isEmpty()) {
+            return;
+        }
+        try {
+            store.removeAll(insertedIds);
+            log.info("已回滚 {} 条部分写入的向量", insertedIds.size());
         } catch (Exception e) {
-            log.error("用户 {}({}) 存储文档向量失败: {}", username, userId, e.getMessage(), e);
-            throw new RuntimeException("存储文档向量失败: " + e.getMessage(), e);
+            log.warn("回滚部分写入的向量失败: {}", e.getMessage());
         }
     }
 
@@ -199,11 +535,31 @@ public class VectorStoreService {
      * @return 搜索结果列表
      */
     public List<SearchResult> semanticSearch(String query, Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username) {
+        return semanticSearch(query, queryEmbedding, maxResults, minScore, userId, username, null);
+    }
+
+    /**
+     * 按检索档位进行语义搜索
+     *
+     * @param profile 检索档位，为null时使用默认档位
+     * @see #semanticSearch(String, Embedding, int, double, Long, String)
+     */
+    public List<SearchResult> semanticSearch(String query, Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username,
+                                             SearchRequest.SearchProfile profile) {
         try {
             log.info("用户 {}({}) 正在进行语义搜索", username, userId);
 
-            // 为用户创建独立的MilvusEmbeddingStore实例
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
+            // 优先扫描进程内的量化索引，索引尚未加载或不适用时走向量存储检索
+            VectorStoreProperties.SearchParams searchParams = vectorStoreProperties.searchParams(profile);
+            List<SearchResult> quantizedResults = quantizedVectorIndex.search(
+                    queryEmbedding, maxResults, minScore, userId, username, searchParams.getRescoreMultiplier());
+            if (quantizedResults != null) {
+                log.info("用户 {}({}) 语义搜索完成（量化索引），返回 {} 条结果", username, userId, quantizedResults.size());
+                return quantizedResults;
+            }
+
+            // 获取用户专属的向量存储实例，检索参数按档位确定
+            EmbeddingStore<TextSegment> userEmbeddingStore = vectorStoreBackend.getStore(userId, username, profile);
 
             EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
                     .queryEmbedding(queryEmbedding)
@@ -221,6 +577,7 @@ public class VectorStoreService {
                         result.setContent(match.embedded().text());
                         result.setScore(match.score());
                         result.setSource(match.embedded().metadata().getString("fileType"));
+                        result.setPage(match.embedded().metadata().getString("page"));
                         try {
                             result.setPosition(Integer.parseInt(match.embedded().metadata().getString("chunkIndex")));
                         } catch (NumberFormatException e) {
@@ -251,50 +608,8 @@ public class VectorStoreService {
         try {
             log.info("用户 {}({}) 正在进行关键词搜索", username, userId);
 
-            // 为用户创建独立的MilvusEmbeddingStore实例
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
-
-            // 使用Milvus的元数据过滤功能进行关键词搜索
-            List<SearchResult> allMatches = new ArrayList<>();
-
-            // 直接使用过滤条件获取所有属于该用户的文档
-            // 限制最大结果数量以提高性能
-            int maxSearchResults = Math.min(maxResults * 10, 1000); // 最多获取1000个结果或10倍请求数量
-
-            for (EmbeddingMatch<TextSegment> match : userEmbeddingStore.search(EmbeddingSearchRequest.builder()
-                    .queryEmbedding(Embedding.from(new float[embeddingModel.dimension()])) // 零向量
-                    .maxResults(maxSearchResults) // 限制结果数量以提高性能
-                    .build()).matches()) {
-
-                String content = match.embedded().text();
-                String queryOriginal = query;
-
-                // 不区分大小写匹配
-                if (content.toLowerCase().contains(queryOriginal.toLowerCase())) {
-                    SearchResult result = new SearchResult();
-                    result.setFileRecordId(match.embedded().metadata().getString("fileRecordId"));
-                    result.setTitle(match.embedded().metadata().getString("title"));
-                    result.setContent(content);
-                    result.setSource(match.embedded().metadata().getString("fileType"));
-                    try {
-                        result.setPosition(Integer.parseInt(match.embedded().metadata().getString("chunkIndex")));
-                    } catch (NumberFormatException e) {
-                        result.setPosition(0); // 默认位置为0
-                    }
-
-                    // 计算关键词匹配度
-                    double score = calculateKeywordScore(content, queryOriginal);
-                    result.setScore(score);
-
-                    allMatches.add(result);
-                }
-            }
-
-            // 按匹配度排序并限制结果数量
-            List<SearchResult> results = allMatches.stream()
-                    .sorted((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()))
-                    .limit(maxResults)
-                    .collect(Collectors.toList());
+            // 基于本地倒排索引进行BM25检索，覆盖用户的全部分块
+            List<SearchResult> results = keywordIndexService.search(query, maxResults, userId, username);
 
             log.info("用户 {}({}) 关键词搜索完成，返回 {} 条结果", username, userId, results.size());
             return results;
@@ -316,37 +631,26 @@ public class VectorStoreService {
      * @return 搜索结果列表
      */
     public List<SearchResult> hybridSearch(String query, Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username) {
+        return hybridSearch(query, queryEmbedding, maxResults, minScore, userId, username, null);
+    }
+
+    /**
+     * 按检索档位进行混合搜索，档位只影响语义检索一路
+     *
+     * @param profile 检索档位，为null时使用默认档位
+     * @see #hybridSearch(String, Embedding, int, double, Long, String)
+     */
+    public List<SearchResult> hybridSearch(String query, Embedding queryEmbedding, int maxResults, double minScore, Long userId, String username,
+                                           SearchRequest.SearchProfile profile) {
         try {
             log.info("用户 {}({}) 正在进行混合搜索", username, userId);
 
-            // 获取语义搜索结果
-            List<SearchResult> semanticResults = semanticSearch(query, queryEmbedding, maxResults, minScore, userId, username);
-
-            // 获取关键词搜索结果
-            List<SearchResult> keywordResults = keywordSearch(query, maxResults, userId, username);
-
-            // 合并结果并去重
-            Map<String, SearchResult> combinedResults = new LinkedHashMap<>();
-
-            // 优先语义搜索结果
-            for (SearchResult result : semanticResults) {
-                String key = result.getFileRecordId() + "_" + result.getPosition();
-                combinedResults.put(key, result);
-            }
-
-            // 添加关键词搜索结果
-            for (SearchResult result : keywordResults) {
-                String key = result.getFileRecordId() + "_" + result.getPosition();
-                if (!combinedResults.containsKey(key)) {
-                    combinedResults.put(key, result);
-                }
-            }
-
-            // 按分数排序并限制结果数量
-            List<SearchResult> results = combinedResults.values().stream()
-                    .sorted((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()))
-                    .limit(maxResults)
-                    .collect(Collectors.toList());
+            // 两路并发检索，各自召回更多候选供融合
+            int candidates = hybridSearchEngine.candidateCount(maxResults);
+            List<SearchResult> results = hybridSearchEngine.search(
+                    () -> semanticSearch(query, queryEmbedding, candidates, minScore, userId, username, profile),
+                    () -> keywordSearch(query, candidates, userId, username),
+                    maxResults);
 
             log.info("用户 {}({}) 混合搜索完成，返回 {} 条结果", username, userId, results.size());
             return results;
@@ -373,86 +677,27 @@ public class VectorStoreService {
         try {
             log.info("用户 {}({}) 正在删除文档向量: {}", username, userId, fileRecordId);
 
-            // 为用户创建独立的MilvusEmbeddingStore实例
-            MilvusEmbeddingStore userEmbeddingStore = getUserEmbeddingStore(userId, username);
+            // 直接读取数据库，缓存中的映射可能因向量转由其他分块持有而过期
+            List<DocumentMilvusMapping> mappings = findDocumentMappings(fileRecordId);
 
-            // 查找并删除数据库中的映射关系
-            List<DocumentMilvusMapping> mappings = getDocumentMappingsFromCache(fileRecordId);
-
-            // 删除Milvus中的向量数据
-            int deletedCount = 0;
-            for (DocumentMilvusMapping mapping : mappings) {
-                try {
-                    // 尝试从Milvus中删除向量
-                    userEmbeddingStore.remove(mapping.getMilvusId());
-                    log.info("用户 {}({}) 成功删除向量ID: {}", username, userId, mapping.getMilvusId());
-                    deletedCount++;
-                } catch (Exception e) {
-                    // 如果删除失败，只记录日志
-                    log.warn("用户 {}({}) 删除向量ID失败: {}, 错误: {}", username, userId, mapping.getMilvusId(), e.getMessage());
-                }
-            }
-
-            // 标记映射关系为已删除
+            // 先标记映射关系为已删除，再释放向量：仍被其他文档引用的向量转由引用方持有
             for (DocumentMilvusMapping mapping : mappings) {
                 mapping.setIsDeleted(1);
                 mapping.setGmtModified(LocalDateTime.now());
             }
             documentMilvusMappingRepository.saveAll(mappings);
+            releaseVectors(userId, username, mappings);
+
+            // 同步删除关键词索引段
+            keywordIndexService.removeDocument(userId, fileRecordId);
 
-            log.info("用户 {}({}) 删除文档向量完成: {}, 共删除 {} 条记录", username, userId, fileRecordId, deletedCount);
+            log.info("用户 {}({}) 删除文档向量完成: {}, 共删除 {} 条映射", username, userId, fileRecordId, mappings.size());
         } catch (Exception e) {
             log.error("用户 {}({}) 删除文档向量失败: {}", username, userId, e.getMessage(), e);
             throw new RuntimeException("删除文档向量失败: " + e.getMessage(), e);
         }
     }
 
-    private int countOccurrences(String content, String query) {
-        String[] words = query.split("\\s+");
-        int count = 0;
-        for (String word : words) {
-            int index = 0;
-            while ((index = content.indexOf(word, index)) != -1) {
-                count++;
-                index += word.length();
-            }
-        }
-        return count;
-    }
-
-    /**
-     * 计算关键词匹配度分数
-     */
-    private double calculateKeywordScore(String content, String query) {
-        // 基础分数
-        double score = 0.5;
-
-        // 转为小写进行比较
-        String contentLower = content.toLowerCase();
-        String queryLower = query.toLowerCase();
-
-        // 完全匹配加分
-        if (contentLower.contains(queryLower)) {
-            score += 0.3;
-        }
-
-        // 计算词频匹配度
-        String[] queryWords = queryLower.split("\\s+");
-        int matchCount = 0;
-        for (String word : queryWords) {
-            if (contentLower.contains(word)) {
-                matchCount++;
-            }
-        }
-
-        // 根据匹配词数加分
-        if (queryWords.length > 0) {
-            score += (double) matchCount / queryWords.length * 0.2;
-        }
-
-        return Math.min(score, 1.0); // 确保分数不超过1.0
-    }
-
     /**
      * 获取指定用户的向量总数
      *
@@ -464,7 +709,7 @@ public class VectorStoreService {
             log.info("用户 {}({}) 正在获取向量总数", user.getUsername(), user.getId());
 
             // 实时查询数据库获取用户的向量总数，确保数据准确性
-            long count = documentMilvusMappingRepository.countByUserIdAndIsDeleted(user.getId(), 0);
+            long count = documentMilvusMappingRepository.countByUserIdAndIsDeletedAndRefMilvusIdIsNull(user.getId(), 0);
 
             log.info("用户 {}({}) 向量总数: {} (实时数据库查询)", user.getUsername(), user.getId(), count);
             return count;
@@ -488,29 +733,16 @@ public class VectorStoreService {
             log.info("用户 {}({}) 正在获取向量列表，页码: {}, 大小: {}", username, userId, page, size);
 
             // 生成用户专属collection名称
-            String collectionName = username + "_" + userId;
-
-            // 创建Milvus客户端连接
-            ConnectParam connectParam = ConnectParam.newBuilder()
-                    .withHost(milvusConfig.getHost())
-                    .withPort(milvusConfig.getPort())
-                    .build();
-
-            MilvusServiceClient milvusClient = new MilvusServiceClient(connectParam);
+            String collectionName = vectorStoreBackend.collectionName(userId, username);
 
             // 检查collection是否存在
-            R<Boolean> hasCollectionResponse = milvusClient.hasCollection(HasCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build());
-
-            if (!hasCollectionResponse.getData()) {
+            if (!vectorStoreBackend.exists(userId, username)) {
                 log.info("Collection {} 不存在，返回空结果", collectionName);
-                milvusClient.close();
                 return new PageResult<>(new ArrayList<>(), page, size, 0);
             }
 
             // 实时查询数据库获取准确的向量总数
-            long totalCount = documentMilvusMappingRepository.countByUserIdAndIsDeleted(userId, 0);
+            long totalCount = documentMilvusMappingRepository.countByUserIdAndIsDeletedAndRefMilvusIdIsNull(userId, 0);
             
             // 获取分页数据
             List<DocumentMilvusMapping> allMappings = getUserMappingsFromCache(userId);
@@ -521,35 +753,19 @@ public class VectorStoreService {
 
             // 如果偏移量大于总数，返回空结果
             if (offset >= totalCount) {
-                milvusClient.close();
                 return new PageResult<>(new ArrayList<>(), page, size, totalCount);
             }
 
             // 使用更简单的方法：直接基于offset和limit分页查询，然后用数据库映射信息补充
-            QueryParam queryParam = QueryParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withOffset((long) offset)
-                    .withLimit((long) size)
-                    .withOutFields(Arrays.asList("id", "text"))
-                    .build();
+            List<VectorStoreBackend.StoredVector> vectors = vectorStoreBackend.page(userId, username, offset, size);
 
-            // 执行查询获取向量数据
-            R<io.milvus.grpc.QueryResults> response = milvusClient.query(queryParam);
-            
             // 创建VectorData列表
             List<VectorData> vectorDataList = new ArrayList<>();
-            if (response.getStatus() == 0 && response.getData() != null) { // 检查查询是否成功
-                QueryResultsWrapper queryResultsWrapper = new QueryResultsWrapper(response.getData());
-                
-                // 获取各字段的数据
-                List<?> ids = queryResultsWrapper.getFieldWrapper("id").getFieldData();
-                List<?> texts = queryResultsWrapper.getFieldWrapper("text").getFieldData();
-                
+            if (!vectors.isEmpty()) {
                 // 构建VectorData对象列表
-                int resultCount = ids.size();
-                for (int i = 0; i < resultCount; i++) {
-                    String milvusId = ids.get(i).toString();
-                    String text = texts.size() > i ? texts.get(i).toString() : "";
+                for (VectorStoreBackend.StoredVector vector : vectors) {
+                    String milvusId = vector.id();
+                    String text = vector.text() != null ? vector.text() : "";
                     
                     VectorData vectorData = new VectorData();
                     vectorData.setId(milvusId);
@@ -587,7 +803,7 @@ public class VectorStoreService {
                     vectorDataList.add(vectorData);
                 }
             } else {
-                log.warn("Milvus查询失败或返回空结果，状态码: {}", response.getStatus());
+                log.warn("Collection {} 分页查询返回空结果，偏移量: {}", collectionName, offset);
             }
 
             // vectorDataList已经在上面构建好了
@@ -597,9 +813,6 @@ public class VectorStoreService {
             
             log.info("用户 {}({}) 获取向量列表完成，返回 {} 条结果", username, userId, vectorDataList.size());
             
-            // 关闭客户端连接
-            milvusClient.close();
-            
             return result;
         } catch (Exception e) {
             log.error("用户 {}({}) 获取向量列表失败: {}", username, userId, e.getMessage(), e);
@@ -621,7 +834,7 @@ public class VectorStoreService {
             Map<String, Object> stats = new HashMap<>();
 
             // 实时查询数据库获取准确的向量总数
-            long totalCount = documentMilvusMappingRepository.countByUserIdAndIsDeleted(userId, 0);
+            long totalCount = documentMilvusMappingRepository.countByUserIdAndIsDeletedAndRefMilvusIdIsNull(userId, 0);
             
             // 获取文件数量（也使用实时查询）
             List<DocumentMilvusMapping> mappings = getUserMappingsFromCache(userId);
@@ -631,22 +844,10 @@ public class VectorStoreService {
                     .count();
 
             // 生成用户专属collection名称
-            String collectionName = username + "_" + userId;
+            String collectionName = vectorStoreBackend.collectionName(userId, username);
 
-            // 创建Milvus客户端连接
-            ConnectParam connectParam = ConnectParam.newBuilder()
-                    .withHost(milvusConfig.getHost())
-                    .withPort(milvusConfig.getPort())
-                    .build();
-
-            MilvusServiceClient milvusClient = new MilvusServiceClient(connectParam);
-
-            // 检查collection是否存在
-            R<Boolean> hasCollectionResponse = milvusClient.hasCollection(HasCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .build());
-
-            if (!hasCollectionResponse.getData()) {
+            // 检查collection是否存在（结果由后端缓存）
+            if (!vectorStoreBackend.exists(userId, username)) {
                 log.info("Collection {} 不存在，返回默认统计信息", collectionName);
                 stats.put("totalCount", totalCount);
                 stats.put("collectionExists", false);
@@ -655,7 +856,6 @@ public class VectorStoreService {
                 stats.put("vectorStorageUsed", 0L);
                 stats.put("vectorStorageQuota", 0L);
                 stats.put("vectorStorageUsagePercentage", 0.0);
-                milvusClient.close();
                 return stats;
             }
 
@@ -689,9 +889,6 @@ public class VectorStoreService {
             log.info("用户 {}({}) 获取向量统计信息完成，总数: {}, 文件数: {}, 向量存储: {}/{}", 
                 username, userId, totalCount, fileCount, formatBytes(vectorStorageUsed), formatBytes(vectorStorageQuota));
             
-            // 关闭客户端连接
-            milvusClient.close();
-            
             return stats;
         } catch (Exception e) {
             log.error("用户 {}({}) 获取向量统计信息失败: {}", username, userId, e.getMessage(), e);
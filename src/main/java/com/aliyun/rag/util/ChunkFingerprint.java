@@ -0,0 +1,111 @@
+package com.aliyun.rag.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 分块指纹工具类
+ * <p>
+ * 精确指纹为原文的SHA-256；近似指纹为64位SimHash：文本只保留字母和数字并转为小写，
+ * 以相邻3个字符为一个特征，特征哈希按位投票得到指纹。两段文本的SimHash汉明距离越小越相似。
+ * 指纹按16位切成{@value #BANDS}段，汉明距离不超过{@value #BANDS}-1的两个指纹至少有一段完全相同，
+ * 按段等值查询即可找出全部候选。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class ChunkFingerprint {
+
+    /**
+     * 指纹分段数
+     */
+    public static final int BANDS = 4;
+
+    private static final int SHINGLE = 3;
+
+    private ChunkFingerprint() {
+    }
+
+    /**
+     * 计算内容摘要（SHA-256十六进制）
+     *
+     * @param text 文本
+     * @return 摘要
+     */
+    public static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 计算SimHash
+     *
+     * @param text 文本
+     * @param minChars 规范化后的最少字符数，过短的文本特征太少，返回null
+     * @return 指纹，文本过短时为null
+     */
+    public static Long simHash(String text, int minChars) {
+        int[] votes = new int[64];
+        int c0 = -1;
+        int c1 = -1;
+        int chars = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (!Character.isLetterOrDigit(cp)) {
+                continue;
+            }
+            int c2 = Character.toLowerCase(cp);
+            chars++;
+            if (chars >= SHINGLE) {
+                // 码点不超过21位，3个码点无损拼成一个long后再混淆
+                long feature = mix(((long) c0 << 42) | ((long) c1 << 21) | c2);
+                for (int bit = 0; bit < 64; bit++) {
+                    votes[bit] += ((feature >>> bit) & 1L) != 0 ? 1 : -1;
+                }
+            }
+            c0 = c1;
+            c1 = c2;
+        }
+        if (chars < Math.max(SHINGLE, minChars)) {
+            return null;
+        }
+        long hash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                hash |= 1L << bit;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 两个指纹的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 指纹的第index段（0为最高16位），与数据库中simhash_b0..b3生成列的取值一致
+     */
+    public static int band(long hash, int index) {
+        return (int) ((hash >>> (48 - 16 * index)) & 0xFFFF);
+    }
+
+    /**
+     * splitmix64终结函数，使相邻特征的哈希充分离散
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
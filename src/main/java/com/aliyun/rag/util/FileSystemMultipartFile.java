@@ -1,37 +1,42 @@
-package com.aliyun.rag.controller;
+package com.aliyun.rag.util;
 
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
- * 内存中的MultipartFile实现
+ * 基于本地文件的MultipartFile实现
  * <p>
- * 用于在异步处理中重新创建MultipartFile对象
+ * 用于入库任务从暂存文件恢复上传内容，读取时按需打开文件流，不把整个文件装入内存
  * </p>
  *
  * @author Jason Ma
  * @version 1.0.0
- * @since 2025-09-15
  */
-public class InMemoryMultipartFile implements MultipartFile {
-    private final byte[] content;
+public class FileSystemMultipartFile implements MultipartFile {
+
+    private final Path path;
     private final String name;
     private final String originalFilename;
     private final String contentType;
 
-    public InMemoryMultipartFile(byte[] content, String name, String originalFilename, String contentType) {
-        this.content = content;
-        this.name = name;
+    public FileSystemMultipartFile(Path path, String originalFilename, String contentType) {
+        this.path = path;
+        this.name = "file";
         this.originalFilename = originalFilename;
         this.contentType = contentType;
     }
 
-    public InMemoryMultipartFile(byte[] content, String originalFilename, String contentType) {
-        this(content, originalFilename, originalFilename, contentType);
+    /**
+     * 文件在本地磁盘上的路径
+     */
+    public Path getPath() {
+        return path;
     }
 
     @Override
@@ -51,26 +56,30 @@ public class InMemoryMultipartFile implements MultipartFile {
 
     @Override
     public boolean isEmpty() {
-        return content == null || content.length == 0;
+        return getSize() == 0;
     }
 
     @Override
     public long getSize() {
-        return content.length;
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
     }
 
     @Override
     public byte[] getBytes() throws IOException {
-        return content;
+        return Files.readAllBytes(path);
     }
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return new ByteArrayInputStream(content);
+        return Files.newInputStream(path);
     }
 
     @Override
     public void transferTo(File dest) throws IOException, IllegalStateException {
-        throw new UnsupportedOperationException("transferTo is not supported in InMemoryMultipartFile");
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package com.aliyun.rag.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 关键词分词工具类
+ * <p>
+ * 面向中英文混排文本的轻量分词：连续的字母/数字按单词切分并转为小写，
+ * 中日韩字符同时输出单字和相邻二元组（bigram），无需词典即可兼顾召回率与短语匹配。
+ * 建索引和查询使用同一套规则，保证词项一致。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class KeywordTokenizer {
+
+    /**
+     * 单个拉丁词项的最大长度，过长的串（如base64）直接截断
+     */
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private KeywordTokenizer() {
+    }
+
+    /**
+     * 对文本分词，保留重复词项（用于统计词频）
+     *
+     * @param text 原始文本
+     * @return 词项列表
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        int prevCjk = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+                if (prevCjk != -1) {
+                    tokens.add(new StringBuilder(4).appendCodePoint(prevCjk).appendCodePoint(cp).toString());
+                }
+                prevCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                prevCjk = -1;
+                if (word.length() < MAX_WORD_LENGTH) {
+                    word.appendCodePoint(Character.toLowerCase(cp));
+                }
+            } else {
+                prevCjk = -1;
+                flushWord(word, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    /**
+     * 对查询分词并去重
+     *
+     * @param query 查询文本
+     * @return 去重后的词项（保持出现顺序）
+     */
+    public static Set<String> tokenizeQuery(String query) {
+        return new LinkedHashSet<>(tokenize(query));
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
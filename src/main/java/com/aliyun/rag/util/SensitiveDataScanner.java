@@ -0,0 +1,369 @@
+package com.aliyun.rag.util;
+
+/**
+ * 单次扫描的日志脱敏器
+ * <p>
+ * 从左到右扫描一遍消息，在同一位置按以下顺序识别敏感信息并脱敏：
+ * <ul>
+ *     <li>password、api_key/api-key/apikey、token、secret后跟[:=]的值，以及Bearer令牌，值替换为****</li>
+ *     <li>邮箱地址</li>
+ *     <li>IPv4地址</li>
+ *     <li>连续数字：11位1[3-9]开头为手机号，12~15位且末11位为手机号的视为带国家码（如+86、0086）的手机号，
+ *     18位（或17位加X）为身份证号，16~20位为银行卡号</li>
+ * </ul>
+ * 邮箱、手机号、身份证号、银行卡号和IP的脱敏结果与{@link SensitiveDataMasker}对应方法一致。
+ * 数字规则按整段连续数字判断，时间戳等其他长度的数字不会被部分脱敏。
+ * 消息中没有数字、@、:、=和bearer时直接返回原消息；没有命中任何规则时也不复制字符串
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class SensitiveDataScanner {
+
+    private static final String MASK = "****";
+
+    private SensitiveDataScanner() {
+    }
+
+    /**
+     * 脱敏消息中的敏感信息
+     *
+     * @param message 原消息
+     * @return 脱敏后的消息，没有敏感信息时返回原对象
+     */
+    public static String mask(String message) {
+        if (message == null || !hasTrigger(message)) {
+            return message;
+        }
+
+        int length = message.length();
+        StringBuilder out = null;
+        // 已输出到out的原消息位置
+        int copied = 0;
+        int i = 0;
+        while (i < length) {
+            char c = message.charAt(i);
+
+            // 关键字后的值
+            int valueStart = -1;
+            int valueEnd = -1;
+            switch (c) {
+                case 'p', 'P' -> {
+                    if (message.regionMatches(true, i, "password", 0, 8)) {
+                        valueStart = valueStart(message, i + 8);
+                        valueEnd = valueStart < 0 ? -1 : passwordValueEnd(message, valueStart);
+                    }
+                }
+                case 'a', 'A' -> {
+                    int keywordEnd = apiKeyEnd(message, i);
+                    if (keywordEnd > 0) {
+                        valueStart = valueStart(message, keywordEnd);
+                        valueEnd = valueStart < 0 ? -1 : base64RunEnd(message, valueStart, 16);
+                    }
+                }
+                case 't', 'T' -> {
+                    if (message.regionMatches(true, i, "token", 0, 5)) {
+                        valueStart = valueStart(message, i + 5);
+                        valueEnd = valueStart < 0 ? -1 : tokenRunEnd(message, valueStart, 20);
+                    }
+                }
+                case 's', 'S' -> {
+                    if (message.regionMatches(true, i, "secret", 0, 6)) {
+                        valueStart = valueStart(message, i + 6);
+                        valueEnd = valueStart < 0 ? -1 : base64RunEnd(message, valueStart, 16);
+                    }
+                }
+                case 'b', 'B' -> {
+                    if (message.regionMatches(true, i, "bearer", 0, 6)) {
+                        int p = i + 6;
+                        while (p < length && isWhitespace(message.charAt(p))) {
+                            p++;
+                        }
+                        if (p > i + 6) {
+                            valueStart = p;
+                            valueEnd = tokenRunEnd(message, p, 1);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+            if (valueEnd > 0) {
+                out = flush(out, message, copied, valueStart);
+                out.append(MASK);
+                copied = valueEnd;
+                i = valueEnd;
+                continue;
+            }
+
+            // 邮箱：只在本地部分的起始位置检查
+            if (isEmailLocalChar(c) && (i == 0 || !isEmailLocalChar(message.charAt(i - 1)))) {
+                int at = i + 1;
+                while (at < length && isEmailLocalChar(message.charAt(at))) {
+                    at++;
+                }
+                if (at < length && message.charAt(at) == '@') {
+                    int end = emailDomainEnd(message, at + 1);
+                    if (end > 0) {
+                        if (at - i > 1) {
+                            out = flush(out, message, copied, i);
+                            out.append(c).append(MASK).append(message, at - 1, end);
+                            copied = end;
+                        }
+                        i = end;
+                        continue;
+                    }
+                }
+            }
+
+            // IP地址和连续数字：只在数字串的起始位置检查
+            if (isDigit(c) && (i == 0 || !isDigit(message.charAt(i - 1)))) {
+                int runEnd = digitRunEnd(message, i);
+                int ipEnd = ipv4End(message, i, runEnd);
+                if (ipEnd > 0) {
+                    // 保留前两段
+                    int secondDot = message.indexOf('.', message.indexOf('.', i) + 1);
+                    out = flush(out, message, copied, secondDot + 1);
+                    out.append("*.*");
+                    copied = ipEnd;
+                    i = ipEnd;
+                    continue;
+                }
+                int runLength = runEnd - i;
+                if (runLength == 17 && runEnd < length && (message.charAt(runEnd) == 'X' || message.charAt(runEnd) == 'x')
+                        && (runEnd + 1 == length || !Character.isLetterOrDigit(message.charAt(runEnd + 1)))) {
+                    // 末位为X的身份证号
+                    runEnd++;
+                    runLength++;
+                }
+                int keepPrefix;
+                String mask;
+                if (runLength == 11 && isPhonePrefix(message, i)) {
+                    keepPrefix = 3;
+                    mask = MASK;
+                } else if (runLength >= 12 && runLength <= 15 && isPhonePrefix(message, runEnd - 11)) {
+                    // 国家码 + 手机号，保留国家码和手机号前三位
+                    keepPrefix = runLength - 8;
+                    mask = MASK;
+                } else if (runLength == 18) {
+                    keepPrefix = 6;
+                    mask = "********";
+                } else if (runLength >= 16 && runLength <= 20) {
+                    keepPrefix = 4;
+                    mask = MASK;
+                } else {
+                    i = runEnd;
+                    continue;
+                }
+                out = flush(out, message, copied, i + keepPrefix);
+                out.append(mask);
+                copied = runEnd - 4;
+                i = runEnd;
+                continue;
+            }
+            i++;
+        }
+
+        if (out == null) {
+            return message;
+        }
+        out.append(message, copied, length);
+        return out.toString();
+    }
+
+    /**
+     * 从start开始是否为手机号开头1[3-9]
+     */
+    private static boolean isPhonePrefix(String message, int start) {
+        char second = message.charAt(start + 1);
+        return message.charAt(start) == '1' && second >= '3' && second <= '9';
+    }
+
+    /**
+     * 是否包含可能触发任一规则的字符
+     */
+    private static boolean hasTrigger(String message) {
+        for (int i = 0, length = message.length(); i < length; i++) {
+            char c = message.charAt(i);
+            if (isDigit(c) || c == '@' || c == ':' || c == '=') {
+                return true;
+            }
+            if ((c == 'b' || c == 'B') && message.regionMatches(true, i, "bearer", 0, 6)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static StringBuilder flush(StringBuilder out, String message, int copied, int end) {
+        if (out == null) {
+            out = new StringBuilder(message.length() + 16);
+        }
+        out.append(message, copied, end);
+        return out;
+    }
+
+    /**
+     * 解析关键字后的 ["']?\s*[:=]\s*["']? ，返回值的起始位置，不匹配时返回-1
+     */
+    private static int valueStart(String message, int p) {
+        int length = message.length();
+        if (p < length && isQuote(message.charAt(p))) {
+            p++;
+        }
+        while (p < length && isWhitespace(message.charAt(p))) {
+            p++;
+        }
+        if (p >= length || (message.charAt(p) != ':' && message.charAt(p) != '=')) {
+            return -1;
+        }
+        p++;
+        while (p < length && isWhitespace(message.charAt(p))) {
+            p++;
+        }
+        if (p < length && isQuote(message.charAt(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * 匹配api[_-]?key，返回关键字结束位置，不匹配时返回-1
+     */
+    private static int apiKeyEnd(String message, int i) {
+        if (!message.regionMatches(true, i, "api", 0, 3)) {
+            return -1;
+        }
+        int p = i + 3;
+        if (p < message.length() && (message.charAt(p) == '_' || message.charAt(p) == '-')) {
+            p++;
+        }
+        return message.regionMatches(true, p, "key", 0, 3) ? p + 3 : -1;
+    }
+
+    private static int passwordValueEnd(String message, int start) {
+        int p = start;
+        while (p < message.length()) {
+            char c = message.charAt(p);
+            if (isQuote(c) || isWhitespace(c) || c == ',' || c == '}') {
+                break;
+            }
+            p++;
+        }
+        return p > start ? p : -1;
+    }
+
+    /**
+     * [a-zA-Z0-9+/=]{minLength,}
+     */
+    private static int base64RunEnd(String message, int start, int minLength) {
+        int p = start;
+        while (p < message.length()) {
+            char c = message.charAt(p);
+            if (!isAsciiLetterOrDigit(c) && c != '+' && c != '/' && c != '=') {
+                break;
+            }
+            p++;
+        }
+        return p - start >= minLength ? p : -1;
+    }
+
+    /**
+     * [a-zA-Z0-9._-]{minLength,}
+     */
+    private static int tokenRunEnd(String message, int start, int minLength) {
+        int p = start;
+        while (p < message.length()) {
+            char c = message.charAt(p);
+            if (!isAsciiLetterOrDigit(c) && c != '.' && c != '_' && c != '-') {
+                break;
+            }
+            p++;
+        }
+        return p - start >= minLength ? p : -1;
+    }
+
+    /**
+     * 匹配域名[a-zA-Z0-9.-]+\.[a-zA-Z]{2,}，取最长匹配，返回结束位置，不匹配时返回-1
+     */
+    private static int emailDomainEnd(String message, int start) {
+        int runEnd = start;
+        while (runEnd < message.length()) {
+            char c = message.charAt(runEnd);
+            if (!isAsciiLetterOrDigit(c) && c != '.' && c != '-') {
+                break;
+            }
+            runEnd++;
+        }
+        for (int dot = runEnd - 3; dot > start; dot--) {
+            if (message.charAt(dot) != '.') {
+                continue;
+            }
+            int p = dot + 1;
+            while (p < runEnd && isAsciiLetter(message.charAt(p))) {
+                p++;
+            }
+            if (p - dot - 1 >= 2) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 匹配\d{1,3}(\.\d{1,3}){3}，第一段为[start, firstRunEnd)，返回结束位置，不匹配时返回-1
+     */
+    private static int ipv4End(String message, int start, int firstRunEnd) {
+        if (firstRunEnd - start > 3) {
+            return -1;
+        }
+        int p = firstRunEnd;
+        for (int part = 0; part < 3; part++) {
+            if (p >= message.length() || message.charAt(p) != '.') {
+                return -1;
+            }
+            int end = digitRunEnd(message, p + 1);
+            if (end == p + 1 || end - p - 1 > 3) {
+                return -1;
+            }
+            p = end;
+        }
+        return p;
+    }
+
+    private static int digitRunEnd(String message, int start) {
+        int p = start;
+        while (p < message.length() && isDigit(message.charAt(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean isEmailLocalChar(char c) {
+        return isAsciiLetterOrDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || isDigit(c);
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    /**
+     * 与正则\s一致的ASCII空白字符
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+}
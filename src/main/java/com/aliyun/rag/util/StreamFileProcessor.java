@@ -9,7 +9,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * 流式文件处理器
@@ -32,9 +33,14 @@ public class StreamFileProcessor {
     private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
     
     /**
-     * 大文件阈值：50MB，超过此大小使用流式处理
+     * 大文件阈值：4MB，超过此大小写入临时文件，不再整体读入内存
      */
-    private static final long LARGE_FILE_THRESHOLD = 50 * 1024 * 1024;
+    private static final long LARGE_FILE_THRESHOLD = 4 * 1024 * 1024;
+    
+    /**
+     * 大文件临时目录
+     */
+    private static final Path SPOOL_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "rag-upload");
     
     /**
      * 检查文件大小并决定处理方式
@@ -57,7 +63,7 @@ public class StreamFileProcessor {
     }
     
     /**
-     * 判断是否为大文件，需要流式处理
+     * 判断是否为大文件，需要落盘处理
      *
      * @param file 上传的文件
      * @return 是否为大文件
@@ -67,40 +73,26 @@ public class StreamFileProcessor {
     }
     
     /**
-     * 流式读取文件内容
+     * 打开上传文件缓冲区
      * <p>
-     * 对于大文件使用流式处理，小文件直接读取到内存
+     * 小文件读入内存；大文件按 8KB 缓冲流式写入临时文件，解析时从磁盘按需读取；
+     * 本地暂存的文件直接引用原路径。调用方负责关闭缓冲区以删除临时文件。
      * </p>
      *
      * @param file 上传的文件
-     * @return 文件字节数组
+     * @return 文件缓冲区
      * @throws IOException 读取文件失败
      */
-    public byte[] processFileStream(MultipartFile file) throws IOException {
-        if (isLargeFile(file)) {
-            log.info("检测到大文件 {}, 使用流式处理", file.getOriginalFilename());
-            return processLargeFile(file);
-        } else {
-            log.debug("小文件 {}, 直接读取到内存", file.getOriginalFilename());
-            return file.getBytes();
+    public UploadBuffer openBuffer(MultipartFile file) throws IOException {
+        if (file instanceof FileSystemMultipartFile fileSystemFile) {
+            return UploadBuffer.ofFile(fileSystemFile.getPath());
         }
-    }
-    
-    /**
-     * 流式处理大文件
-     *
-     * @param file 大文件
-     * @return 文件字节数组
-     * @throws IOException 处理失败
-     */
-    private byte[] processLargeFile(MultipartFile file) throws IOException {
-        try (InputStream inputStream = file.getInputStream();
-             BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, DEFAULT_BUFFER_SIZE)) {
-            
-            // 对于大文件，可以考虑分块处理或临时文件存储
-            // 这里为了简化实现，仍然读取到内存，但使用缓冲流优化性能
-            return bufferedInputStream.readAllBytes();
+        if (isLargeFile(file)) {
+            log.info("检测到大文件 {}, 写入临时文件处理", file.getOriginalFilename());
+            return UploadBuffer.spool(new BufferedInputStream(file.getInputStream(), DEFAULT_BUFFER_SIZE), SPOOL_DIR);
         }
+        log.debug("小文件 {}, 直接读取到内存", file.getOriginalFilename());
+        return UploadBuffer.inMemory(file.getBytes());
     }
     
     /**
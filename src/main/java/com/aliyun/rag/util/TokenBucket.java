@@ -0,0 +1,95 @@
+package com.aliyun.rag.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶
+ * <p>
+ * 预约式实现：申请令牌时立即扣减（允许为负），返回调用方需要等待的时间，
+ * 因此单次申请量大于桶容量时也能正常排队，不会饿死。线程安全。
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNanos;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param capacity 桶容量
+     * @param refillTokens 每个周期补充的令牌数
+     * @param period 周期长度
+     * @param unit 周期单位
+     */
+    public TokenBucket(double capacity, double refillTokens, long period, TimeUnit unit) {
+        if (capacity <= 0 || refillTokens <= 0 || period <= 0) {
+            throw new IllegalArgumentException("令牌桶参数必须为正数");
+        }
+        this.capacity = capacity;
+        this.refillPerNanos = refillTokens / unit.toNanos(period);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 预约令牌
+     *
+     * @param permits 令牌数
+     * @return 需要等待的纳秒数，0表示可立即执行
+     */
+    public synchronized long reserve(double permits) {
+        refill();
+        double available = tokens;
+        tokens -= permits;
+        if (available >= permits) {
+            return 0;
+        }
+        return (long) Math.ceil((permits - Math.max(0, available)) / refillPerNanos);
+    }
+
+    /**
+     * 尝试立即获取令牌，不足时不扣减
+     *
+     * @param permits 令牌数
+     * @return 是否获取成功
+     */
+    public synchronized boolean tryAcquire(double permits) {
+        refill();
+        if (tokens >= permits) {
+            tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 阻塞获取令牌
+     *
+     * @param permits 令牌数
+     * @throws InterruptedException 等待被中断
+     */
+    public void acquire(double permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 当前可用令牌数（可能为负，表示已有预约在排队）
+     */
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNanos);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,230 @@
+package com.aliyun.rag.util;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * XSS攻击向量检测
+ * <p>
+ * 一次扫描识别以下模式（不区分大小写）：&lt;script…&gt;、&lt;style…&gt;…&lt;/style&gt;、
+ * &lt;iframe|object|embed|applet|meta|link…&gt;、javascript:、vbscript:、livescript:、
+ * data:text/html、data:application/、on\w+\s*=、expression\s*(、eval\s*(。
+ * 检测前先做URL解码和常见HTML实体解码；不含任何可能构成这些模式的字符（&lt; : = ( % &amp;）的值直接返回，
+ * 只有需要解码时才分配新字符串
+ * </p>
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+public final class XssDetector {
+
+    private static final String[] DANGEROUS_TAGS = {"iframe", "object", "embed", "applet", "meta", "link"};
+
+    private XssDetector() {
+    }
+
+    /**
+     * 检查字符串是否包含XSS攻击模式
+     *
+     * @param value 待检查的值
+     * @return 是否包含攻击模式
+     */
+    public static boolean containsAttack(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        // '+'解码为空格，不会单独构成攻击模式，但有其他触发字符时需要解码
+        boolean escaped = false;
+        boolean plus = false;
+        boolean trigger = false;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '&') {
+                escaped = true;
+            } else if (c == '+') {
+                plus = true;
+            } else if (c == '<' || c == ':' || c == '=' || c == '(') {
+                trigger = true;
+            }
+        }
+        if (!trigger && !escaped) {
+            return false;
+        }
+        return scan(escaped || plus ? decode(value) : value);
+    }
+
+    /**
+     * URL解码后再解码HTML实体，URL解码失败时使用原值
+     */
+    static String decode(String value) {
+        String decoded = value;
+        if (value.indexOf('%') >= 0 || value.indexOf('+') >= 0) {
+            try {
+                decoded = URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                // 解码失败，使用原值
+            }
+        }
+        int amp = decoded.indexOf('&');
+        if (amp < 0) {
+            return decoded;
+        }
+
+        StringBuilder sb = new StringBuilder(decoded.length());
+        sb.append(decoded, 0, amp);
+        int i = amp;
+        int length = decoded.length();
+        while (i < length) {
+            char c = decoded.charAt(i);
+            if (c == '&') {
+                if (decoded.startsWith("&lt;", i)) {
+                    sb.append('<');
+                    i += 4;
+                    continue;
+                }
+                if (decoded.startsWith("&gt;", i)) {
+                    sb.append('>');
+                    i += 4;
+                    continue;
+                }
+                if (decoded.startsWith("&quot;", i)) {
+                    sb.append('"');
+                    i += 6;
+                    continue;
+                }
+                if (decoded.startsWith("&#x27;", i)) {
+                    sb.append('\'');
+                    i += 6;
+                    continue;
+                }
+                if (decoded.startsWith("&#x2F;", i)) {
+                    sb.append('/');
+                    i += 6;
+                    continue;
+                }
+                if (decoded.startsWith("&amp;", i)) {
+                    sb.append('&');
+                    i += 5;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static boolean scan(String s) {
+        int length = s.length();
+        int lastGt = s.lastIndexOf('>');
+        // on\w+\s*= 已检查过且不匹配的单词结束位置，同一单词内后续的on不必重复检查
+        int onCheckedUntil = -1;
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<' -> {
+                    if (lastGt > i && matchesTag(s, i + 1, lastGt)) {
+                        return true;
+                    }
+                }
+                case 'j', 'J' -> {
+                    if (s.regionMatches(true, i, "javascript:", 0, 11)) {
+                        return true;
+                    }
+                }
+                case 'v', 'V' -> {
+                    if (s.regionMatches(true, i, "vbscript:", 0, 9)) {
+                        return true;
+                    }
+                }
+                case 'l', 'L' -> {
+                    if (s.regionMatches(true, i, "livescript:", 0, 11)) {
+                        return true;
+                    }
+                }
+                case 'd', 'D' -> {
+                    if (s.regionMatches(true, i, "data:text/html", 0, 14)
+                            || s.regionMatches(true, i, "data:application/", 0, 17)) {
+                        return true;
+                    }
+                }
+                case 'e', 'E' -> {
+                    if ((s.regionMatches(true, i, "expression", 0, 10) && isCallOpen(s, i + 10))
+                            || (s.regionMatches(true, i, "eval", 0, 4) && isCallOpen(s, i + 4))) {
+                        return true;
+                    }
+                }
+                case 'o', 'O' -> {
+                    if (i >= onCheckedUntil && i + 1 < length && (s.charAt(i + 1) == 'n' || s.charAt(i + 1) == 'N')) {
+                        int p = i + 2;
+                        while (p < length && isWordChar(s.charAt(p))) {
+                            p++;
+                        }
+                        if (p > i + 2) {
+                            while (p < length && isWhitespace(s.charAt(p))) {
+                                p++;
+                            }
+                            if (p < length && s.charAt(p) == '=') {
+                                return true;
+                            }
+                            onCheckedUntil = p;
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 匹配'&lt;'之后的标签名，要求其后存在'&gt;'；style标签还要求其后存在&lt;/style&gt;
+     */
+    private static boolean matchesTag(String s, int nameStart, int lastGt) {
+        if (s.regionMatches(true, nameStart, "script", 0, 6)) {
+            return lastGt >= nameStart + 6;
+        }
+        if (s.regionMatches(true, nameStart, "style", 0, 5)) {
+            int gt = s.indexOf('>', nameStart + 5);
+            return gt >= 0 && containsIgnoreCase(s, "</style>", gt + 1);
+        }
+        for (String tag : DANGEROUS_TAGS) {
+            if (s.regionMatches(true, nameStart, tag, 0, tag.length())) {
+                return lastGt >= nameStart + tag.length();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * \s*\(
+     */
+    private static boolean isCallOpen(String s, int p) {
+        while (p < s.length() && isWhitespace(s.charAt(p))) {
+            p++;
+        }
+        return p < s.length() && s.charAt(p) == '(';
+    }
+
+    private static boolean containsIgnoreCase(String s, String target, int from) {
+        for (int i = from, last = s.length() - target.length(); i <= last; i++) {
+            if (s.regionMatches(true, i, target, 0, target.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * 与正则\s一致的ASCII空白字符
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+}
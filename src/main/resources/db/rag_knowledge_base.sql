@@ -85,15 +85,76 @@ CREATE TABLE `document_milvus_mapping` (
   `file_record_id` bigint NOT NULL COMMENT '文件记录ID',
   `milvus_id` varchar(100) NOT NULL COMMENT 'Milvus向量ID',
   `vector_index` int NOT NULL DEFAULT '0' COMMENT '向量索引（在文档中的位置）',
+  `content_hash` varchar(64) DEFAULT NULL COMMENT '分块内容SHA-256摘要',
+  `simhash` bigint DEFAULT NULL COMMENT '分块内容SimHash指纹',
+  `simhash_b0` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 48) & 65535)) STORED COMMENT 'SimHash第1段（16位）',
+  `simhash_b1` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 32) & 65535)) STORED COMMENT 'SimHash第2段（16位）',
+  `simhash_b2` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 16) & 65535)) STORED COMMENT 'SimHash第3段（16位）',
+  `simhash_b3` smallint unsigned GENERATED ALWAYS AS ((`simhash` & 65535)) STORED COMMENT 'SimHash第4段（16位）',
+  `ref_milvus_id` varchar(100) DEFAULT NULL COMMENT '重复分块引用的向量ID',
   `gmt_create` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `gmt_modified` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
   `is_deleted` int NOT NULL,
   `user_id` bigint NOT NULL,
   PRIMARY KEY (`id`),
   KEY `idx_file_record_id` (`file_record_id`),
-  KEY `idx_milvus_id` (`milvus_id`)
+  KEY `idx_milvus_id` (`milvus_id`),
+  KEY `idx_ref_milvus_id` (`ref_milvus_id`),
+  KEY `idx_user_content_hash` (`user_id`, `content_hash`),
+  KEY `idx_user_simhash_b0` (`user_id`, `simhash_b0`),
+  KEY `idx_user_simhash_b1` (`user_id`, `simhash_b1`),
+  KEY `idx_user_simhash_b2` (`user_id`, `simhash_b2`),
+  KEY `idx_user_simhash_b3` (`user_id`, `simhash_b3`)
 ) ENGINE=InnoDB AUTO_INCREMENT=3795 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文档与Milvus向量ID映射表';
 
+-- ----------------------------
+-- Table structure for ingestion_job
+-- ----------------------------
+DROP TABLE IF EXISTS `ingestion_job`;
+CREATE TABLE `ingestion_job` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `username` varchar(50) NOT NULL COMMENT '用户名',
+  `file_name` varchar(255) NOT NULL COMMENT '原始文件名',
+  `content_type` varchar(100) DEFAULT NULL COMMENT '文件MIME类型',
+  `file_size` bigint NOT NULL DEFAULT '0' COMMENT '文件大小（字节）',
+  `title` varchar(255) DEFAULT NULL COMMENT '文档标题',
+  `description` varchar(1000) DEFAULT NULL COMMENT '文档描述',
+  `tags` varchar(500) DEFAULT NULL COMMENT '文档标签',
+  `staged_path` varchar(500) NOT NULL COMMENT '本地暂存文件路径',
+  `file_url` varchar(500) DEFAULT NULL COMMENT '七牛云文件URL',
+  `file_record_id` bigint DEFAULT NULL COMMENT '文件记录ID',
+  `status` varchar(20) NOT NULL COMMENT '状态：QUEUED/PARSING/EMBEDDING/INDEXING/DONE/FAILED',
+  `batch_chunks` int NOT NULL COMMENT '每批分块数（断点续传时保持批次划分一致）',
+  `chunks_processed` int NOT NULL DEFAULT '0' COMMENT '已写入的分块数',
+  `batches_completed` int NOT NULL DEFAULT '0' COMMENT '已完成的批次数',
+  `attempts` int NOT NULL DEFAULT '0' COMMENT '已执行次数',
+  `lease_owner` varchar(100) DEFAULT NULL COMMENT '租约持有者（工作节点标识）',
+  `lease_expires_at` datetime DEFAULT NULL COMMENT '租约到期时间，为空或已过期时可被领取',
+  `error_message` varchar(1000) DEFAULT NULL COMMENT '失败原因',
+  `gmt_create` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
+  `is_deleted` int NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_user_id` (`user_id`),
+  KEY `idx_status_lease` (`status`, `lease_expires_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文档入库任务表';
+
+-- ----------------------------
+-- Table structure for ingestion_job_batch
+-- ----------------------------
+DROP TABLE IF EXISTS `ingestion_job_batch`;
+CREATE TABLE `ingestion_job_batch` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `job_id` bigint NOT NULL COMMENT '任务ID',
+  `batch_index` int NOT NULL COMMENT '批次序号',
+  `first_chunk_index` int NOT NULL COMMENT '批次第一个分块的序号',
+  `chunk_count` int NOT NULL COMMENT '批次分块数',
+  `gmt_create` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_job_batch` (`job_id`, `batch_index`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='文档入库任务批次进度表';
+
 -- ----------------------------
 -- Table structure for user_file_record
 -- ----------------------------
@@ -105,6 +166,7 @@ CREATE TABLE `user_file_record` (
   `file_path` varchar(500) NOT NULL COMMENT '文件路径',
   `file_size` bigint NOT NULL DEFAULT '0' COMMENT '文件大小（字节）',
   `file_type` varchar(50) DEFAULT NULL COMMENT '文件类型',
+  `version` int NOT NULL DEFAULT '1' COMMENT '文档版本',
   `upload_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '上传时间',
   `gmt_create` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `gmt_modified` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
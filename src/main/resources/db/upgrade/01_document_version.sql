@@ -0,0 +1,15 @@
+-- ----------------------------
+-- 已有数据库升级：文档版本化更新与分块级差异比对
+-- 新建数据库直接执行 rag_knowledge_base.sql 即可，无需执行本脚本；
+-- 生产环境 ddl-auto 为 validate，不会自动补列，升级到该版本前需先执行本脚本
+-- ----------------------------
+
+SET NAMES utf8mb4;
+
+-- 文档版本，已有文档从版本1开始
+ALTER TABLE `user_file_record`
+  ADD COLUMN `version` int NOT NULL DEFAULT '1' COMMENT '文档版本' AFTER `file_type`;
+
+-- 分块内容摘要，此前入库的分块为空，文档首次更新时全部重新向量化
+ALTER TABLE `document_milvus_mapping`
+  ADD COLUMN `content_hash` varchar(64) DEFAULT NULL COMMENT '分块内容SHA-256摘要' AFTER `vector_index`;
@@ -0,0 +1,21 @@
+-- ----------------------------
+-- 已有数据库升级：入库时跳过完全重复和近似重复的分块
+-- 需在 01_document_version.sql 之后执行（依赖 content_hash 列）；新建数据库无需执行
+-- ----------------------------
+
+SET NAMES utf8mb4;
+
+-- 此前入库的分块没有SimHash指纹，不参与近似重复匹配；引用为空表示分块使用自己的向量
+ALTER TABLE `document_milvus_mapping`
+  ADD COLUMN `simhash` bigint DEFAULT NULL COMMENT '分块内容SimHash指纹' AFTER `content_hash`,
+  ADD COLUMN `simhash_b0` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 48) & 65535)) STORED COMMENT 'SimHash第1段（16位）' AFTER `simhash`,
+  ADD COLUMN `simhash_b1` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 32) & 65535)) STORED COMMENT 'SimHash第2段（16位）' AFTER `simhash_b0`,
+  ADD COLUMN `simhash_b2` smallint unsigned GENERATED ALWAYS AS (((`simhash` >> 16) & 65535)) STORED COMMENT 'SimHash第3段（16位）' AFTER `simhash_b1`,
+  ADD COLUMN `simhash_b3` smallint unsigned GENERATED ALWAYS AS ((`simhash` & 65535)) STORED COMMENT 'SimHash第4段（16位）' AFTER `simhash_b2`,
+  ADD COLUMN `ref_milvus_id` varchar(100) DEFAULT NULL COMMENT '重复分块引用的向量ID' AFTER `simhash_b3`,
+  ADD KEY `idx_ref_milvus_id` (`ref_milvus_id`),
+  ADD KEY `idx_user_content_hash` (`user_id`, `content_hash`),
+  ADD KEY `idx_user_simhash_b0` (`user_id`, `simhash_b0`),
+  ADD KEY `idx_user_simhash_b1` (`user_id`, `simhash_b1`),
+  ADD KEY `idx_user_simhash_b2` (`user_id`, `simhash_b2`),
+  ADD KEY `idx_user_simhash_b3` (`user_id`, `simhash_b3`);
@@ -0,0 +1,146 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.DedupProperties;
+import com.aliyun.rag.util.ChunkFingerprint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link ChunkDeduplicator} 文档内重复分块比对测试，只比对会话内的分块，不访问数据库
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class ChunkDeduplicatorTest {
+
+    private DedupProperties properties;
+    private ChunkDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DedupProperties();
+        properties.setCrossDocument(false);
+        deduplicator = new ChunkDeduplicator(properties, null);
+    }
+
+    @Test
+    void bandLookupFindsEverythingBruteForceFinds() {
+        Random random = new Random(42);
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        List<long[]> registered = new ArrayList<>();
+        List<String> registeredIds = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long simhash = random.nextLong();
+            session.register("h" + i, simhash, "v" + i);
+            registered.add(new long[]{simhash});
+            registeredIds.add("v" + i);
+        }
+
+        int limit = properties.getMaxDistance();
+        int found = 0;
+        for (int q = 0; q < 3000; q++) {
+            long base = registered.get(random.nextInt(registered.size()))[0];
+            long query = flipRandomBits(base, random.nextInt(limit + 3), random);
+
+            int bestDistance = Integer.MAX_VALUE;
+            for (long[] candidate : registered) {
+                bestDistance = Math.min(bestDistance, ChunkFingerprint.distance(query, candidate[0]));
+            }
+
+            String ref = session.resolve(List.of("q" + q), Collections.singletonList(query),
+                    new String[]{"q" + q}, Set.of())[0];
+            if (bestDistance <= limit) {
+                assertNotNull(ref, "汉明距离 " + bestDistance + " 的近似重复应被找到");
+                // 已登记的分块（包括引用了其他向量的分块）中，与引用的向量ID对应且距离最近的一个
+                int matchedDistance = Integer.MAX_VALUE;
+                for (int i = 0; i < registered.size(); i++) {
+                    if (registeredIds.get(i).equals(ref)) {
+                        matchedDistance = Math.min(matchedDistance, ChunkFingerprint.distance(query, registered.get(i)[0]));
+                    }
+                }
+                assertEquals(bestDistance, matchedDistance, "应引用距离最近的分块");
+                found++;
+            } else {
+                assertNull(ref);
+            }
+            registered.add(new long[]{query});
+            registeredIds.add(ref != null ? ref : "q" + q);
+        }
+        assertEquals(found, session.getNearDuplicates());
+    }
+
+    @Test
+    void configuredDistanceIsRespected() {
+        properties.setMaxDistance(2);
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        long base = 0x0F0F_F0F0_1234_5678L;
+        session.register("base", base, "v0");
+
+        String[] refs = session.resolve(List.of("a", "b"), List.of(base ^ 0b11L, base ^ (0b111L << 20)),
+                new String[]{"v1", "v2"}, Set.of());
+        assertArrayEquals(new String[]{"v0", null}, refs);
+    }
+
+    @Test
+    void maxDistanceIsClampedToBandGuarantee() {
+        properties.setMaxDistance(10);
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        long base = 0x0F0F_F0F0_1234_5678L;
+        session.register("base", base, "v0");
+
+        String[] refs = session.resolve(List.of("a", "b"), List.of(base ^ 0b111L, base ^ (0b1111L << 20)),
+                new String[]{"v1", "v2"}, Set.of());
+        assertArrayEquals(new String[]{"v0", null}, refs);
+    }
+
+    @Test
+    void exactDuplicatesWithinBatchReferenceFirstCopy() {
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        String[] refs = session.resolve(List.of("x", "y", "x"), Arrays.asList(null, null, null),
+                new String[]{"v0", "v1", "v2"}, Set.of());
+        assertArrayEquals(new String[]{null, null, "v0"}, refs);
+        assertEquals(1, session.getWithinDocument());
+    }
+
+    @Test
+    void writtenVectorsAreNeverDeduplicated() {
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        String[] refs = session.resolve(List.of("x", "x"), Arrays.asList(null, null),
+                new String[]{"v0", "v1"}, Set.of("v1"));
+        assertArrayEquals(new String[]{null, null}, refs);
+    }
+
+    @Test
+    void disabledReturnsNoReferences() {
+        properties.setEnabled(false);
+        ChunkDeduplicator.Session session = deduplicator.open(1L, 1L);
+        String[] refs = session.resolve(List.of("x", "x"), Arrays.asList(null, null),
+                new String[]{"v0", "v1"}, Set.of());
+        assertArrayEquals(new String[]{null, null}, refs);
+    }
+
+    private static long flipRandomBits(long hash, int count, Random random) {
+        long flipped = hash;
+        int flips = 0;
+        while (flips < count) {
+            long bit = 1L << random.nextInt(64);
+            if (((flipped ^ hash) & bit) == 0) {
+                flipped ^= bit;
+                flips++;
+            }
+        }
+        return flipped;
+    }
+}
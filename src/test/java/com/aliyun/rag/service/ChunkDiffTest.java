@@ -0,0 +1,154 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.util.ChunkFingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ChunkDiff} 新旧分块比对测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class ChunkDiffTest {
+
+    @Test
+    void unchangedDocumentReusesEveryChunk() {
+        List<DocumentMilvusMapping> old = mappings("A", "B", "C");
+
+        Result result = diff(old, "A", "B", "C");
+        assertEquals(List.of("v0", "v1", "v2"), result.reusedIds);
+        assertTrue(result.insertedIndexes.isEmpty());
+        assertTrue(result.deletedIds.isEmpty());
+        assertTrue(result.movedIds.isEmpty());
+    }
+
+    @Test
+    void reorderedChunksAreMovedNotReinserted() {
+        List<DocumentMilvusMapping> old = mappings("A", "B", "C");
+
+        Result result = diff(old, "C", "A", "B");
+        assertEquals(List.of("v2", "v0", "v1"), result.reusedIds);
+        assertTrue(result.insertedIndexes.isEmpty());
+        assertTrue(result.deletedIds.isEmpty());
+        assertEquals(Set.of("v0", "v1", "v2"), new HashSet<>(result.movedIds));
+    }
+
+    @Test
+    void editedChunkIsInsertedAndOldOneDeleted() {
+        List<DocumentMilvusMapping> old = mappings("A", "B", "C");
+
+        Result result = diff(old, "A", "B2", "C");
+        assertEquals(List.of(1), result.insertedIndexes);
+        assertEquals(List.of("v1"), result.deletedIds);
+        assertTrue(result.movedIds.isEmpty());
+    }
+
+    @Test
+    void duplicatedChunkReusesEachOldCopyOnce() {
+        List<DocumentMilvusMapping> old = mappings("A", "X", "B", "X");
+
+        // 新内容中X出现三次：前两次按原位置依次沿用，第三次新建
+        Result result = diff(old, "X", "A", "X", "X", "B");
+        assertEquals(Arrays.asList("v1", "v0", "v3", null, "v2"), result.reusedIds);
+        assertEquals(List.of(3), result.insertedIndexes);
+        assertTrue(result.deletedIds.isEmpty());
+    }
+
+    @Test
+    void droppedDuplicateDeletesTheLaterCopy() {
+        List<DocumentMilvusMapping> old = mappings("X", "A", "X", "X");
+
+        Result result = diff(old, "A", "X");
+        assertEquals(List.of("v1", "v0"), result.reusedIds);
+        assertTrue(result.insertedIndexes.isEmpty());
+        assertEquals(Set.of("v2", "v3"), new HashSet<>(result.deletedIds));
+    }
+
+    @Test
+    void mappingsWithoutHashAreAlwaysDeleted() {
+        List<DocumentMilvusMapping> old = mappings("A", "B");
+        old.get(1).setContentHash(null);
+
+        Result result = diff(old, "A", "B");
+        assertEquals(List.of(1), result.insertedIndexes);
+        assertEquals(List.of("v1"), result.deletedIds);
+    }
+
+    @Test
+    void matchReturnsNullForUnknownHash() {
+        ChunkDiff diff = new ChunkDiff(mappings("A"));
+        assertNull(diff.match(ChunkFingerprint.contentHash("Z")));
+        DocumentMilvusMapping a = diff.match(ChunkFingerprint.contentHash("A"));
+        assertEquals("v0", a.getMilvusId());
+        assertNull(diff.match(ChunkFingerprint.contentHash("A")));
+        assertTrue(diff.remaining().isEmpty());
+    }
+
+    @Test
+    void remainingKeepsOriginalInstances() {
+        List<DocumentMilvusMapping> old = mappings("A", "B");
+        ChunkDiff diff = new ChunkDiff(old);
+        diff.match(ChunkFingerprint.contentHash("A"));
+        assertSame(old.get(1), diff.remaining().get(0));
+    }
+
+    /**
+     * 按IngestionPipeline更新文档时的方式逐个比对新分块
+     */
+    private static Result diff(List<DocumentMilvusMapping> old, String... newChunks) {
+        ChunkDiff diff = new ChunkDiff(old);
+        Result result = new Result();
+        for (int i = 0; i < newChunks.length; i++) {
+            DocumentMilvusMapping kept = diff.match(ChunkFingerprint.contentHash(newChunks[i]));
+            if (kept == null) {
+                result.reusedIds.add(null);
+                result.insertedIndexes.add(i);
+                continue;
+            }
+            result.reusedIds.add(kept.getMilvusId());
+            if (kept.getVectorIndex() != i) {
+                result.movedIds.add(kept.getMilvusId());
+            }
+        }
+        for (DocumentMilvusMapping mapping : diff.remaining()) {
+            result.deletedIds.add(mapping.getMilvusId());
+        }
+        // 沿用与删除的映射互不重叠，合起来正好是全部原有映射
+        Set<String> all = new HashSet<>(result.deletedIds);
+        result.reusedIds.stream().filter(Objects::nonNull).forEach(id -> assertTrue(all.add(id), "映射被重复使用: " + id));
+        assertEquals(old.size(), all.size());
+        return result;
+    }
+
+    private static List<DocumentMilvusMapping> mappings(String... chunks) {
+        List<DocumentMilvusMapping> mappings = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            DocumentMilvusMapping mapping = new DocumentMilvusMapping();
+            mapping.setMilvusId("v" + i);
+            mapping.setVectorIndex(i);
+            mapping.setContentHash(ChunkFingerprint.contentHash(chunks[i]));
+            mappings.add(mapping);
+        }
+        return mappings;
+    }
+
+    private static final class Result {
+        private final List<String> reusedIds = new ArrayList<>();
+        private final List<Integer> insertedIndexes = new ArrayList<>();
+        private final List<String> movedIds = new ArrayList<>();
+        private final List<String> deletedIds = new ArrayList<>();
+    }
+}
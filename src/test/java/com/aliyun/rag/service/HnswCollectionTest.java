@@ -0,0 +1,257 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.util.VectorQuantizer;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.aliyun.rag.service.HnswGraphTest.DIMENSION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link HnswCollection} 预写日志重放、段封存与合并后重新打开的测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class HnswCollectionTest {
+
+    private static final int SEAL_THRESHOLD = 100;
+
+    @TempDir
+    Path dir;
+
+    private VectorStoreProperties.Hnsw config;
+    private final List<HnswCollection> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config = new VectorStoreProperties.Hnsw();
+        config.setSealThreshold(SEAL_THRESHOLD);
+        config.setEfConstruction(100);
+        config.setCompactionDeletedRatio(0.3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(HnswCollection::close);
+    }
+
+    @Test
+    void unsealedWritesAreReplayedFromWal() throws IOException {
+        Map<String, float[]> vectors = vectors(new Random(1), 50);
+        HnswCollection collection = open();
+        add(collection, vectors);
+        collection.removeAll(List.of("v0", "v1", "v2"));
+        collection.close();
+
+        HnswCollection reopened = open();
+        assertEquals(0, reopened.getStats().get("segments"));
+        assertEquals(47L, reopened.getStats().get("liveVectors"));
+        vectors.keySet().removeAll(List.of("v0", "v1", "v2"));
+        assertContents(reopened, vectors);
+    }
+
+    @Test
+    void sealedSegmentsAndTheirDeletesSurviveReopen() throws IOException {
+        Map<String, float[]> vectors = vectors(new Random(2), 250);
+        HnswCollection collection = open();
+        add(collection, vectors);
+        assertEquals(2, collection.getStats().get("segments"));
+        // 分别删除只读段和可写段中的向量
+        List<String> removed = List.of("v3", "v150", "v240");
+        collection.removeAll(removed);
+        collection.close();
+
+        HnswCollection reopened = open();
+        assertEquals(2, reopened.getStats().get("segments"));
+        assertEquals(247L, reopened.getStats().get("liveVectors"));
+        vectors.keySet().removeAll(removed);
+        assertContents(reopened, vectors);
+        assertRecall(reopened, vectors, new Random(20));
+    }
+
+    @Test
+    void overwrittenIdKeepsLatestVectorAfterReopen() throws IOException {
+        Map<String, float[]> vectors = vectors(new Random(3), SEAL_THRESHOLD + 1);
+        HnswCollection collection = open();
+        add(collection, vectors);
+        float[] replacement = vectors(new Random(30), 1).get("v0");
+        collection.addAll(List.of("v0"), List.of(Embedding.from(replacement)), List.of(segment("v0")));
+        collection.close();
+
+        HnswCollection reopened = open();
+        vectors.put("v0", replacement);
+        assertEquals((long) vectors.size(), reopened.getStats().get("liveVectors"));
+        assertContents(reopened, vectors);
+    }
+
+    @Test
+    void tornWalTailIsTruncatedBeforeNewWrites() throws IOException {
+        Map<String, float[]> vectors = vectors(new Random(4), 20);
+        HnswCollection collection = open();
+        add(collection, vectors);
+        collection.close();
+
+        // 模拟写入中断：日志末尾留下不完整的记录
+        Path wal = files("wal-").get(0);
+        Files.write(wal, new byte[]{1, 0, 0, 0, 9, 'v'}, StandardOpenOption.APPEND);
+
+        HnswCollection reopened = open();
+        assertEquals(20L, reopened.getStats().get("liveVectors"));
+        Map<String, float[]> more = vectors(new Random(40), 25);
+        more.keySet().removeIf(id -> Integer.parseInt(id.substring(1)) < 20);
+        add(reopened, more);
+        reopened.close();
+
+        HnswCollection again = open();
+        vectors.putAll(more);
+        assertEquals(25L, again.getStats().get("liveVectors"));
+        assertContents(again, vectors);
+    }
+
+    @Test
+    void interruptedCompactionKeepsMergedSegmentOnly() throws IOException {
+        Map<String, float[]> vectors = vectors(new Random(5), 3 * SEAL_THRESHOLD + 1);
+        HnswCollection collection = open();
+        add(collection, vectors);
+        assertEquals(3, collection.getStats().get("segments"));
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < SEAL_THRESHOLD / 2; i++) {
+            removed.add("v" + i);
+        }
+        collection.removeAll(removed);
+        vectors.keySet().removeAll(removed);
+
+        Path source = files("seg-").stream().filter(p -> p.toString().endsWith(".hnsw"))
+                .min(Comparator.comparing(Path::toString)).orElseThrow();
+        byte[] sourceBytes = Files.readAllBytes(source);
+        assertTrue(collection.compact());
+        assertFalse(Files.exists(source));
+        assertEquals(3, collection.getStats().get("segments"));
+        assertEquals(0L, collection.getStats().get("deletedVectors"));
+        assertContents(collection, vectors);
+        collection.close();
+
+        // 模拟合并后删除源段前中断：源段文件仍在，但已被合并后的段取代
+        Files.write(source, sourceBytes);
+        HnswCollection reopened = open();
+        assertFalse(Files.exists(source));
+        assertEquals((long) vectors.size(), reopened.getStats().get("liveVectors"));
+        assertContents(reopened, vectors);
+        assertRecall(reopened, vectors, new Random(50));
+    }
+
+    @Test
+    void leftoverTempFilesAreRemoved() throws IOException {
+        Files.write(dir.resolve("seg-9.hnsw.tmp"), new byte[16]);
+        open();
+        assertTrue(files("seg-").isEmpty());
+    }
+
+    private HnswCollection open() throws IOException {
+        HnswCollection collection = HnswCollection.open("test", dir, config, DIMENSION);
+        opened.add(collection);
+        return collection;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(p -> p.getFileName().toString().startsWith(prefix)).collect(Collectors.toList());
+        }
+    }
+
+    private static void add(HnswCollection collection, Map<String, float[]> vectors) {
+        List<String> ids = new ArrayList<>(vectors.keySet());
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (String id : ids) {
+            embeddings.add(Embedding.from(vectors.get(id)));
+            segments.add(segment(id));
+        }
+        collection.addAll(ids, embeddings, segments);
+    }
+
+    private static TextSegment segment(String id) {
+        return TextSegment.from("分块 " + id, Metadata.from(Map.of("fileRecordId", id, "chunkIndex", "1")));
+    }
+
+    /**
+     * 按ID读到的向量、分块内容和元数据与写入的一致，且不多不少
+     */
+    private static void assertContents(HnswCollection collection, Map<String, float[]> expected) {
+        Set<String> ids = new HashSet<>(expected.keySet());
+        for (int i = 0; i < 3 * SEAL_THRESHOLD + 50; i++) {
+            ids.add("v" + i);
+        }
+        List<VectorStoreBackend.StoredVector> stored = collection.fetch(ids, true);
+        assertEquals(expected.size(), stored.size());
+        for (VectorStoreBackend.StoredVector vector : stored) {
+            assertArrayEquals(expected.get(vector.id()), vector.vector(), vector.id());
+            assertEquals("分块 " + vector.id(), vector.text());
+            assertEquals(vector.id(), vector.metadata().get("fileRecordId"));
+        }
+        Set<String> paged = collection.page(0, expected.size() + 10).stream()
+                .map(VectorStoreBackend.StoredVector::id).collect(Collectors.toSet());
+        assertEquals(expected.keySet(), paged);
+    }
+
+    private static void assertRecall(HnswCollection collection, Map<String, float[]> vectors, Random random) {
+        List<String> ids = new ArrayList<>(vectors.keySet());
+        double recall = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = HnswGraphTest.near(vectors.get(ids.get(random.nextInt(ids.size()))), random);
+            Set<String> exact = ids.stream()
+                    .sorted(Comparator.comparingDouble((String id) -> VectorQuantizer.cosine(query, vectors.get(id))).reversed())
+                    .limit(10)
+                    .collect(Collectors.toSet());
+            List<EmbeddingMatch<TextSegment>> matches = collection.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(query))
+                    .maxResults(10)
+                    .minScore(0.0)
+                    .build()).matches();
+            assertEquals(10, matches.size());
+            // 分数与Milvus一致，为 (余弦相似度 + 1) / 2
+            EmbeddingMatch<TextSegment> top = matches.get(0);
+            assertEquals((VectorQuantizer.cosine(query, vectors.get(top.embeddingId())) + 1) / 2, top.score(), 1e-4);
+            recall += matches.stream().filter(m -> exact.contains(m.embeddingId())).count() / 10.0;
+        }
+        recall /= queries;
+        assertTrue(recall >= 0.95, "重新打开后的召回率: " + recall);
+    }
+
+    private static Map<String, float[]> vectors(Random random, int count) {
+        float[][] generated = HnswGraphTest.clustered(random, count, 10);
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            vectors.put("v" + i, generated[i]);
+        }
+        return vectors;
+    }
+}
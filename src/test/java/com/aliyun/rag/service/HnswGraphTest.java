@@ -0,0 +1,193 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.util.VectorQuantizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link HnswGraph} 与暴力检索的召回率对比测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class HnswGraphTest {
+
+    static final int DIMENSION = 64;
+    private static final int TOP_K = 10;
+    private static final int EF_SEARCH = 64;
+
+    @Test
+    void recallMatchesBruteForce() {
+        Random random = new Random(1);
+        float[][] vectors = clustered(random, 3000, 60);
+        HnswGraph graph = build(vectors);
+
+        double recall = averageRecall(graph, vectors, random, node -> true, null);
+        assertTrue(recall >= 0.95, "HNSW召回率: " + recall);
+    }
+
+    @Test
+    void deletedNodesAreSkippedWithoutLosingRecall() {
+        Random random = new Random(2);
+        float[][] vectors = clustered(random, 3000, 60);
+        HnswGraph graph = build(vectors);
+        Set<Integer> deleted = new HashSet<>();
+        for (int node = 0; node < vectors.length; node += 3) {
+            graph.markDeleted(node);
+            deleted.add(node);
+        }
+        graph.markDeleted(0);
+        assertEquals(vectors.length - deleted.size(), graph.liveCount());
+
+        // 已删除的节点仍参与遍历，剩余节点的召回率不受影响
+        double recall = averageRecall(graph, vectors, random, node -> !deleted.contains(node), null);
+        assertTrue(recall >= 0.95, "删除三分之一节点后的召回率: " + recall);
+    }
+
+    @Test
+    void acceptFilterLimitsResults() {
+        Random random = new Random(3);
+        float[][] vectors = clustered(random, 2000, 40);
+        HnswGraph graph = build(vectors);
+        IntPredicate even = node -> node % 2 == 0;
+
+        double recall = averageRecall(graph, vectors, random, even, even);
+        assertTrue(recall >= 0.9, "过滤后的召回率: " + recall);
+    }
+
+    @Test
+    void exactVectorIsItsOwnNearestNeighbor() {
+        Random random = new Random(4);
+        float[][] vectors = clustered(random, 1000, 20);
+        HnswGraph graph = build(vectors);
+
+        int misses = 0;
+        for (int node = 0; node < vectors.length; node++) {
+            List<HnswIndex.Hit> hits = graph.search(vectors[node], 1, EF_SEARCH, null);
+            if (hits.get(0).node() != node) {
+                misses++;
+            }
+        }
+        assertTrue(misses <= vectors.length / 100, "查不到自身的节点数: " + misses);
+        assertEquals("id-7", graph.id(7));
+        assertEquals("text-7", graph.text(7));
+        assertEquals("{\"n\":7}", graph.metadata(7));
+    }
+
+    @Test
+    void resultsAreSortedAndScoredByCosine() {
+        Random random = new Random(5);
+        float[][] vectors = clustered(random, 500, 10);
+        HnswGraph graph = build(vectors);
+        float[] query = near(vectors[0], random);
+
+        List<HnswIndex.Hit> hits = graph.search(query, TOP_K, EF_SEARCH, null);
+        assertEquals(TOP_K, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            HnswIndex.Hit hit = hits.get(i);
+            assertEquals(VectorQuantizer.cosine(query, vectors[hit.node()]), hit.similarity(), 1e-4);
+            if (i > 0) {
+                assertFalse(hit.similarity() > hits.get(i - 1).similarity(), "结果应按相似度降序");
+            }
+        }
+    }
+
+    @Test
+    void emptyAndFullGraph() {
+        HnswGraph graph = new HnswGraph(DIMENSION, 8, 32, 2);
+        assertTrue(graph.search(new float[DIMENSION], 5, EF_SEARCH, null).isEmpty());
+
+        graph.insert("a", unit(0), "", "{}");
+        graph.insert("b", unit(1), "", "{}");
+        assertTrue(graph.isFull());
+        assertThrows(IllegalStateException.class, () -> graph.insert("c", unit(2), "", "{}"));
+        assertEquals(0, graph.search(unit(0), 1, EF_SEARCH, null).get(0).node());
+    }
+
+    static HnswGraph build(float[][] vectors) {
+        HnswGraph graph = new HnswGraph(DIMENSION, 16, 100, vectors.length);
+        for (int node = 0; node < vectors.length; node++) {
+            assertEquals(node, graph.insert("id-" + node, vectors[node], "text-" + node, "{\"n\":" + node + "}"));
+        }
+        return graph;
+    }
+
+    /**
+     * 随机查询的平均召回率
+     *
+     * @param live 暴力检索时参与比较的节点
+     * @param accept 传给HNSW检索的过滤条件
+     */
+    static double averageRecall(HnswIndex index, float[][] vectors, Random random, IntPredicate live, IntPredicate accept) {
+        int queries = 100;
+        double recall = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = near(vectors[random.nextInt(vectors.length)], random);
+            Set<Integer> exact = bruteForce(vectors, query, TOP_K, live);
+            List<HnswIndex.Hit> hits = index.search(query, TOP_K, EF_SEARCH, accept);
+            assertEquals(TOP_K, hits.size());
+            for (HnswIndex.Hit hit : hits) {
+                assertTrue(live.test(hit.node()), "结果包含不应返回的节点: " + hit.node());
+            }
+            recall += hits.stream().filter(hit -> exact.contains(hit.node())).count() / (double) TOP_K;
+        }
+        return recall / queries;
+    }
+
+    static Set<Integer> bruteForce(float[][] vectors, float[] query, int k, IntPredicate live) {
+        return IntStream.range(0, vectors.length).filter(live).boxed()
+                .sorted(Comparator.comparingDouble((Integer node) -> VectorQuantizer.cosine(query, vectors[node])).reversed())
+                .limit(k)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * 按簇分布的随机向量，簇中心各不相同
+     */
+    static float[][] clustered(Random random, int count, int clusters) {
+        float[][] centers = new float[clusters][DIMENSION];
+        for (float[] center : centers) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            float[] center = centers[random.nextInt(clusters)];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = center[i] + 0.7f * (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 在已有向量附近的查询向量
+     */
+    static float[] near(float[] vector, Random random) {
+        float[] query = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            query[i] = vector[i] + 0.5f * (float) random.nextGaussian();
+        }
+        return query;
+    }
+
+    private static float[] unit(int axis) {
+        float[] vector = new float[DIMENSION];
+        vector[axis] = 1f;
+        return vector;
+    }
+}
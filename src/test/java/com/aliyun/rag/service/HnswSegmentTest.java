@@ -0,0 +1,172 @@
+package com.aliyun.rag.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.aliyun.rag.service.HnswGraphTest.DIMENSION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link HnswSegment} 封存与重新打开测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class HnswSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopenedSegmentMatchesInMemoryGraph() throws IOException {
+        Random random = new Random(1);
+        float[][] vectors = HnswGraphTest.clustered(random, 2000, 40);
+        HnswGraph graph = HnswGraphTest.build(vectors);
+
+        HnswSegment segment = persist(graph, 7, new long[0], new int[0]);
+        assertEquals(7, segment.segmentNo());
+        assertEquals(graph.size(), segment.size());
+        assertEquals(graph.entryPoint(), segment.entryPoint());
+        assertEquals(graph.maxLevel(), segment.maxLevel());
+        assertEquals(DIMENSION, segment.dimension());
+
+        // 图结构原样写出，同一查询得到相同的结果
+        for (int q = 0; q < 50; q++) {
+            float[] query = HnswGraphTest.near(vectors[random.nextInt(vectors.length)], random);
+            assertEquals(graph.search(query, 10, 64, null), segment.search(query, 10, 64, null));
+        }
+        int[] expected = new int[graph.maxConnections()];
+        int[] actual = new int[segment.maxConnections()];
+        for (int node = 0; node < graph.size(); node++) {
+            for (int level = 0; level <= graph.level(node); level++) {
+                int n = graph.neighbors(node, level, expected);
+                assertEquals(n, segment.neighbors(node, level, actual));
+                for (int i = 0; i < n; i++) {
+                    assertEquals(expected[i], actual[i]);
+                }
+            }
+            assertEquals(0, segment.neighbors(node, graph.level(node) + 1, actual));
+        }
+        assertTrue(HnswGraphTest.averageRecall(segment, vectors, random, node -> true, null) >= 0.95);
+    }
+
+    @Test
+    void payloadRoundTrips() throws IOException {
+        HnswGraph graph = new HnswGraph(DIMENSION, 8, 32, 3);
+        float[] vector = HnswGraphTest.clustered(new Random(2), 1, 1)[0];
+        graph.insert("中文ID", vector, "分块内容：检索增强生成", "{\"title\":\"报告.pdf\",\"page\":\"3\"}");
+        graph.insert("empty", vector, "", "{}");
+        graph.insert("null-text", vector, null, null);
+
+        HnswSegment segment = persist(graph, 1, new long[0], new int[0]);
+        assertEquals("中文ID", segment.id(0));
+        assertEquals("分块内容：检索增强生成", segment.text(0));
+        assertEquals("{\"title\":\"报告.pdf\",\"page\":\"3\"}", segment.metadata(0));
+        assertArrayEquals(vector, segment.vector(0));
+        assertEquals("", segment.text(1));
+        assertEquals("{}", segment.metadata(1));
+        // null写出为空字符串
+        assertEquals("", segment.text(2));
+        assertEquals("", segment.metadata(2));
+    }
+
+    @Test
+    void deletesSurviveReopen() throws IOException {
+        Random random = new Random(3);
+        float[][] vectors = HnswGraphTest.clustered(random, 500, 10);
+        HnswGraph graph = HnswGraphTest.build(vectors);
+        graph.markDeleted(5);
+        graph.markDeleted(9);
+
+        // 封存前已删除的节点随段一起写出
+        HnswSegment segment = persist(graph, 2, new long[0], new int[]{5, 9});
+        assertTrue(segment.isDeleted(5));
+        assertTrue(segment.isDeleted(9));
+        assertEquals(498, segment.liveCount());
+
+        // 封存后的删除追加到删除标记文件
+        segment.markDeleted(11);
+        segment.appendDeletes(new int[]{11}, 1, true);
+        segment.markDeleted(12);
+        segment.appendDeletes(new int[]{12, 99}, 1, false);
+
+        HnswSegment reopened = HnswSegment.open(HnswSegment.segmentPath(dir, 2));
+        Set<Integer> deleted = new HashSet<>(List.of(5, 9, 11, 12));
+        for (int node = 0; node < reopened.size(); node++) {
+            assertEquals(deleted.contains(node), reopened.isDeleted(node), "节点 " + node);
+        }
+        assertEquals(496, reopened.liveCount());
+        for (int q = 0; q < 20; q++) {
+            float[] query = HnswGraphTest.near(vectors[5], random);
+            for (HnswIndex.Hit hit : reopened.search(query, 10, 64, null)) {
+                assertFalse(deleted.contains(hit.node()));
+            }
+        }
+    }
+
+    @Test
+    void truncatedDeleteRecordIsIgnored() throws IOException {
+        HnswGraph graph = HnswGraphTest.build(HnswGraphTest.clustered(new Random(4), 100, 5));
+        HnswSegment segment = persist(graph, 3, new long[0], new int[0]);
+        segment.appendDeletes(new int[]{4}, 1, true);
+
+        // 模拟写入中断：末尾只有半条记录，另有越界的节点序号
+        Path deletePath = HnswSegment.deletePath(HnswSegment.segmentPath(dir, 3));
+        ByteBuffer tail = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN).putInt(1000).putShort((short) 8);
+        Files.write(deletePath, tail.array(), StandardOpenOption.APPEND);
+
+        HnswSegment reopened = HnswSegment.open(HnswSegment.segmentPath(dir, 3));
+        assertTrue(reopened.isDeleted(4));
+        assertFalse(reopened.isDeleted(8));
+        assertEquals(99, reopened.liveCount());
+    }
+
+    @Test
+    void mergedSegmentRecordsSources() throws IOException {
+        HnswGraph graph = HnswGraphTest.build(HnswGraphTest.clustered(new Random(5), 10, 2));
+        HnswSegment segment = persist(graph, 9, new long[]{3, 4, 6}, new int[0]);
+        assertArrayEquals(new long[]{3, 4, 6}, segment.sources());
+    }
+
+    @Test
+    void invalidFileIsRejected() throws IOException {
+        Path path = HnswSegment.segmentPath(dir, 1);
+        Files.write(path, new byte[128]);
+        assertThrows(IOException.class, () -> HnswSegment.open(path));
+    }
+
+    @Test
+    void deleteFilesRemovesSegmentAndDeletes() throws IOException {
+        HnswGraph graph = HnswGraphTest.build(HnswGraphTest.clustered(new Random(6), 10, 2));
+        HnswSegment segment = persist(graph, 4, new long[0], new int[]{1});
+        Path path = HnswSegment.segmentPath(dir, 4);
+        assertTrue(Files.exists(HnswSegment.deletePath(path)));
+
+        segment.deleteFiles();
+        assertFalse(Files.exists(path));
+        assertFalse(Files.exists(HnswSegment.deletePath(path)));
+    }
+
+    private HnswSegment persist(HnswGraph graph, long segmentNo, long[] sources, int[] deleted) throws IOException {
+        Path tmp = HnswSegment.writeTemp(dir, segmentNo, sources, graph);
+        assertFalse(Files.exists(HnswSegment.segmentPath(dir, segmentNo)), "提交前不应出现正式段文件");
+        HnswSegment segment = HnswSegment.commit(dir, segmentNo, tmp, deleted, deleted.length);
+        assertFalse(Files.exists(tmp));
+        return segment;
+    }
+}
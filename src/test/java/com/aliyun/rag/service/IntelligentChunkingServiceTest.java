@@ -0,0 +1,290 @@
+package com.aliyun.rag.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link IntelligentChunkingService} 偏移量分块与改造前正则分块的对比测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class IntelligentChunkingServiceTest {
+
+    private static final int PDF_SIZE = 200;
+    private static final int PDF_OVERLAP = 40;
+    private static final int MARKDOWN_SIZE = 200;
+    private static final int MARKDOWN_OVERLAP = 40;
+    private static final int DEFAULT_SIZE = 120;
+    private static final int DEFAULT_OVERLAP = 30;
+
+    private IntelligentChunkingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IntelligentChunkingService();
+        ReflectionTestUtils.setField(service, "pdfChunkSize", PDF_SIZE);
+        ReflectionTestUtils.setField(service, "pdfOverlap", PDF_OVERLAP);
+        ReflectionTestUtils.setField(service, "markdownChunkSize", MARKDOWN_SIZE);
+        ReflectionTestUtils.setField(service, "markdownOverlap", MARKDOWN_OVERLAP);
+        ReflectionTestUtils.setField(service, "docxChunkSize", DEFAULT_SIZE);
+        ReflectionTestUtils.setField(service, "docxOverlap", DEFAULT_OVERLAP);
+        ReflectionTestUtils.setField(service, "defaultChunkSize", DEFAULT_SIZE);
+        ReflectionTestUtils.setField(service, "defaultOverlap", DEFAULT_OVERLAP);
+        ReflectionTestUtils.setField(service, "intelligentChunkingEnabled", true);
+    }
+
+    @Test
+    void pdfMatchesLegacyWhenParagraphsFit() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            if (i > 0) {
+                text.append("\n\n");
+            }
+            text.append("第").append(i).append("段内容，").append("文本".repeat(10 + i * 3)).append("。");
+        }
+
+        List<String> expected = LegacyChunking.pdf(text.toString(), PDF_SIZE, PDF_OVERLAP);
+        assertEquals(expected, contents(service.semanticChunking(text.toString(),
+                IntelligentChunkingService.DocumentType.PDF)));
+    }
+
+    @Test
+    void pdfLongParagraphKeepsAllContent() {
+        String text = "开头段落。\n\n" + "这是一个很长的句子，包含很多内容。".repeat(30) + "\n\n结尾段落。";
+
+        List<IntelligentChunkingService.TextChunk> chunks = service.semanticChunking(text,
+                IntelligentChunkingService.DocumentType.PDF);
+        assertChunksAreSubstrings(text, chunks, PDF_SIZE);
+        assertEquals(stripWhitespace(text), stripWhitespace(withoutOverlap(chunks)));
+    }
+
+    @Test
+    void defaultChunksOverlapWithinLimit() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("Sentence number ").append(i).append(" has version 1.").append(i).append(" inside. ");
+        }
+
+        List<IntelligentChunkingService.TextChunk> chunks = service.semanticChunking(text.toString(),
+                IntelligentChunkingService.DocumentType.TXT);
+        assertTrue(chunks.size() > 1);
+        assertChunksAreSubstrings(text.toString(), chunks, DEFAULT_SIZE);
+        for (int i = 1; i < chunks.size(); i++) {
+            IntelligentChunkingService.TextChunk previous = chunks.get(i - 1);
+            IntelligentChunkingService.TextChunk current = chunks.get(i);
+            assertTrue(current.getStartIndex() > previous.getStartIndex(), "分块必须前进");
+            assertTrue(current.getStartIndex() < previous.getEndIndex(), "相邻分块应有重叠");
+            assertTrue(previous.getEndIndex() - current.getStartIndex() <= DEFAULT_OVERLAP, "重叠不超过配置值");
+        }
+        assertEquals(stripWhitespace(text.toString()), stripWhitespace(withoutOverlap(chunks)));
+
+        // 正则分块会在小数点处断句并把标点改写为". "，新分块保留原文
+        assertTrue(LegacyChunking.splitLongText(text.toString(), DEFAULT_SIZE, DEFAULT_OVERLAP).get(0).contains("1. 0"));
+        assertTrue(chunks.get(0).getContent().contains("version 1.0 inside."));
+    }
+
+    @Test
+    void overlapIsClampedToHalfChunkSize() {
+        ReflectionTestUtils.setField(service, "defaultOverlap", DEFAULT_SIZE);
+        String text = "短句。".repeat(200);
+
+        List<IntelligentChunkingService.TextChunk> chunks = service.semanticChunking(text,
+                IntelligentChunkingService.DocumentType.TXT);
+        assertChunksAreSubstrings(text, chunks, DEFAULT_SIZE);
+        for (int i = 1; i < chunks.size(); i++) {
+            assertTrue(chunks.get(i - 1).getEndIndex() - chunks.get(i).getStartIndex() <= DEFAULT_SIZE / 2);
+        }
+    }
+
+    @Test
+    void markdownHeadingInsideCodeFenceDoesNotSplit() {
+        String section1 = "# 安装\n\n先执行下面的脚本：\n\n```bash\n# 这不是标题\npip install rag\n```\n\n安装完成。";
+        String section2 = "# 使用\n\n" + "调用接口即可完成检索。".repeat(6);
+        String section3 = "## 配置\n\n" + "修改配置文件中的参数。".repeat(6);
+        String text = section1 + "\n\n" + section2 + "\n\n" + section3;
+
+        List<IntelligentChunkingService.TextChunk> chunks = service.semanticChunking(text,
+                IntelligentChunkingService.DocumentType.MARKDOWN);
+        assertEquals(List.of(section1, section2, section3), contents(chunks));
+        assertChunksAreSubstrings(text, chunks, MARKDOWN_SIZE);
+
+        // 两种实现都不丢失、不重复内容
+        assertEquals(stripWhitespace(String.join("", LegacyChunking.markdown(text, MARKDOWN_SIZE))),
+                stripWhitespace(String.join("", contents(chunks))));
+    }
+
+    @Test
+    void epubMatchesLegacyChapterMarkers() {
+        String text = "序言部分。第一章 开端，故事从这里开始。第10章 转折，事情发生了变化。"
+                + "第一节不是章节标题。Chapter 3 The end of the story. Chapter without number stays.";
+
+        List<String> expected = LegacyChunking.epub(text, DEFAULT_SIZE, DEFAULT_OVERLAP);
+        List<String> actual = contents(service.semanticChunking(text, IntelligentChunkingService.DocumentType.EPUB));
+        assertEquals(expected, actual);
+        assertEquals(4, actual.size());
+        assertTrue(actual.get(3).startsWith("Chapter 3"));
+    }
+
+    @Test
+    void fixedWindowsNeverSplitSurrogatePairs() {
+        // 没有句末标点的超长段落，PDF按句子切分后仍超长，退化为固定窗口；开头的单字符让代理对落在奇数偏移
+        String text = "a" + "😀".repeat(PDF_SIZE) + "汉字" + "😀".repeat(PDF_SIZE);
+
+        List<IntelligentChunkingService.TextChunk> chunks = service.semanticChunking(text,
+                IntelligentChunkingService.DocumentType.PDF);
+        assertTrue(chunks.size() > 1);
+        assertChunksAreSubstrings(text, chunks, PDF_SIZE);
+        for (IntelligentChunkingService.TextChunk chunk : chunks) {
+            assertFalse(hasBrokenSurrogate(chunk.getContent()), "分块不应切开代理对");
+        }
+        assertEquals(text, withoutOverlap(chunks));
+
+        // 正则分块按固定字符窗口截取，会切开代理对
+        assertTrue(LegacyChunking.pdf(text, PDF_SIZE, PDF_OVERLAP).stream()
+                .anyMatch(IntelligentChunkingServiceTest::hasBrokenSurrogate));
+    }
+
+    private static List<String> contents(List<IntelligentChunkingService.TextChunk> chunks) {
+        List<String> contents = new ArrayList<>(chunks.size());
+        for (IntelligentChunkingService.TextChunk chunk : chunks) {
+            contents.add(chunk.getContent());
+        }
+        return contents;
+    }
+
+    private static void assertChunksAreSubstrings(String text, List<IntelligentChunkingService.TextChunk> chunks,
+                                                  int chunkSize) {
+        for (IntelligentChunkingService.TextChunk chunk : chunks) {
+            assertEquals(text.substring(chunk.getStartIndex(), chunk.getEndIndex()), chunk.getContent());
+            assertTrue(chunk.getContent().length() <= chunkSize, "分块长度不超过配置值");
+        }
+    }
+
+    /**
+     * 按偏移量去掉相邻分块的重叠部分后拼接
+     */
+    private static String withoutOverlap(List<IntelligentChunkingService.TextChunk> chunks) {
+        StringBuilder joined = new StringBuilder();
+        int covered = 0;
+        for (IntelligentChunkingService.TextChunk chunk : chunks) {
+            int from = Math.max(chunk.getStartIndex(), covered) - chunk.getStartIndex();
+            joined.append(chunk.getContent(), from, chunk.getContent().length());
+            covered = Math.max(covered, chunk.getEndIndex());
+        }
+        return joined.toString();
+    }
+
+    private static String stripWhitespace(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+
+    private static boolean hasBrokenSurrogate(String text) {
+        return !text.isEmpty() && (Character.isLowSurrogate(text.charAt(0))
+                || Character.isHighSurrogate(text.charAt(text.length() - 1)));
+    }
+
+    /**
+     * 改造前基于正则切分的分块逻辑
+     */
+    private static final class LegacyChunking {
+
+        static List<String> pdf(String text, int chunkSize, int overlap) {
+            List<String> chunks = new ArrayList<>();
+            StringBuilder currentChunk = new StringBuilder();
+            for (String paragraph : text.split("\\n\\s*\\n")) {
+                if (currentChunk.length() + paragraph.length() <= chunkSize) {
+                    currentChunk.append(paragraph).append("\n\n");
+                } else {
+                    if (currentChunk.length() > 0) {
+                        chunks.add(currentChunk.toString().trim());
+                    }
+                    if (paragraph.length() > chunkSize) {
+                        for (int i = 0; i < paragraph.length(); i += chunkSize - overlap) {
+                            chunks.add(paragraph.substring(i, Math.min(i + chunkSize, paragraph.length())));
+                        }
+                    } else {
+                        currentChunk = new StringBuilder(paragraph).append("\n\n");
+                    }
+                }
+            }
+            if (currentChunk.length() > 0) {
+                chunks.add(currentChunk.toString().trim());
+            }
+            return chunks;
+        }
+
+        static List<String> markdown(String text, int chunkSize) {
+            List<String> chunks = new ArrayList<>();
+            for (String section : text.split("(?=^#{1,6}\\s)")) {
+                if (section.trim().isEmpty()) {
+                    continue;
+                }
+                if (section.length() <= chunkSize) {
+                    chunks.add(section.trim());
+                    continue;
+                }
+                StringBuilder currentChunk = new StringBuilder();
+                for (String paragraph : section.split("\\n\\s*\\n")) {
+                    if (currentChunk.length() + paragraph.length() <= chunkSize) {
+                        currentChunk.append(paragraph).append("\n\n");
+                    } else {
+                        if (currentChunk.length() > 0) {
+                            chunks.add(currentChunk.toString().trim());
+                        }
+                        currentChunk = new StringBuilder(paragraph).append("\n\n");
+                    }
+                }
+                if (currentChunk.length() > 0) {
+                    chunks.add(currentChunk.toString().trim());
+                }
+            }
+            return chunks;
+        }
+
+        static List<String> epub(String text, int chunkSize, int overlap) {
+            List<String> chunks = new ArrayList<>();
+            for (String chapter : text.split("(?=第[一二三四五六七八九十\\d]+章|Chapter\\s+\\d+)")) {
+                if (chapter.trim().isEmpty()) {
+                    continue;
+                }
+                if (chapter.length() <= chunkSize) {
+                    chunks.add(chapter.trim());
+                } else {
+                    chunks.addAll(splitLongText(chapter, chunkSize, overlap));
+                }
+            }
+            return chunks;
+        }
+
+        static List<String> splitLongText(String text, int chunkSize, int overlap) {
+            List<String> chunks = new ArrayList<>();
+            StringBuilder currentChunk = new StringBuilder();
+            for (String sentence : text.split("[.!?。！？]+")) {
+                if (currentChunk.length() + sentence.length() <= chunkSize) {
+                    currentChunk.append(sentence).append(". ");
+                } else if (currentChunk.length() > 0) {
+                    chunks.add(currentChunk.toString().trim());
+                    String previous = currentChunk.toString();
+                    String overlapContent = previous.length() <= overlap
+                            ? previous : previous.substring(previous.length() - overlap);
+                    currentChunk = new StringBuilder(overlapContent).append(sentence).append(". ");
+                } else {
+                    chunks.add(sentence);
+                }
+            }
+            if (currentChunk.length() > 0) {
+                chunks.add(currentChunk.toString().trim());
+            }
+            return chunks;
+        }
+    }
+}
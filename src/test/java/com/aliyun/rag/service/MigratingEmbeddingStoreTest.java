@@ -0,0 +1,264 @@
+package com.aliyun.rag.service;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * {@link MigratingEmbeddingStore} 迁移期间双写及删除与复制批次先后顺序的测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class MigratingEmbeddingStoreTest {
+
+    @Mock
+    private EmbeddingStore<TextSegment> legacy;
+    @Mock
+    private PartitionedMilvusStore shared;
+
+    private final Object lock = new Object();
+
+    @Test
+    void writesGoToLegacyThenShared() {
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        List<String> ids = List.of("a", "b");
+        List<Embedding> embeddings = List.of(embedding(1f), embedding(2f));
+        List<TextSegment> segments = List.of(segment("a"), segment("b"));
+
+        store.addAll(ids, embeddings, segments);
+
+        InOrder order = inOrder(legacy, shared);
+        order.verify(legacy).addAll(ids, embeddings, segments);
+        order.verify(shared).addAll(ids, embeddings, segments);
+    }
+
+    @Test
+    void generatedIdIsTheSameInBothStores() {
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        TextSegment segment = segment("a");
+
+        String id = store.add(embedding(1f), segment);
+
+        verify(legacy).addAll(eq(List.of(id)), anyList(), eq(List.of(segment)));
+        verify(shared).addAll(eq(List.of(id)), anyList(), eq(List.of(segment)));
+
+        List<String> ids = store.addAll(List.of(embedding(1f), embedding(2f)));
+        assertEquals(2, ids.size());
+        verify(legacy).addAll(eq(ids), anyList(), isNull());
+        verify(shared).addAll(eq(ids), anyList(), isNull());
+    }
+
+    @Test
+    void deletesGoToLegacyThenShared() {
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        Filter filter = MetadataFilterBuilder.metadataKey("fileRecordId").isEqualTo("10");
+
+        store.removeAll(List.of("a"));
+        store.removeAll(filter);
+        store.removeAll();
+
+        InOrder order = inOrder(legacy, shared);
+        order.verify(legacy).removeAll(List.of("a"));
+        order.verify(shared).removeAll(List.of("a"));
+        order.verify(legacy).removeAll(filter);
+        order.verify(shared).removeAll(filter);
+        order.verify(legacy).removeAll();
+        order.verify(shared).removeAll();
+    }
+
+    @Test
+    void searchReadsLegacyOnly() {
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embedding(1f))
+                .maxResults(5)
+                .build();
+
+        store.search(request);
+
+        verify(legacy).search(request);
+        verifyNoInteractions(shared);
+    }
+
+    @Test
+    void failedLegacyWriteIsNotMirrored() {
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("Milvus不可用");
+        }).when(legacy).removeAll(anyCollection());
+
+        assertThrows(IllegalStateException.class, () -> store.removeAll(List.of("a")));
+        verifyNoInteractions(shared);
+    }
+
+    @Test
+    void deleteBeforeCopyBatchIsNotCopied() {
+        Contents contents = new Contents();
+        contents.legacyVectors.put("a", new float[]{1f});
+        contents.legacyVectors.put("b", new float[]{2f});
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+
+        store.removeAll(List.of("a"));
+        copyBatch(contents, List.of("a", "b"), null, null);
+
+        assertEquals(Set.of("b"), contents.sharedVectors.keySet());
+    }
+
+    @Test
+    void deleteDuringCopyBatchWaitsAndRemovesCopiedVector() throws Exception {
+        Contents contents = new Contents();
+        contents.legacyVectors.put("a", new float[]{1f});
+        contents.legacyVectors.put("b", new float[]{2f});
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+        CountDownLatch read = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // 复制批次已从独立collection读到a，尚未写入共享collection
+            Future<?> copy = executor.submit(() -> copyBatch(contents, List.of("a", "b"), read, proceed));
+            assertTrue(read.await(5, TimeUnit.SECONDS));
+            Future<?> delete = executor.submit(() -> store.removeAll(List.of("a")));
+
+            assertThrows(TimeoutException.class, () -> delete.get(200, TimeUnit.MILLISECONDS),
+                    "删除应等待复制批次写完");
+            assertTrue(contents.legacyVectors.containsKey("a"));
+
+            proceed.countDown();
+            copy.get(5, TimeUnit.SECONDS);
+            delete.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse(contents.legacyVectors.containsKey("a"));
+        assertEquals(Set.of("b"), contents.sharedVectors.keySet());
+    }
+
+    @Test
+    void writeAfterItsBatchStillReachesShared() {
+        Contents contents = new Contents();
+        contents.legacyVectors.put("a", new float[]{1f});
+        MigratingEmbeddingStore store = new MigratingEmbeddingStore(legacy, shared, lock);
+
+        copyBatch(contents, List.of("a"), null, null);
+        store.addAll(List.of("b"), List.of(embedding(2f)), List.of(segment("b")));
+        // 复制批次读到新写入的向量时以upsert覆盖，结果相同
+        copyBatch(contents, List.of("b"), null, null);
+
+        assertEquals(contents.legacyVectors.keySet(), contents.sharedVectors.keySet());
+        assertEquals(Set.of("a", "b"), contents.sharedVectors.keySet());
+    }
+
+    /**
+     * 按 MilvusLayoutMigrationService 的方式复制一个批次：持锁读取独立collection并写入共享collection
+     *
+     * @param read 读取完成后计数，可为null
+     * @param proceed 写入前等待，可为null
+     */
+    private void copyBatch(Contents contents, List<String> batch, CountDownLatch read, CountDownLatch proceed) {
+        synchronized (lock) {
+            List<VectorStoreBackend.StoredVector> vectors = batch.stream()
+                    .filter(contents.legacyVectors::containsKey)
+                    .map(id -> new VectorStoreBackend.StoredVector(id, "分块 " + id, Map.of(), contents.legacyVectors.get(id)))
+                    .toList();
+            if (read != null) {
+                read.countDown();
+            }
+            if (proceed != null) {
+                try {
+                    assertTrue(proceed.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            shared.upsert(vectors);
+        }
+    }
+
+    private static Embedding embedding(float value) {
+        return Embedding.from(new float[]{value});
+    }
+
+    private static TextSegment segment(String id) {
+        return TextSegment.from("分块 " + id, Metadata.from(Map.of("fileRecordId", id)));
+    }
+
+    /**
+     * 两个collection中的内容，mock的写入和删除作用于这里；不是每个用例都会用到全部操作，按宽松模式打桩
+     */
+    private final class Contents {
+
+        private final Map<String, float[]> legacyVectors = new ConcurrentHashMap<>();
+        private final Map<String, float[]> sharedVectors = new ConcurrentHashMap<>();
+
+        Contents() {
+            lenient().doAnswer(invocation -> {
+                put(legacyVectors, invocation.getArgument(0), invocation.getArgument(1));
+                return null;
+            }).when(legacy).addAll(anyList(), anyList(), any());
+            lenient().doAnswer(invocation -> {
+                put(sharedVectors, invocation.getArgument(0), invocation.getArgument(1));
+                return null;
+            }).when(shared).addAll(anyList(), anyList(), any());
+            lenient().doAnswer(invocation -> {
+                legacyVectors.keySet().removeAll(invocation.<Collection<String>>getArgument(0));
+                return null;
+            }).when(legacy).removeAll(anyCollection());
+            lenient().doAnswer(invocation -> {
+                sharedVectors.keySet().removeAll(invocation.<Collection<String>>getArgument(0));
+                return null;
+            }).when(shared).removeAll(anyCollection());
+            lenient().doAnswer(invocation -> {
+                for (VectorStoreBackend.StoredVector vector : invocation.<List<VectorStoreBackend.StoredVector>>getArgument(0)) {
+                    sharedVectors.put(vector.id(), vector.vector());
+                }
+                return null;
+            }).when(shared).upsert(anyList());
+        }
+
+        private void put(Map<String, float[]> target, List<String> ids, List<Embedding> embeddings) {
+            for (int i = 0; i < ids.size(); i++) {
+                target.put(ids.get(i), embeddings.get(i).vector());
+            }
+        }
+    }
+}
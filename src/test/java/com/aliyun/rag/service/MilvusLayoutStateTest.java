@@ -0,0 +1,90 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link MilvusLayoutState} 在两种布局下按Redis记录解析用户状态的测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class MilvusLayoutStateTest {
+
+    private static final String STATE_KEY = "rag:vector-layout:state";
+
+    @Mock
+    private MilvusConfig milvusConfig;
+    @Mock
+    private MilvusStoreRegistry milvusStoreRegistry;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private MilvusLayoutState layoutState;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().when(milvusConfig.getLayoutStateCacheSeconds()).thenReturn(5L);
+        layoutState = new MilvusLayoutState(milvusConfig, milvusStoreRegistry, stringRedisTemplate);
+    }
+
+    @Test
+    void perUserLayoutHonoursRebuildRecordsOnly() {
+        when(milvusConfig.isSharedLayout()).thenReturn(false);
+        when(hashOperations.get(STATE_KEY, "1")).thenReturn("REBUILDING");
+        when(hashOperations.get(STATE_KEY, "2")).thenReturn("SWITCHING");
+        // 切换到独立布局前留下的迁移记录不再生效
+        when(hashOperations.get(STATE_KEY, "3")).thenReturn("SHARED");
+        when(hashOperations.get(STATE_KEY, "4")).thenReturn(null);
+
+        assertEquals(MilvusLayoutState.State.REBUILDING, layoutState.resolve(1L, "alice"));
+        assertEquals(MilvusLayoutState.State.SWITCHING, layoutState.resolve(2L, "bob"));
+        assertEquals(MilvusLayoutState.State.LEGACY, layoutState.resolve(3L, "carol"));
+        assertEquals(MilvusLayoutState.State.LEGACY, layoutState.resolve(4L, "dave"));
+        verifyNoInteractions(milvusStoreRegistry);
+    }
+
+    @Test
+    void sharedLayoutFallsBackToCollectionExistence() {
+        when(milvusConfig.isSharedLayout()).thenReturn(true);
+        when(hashOperations.get(eq(STATE_KEY), anyString())).thenReturn(null);
+        when(milvusStoreRegistry.collectionExists("alice_1")).thenReturn(true);
+        when(milvusStoreRegistry.collectionExists("bob_2")).thenReturn(false);
+
+        assertEquals(MilvusLayoutState.State.LEGACY, layoutState.resolve(1L, "alice"));
+        assertEquals(MilvusLayoutState.State.SHARED, layoutState.resolve(2L, "bob"));
+    }
+
+    @Test
+    void onlyOneCallerStartsARebuild() {
+        when(hashOperations.putIfAbsent(STATE_KEY, "1", "REBUILDING")).thenReturn(true, false);
+
+        assertTrue(layoutState.markRebuilding(1L));
+        assertFalse(layoutState.markRebuilding(1L));
+        // 成功的调用者在本地缓存新状态，不再读取Redis
+        assertEquals(MilvusLayoutState.State.REBUILDING, layoutState.resolve(1L, "alice"));
+
+        layoutState.reset(1L);
+        verify(hashOperations).delete(STATE_KEY, "1");
+    }
+}
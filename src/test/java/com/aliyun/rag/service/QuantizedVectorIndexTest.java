@@ -0,0 +1,292 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.QuantizedIndexProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.SearchResult;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.util.VectorQuantizer;
+import dev.langchain4j.data.embedding.Embedding;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link QuantizedVectorIndex} 量化检索与重打分测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class QuantizedVectorIndexTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String USERNAME = "alice";
+    private static final int DIMENSION = 128;
+    private static final int TOP_K = 10;
+
+    @Mock
+    private MilvusConfig milvusConfig;
+    @Mock
+    private VectorStoreBackend backend;
+    @Mock
+    private DocumentMilvusMappingRepository mappingRepository;
+
+    private QuantizedVectorIndex index;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void rescoredResultsCarryFullPrecisionScoreAndMetadata() throws InterruptedException {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        vectors.put("v0", unit(0));
+        vectors.put("v1", mix(0, 1, 0.8));
+        vectors.put("v2", mix(0, 1, 0.3));
+        vectors.put("v3", unit(2));
+        index = loadedIndex(QuantizedIndexProperties.Quantization.INT8, vectors);
+
+        float[] query = unit(0);
+        List<SearchResult> results = index.search(Embedding.from(query), 2, 0.0, USER_ID, USERNAME);
+        assertEquals(2, results.size());
+        assertEquals("file-v0", results.get(0).getFileRecordId());
+        assertEquals("file-v1", results.get(1).getFileRecordId());
+        // 分数按全精度向量计算，与向量存储检索同为 (余弦相似度 + 1) / 2
+        assertEquals((VectorQuantizer.cosine(query, vectors.get("v1")) + 1) / 2, results.get(1).getScore(), 1e-9);
+        assertEquals(1.0, results.get(0).getScore(), 1e-6);
+
+        SearchResult first = results.get(0);
+        assertEquals("v0.pdf", first.getTitle());
+        assertEquals("分块 v0", first.getContent());
+        assertEquals("PDF", first.getSource());
+        assertEquals("3", first.getPage());
+        assertEquals(7, first.getPosition());
+    }
+
+    @Test
+    void resultsBelowMinScoreAreDropped() throws InterruptedException {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        vectors.put("same", unit(0));
+        vectors.put("orthogonal", unit(1));
+        vectors.put("opposite", scale(unit(0), -1f));
+        index = loadedIndex(QuantizedIndexProperties.Quantization.INT8, vectors);
+
+        // 正交向量分数为0.5，反向向量为0
+        List<SearchResult> results = index.search(Embedding.from(unit(0)), 3, 0.6, USER_ID, USERNAME);
+        assertEquals(1, results.size());
+        assertEquals("file-same", results.get(0).getFileRecordId());
+    }
+
+    @Test
+    void candidatePoolIsMaxResultsTimesMultiplier() throws InterruptedException {
+        Map<String, float[]> vectors = randomVectors(new Random(11), 200);
+        index = loadedIndex(QuantizedIndexProperties.Quantization.INT8, vectors);
+
+        index.search(Embedding.from(vectors.get("v0")), 5, 0.0, USER_ID, USERNAME, 3);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> candidates = ArgumentCaptor.forClass(Collection.class);
+        verify(backend).fetch(eq(USER_ID), eq(USERNAME), candidates.capture(), eq(true), eq(false));
+        assertEquals(15, candidates.getValue().size());
+        assertTrue(candidates.getValue().contains("v0"));
+    }
+
+    @Test
+    void removedVectorIsNoLongerACandidate() throws InterruptedException {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        vectors.put("v0", unit(0));
+        vectors.put("v1", mix(0, 1, 0.9));
+        vectors.put("v2", unit(1));
+        index = loadedIndex(QuantizedIndexProperties.Quantization.INT8, vectors);
+
+        index.remove(USER_ID, List.of("v0"));
+        List<SearchResult> results = index.search(Embedding.from(unit(0)), 1, 0.0, USER_ID, USERNAME, 1);
+        assertEquals(1, results.size());
+        assertEquals("file-v1", results.get(0).getFileRecordId());
+
+        // 删除的槽位被新写入的向量复用，新向量参与候选
+        index.add(USER_ID, List.of("v3"), List.of(Embedding.from(unit(1))));
+        assertEquals(3, index.getStats(USER_ID).get("userVectorCount"));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> candidates = ArgumentCaptor.forClass(Collection.class);
+        index.search(Embedding.from(unit(1)), 1, 0.0, USER_ID, USERNAME, 2);
+        verify(backend, times(2)).fetch(eq(USER_ID), eq(USERNAME), candidates.capture(), eq(true), eq(false));
+        assertEquals(Set.of("v2", "v3"), new HashSet<>(candidates.getValue()));
+    }
+
+    @Test
+    void int8RescoringMatchesBruteForce() throws InterruptedException {
+        assertRecall(QuantizedIndexProperties.Quantization.INT8, 0.98);
+    }
+
+    @Test
+    void binaryRescoringMatchesBruteForce() throws InterruptedException {
+        assertRecall(QuantizedIndexProperties.Quantization.BINARY, 0.85);
+    }
+
+    @Test
+    void disabledIndexFallsBackWithoutLoading() {
+        QuantizedIndexProperties properties = new QuantizedIndexProperties();
+        properties.setEnabled(false);
+        when(milvusConfig.getDimension()).thenReturn(DIMENSION);
+        index = new QuantizedVectorIndex(properties, milvusConfig, backend, mappingRepository);
+
+        assertNull(index.search(Embedding.from(unit(0)), 5, 0.0, USER_ID, USERNAME));
+        verifyNoInteractions(backend, mappingRepository);
+    }
+
+    private void assertRecall(QuantizedIndexProperties.Quantization quantization, double expected)
+            throws InterruptedException {
+        Random random = new Random(quantization.ordinal() + 21);
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < 50; c++) {
+            centers.add(gaussian(random));
+        }
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            vectors.put("v" + i, near(centers.get(random.nextInt(centers.size())), random));
+        }
+        index = loadedIndex(quantization, vectors);
+
+        double recall = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = near(centers.get(random.nextInt(centers.size())), random);
+            Set<String> exact = vectors.entrySet().stream()
+                    .sorted(Comparator.comparingDouble(
+                            (Map.Entry<String, float[]> e) -> VectorQuantizer.cosine(query, e.getValue())).reversed())
+                    .limit(TOP_K)
+                    .map(e -> "file-" + e.getKey())
+                    .collect(Collectors.toSet());
+            List<SearchResult> results = index.search(Embedding.from(query), TOP_K, 0.0, USER_ID, USERNAME);
+            assertEquals(TOP_K, results.size());
+            for (int i = 1; i < results.size(); i++) {
+                assertFalse(results.get(i).getScore() > results.get(i - 1).getScore(), "结果应按分数降序");
+            }
+            recall += results.stream().filter(r -> exact.contains(r.getFileRecordId())).count() / (double) TOP_K;
+        }
+        recall /= queries;
+        assertTrue(recall >= expected, quantization + " 重打分召回率: " + recall);
+    }
+
+    /**
+     * 构造索引并等待后台加载完成
+     */
+    private QuantizedVectorIndex loadedIndex(QuantizedIndexProperties.Quantization quantization,
+                                             Map<String, float[]> vectors) throws InterruptedException {
+        QuantizedIndexProperties properties = new QuantizedIndexProperties();
+        properties.setQuantization(quantization);
+        when(milvusConfig.getDimension()).thenReturn(DIMENSION);
+        List<DocumentMilvusMapping> mappings = new ArrayList<>();
+        for (String id : vectors.keySet()) {
+            DocumentMilvusMapping mapping = new DocumentMilvusMapping();
+            mapping.setUserId(USER_ID);
+            mapping.setMilvusId(id);
+            mappings.add(mapping);
+        }
+        when(mappingRepository.findByUserIdAndIsDeleted(USER_ID, 0)).thenReturn(mappings);
+        when(backend.exists(USER_ID, USERNAME)).thenReturn(true);
+        when(backend.fetch(eq(USER_ID), eq(USERNAME), anyCollection(), eq(true), anyBoolean())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(2);
+            List<VectorStoreBackend.StoredVector> stored = new ArrayList<>();
+            for (String id : new HashSet<>(ids)) {
+                float[] vector = vectors.get(id);
+                if (vector != null) {
+                    stored.add(new VectorStoreBackend.StoredVector(id, "分块 " + id, Map.of(
+                            "fileRecordId", "file-" + id, "title", id + ".pdf", "fileType", "PDF",
+                            "page", "3", "chunkIndex", "7"), vector));
+                }
+            }
+            return stored;
+        });
+
+        QuantizedVectorIndex created = new QuantizedVectorIndex(properties, milvusConfig, backend, mappingRepository);
+        // 首次检索提交后台加载并返回null，由调用方改走向量存储检索
+        assertNull(created.search(Embedding.from(new float[DIMENSION]), 1, 0.0, USER_ID, USERNAME));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!"READY".equals(created.getStats(USER_ID).get("userState"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "量化索引未在限期内加载完成");
+            Thread.sleep(10);
+        }
+        assertEquals(vectors.size(), created.getStats(USER_ID).get("userVectorCount"));
+        return created;
+    }
+
+    private static Map<String, float[]> randomVectors(Random random, int count) {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            vectors.put("v" + i, gaussian(random));
+        }
+        return vectors;
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] near(float[] center, Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + 0.8f * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] unit(int axis) {
+        float[] vector = new float[DIMENSION];
+        vector[axis] = 1f;
+        return vector;
+    }
+
+    /**
+     * 两个坐标轴方向按余弦值cos混合的单位向量
+     */
+    private static float[] mix(int axis, int other, double cos) {
+        float[] vector = new float[DIMENSION];
+        vector[axis] = (float) cos;
+        vector[other] = (float) Math.sqrt(1 - cos * cos);
+        return vector;
+    }
+
+    private static float[] scale(float[] vector, float factor) {
+        float[] scaled = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            scaled[i] = vector[i] * factor;
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,166 @@
+package com.aliyun.rag.service;
+
+import com.aliyun.rag.config.MilvusConfig;
+import com.aliyun.rag.config.VectorStoreProperties;
+import com.aliyun.rag.model.DocumentMilvusMapping;
+import com.aliyun.rag.model.UserFileRecord;
+import com.aliyun.rag.repository.DocumentMilvusMappingRepository;
+import com.aliyun.rag.repository.UserFileRecordRepository;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link VectorStoreService#releaseVectors} 删除文档时向量转交测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class VectorStoreServiceReleaseTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String USERNAME = "alice";
+    private static final String VECTOR_ID = "10_v1_0";
+
+    @Mock
+    private DocumentMilvusMappingRepository mappingRepository;
+    @Mock
+    private UserFileRecordRepository fileRecordRepository;
+    @Mock
+    private VectorStoreBackend backend;
+    @Mock
+    private QuantizedVectorIndex quantizedVectorIndex;
+    @Mock
+    private EmbeddingStore<TextSegment> store;
+    @Captor
+    private ArgumentCaptor<List<TextSegment>> segments;
+    @Captor
+    private ArgumentCaptor<List<DocumentMilvusMapping>> updated;
+
+    private VectorStoreService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new VectorStoreService(mock(EmbeddingModel.class), mappingRepository, fileRecordRepository,
+                mock(MilvusConfig.class), backend, mock(MetricsService.class), mock(ThreadPoolTaskExecutor.class),
+                mock(KeywordIndexService.class), mock(HybridSearchEngine.class), quantizedVectorIndex,
+                new VectorStoreProperties());
+    }
+
+    @Test
+    void vectorIsHandedToReferenceInAnotherDocument() {
+        DocumentMilvusMapping owner = mapping(10L, VECTOR_ID, null, 0);
+        DocumentMilvusMapping heir = mapping(20L, "20_v1_3", VECTOR_ID, 3);
+        DocumentMilvusMapping other = mapping(30L, "30_v1_1", VECTOR_ID, 1);
+        when(mappingRepository.findReferences(anyCollection())).thenReturn(List.of(heir, other));
+        when(backend.fetch(eq(USER_ID), eq(USERNAME), anyCollection(), eq(true), eq(true))).thenReturn(List.of(
+                new VectorStoreBackend.StoredVector(VECTOR_ID, "分块文本",
+                        Map.of("fileRecordId", "10", "title", "a.pdf", "chunkIndex", "0", "page", "7"),
+                        new float[]{0.6f, 0.8f})));
+        when(fileRecordRepository.findById(20L)).thenReturn(Optional.of(record(20L, "b.pdf", "PDF")));
+        when(backend.getStore(USER_ID, USERNAME)).thenReturn(store);
+
+        service.releaseVectors(USER_ID, USERNAME, List.of(owner));
+
+        // 第一个引用方成为持有方，其他引用方仍引用同一个向量ID
+        assertEquals(VECTOR_ID, heir.getMilvusId());
+        assertNull(heir.getRefMilvusId());
+        assertEquals("30_v1_1", other.getMilvusId());
+        assertEquals(VECTOR_ID, other.getRefMilvusId());
+        verify(mappingRepository).updateBatch(updated.capture(), anyInt());
+        assertEquals(List.of(heir), updated.getValue());
+
+        // 向量不删除，只改写文档归属，其余元数据保留
+        verify(quantizedVectorIndex, never()).remove(eq(USER_ID), anyCollection());
+        verify(store).removeAll(List.of(VECTOR_ID));
+        verify(store).addAll(eq(List.of(VECTOR_ID)), anyList(), segments.capture());
+        TextSegment segment = segments.getValue().get(0);
+        assertEquals("分块文本", segment.text());
+        assertEquals("20", segment.metadata().getString("fileRecordId"));
+        assertEquals("b.pdf", segment.metadata().getString("title"));
+        assertEquals("PDF", segment.metadata().getString("fileType"));
+        assertEquals("3", segment.metadata().getString("chunkIndex"));
+        assertEquals("7", segment.metadata().getString("page"));
+    }
+
+    @Test
+    void unreferencedVectorIsRemoved() {
+        DocumentMilvusMapping owner = mapping(10L, VECTOR_ID, null, 0);
+        when(mappingRepository.findReferences(anyCollection())).thenReturn(List.of());
+        when(backend.getStore(USER_ID, USERNAME)).thenReturn(store);
+
+        service.releaseVectors(USER_ID, USERNAME, List.of(owner));
+
+        verify(quantizedVectorIndex).remove(USER_ID, List.of(VECTOR_ID));
+        verify(store).removeAll(List.of(VECTOR_ID));
+        verify(mappingRepository, never()).updateBatch(anyList(), anyInt());
+    }
+
+    @Test
+    void referenceInSameDocumentKeepsVectorAsIs() {
+        DocumentMilvusMapping owner = mapping(10L, VECTOR_ID, null, 0);
+        DocumentMilvusMapping heir = mapping(10L, "10_v2_4", VECTOR_ID, 4);
+        when(mappingRepository.findReferences(anyCollection())).thenReturn(List.of(heir));
+
+        service.releaseVectors(USER_ID, USERNAME, List.of(owner));
+
+        assertEquals(VECTOR_ID, heir.getMilvusId());
+        assertNull(heir.getRefMilvusId());
+        verify(mappingRepository).updateBatch(eq(List.of(heir)), anyInt());
+        verify(backend, never()).fetch(eq(USER_ID), eq(USERNAME), anyCollection(), anyBoolean(), anyBoolean());
+        verifyNoInteractions(store, quantizedVectorIndex);
+    }
+
+    @Test
+    void releasedReferencesHoldNoVector() {
+        DocumentMilvusMapping reference = mapping(10L, "10_v1_5", "30_v1_0", 5);
+
+        service.releaseVectors(USER_ID, USERNAME, List.of(reference));
+
+        verifyNoInteractions(mappingRepository, backend, quantizedVectorIndex);
+    }
+
+    private static DocumentMilvusMapping mapping(Long fileRecordId, String milvusId, String refMilvusId, int vectorIndex) {
+        DocumentMilvusMapping mapping = new DocumentMilvusMapping();
+        mapping.setFileRecordId(fileRecordId);
+        mapping.setUserId(USER_ID);
+        mapping.setMilvusId(milvusId);
+        mapping.setRefMilvusId(refMilvusId);
+        mapping.setVectorIndex(vectorIndex);
+        return mapping;
+    }
+
+    private static UserFileRecord record(Long id, String fileName, String fileType) {
+        UserFileRecord record = new UserFileRecord();
+        record.setId(id);
+        record.setFileName(fileName);
+        record.setFileType(fileType);
+        return record;
+    }
+}
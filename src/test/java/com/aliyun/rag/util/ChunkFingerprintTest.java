@@ -0,0 +1,113 @@
+package com.aliyun.rag.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ChunkFingerprint} 指纹与分段测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class ChunkFingerprintTest {
+
+    private static final String TEXT = "检索增强生成系统先把文档切分成若干分块，为每个分块计算向量并写入向量库。"
+            + "用户提问时，系统把问题转换为向量，在向量库中找出最相似的分块，再把这些分块和问题一起交给大模型生成回答。"
+            + "Retrieval augmented generation keeps answers grounded in the uploaded documents.";
+
+    @Test
+    void everyPairWithinBandsMinusOneSharesABand() {
+        Random random = new Random(42);
+        for (int distance = 0; distance < ChunkFingerprint.BANDS; distance++) {
+            for (int trial = 0; trial < 20_000; trial++) {
+                long a = random.nextLong();
+                long b = flipRandomBits(a, distance, random);
+                assertEquals(distance, ChunkFingerprint.distance(a, b));
+                assertTrue(sharesBand(a, b), "汉明距离 " + distance + " 的指纹应至少有一段相同");
+            }
+        }
+    }
+
+    @Test
+    void oneFlipPerBandSharesNoBand() {
+        long a = new Random(7).nextLong();
+        long b = a;
+        for (int band = 0; band < ChunkFingerprint.BANDS; band++) {
+            b ^= 1L << (16 * band);
+        }
+        assertEquals(ChunkFingerprint.BANDS, ChunkFingerprint.distance(a, b));
+        assertFalse(sharesBand(a, b));
+    }
+
+    @Test
+    void bandsCoverAllBitsFromHighToLow() {
+        long hash = 0x1234_5678_9ABC_DEF0L;
+        assertEquals(0x1234, ChunkFingerprint.band(hash, 0));
+        assertEquals(0x5678, ChunkFingerprint.band(hash, 1));
+        assertEquals(0x9ABC, ChunkFingerprint.band(hash, 2));
+        assertEquals(0xDEF0, ChunkFingerprint.band(hash, 3));
+    }
+
+    @Test
+    void simHashIgnoresCaseAndPunctuation() {
+        String variant = TEXT.toUpperCase().replace("，", ",").replace("。", ". ");
+        assertEquals(ChunkFingerprint.simHash(TEXT, 64), ChunkFingerprint.simHash(variant, 64));
+    }
+
+    @Test
+    void smallEditsStayCloseAndUnrelatedTextStaysFar() {
+        Random random = new Random(42);
+        long base = ChunkFingerprint.simHash(TEXT, 64);
+        int total = 0;
+        for (int trial = 0; trial < 500; trial++) {
+            StringBuilder edited = new StringBuilder(TEXT);
+            edited.setCharAt(random.nextInt(edited.length()), (char) ('a' + random.nextInt(26)));
+            total += ChunkFingerprint.distance(base, ChunkFingerprint.simHash(edited.toString(), 64));
+        }
+        assertTrue(total / 500.0 < 4.0, "单字符修改的平均汉明距离应很小");
+
+        for (int trial = 0; trial < 200; trial++) {
+            StringBuilder unrelated = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                unrelated.append((char) (0x4E00 + random.nextInt(2000)));
+            }
+            assertTrue(ChunkFingerprint.distance(base, ChunkFingerprint.simHash(unrelated.toString(), 64)) > 3);
+        }
+    }
+
+    @Test
+    void shortTextHasNoSimHash() {
+        assertNull(ChunkFingerprint.simHash("目录", 64));
+        assertNull(ChunkFingerprint.simHash("ab", 0));
+        assertNotNull(ChunkFingerprint.simHash("abc", 0));
+    }
+
+    private static boolean sharesBand(long a, long b) {
+        for (int band = 0; band < ChunkFingerprint.BANDS; band++) {
+            if (ChunkFingerprint.band(a, band) == ChunkFingerprint.band(b, band)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long flipRandomBits(long hash, int count, Random random) {
+        long flipped = hash;
+        int flips = 0;
+        while (flips < count) {
+            long bit = 1L << random.nextInt(64);
+            if (((flipped ^ hash) & bit) == 0) {
+                flipped ^= bit;
+                flips++;
+            }
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,263 @@
+package com.aliyun.rag.util;
+
+import com.aliyun.rag.config.QuantizedIndexProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link VectorQuantizer} 量化误差与重打分召回率测试
+ *
+ * @author Jason Ma
+ * @version 1.0.0
+ */
+class VectorQuantizerTest {
+
+    private static final int DIMENSION = 384;
+    private static final int TOP_K = 10;
+
+    @Test
+    void int8CosineStaysCloseToFullPrecision() {
+        Random random = new Random(1);
+        double maxError = 0;
+        for (int trial = 0; trial < 2000; trial++) {
+            float[] a = gaussian(random, DIMENSION);
+            float[] b = correlated(a, random.nextDouble() * 2 - 1, random);
+            byte[] codesA = new byte[DIMENSION];
+            byte[] codesB = new byte[DIMENSION];
+            float factorA = VectorQuantizer.quantizeInt8(a, codesA);
+            float factorB = VectorQuantizer.quantizeInt8(b, codesB);
+
+            double approximate = VectorQuantizer.dotInt8(codesA, codesB, DIMENSION) * (double) factorA * factorB;
+            maxError = Math.max(maxError, Math.abs(approximate - VectorQuantizer.cosine(a, b)));
+        }
+        assertTrue(maxError < 0.005, "int8近似余弦误差过大: " + maxError);
+    }
+
+    @Test
+    void int8CodesUseFullSymmetricRange() {
+        float[] vector = {0.5f, -2f, 1f, 0f, 2f};
+        byte[] codes = new byte[vector.length];
+        float factor = VectorQuantizer.quantizeInt8(vector, codes);
+
+        assertEquals(-127, codes[1]);
+        assertEquals(127, codes[4]);
+        assertEquals(0, codes[3]);
+        assertEquals(64, codes[2]);
+        // 自身内积乘以系数平方即为1
+        assertEquals(1.0, VectorQuantizer.dotInt8(codes, codes, codes.length) * (double) factor * factor, 0.01);
+    }
+
+    @Test
+    void zeroVectorHasZeroFactor() {
+        byte[] codes = {1, 2, 3};
+        assertEquals(0f, VectorQuantizer.quantizeInt8(new float[3], codes));
+        assertEquals(0, VectorQuantizer.dotInt8(codes, codes, codes.length));
+        assertEquals(0.0, VectorQuantizer.cosine(new float[3], new float[]{1f, 0f, 0f}));
+    }
+
+    @Test
+    void hammingDistanceApproximatesAngle() {
+        Random random = new Random(2);
+        int words = VectorQuantizer.binaryWords(DIMENSION);
+        double errorSum = 0;
+        int trials = 2000;
+        for (int trial = 0; trial < trials; trial++) {
+            float[] a = gaussian(random, DIMENSION);
+            float[] b = correlated(a, random.nextDouble() * 2 - 1, random);
+            long[] bitsA = new long[words];
+            long[] bitsB = new long[words];
+            VectorQuantizer.quantizeBinary(a, bitsA);
+            VectorQuantizer.quantizeBinary(b, bitsB);
+
+            // 随机超平面的符号不同的概率为 夹角 / π
+            double angle = Math.PI * VectorQuantizer.hamming(bitsA, bitsB, words) / DIMENSION;
+            errorSum += Math.abs(angle - Math.acos(VectorQuantizer.cosine(a, b)));
+        }
+        assertTrue(errorSum / trials < 0.08, "二值量化角度平均误差过大: " + errorSum / trials);
+    }
+
+    @Test
+    void oppositeVectorsDifferInEveryBit() {
+        float[] a = gaussian(new Random(3), DIMENSION);
+        float[] b = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            b[i] = -a[i];
+        }
+        int words = VectorQuantizer.binaryWords(DIMENSION);
+        long[] bitsA = new long[words];
+        long[] bitsB = new long[words];
+        VectorQuantizer.quantizeBinary(a, bitsA);
+        VectorQuantizer.quantizeBinary(b, bitsB);
+
+        assertEquals(DIMENSION, VectorQuantizer.hamming(bitsA, bitsB, words));
+        assertEquals(0, VectorQuantizer.hamming(bitsA, bitsA, words));
+    }
+
+    @Test
+    void binaryWordsRoundsUp() {
+        assertEquals(1, VectorQuantizer.binaryWords(1));
+        assertEquals(1, VectorQuantizer.binaryWords(64));
+        assertEquals(2, VectorQuantizer.binaryWords(65));
+        assertEquals(6, VectorQuantizer.binaryWords(384));
+        assertEquals(24, VectorQuantizer.binaryWords(1536));
+    }
+
+    @Test
+    void unrolledLoopsHandleTailElements() {
+        Random random = new Random(4);
+        for (int length = 0; length <= 9; length++) {
+            byte[] a = new byte[length];
+            byte[] b = new byte[length];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            int expected = 0;
+            for (int i = 0; i < length; i++) {
+                expected += a[i] * b[i];
+            }
+            assertEquals(expected, VectorQuantizer.dotInt8(a, b, length), "长度 " + length);
+
+            long[] x = random.longs(length).toArray();
+            long[] y = random.longs(length).toArray();
+            int distance = 0;
+            for (int i = 0; i < length; i++) {
+                distance += Long.bitCount(x[i] ^ y[i]);
+            }
+            assertEquals(distance, VectorQuantizer.hamming(x, y, length), "长度 " + length);
+        }
+    }
+
+    @Test
+    void rescoringRecoversExactTopK() {
+        Random random = new Random(5);
+        Dataset dataset = new Dataset(random, 5000, 100);
+        int multiplier = new QuantizedIndexProperties().getRescoreMultiplier();
+
+        double int8WithoutRescore = 0;
+        double int8 = 0;
+        double binaryWithoutRescore = 0;
+        double binary = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = dataset.sample(random);
+            Set<Integer> exact = new HashSet<>(dataset.exactTopK(query, TOP_K));
+            int8WithoutRescore += recall(dataset.rescore(query, dataset.int8Candidates(query, TOP_K), TOP_K), exact);
+            int8 += recall(dataset.rescore(query, dataset.int8Candidates(query, TOP_K * multiplier), TOP_K), exact);
+            binaryWithoutRescore += recall(dataset.rescore(query, dataset.binaryCandidates(query, TOP_K), TOP_K), exact);
+            binary += recall(dataset.rescore(query, dataset.binaryCandidates(query, TOP_K * multiplier), TOP_K), exact);
+        }
+        int8WithoutRescore /= queries;
+        int8 /= queries;
+        binaryWithoutRescore /= queries;
+        binary /= queries;
+
+        assertTrue(int8WithoutRescore >= 0.95, "int8候选召回率: " + int8WithoutRescore);
+        assertTrue(int8 >= 0.99, "int8重打分召回率: " + int8);
+        assertTrue(binary >= 0.9, "二值重打分召回率: " + binary);
+        // 二值量化的排序误差较大，扩大候选后重打分才能找回精确结果
+        assertTrue(binary - binaryWithoutRescore >= 0.3,
+                "二值重打分未明显提升召回率: " + binaryWithoutRescore + " -> " + binary);
+    }
+
+    private static double recall(List<Integer> found, Set<Integer> exact) {
+        return found.stream().filter(exact::contains).count() / (double) exact.size();
+    }
+
+    private static float[] gaussian(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * 与给定向量的期望余弦相似度为rho的随机向量
+     */
+    private static float[] correlated(float[] base, double rho, Random random) {
+        float[] vector = new float[base.length];
+        double noise = Math.sqrt(1 - rho * rho);
+        for (int i = 0; i < base.length; i++) {
+            vector[i] = (float) (rho * base[i] + noise * random.nextGaussian());
+        }
+        return vector;
+    }
+
+    /**
+     * 按簇分布的向量集合，按量化索引的方式保存量化副本
+     */
+    private static final class Dataset {
+
+        private final float[][] centers;
+        private final float[][] vectors;
+        private final byte[][] int8Codes;
+        private final float[] factors;
+        private final long[][] binaryCodes;
+
+        Dataset(Random random, int size, int clusters) {
+            centers = new float[clusters][];
+            for (int c = 0; c < clusters; c++) {
+                centers[c] = gaussian(random, DIMENSION);
+            }
+            vectors = new float[size][];
+            int8Codes = new byte[size][DIMENSION];
+            factors = new float[size];
+            binaryCodes = new long[size][VectorQuantizer.binaryWords(DIMENSION)];
+            for (int i = 0; i < size; i++) {
+                vectors[i] = sample(random);
+                factors[i] = VectorQuantizer.quantizeInt8(vectors[i], int8Codes[i]);
+                VectorQuantizer.quantizeBinary(vectors[i], binaryCodes[i]);
+            }
+        }
+
+        float[] sample(Random random) {
+            float[] center = centers[random.nextInt(centers.length)];
+            float[] vector = new float[DIMENSION];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = center[i] + 0.8f * (float) random.nextGaussian();
+            }
+            return vector;
+        }
+
+        List<Integer> exactTopK(float[] query, int k) {
+            return top(i -> VectorQuantizer.cosine(query, vectors[i]), k);
+        }
+
+        List<Integer> int8Candidates(float[] query, int limit) {
+            byte[] codes = new byte[DIMENSION];
+            VectorQuantizer.quantizeInt8(query, codes);
+            // 与量化索引相同，查询向量的系数对所有候选相同，排序时省略
+            return top(i -> VectorQuantizer.dotInt8(codes, int8Codes[i], DIMENSION) * factors[i], limit);
+        }
+
+        List<Integer> binaryCandidates(float[] query, int limit) {
+            long[] bits = new long[VectorQuantizer.binaryWords(DIMENSION)];
+            VectorQuantizer.quantizeBinary(query, bits);
+            return top(i -> -VectorQuantizer.hamming(bits, binaryCodes[i], bits.length), limit);
+        }
+
+        List<Integer> rescore(float[] query, List<Integer> candidates, int k) {
+            List<Integer> sorted = new ArrayList<>(candidates);
+            sorted.sort(Comparator.comparingDouble((Integer i) -> VectorQuantizer.cosine(query, vectors[i])).reversed());
+            return sorted.subList(0, Math.min(k, sorted.size()));
+        }
+
+        private List<Integer> top(IntToDoubleFunction score, int limit) {
+            return IntStream.range(0, vectors.length).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> score.applyAsDouble(i)).reversed())
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+    }
+}